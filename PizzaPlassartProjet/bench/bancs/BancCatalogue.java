@@ -0,0 +1,125 @@
+package bancs;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import pizzas.Pizza;
+import pizzas.TypePizza;
+
+/**
+ * Banc d'essai (hors JUnit) comparant le catalogue indexé de {@link Pizza} à
+ * l'ancien catalogue (liste parcourue à chaque recherche et copiée à chaque
+ * lecture), pour l'ajout, la recherche par nom et la lecture du catalogue
+ * telle que la fait {@link pizzas.GestClient#getPizzas()}.
+ *
+ * <p>Utilisation : {@code java bancs.BancCatalogue [nbPizzas] [nbOperations]}.
+ * Par défaut, 5 000 pizzas et 20 000 opérations de chaque sorte.
+ *
+ * @author Rayan Ladrait
+ */
+public class BancCatalogue {
+  
+  /**
+   * Ancien catalogue, reproduit pour la comparaison.
+   */
+  private static final class AncienCatalogue {
+    
+    private final List<Pizza> catalogue = new ArrayList<>();
+    
+    void ajouter(Pizza p) {
+      if (p != null && !catalogue.contains(p)) {
+        catalogue.add(p);
+      }
+    }
+    
+    Pizza getPizzaParNom(String nom) {
+      for (Pizza p : catalogue) {
+        if (p.getNom().equalsIgnoreCase(nom)) {
+          return p;
+        }
+      }
+      return null;
+    }
+    
+    Set<Pizza> getPizzas() {
+      return new HashSet<>(new ArrayList<>(catalogue));
+    }
+  }
+  
+  /**
+   * Lance la mesure.
+   *
+   * @param args nombre de pizzas, puis nombre d'opérations
+   */
+  public static void main(String[] args) {
+    int nbPizzas = args.length > 0 ? Integer.parseInt(args[0]) : 5_000;
+    int nbOperations = args.length > 1 ? Integer.parseInt(args[1]) : 20_000;
+    
+    List<Pizza> pizzas = new ArrayList<>();
+    for (int i = 0; i < nbPizzas; i++) {
+      pizzas.add(new Pizza("PizzaBanc" + i, TypePizza.values()[i % 3]));
+    }
+    String[] recherches = new String[nbOperations];
+    for (int i = 0; i < nbOperations; i++) {
+      recherches[i] = ("pizzabanc" + (i * 7919L % nbPizzas))
+          .toUpperCase(Locale.ROOT);
+    }
+    
+    AncienCatalogue ancien = new AncienCatalogue();
+    long debut = System.nanoTime();
+    for (Pizza p : pizzas) {
+      ancien.ajouter(p);
+    }
+    long ajoutAncien = System.nanoTime() - debut;
+    debut = System.nanoTime();
+    Pizza.ajouterPizzasCatalogue(pizzas);
+    for (Pizza p : pizzas) {
+      // Ajouts individuels déjà présents : vérification seule
+      Pizza.ajouterPizzaCatalogue(p);
+    }
+    long ajoutIndexe = System.nanoTime() - debut;
+    
+    int trouvees = 0;
+    debut = System.nanoTime();
+    for (String nom : recherches) {
+      trouvees += ancien.getPizzaParNom(nom) != null ? 1 : 0;
+    }
+    long rechercheAncien = System.nanoTime() - debut;
+    debut = System.nanoTime();
+    for (String nom : recherches) {
+      trouvees += Pizza.getPizzaParNom(nom) != null ? 1 : 0;
+    }
+    long rechercheIndexe = System.nanoTime() - debut;
+    
+    long taille = 0;
+    int nbLectures = Math.max(1, nbOperations / 100);
+    debut = System.nanoTime();
+    for (int i = 0; i < nbLectures; i++) {
+      taille += ancien.getPizzas().size();
+    }
+    long lectureAncien = System.nanoTime() - debut;
+    debut = System.nanoTime();
+    for (int i = 0; i < nbLectures; i++) {
+      taille += Pizza.getEnsembleCatalogue().size();
+    }
+    long lectureIndexe = System.nanoTime() - debut;
+    
+    System.out.printf(Locale.ROOT, "%d pizzas, %d recherches, %d lectures"
+        + " (contrôle : %d, %d)%n", nbPizzas, nbOperations, nbLectures,
+        trouvees, taille);
+    afficher("Ajout", ajoutAncien, ajoutIndexe);
+    afficher("Recherche par nom", rechercheAncien, rechercheIndexe);
+    afficher("Lecture du catalogue", lectureAncien, lectureIndexe);
+  }
+  
+  /**
+   * Affiche les durées des deux catalogues pour une opération.
+   */
+  private static void afficher(String operation, long ancien, long indexe) {
+    System.out.printf(Locale.ROOT,
+        "%-22s ancien : %9.2f ms  indexé : %9.2f ms  (x%.0f)%n", operation,
+        ancien / 1e6, indexe / 1e6, ancien / (double) Math.max(1, indexe));
+  }
+}
@@ -0,0 +1,106 @@
+package bancs;
+
+import io.ChargeurMappe;
+import io.ChargeurParallele;
+import io.GestionSauvegarde;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.Locale;
+import java.util.concurrent.ForkJoinPool;
+import pizzas.Compte;
+import pizzas.GestPizzaiolo;
+import pizzas.Pizzaiolo;
+
+/**
+ * Banc d'essai (hors JUnit) mesurant le débit de chargement de
+ * {@link io.ChargeurMappe} et de {@link io.ChargeurParallele} comparé au
+ * chargeur texte de {@link io.GestionSauvegarde}, sur un fichier généré.
+ *
+ * <p>Utilisation : {@code java bancs.BancChargementMappe [tailleMo] [texte]}.
+ * La taille par défaut est de 100 Mo ; le chargeur texte n'est mesuré que si
+ * le second argument vaut {@code texte}, car il est beaucoup plus lent.
+ *
+ * @author Kevin SIDER
+ */
+public class BancChargementMappe {
+  
+  /**
+   * Lance la mesure.
+   *
+   * @param args taille du fichier en Mo, puis "texte" pour mesurer aussi le
+   *        chargeur texte
+   * @throws IOException en cas de problème d'écriture ou de lecture
+   */
+  public static void main(String[] args) throws IOException {
+    long tailleMo = args.length > 0 ? Long.parseLong(args[0]) : 100;
+    boolean avecTexte = args.length > 1 && args[1].equals("texte");
+    
+    File fichier = File.createTempFile("banc_pizzeria", ".txt");
+    fichier.deleteOnExit();
+    generer(fichier, tailleMo * 1_000_000L);
+    System.out.printf(Locale.ROOT, "Fichier généré : %.1f Mo%n",
+        fichier.length() / 1e6);
+    
+    GestPizzaiolo gest = new GestPizzaiolo(new Pizzaiolo("Banc"));
+    ChargeurMappe chargeur = new ChargeurMappe(gest);
+    chargeur.chargerDonnees(fichier.getPath());
+    System.out.printf(Locale.ROOT, "ChargeurMappe : %.2f s, %.1f Mo/s%n",
+        chargeur.getDureeNanos() / 1e9, chargeur.getDebitMoParSeconde());
+    
+    gest = new GestPizzaiolo(new Pizzaiolo("Banc"));
+    ChargeurParallele parallele = new ChargeurParallele(gest);
+    parallele.chargerDonnees(fichier.getPath());
+    System.out.printf(Locale.ROOT,
+        "ChargeurParallele (%d threads, %d blocs) : %.2f s, %.1f Mo/s%n",
+        ForkJoinPool.commonPool().getParallelism(), parallele.getNbBlocs(),
+        parallele.getDureeNanos() / 1e9, parallele.getDebitMoParSeconde());
+    
+    if (avecTexte) {
+      gest = new GestPizzaiolo(new Pizzaiolo("Banc"));
+      long debut = System.nanoTime();
+      new GestionSauvegarde(gest).chargerDonnees(fichier.getPath());
+      double secondes = (System.nanoTime() - debut) / 1e9;
+      System.out.printf(Locale.ROOT, "GestionSauvegarde : %.2f s, %.1f Mo/s%n",
+          secondes, fichier.length() / secondes / 1e6);
+    }
+    Compte.resetMemoire();
+  }
+  
+  /**
+   * Génère un fichier de sauvegarde d'environ la taille demandée, composé
+   * essentiellement de commandes.
+   */
+  private static void generer(File fichier, long taille) throws IOException {
+    int nbIngredients = 40;
+    int nbPizzas = 200;
+    int nbClients = 500;
+    try (PrintWriter writer =
+        new PrintWriter(new BufferedWriter(new FileWriter(fichier)))) {
+      for (int i = 0; i < nbIngredients; i++) {
+        writer.println("INGREDIENT;Ingredient " + i + ";" + (0.1 + i * 0.05));
+      }
+      for (int i = 0; i < nbPizzas; i++) {
+        StringBuilder ligne = new StringBuilder("PIZZA;Pizza " + i + ";Viande;"
+            + (20 + i % 7) + ".5;null");
+        for (int j = 0; j < 5; j++) {
+          ligne.append(";Ingredient ").append((i + j * 7) % nbIngredients);
+        }
+        writer.println(ligne);
+      }
+      for (int i = 0; i < nbClients; i++) {
+        writer.println("CLIENT;client" + i + "@banc.fr;mdp;Nom" + i + ";Prenom"
+            + i + ";" + i + " rue du Banc;" + (18 + i % 60));
+      }
+      long ecrit = 0;
+      for (int i = 0; ecrit < taille; i++) {
+        String ligne = "COMMANDE;client" + (i % nbClients) + "@banc.fr;TRAITEE"
+            + ";Pizza " + (i % nbPizzas) + ";Pizza " + ((i * 31) % nbPizzas);
+        writer.println(ligne);
+        ecrit += ligne.length() + 1;
+      }
+    }
+  }
+}
@@ -0,0 +1,6 @@
+/**
+ * Bancs d'essai (hors JUnit) des chargeurs et du catalogue : programmes
+ * {@code main} qui mesurent et affichent des durées, compilés avec les
+ * classes de {@code src} mais pas lancés avec les tests.
+ */
+package bancs;
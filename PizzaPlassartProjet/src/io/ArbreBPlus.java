@@ -0,0 +1,515 @@
+package io;
+
+import io.FichierPages.Page;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Arbre B+ stocké dans un {@link FichierPages} : associe des clés (chaînes)
+ * à des valeurs (octets), triées par clé.
+ *
+ * <p>Chaque nœud occupe une page. Les feuilles sont chaînées dans l'ordre des
+ * clés pour les parcours. Une valeur trop longue pour une feuille est écrite
+ * dans une chaîne de pages de débordement. Les suppressions ne fusionnent pas
+ * les nœuds : une feuille peut rester vide jusqu'aux insertions suivantes.
+ *
+ * <p>Format d'un nœud : type (octet, 0 pour une feuille), nombre de clés
+ * (short), feuille suivante (int), puis pour un nœud interne le premier
+ * enfant et les couples (clé, enfant), et pour une feuille les triplets
+ * (clé, débordement, valeur). Une clé est écrite comme sa longueur (short)
+ * suivie de ses octets UTF-8.
+ *
+ * @author Kevin SIDER
+ * @version 1.0
+ */
+final class ArbreBPlus implements Closeable {
+
+  /**
+   * Longueur maximale d'une clé, en octets.
+   */
+  static final int TAILLE_CLE_MAX = 512;
+
+  /**
+   * Longueur au-delà de laquelle une valeur est écrite en débordement.
+   */
+  private static final int TAILLE_VALEUR_MAX = 512;
+
+  private static final int ENTETE_NOEUD = 7;
+  private static final int ENTETE_DEBORDEMENT = 8;
+
+  /**
+   * Reçoit les entrées d'un parcours.
+   */
+  interface Visiteur {
+
+    /**
+     * Reçoit une entrée.
+     *
+     * @param cle la clé
+     * @param valeur la valeur
+     * @return false pour arrêter le parcours
+     * @throws IOException en cas de problème de lecture
+     */
+    boolean visiter(String cle, byte[] valeur) throws IOException;
+  }
+
+  /**
+   * Nœud lu depuis sa page.
+   */
+  private static final class Noeud {
+
+    final Page page;
+    boolean feuille;
+    int suivant = FichierPages.AUCUNE;
+    final List<String> cles = new ArrayList<>();
+
+    /**
+     * Enfants d'un nœud interne (une de plus que les clés).
+     */
+    final List<Integer> enfants = new ArrayList<>();
+
+    /**
+     * Valeurs d'une feuille (null pour une valeur en débordement).
+     */
+    final List<byte[]> valeurs = new ArrayList<>();
+
+    /**
+     * Première page de débordement de chaque valeur d'une feuille.
+     */
+    final List<Integer> debordements = new ArrayList<>();
+
+    Noeud(Page page) {
+      this.page = page;
+    }
+  }
+
+  /**
+   * Résultat de l'insertion dans un nœud qui a dû être coupé.
+   */
+  private static final class Coupure {
+
+    final String separateur;
+    final int droite;
+
+    Coupure(String separateur, int droite) {
+      this.separateur = separateur;
+      this.droite = droite;
+    }
+  }
+
+  private final FichierPages pages;
+
+  /**
+   * Ouvre (ou crée) un arbre.
+   *
+   * @param chemin le fichier
+   * @param pagesEnCache le nombre de pages du cache
+   * @throws IOException en cas de problème d'accès au fichier
+   */
+  ArbreBPlus(Path chemin, int pagesEnCache) throws IOException {
+    this.pages = new FichierPages(chemin, pagesEnCache);
+  }
+
+  /**
+   * Retourne le fichier de pages de l'arbre.
+   */
+  FichierPages getPages() {
+    return pages;
+  }
+
+  /**
+   * Retourne la valeur associée à une clé.
+   *
+   * @param cle la clé
+   * @return la valeur, ou null si la clé est absente
+   * @throws IOException en cas de problème de lecture
+   */
+  byte[] lire(String cle) throws IOException {
+    try {
+      if (pages.getRacine() == FichierPages.AUCUNE) {
+        return null;
+      }
+      Noeud feuille = descendre(cle);
+      int i = Collections.binarySearch(feuille.cles, cle);
+      return i >= 0 ? valeur(feuille, i) : null;
+    } finally {
+      pages.ajuster();
+    }
+  }
+
+  /**
+   * Associe une valeur à une clé. Rien n'est écrit si la clé a déjà cette
+   * valeur.
+   *
+   * @param cle la clé
+   * @param valeur la valeur
+   * @return true si l'arbre a été modifié
+   * @throws IOException en cas de problème d'accès au fichier
+   * @throws IllegalArgumentException si la clé est trop longue
+   */
+  boolean ecrire(String cle, byte[] valeur) throws IOException {
+    if (cle.getBytes(StandardCharsets.UTF_8).length > TAILLE_CLE_MAX) {
+      throw new IllegalArgumentException("Clé trop longue : " + cle);
+    }
+    try {
+      if (pages.getRacine() == FichierPages.AUCUNE) {
+        Noeud racine = new Noeud(pages.allouer());
+        racine.feuille = true;
+        enregistrer(racine);
+        pages.setRacine(racine.page.numero);
+      }
+      boolean[] modifie = new boolean[1];
+      Noeud racine = lireNoeud(pages.getRacine());
+      Coupure coupure = inserer(racine, cle, valeur, modifie);
+      if (coupure != null) {
+        Noeud nouvelle = new Noeud(pages.allouer());
+        nouvelle.enfants.add(racine.page.numero);
+        nouvelle.cles.add(coupure.separateur);
+        nouvelle.enfants.add(coupure.droite);
+        enregistrer(nouvelle);
+        pages.setRacine(nouvelle.page.numero);
+      }
+      return modifie[0];
+    } finally {
+      pages.ajuster();
+    }
+  }
+
+  /**
+   * Supprime une clé.
+   *
+   * @param cle la clé
+   * @return true si la clé était présente
+   * @throws IOException en cas de problème d'accès au fichier
+   */
+  boolean supprimer(String cle) throws IOException {
+    try {
+      if (pages.getRacine() == FichierPages.AUCUNE) {
+        return false;
+      }
+      Noeud feuille = descendre(cle);
+      int i = Collections.binarySearch(feuille.cles, cle);
+      if (i < 0) {
+        return false;
+      }
+      libererDebordement(feuille.debordements.get(i));
+      feuille.cles.remove(i);
+      feuille.valeurs.remove(i);
+      feuille.debordements.remove(i);
+      enregistrer(feuille);
+      return true;
+    } finally {
+      pages.ajuster();
+    }
+  }
+
+  /**
+   * Parcourt dans l'ordre les entrées dont la clé commence par un préfixe.
+   *
+   * @param prefixe le préfixe ("" pour tout l'arbre)
+   * @param visiteur reçoit les entrées
+   * @throws IOException en cas de problème de lecture
+   */
+  void parcourir(String prefixe, Visiteur visiteur) throws IOException {
+    if (pages.getRacine() == FichierPages.AUCUNE) {
+      return;
+    }
+    int numero = descendre(prefixe).page.numero;
+    while (numero != FichierPages.AUCUNE) {
+      Noeud feuille = lireNoeud(numero);
+      for (int i = 0; i < feuille.cles.size(); i++) {
+        String cle = feuille.cles.get(i);
+        if (cle.compareTo(prefixe) < 0) {
+          continue;
+        }
+        if (!cle.startsWith(prefixe)
+            || !visiteur.visiter(cle, valeur(feuille, i))) {
+          pages.ajuster();
+          return;
+        }
+      }
+      numero = feuille.suivant;
+      pages.ajuster();
+    }
+  }
+
+  /**
+   * Écrit les pages modifiées sur le disque.
+   *
+   * @throws IOException en cas de problème d'écriture
+   */
+  void synchroniser() throws IOException {
+    pages.synchroniser();
+  }
+
+  @Override
+  public void close() throws IOException {
+    pages.close();
+  }
+
+  /**
+   * Descend jusqu'à la feuille qui contient (ou contiendrait) une clé.
+   */
+  private Noeud descendre(String cle) throws IOException {
+    Noeud noeud = lireNoeud(pages.getRacine());
+    while (!noeud.feuille) {
+      noeud = lireNoeud(noeud.enfants.get(indiceEnfant(noeud, cle)));
+    }
+    return noeud;
+  }
+
+  /**
+   * Indice de l'enfant d'un nœud interne qui couvre une clé.
+   */
+  private static int indiceEnfant(Noeud noeud, String cle) {
+    int i = Collections.binarySearch(noeud.cles, cle);
+    return i >= 0 ? i + 1 : -i - 1;
+  }
+
+  /**
+   * Insère dans le sous-arbre d'un nœud.
+   *
+   * @return la coupure du nœud, ou null s'il n'a pas été coupé
+   */
+  private Coupure inserer(Noeud noeud, String cle, byte[] valeur,
+      boolean[] modifie) throws IOException {
+    if (noeud.feuille) {
+      int i = Collections.binarySearch(noeud.cles, cle);
+      if (i >= 0) {
+        if (Arrays.equals(valeur(noeud, i), valeur)) {
+          return null;
+        }
+        libererDebordement(noeud.debordements.get(i));
+        noeud.cles.remove(i);
+        noeud.valeurs.remove(i);
+        noeud.debordements.remove(i);
+      } else {
+        i = -i - 1;
+      }
+      noeud.cles.add(i, cle);
+      if (valeur.length > TAILLE_VALEUR_MAX) {
+        noeud.valeurs.add(i, null);
+        noeud.debordements.add(i, ecrireDebordement(valeur));
+      } else {
+        noeud.valeurs.add(i, valeur);
+        noeud.debordements.add(i, FichierPages.AUCUNE);
+      }
+      modifie[0] = true;
+    } else {
+      int i = indiceEnfant(noeud, cle);
+      Coupure coupure = inserer(lireNoeud(noeud.enfants.get(i)), cle, valeur,
+          modifie);
+      if (coupure == null) {
+        return null;
+      }
+      noeud.cles.add(i, coupure.separateur);
+      noeud.enfants.add(i + 1, coupure.droite);
+    }
+    if (taille(noeud) <= FichierPages.TAILLE_PAGE) {
+      enregistrer(noeud);
+      return null;
+    }
+    return couper(noeud);
+  }
+
+  /**
+   * Coupe en deux un nœud trop grand pour sa page.
+   */
+  private Coupure couper(Noeud noeud) throws IOException {
+    Noeud droite = new Noeud(pages.allouer());
+    droite.feuille = noeud.feuille;
+    int milieu = milieu(noeud);
+    String separateur;
+    if (noeud.feuille) {
+      separateur = noeud.cles.get(milieu);
+      deplacer(noeud.cles, droite.cles, milieu);
+      deplacer(noeud.valeurs, droite.valeurs, milieu);
+      deplacer(noeud.debordements, droite.debordements, milieu);
+      droite.suivant = noeud.suivant;
+      noeud.suivant = droite.page.numero;
+    } else {
+      // La clé du milieu remonte dans le parent
+      separateur = noeud.cles.get(milieu);
+      deplacer(noeud.cles, droite.cles, milieu + 1);
+      noeud.cles.remove(milieu);
+      deplacer(noeud.enfants, droite.enfants, milieu + 1);
+    }
+    enregistrer(noeud);
+    enregistrer(droite);
+    return new Coupure(separateur, droite.page.numero);
+  }
+
+  /**
+   * Indice de coupure d'un nœud : la moitié de sa taille en octets (une
+   * coupure au milieu des clés pourrait laisser une moitié trop grande si
+   * les entrées sont de tailles très différentes).
+   */
+  private static int milieu(Noeud noeud) {
+    int total = taille(noeud);
+    int cumul = ENTETE_NOEUD;
+    int milieu = 0;
+    while (milieu < noeud.cles.size() - 1 && cumul < total / 2) {
+      cumul += tailleEntree(noeud, milieu);
+      milieu++;
+    }
+    int max = noeud.feuille ? noeud.cles.size() - 1 : noeud.cles.size() - 2;
+    return Math.max(1, Math.min(milieu, max));
+  }
+  
+  /**
+   * Déplace la fin d'une liste (à partir d'un indice) vers une autre.
+   */
+  private static <T> void deplacer(List<T> source, List<T> cible, int debut) {
+    List<T> fin = source.subList(debut, source.size());
+    cible.addAll(fin);
+    fin.clear();
+  }
+
+  /**
+   * Taille d'un nœud une fois écrit, en octets.
+   */
+  private static int taille(Noeud noeud) {
+    int taille = ENTETE_NOEUD;
+    if (!noeud.feuille) {
+      taille += 4;
+    }
+    for (int i = 0; i < noeud.cles.size(); i++) {
+      taille += tailleEntree(noeud, i);
+    }
+    return taille;
+  }
+  
+  /**
+   * Taille de l'entrée d'indice i d'un nœud une fois écrite, en octets.
+   */
+  private static int tailleEntree(Noeud noeud, int i) {
+    int taille = 2 + noeud.cles.get(i).getBytes(StandardCharsets.UTF_8).length;
+    if (noeud.feuille) {
+      byte[] valeur = noeud.valeurs.get(i);
+      return taille + 4 + 4 + (valeur != null ? valeur.length : 0);
+    }
+    return taille + 4;
+  }
+
+  private Noeud lireNoeud(int numero) throws IOException {
+    Noeud noeud = new Noeud(pages.lire(numero));
+    ByteBuffer in = noeud.page.donnees.duplicate();
+    in.clear();
+    noeud.feuille = in.get() == 0;
+    int nb = in.getShort();
+    noeud.suivant = in.getInt();
+    if (!noeud.feuille) {
+      noeud.enfants.add(in.getInt());
+    }
+    for (int i = 0; i < nb; i++) {
+      byte[] cle = new byte[in.getShort()];
+      in.get(cle);
+      noeud.cles.add(new String(cle, StandardCharsets.UTF_8));
+      if (noeud.feuille) {
+        int debordement = in.getInt();
+        noeud.debordements.add(debordement);
+        if (debordement == FichierPages.AUCUNE) {
+          byte[] valeur = new byte[in.getInt()];
+          in.get(valeur);
+          noeud.valeurs.add(valeur);
+        } else {
+          in.getInt();
+          noeud.valeurs.add(null);
+        }
+      } else {
+        noeud.enfants.add(in.getInt());
+      }
+    }
+    return noeud;
+  }
+
+  private void enregistrer(Noeud noeud) {
+    ByteBuffer out = noeud.page.donnees.duplicate();
+    out.clear();
+    out.put((byte) (noeud.feuille ? 0 : 1));
+    out.putShort((short) noeud.cles.size());
+    out.putInt(noeud.suivant);
+    if (!noeud.feuille) {
+      out.putInt(noeud.enfants.get(0));
+    }
+    for (int i = 0; i < noeud.cles.size(); i++) {
+      byte[] cle = noeud.cles.get(i).getBytes(StandardCharsets.UTF_8);
+      out.putShort((short) cle.length);
+      out.put(cle);
+      if (noeud.feuille) {
+        byte[] valeur = noeud.valeurs.get(i);
+        out.putInt(noeud.debordements.get(i));
+        out.putInt(valeur != null ? valeur.length : 0);
+        if (valeur != null) {
+          out.put(valeur);
+        }
+      } else {
+        out.putInt(noeud.enfants.get(i + 1));
+      }
+    }
+    noeud.page.modifiee = true;
+  }
+
+  /**
+   * Retourne la valeur d'indice i d'une feuille.
+   */
+  private byte[] valeur(Noeud feuille, int i) throws IOException {
+    byte[] valeur = feuille.valeurs.get(i);
+    return valeur != null ? valeur : lireDebordement(
+        feuille.debordements.get(i));
+  }
+
+  /**
+   * Écrit une valeur dans une chaîne de pages de débordement.
+   *
+   * @return la première page de la chaîne
+   */
+  private int ecrireDebordement(byte[] valeur) throws IOException {
+    int place = FichierPages.TAILLE_PAGE - ENTETE_DEBORDEMENT;
+    int premiere = FichierPages.AUCUNE;
+    Page precedente = null;
+    for (int debut = 0; debut < valeur.length; debut += place) {
+      int longueur = Math.min(place, valeur.length - debut);
+      Page page = pages.allouer();
+      page.donnees.putInt(0, FichierPages.AUCUNE);
+      page.donnees.putInt(4, longueur);
+      page.donnees.put(ENTETE_DEBORDEMENT, valeur, debut, longueur);
+      if (precedente == null) {
+        premiere = page.numero;
+      } else {
+        precedente.donnees.putInt(0, page.numero);
+      }
+      precedente = page;
+    }
+    return premiere;
+  }
+
+  private byte[] lireDebordement(int numero) throws IOException {
+    ByteBuffer valeur = ByteBuffer.allocate(FichierPages.TAILLE_PAGE);
+    while (numero != FichierPages.AUCUNE) {
+      Page page = pages.lire(numero);
+      int longueur = page.donnees.getInt(4);
+      if (valeur.remaining() < longueur) {
+        valeur = ByteBuffer.allocate(valeur.capacity() * 2).put(valeur.flip());
+      }
+      valeur.put(page.donnees.array(), ENTETE_DEBORDEMENT, longueur);
+      numero = page.donnees.getInt(0);
+    }
+    return Arrays.copyOf(valeur.array(), valeur.position());
+  }
+
+  private void libererDebordement(int numero) throws IOException {
+    while (numero != FichierPages.AUCUNE) {
+      int suivante = pages.lire(numero).donnees.getInt(0);
+      pages.liberer(numero);
+      numero = suivante;
+    }
+  }
+}
@@ -0,0 +1,584 @@
+package io;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.time.Clock;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import pizzas.Client;
+import pizzas.Commande;
+import pizzas.Compte;
+import pizzas.EtatCommande;
+import pizzas.GestPizzaiolo;
+import pizzas.ObservateurModifications;
+import pizzas.Observateurs;
+import pizzas.Pizza;
+import pizzas.SourceHistorique;
+
+/**
+ * Archive des commandes traitées, découpée en un segment (fichier) par jour
+ * de création des commandes, dans le répertoire
+ * {@code nomFichier + ".archive"}.
+ *
+ * <p>Au démarrage, seul le segment du jour (le segment actif) est chargé par
+ * {@link #ouvrir()}. Les autres jours sont chargés à la demande, quand le
+ * gestionnaire calcule un historique ou une statistique qui les couvre (voir
+ * {@link GestPizzaiolo#setHistorique}). La sauvegarde ne réécrit que les
+ * segments dont les commandes en mémoire ont changé : l'archive, enregistrée
+ * auprès de {@link Observateurs}, note le jour de chaque commande traitée
+ * modifiée (pizza ajoutée ou retirée, entrée ou sortie de l'état traité).
+ *
+ * <p>La sauvegarde se fait en deux temps, comme celle de l'instantané :
+ * {@link #capturer()} met en forme les segments à écrire sur le thread qui
+ * modifie les données, puis {@link Capture#ecrire()} les écrit sur
+ * n'importe quel thread.
+ *
+ * <p>Format d'une ligne de segment :
+ * COMMANDE;id;emailClient;$prix/cout,...;NomPizza1... (toutes les commandes
+ * archivées sont traitées ; leur jour est le nom du segment ; le champ $
+ * donne les prix figés à la validation, comme dans l'instantané, et manque
+ * dans les segments plus anciens). Les segments sont encodés en UTF-8.
+ *
+ * @author Kevin SIDER
+ * @version 1.0
+ */
+public class ArchiveCommandes implements SourceHistorique,
+    ObservateurModifications {
+  
+  /**
+   * Suffixe du répertoire de l'archive, ajouté au nom de la sauvegarde.
+   */
+  public static final String SUFFIXE_ARCHIVE = ".archive";
+  
+  /**
+   * Extension des fichiers de segment (nommés d'après leur jour).
+   */
+  private static final String EXTENSION = ".txt";
+  
+  /**
+   * Le gestionnaire métier.
+   */
+  private final GestPizzaiolo gestionnaire;
+  
+  /**
+   * Répertoire des segments.
+   */
+  private final File repertoire;
+  
+  /**
+   * Horloge donnant le jour actif.
+   */
+  private final Clock horloge;
+  
+  /**
+   * Segments en mémoire, avec le nombre de commandes lues ou écrites.
+   */
+  private final Map<LocalDate, Integer> segmentsCharges = new HashMap<>();
+  
+  /**
+   * Jours dont une commande traitée a changé depuis la dernière capture.
+   */
+  private final Set<LocalDate> joursModifies = new TreeSet<>();
+  
+  /**
+   * Vrai une fois tous les segments chargés : les commandes archivées
+   * ensuite viennent de la mémoire, le répertoire n'a plus à être lu.
+   */
+  private boolean toutCharge;
+  
+  /**
+   * Construit l'archive associée à une sauvegarde, dont le jour actif est
+   * celui de l'horloge du système.
+   *
+   * @param gestionnaire le gestionnaire principal de l'application
+   * @param nomFichier le fichier de la sauvegarde
+   */
+  public ArchiveCommandes(GestPizzaiolo gestionnaire, String nomFichier) {
+    this(gestionnaire, nomFichier, Clock.systemDefaultZone());
+  }
+  
+  /**
+   * Construit l'archive associée à une sauvegarde.
+   *
+   * @param gestionnaire le gestionnaire principal de l'application
+   * @param nomFichier le fichier de la sauvegarde
+   * @param horloge l'horloge donnant le jour actif
+   */
+  public ArchiveCommandes(GestPizzaiolo gestionnaire, String nomFichier,
+      Clock horloge) {
+    this.gestionnaire = gestionnaire;
+    this.repertoire = new File(nomFichier + SUFFIXE_ARCHIVE);
+    this.horloge = horloge;
+  }
+  
+  /**
+   * Retourne le répertoire des segments.
+   *
+   * @return le répertoire de l'archive
+   */
+  public File getRepertoire() {
+    return repertoire;
+  }
+  
+  /**
+   * Retourne le jour du segment actif.
+   *
+   * @return le jour courant de l'horloge
+   */
+  public LocalDate getJourActif() {
+    return LocalDate.now(horloge);
+  }
+  
+  /**
+   * Retourne les jours des segments présents sur disque.
+   *
+   * @return les jours, du plus ancien au plus récent
+   */
+  public List<LocalDate> getSegments() {
+    Set<LocalDate> jours = new TreeSet<>();
+    File[] fichiers = repertoire.listFiles();
+    if (fichiers != null) {
+      for (File f : fichiers) {
+        LocalDate jour = jourDe(f);
+        if (jour != null) {
+          jours.add(jour);
+        }
+      }
+    }
+    return new ArrayList<>(jours);
+  }
+  
+  /**
+   * Retourne les jours dont le segment est en mémoire.
+   *
+   * @return les jours chargés, du plus ancien au plus récent
+   */
+  public synchronized Set<LocalDate> getSegmentsCharges() {
+    return Collections.unmodifiableSet(new TreeSet<>(segmentsCharges.keySet()));
+  }
+  
+  /**
+   * Prépare l'archive après le chargement de la sauvegarde : les
+   * identifiants des commandes archivées sont réservés et seul le segment
+   * actif est chargé.
+   *
+   * @throws IOException en cas de problème de lecture
+   */
+  public synchronized void ouvrir() throws IOException {
+    segmentsCharges.clear();
+    toutCharge = false;
+    List<LocalDate> jours = getSegments();
+    if (!jours.isEmpty()) {
+      // Les identifiants croissent avec les jours : le dernier segment
+      // contient le plus grand
+      reserverIdentifiants(segment(jours.get(jours.size() - 1)));
+    }
+    LocalDate actif = getJourActif();
+    charger(actif, actif);
+  }
+  
+  @Override
+  public void chargerPeriode(LocalDate debut, LocalDate fin) {
+    try {
+      charger(debut, fin);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+  
+  /**
+   * Charge les segments d'une période qui ne sont pas encore en mémoire.
+   * Une fois tout l'historique chargé, il n'y a plus rien à lire : les
+   * appels suivants ne coûtent rien.
+   *
+   * @param debut le premier jour (inclus), ou null pour le début de
+   *        l'historique
+   * @param fin le dernier jour (inclus), ou null pour la fin de l'historique
+   * @return le nombre de commandes chargées
+   * @throws IOException en cas de problème de lecture
+   */
+  public synchronized int charger(LocalDate debut, LocalDate fin)
+      throws IOException {
+    if (toutCharge) {
+      return 0;
+    }
+    int nombre = 0;
+    for (LocalDate jour : getSegments()) {
+      if ((debut == null || !jour.isBefore(debut))
+          && (fin == null || !jour.isAfter(fin))
+          && !segmentsCharges.containsKey(jour)) {
+        nombre += chargerSegment(jour);
+      }
+    }
+    if (debut == null && fin == null) {
+      toutCharge = true;
+    }
+    return nombre;
+  }
+  
+  /**
+   * Écrit les segments des jours dont les commandes traitées en mémoire ont
+   * changé (voir {@link #capturer()}).
+   *
+   * @throws IOException en cas de problème de lecture ou d'écriture
+   */
+  public void sauvegarder() throws IOException {
+    capturer().ecrire();
+  }
+  
+  /**
+   * Met en forme les segments des jours dont les commandes traitées en
+   * mémoire ont changé : jours notés comme modifiés, jours jamais écrits et
+   * jours dont le nombre de commandes a changé. Cette méthode doit être
+   * appelée sur le thread qui modifie les données ; elle ne lit un segment
+   * que s'il a des commandes en mémoire sans avoir été chargé.
+   *
+   * @return les segments à écrire
+   * @throws IOException en cas de problème de lecture d'un segment
+   */
+  public synchronized Capture capturer() throws IOException {
+    return capturer(null);
+  }
+  
+  /**
+   * Met en forme les segments à écrire ; avec une archive précédente, ses
+   * segments non chargés seront recopiés dans cette archive.
+   *
+   * @param precedente l'archive dont celle-ci reprend l'historique, ou null
+   * @return les segments à écrire
+   * @throws IOException en cas de problème de lecture d'un segment
+   */
+  synchronized Capture capturer(ArchiveCommandes precedente)
+      throws IOException {
+    Map<LocalDate, List<Commande>> parJour = grouperParJour();
+    boolean relire = false;
+    for (LocalDate jour : parJour.keySet()) {
+      if (precedente == null && !segmentsCharges.containsKey(jour)
+          && segment(jour).exists()) {
+        chargerSegment(jour);
+        relire = true;
+      }
+    }
+    if (relire) {
+      parJour = grouperParJour();
+    }
+    
+    Map<LocalDate, List<String>> segments = new TreeMap<>();
+    for (Map.Entry<LocalDate, List<Commande>> e : parJour.entrySet()) {
+      Integer ecrites = segmentsCharges.get(e.getKey());
+      if (ecrites == null || ecrites != e.getValue().size()
+          || joursModifies.contains(e.getKey())) {
+        segments.put(e.getKey(), lignes(e.getValue()));
+        segmentsCharges.put(e.getKey(), e.getValue().size());
+      }
+    }
+    // Jours chargés dont toutes les commandes sont sorties
+    for (LocalDate jour : joursModifies) {
+      if (!parJour.containsKey(jour) && segmentsCharges.containsKey(jour)) {
+        segments.put(jour, List.of());
+        segmentsCharges.put(jour, 0);
+      }
+    }
+    joursModifies.clear();
+    if (precedente == null) {
+      return new Capture(this, segments, null, Set.of());
+    }
+    return new Capture(this, segments, precedente.repertoire,
+        precedente.getSegmentsCharges());
+  }
+  
+  /**
+   * Note de nouveau des jours dont l'écriture a échoué.
+   */
+  private synchronized void remarquer(Set<LocalDate> jours) {
+    joursModifies.addAll(jours);
+    for (LocalDate jour : jours) {
+      // Le segment sur disque n'est plus celui noté à la capture
+      segmentsCharges.replace(jour, -1);
+    }
+  }
+  
+  /**
+   * Met en forme les lignes d'un segment.
+   */
+  private static List<String> lignes(List<Commande> commandes) {
+    List<String> lignes = new ArrayList<>();
+    for (Commande c : commandes) {
+      StringBuilder ligne = new StringBuilder("COMMANDE;");
+      ligne.append(c.getIdCommande()).append(";")
+          .append(c.getClient().getCompte().getEmail());
+      long[] prix = Instantane.prixFiges(c);
+      if (prix != null) {
+        ligne.append(";").append(Instantane.formaterPrix(prix));
+      }
+      for (Pizza p : c.getPizzas()) {
+        ligne.append(";").append(p.getNom());
+      }
+      lignes.add(ligne.toString());
+    }
+    return lignes;
+  }
+  
+  /**
+   * Note le jour d'une commande traitée modifiée.
+   */
+  private synchronized void marquer(Commande commande) {
+    joursModifies.add(commande.getDate());
+  }
+  
+  @Override
+  public void pizzaAjouteeCommande(Commande commande, Pizza pizza) {
+    if (commande.getEtat() == EtatCommande.TRAITEE) {
+      marquer(commande);
+    }
+  }
+  
+  @Override
+  public void pizzaRetireeCommande(Commande commande, Pizza pizza) {
+    pizzaAjouteeCommande(commande, pizza);
+  }
+  
+  @Override
+  public void etatCommandeModifie(Commande commande,
+      EtatCommande ancienEtat) {
+    if (ancienEtat == EtatCommande.TRAITEE
+        || commande.getEtat() == EtatCommande.TRAITEE) {
+      marquer(commande);
+    }
+  }
+  
+  @Override
+  public void commandeRetiree(Commande commande) {
+    if (commande.getEtat() == EtatCommande.TRAITEE) {
+      marquer(commande);
+    }
+  }
+  
+  /**
+   * Regroupe par jour les commandes traitées en mémoire.
+   */
+  private Map<LocalDate, List<Commande>> grouperParJour() {
+    Map<LocalDate, List<Commande>> parJour = new TreeMap<>();
+    for (Commande c : gestionnaire.getCommandesTraitees()) {
+      parJour.computeIfAbsent(c.getDate(), j -> new ArrayList<>()).add(c);
+    }
+    return parJour;
+  }
+  
+  /**
+   * Charge un segment, notifications suspendues. Une commande déjà en
+   * mémoire (même client et même identifiant) n'est pas recréée.
+   */
+  private int chargerSegment(LocalDate jour) throws IOException {
+    int nombre = 0;
+    int lignes = 0;
+    Observateurs.suspendre();
+    try (BufferedReader reader = new BufferedReader(
+        new FileReader(segment(jour), StandardCharsets.UTF_8))) {
+      String ligne;
+      while ((ligne = reader.readLine()) != null) {
+        String[] parts = ligne.split(";");
+        if (parts.length < 3 || !parts[0].equals("COMMANDE")) {
+          continue;
+        }
+        lignes++;
+        int id = Integer.parseInt(parts[1]);
+        Client client = Compte.getClientParEmail(parts[2]);
+        if (client == null) {
+          continue;
+        }
+        int debut = 3;
+        long[] prix = debut < parts.length
+            ? Instantane.lirePrix(parts[debut]) : null;
+        if (prix != null) {
+          debut++;
+        }
+        Pizza[] pizzas = new Pizza[parts.length - debut];
+        for (int i = 0; i < pizzas.length; i++) {
+          pizzas[i] = gestionnaire.getPizzaParNom(parts[debut + i]);
+        }
+        Commande cmd = Instantane.restaurerCommande(client, id,
+            EtatCommande.TRAITEE, pizzas, prix);
+        if (cmd == null) {
+          continue;
+        }
+        cmd.setDate(jour);
+        nombre++;
+      }
+    } catch (NumberFormatException e) {
+      throw new IOException("Erreur lecture segment : " + e.getMessage(), e);
+    } finally {
+      Observateurs.reprendre();
+    }
+    segmentsCharges.put(jour, lignes);
+    return nombre;
+  }
+  
+  /**
+   * Réécrit un segment (de façon atomique si le système le permet).
+   */
+  private void ecrireSegment(LocalDate jour, List<String> lignes)
+      throws IOException {
+    if (!repertoire.isDirectory() && !repertoire.mkdirs()) {
+      throw new IOException("Création impossible : " + repertoire);
+    }
+    File cible = segment(jour);
+    File temporaire = new File(cible.getPath() + ".tmp");
+    try (PrintWriter writer = new PrintWriter(new BufferedWriter(
+        new FileWriter(temporaire, StandardCharsets.UTF_8)))) {
+      for (String ligne : lignes) {
+        writer.println(ligne);
+      }
+      if (writer.checkError()) {
+        throw new IOException("Erreur écriture fichier : " + temporaire);
+      }
+    }
+    remplacer(temporaire, cible);
+  }
+  
+  /**
+   * Remplace un fichier (de façon atomique si le système le permet).
+   */
+  private static void remplacer(File source, File cible) throws IOException {
+    try {
+      Files.move(source.toPath(), cible.toPath(),
+          StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    } catch (AtomicMoveNotSupportedException e) {
+      Files.move(source.toPath(), cible.toPath(),
+          StandardCopyOption.REPLACE_EXISTING);
+    }
+  }
+  
+  /**
+   * Réserve les identifiants des commandes d'un segment sans les charger.
+   */
+  private static void reserverIdentifiants(File segment) throws IOException {
+    try (BufferedReader reader = new BufferedReader(
+        new FileReader(segment, StandardCharsets.UTF_8))) {
+      String ligne;
+      while ((ligne = reader.readLine()) != null) {
+        String[] parts = ligne.split(";", 3);
+        if (parts.length >= 2 && parts[0].equals("COMMANDE")) {
+          Client.reserverIdentifiantCommande(Integer.parseInt(parts[1]));
+        }
+      }
+    } catch (NumberFormatException e) {
+      throw new IOException("Erreur lecture segment : " + e.getMessage(), e);
+    }
+  }
+  
+  /**
+   * Retourne le fichier du segment d'un jour.
+   */
+  private File segment(LocalDate jour) {
+    return new File(repertoire, jour + EXTENSION);
+  }
+  
+  /**
+   * Retourne le jour d'un fichier de segment, ou null si ce n'en est pas un.
+   */
+  private static LocalDate jourDe(File fichier) {
+    String nom = fichier.getName();
+    if (!fichier.isFile() || !nom.endsWith(EXTENSION)) {
+      return null;
+    }
+    try {
+      return LocalDate.parse(nom.substring(0, nom.length()
+          - EXTENSION.length()));
+    } catch (DateTimeParseException e) {
+      return null;
+    }
+  }
+  
+  /**
+   * Segments mis en forme par {@link ArchiveCommandes#capturer()}, prêts à
+   * être écrits sur n'importe quel thread.
+   */
+  public static final class Capture {
+    
+    private final ArchiveCommandes archive;
+    private final Map<LocalDate, List<String>> segments;
+    
+    /**
+     * Répertoire d'une archive précédente dont les segments non chargés sont
+     * recopiés, ou null.
+     */
+    private final File source;
+    
+    /**
+     * Jours de l'archive précédente déjà repris par les segments en mémoire.
+     */
+    private final Set<LocalDate> joursRepris;
+    
+    private Capture(ArchiveCommandes archive,
+        Map<LocalDate, List<String>> segments, File source,
+        Set<LocalDate> joursRepris) {
+      this.archive = archive;
+      this.segments = segments;
+      this.source = source;
+      this.joursRepris = joursRepris;
+    }
+    
+    /**
+     * Retourne les jours dont le segment sera écrit.
+     *
+     * @return les jours, du plus ancien au plus récent
+     */
+    public Set<LocalDate> getJours() {
+      return Collections.unmodifiableSet(segments.keySet());
+    }
+    
+    /**
+     * Écrit les segments capturés, puis recopie ceux de l'archive précédente.
+     * Après un échec, les jours non écrits seront repris par la capture
+     * suivante.
+     *
+     * @throws IOException en cas de problème d'écriture
+     */
+    public void ecrire() throws IOException {
+      Set<LocalDate> restants = new TreeSet<>(segments.keySet());
+      try {
+        for (Map.Entry<LocalDate, List<String>> e : segments.entrySet()) {
+          archive.ecrireSegment(e.getKey(), e.getValue());
+          restants.remove(e.getKey());
+        }
+      } catch (IOException e) {
+        archive.remarquer(restants);
+        throw e;
+      }
+      File[] fichiers = source != null ? source.listFiles() : null;
+      if (fichiers == null) {
+        return;
+      }
+      if (!archive.repertoire.isDirectory() && !archive.repertoire.mkdirs()) {
+        throw new IOException("Création impossible : " + archive.repertoire);
+      }
+      for (File f : fichiers) {
+        LocalDate jour = jourDe(f);
+        if (jour != null && !joursRepris.contains(jour)
+            && !segments.containsKey(jour)) {
+          Files.copy(f.toPath(), archive.segment(jour).toPath(),
+              StandardCopyOption.REPLACE_EXISTING);
+        }
+      }
+    }
+  }
+}
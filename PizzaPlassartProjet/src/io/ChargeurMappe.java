@@ -0,0 +1,508 @@
+package io;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import pizzas.Client;
+import pizzas.Commande;
+import pizzas.Compte;
+import pizzas.EtatCommande;
+import pizzas.Evaluation;
+import pizzas.GestPizzaiolo;
+import pizzas.InformationPersonnelle;
+import pizzas.Observateurs;
+import pizzas.Pizza;
+import pizzas.TypePizza;
+
+/**
+ * Chargement du fichier texte de sauvegarde (format de
+ * {@link GestionSauvegarde}) par projection en mémoire.
+ *
+ * <p>Le fichier est projeté par fenêtres avec {@link FileChannel#map} et les
+ * séparateurs ';' et fins de ligne sont recherchés directement dans le tampon
+ * projeté. Seuls les champs utiles sont décodés en chaînes ; les nombres sont
+ * lus octet par octet, sans chaîne intermédiaire. L'état obtenu est le même
+ * qu'avec {@link GestionSauvegarde#chargerDonnees(String)} (fichier encodé en
+ * UTF-8).
+ *
+ * <p>La sauvegarde est déléguée à {@link GestionSauvegarde}, le format étant
+ * identique.
+ *
+ * @author Kevin SIDER
+ * @version 1.0
+ */
+public class ChargeurMappe implements InterSauvegarde {
+  
+  /**
+   * Taille maximale d'une fenêtre de projection (une ligne ne peut pas être
+   * plus longue).
+   */
+  private static final int TAILLE_FENETRE = 256 * 1024 * 1024;
+  
+  /**
+   * Puissances de 10 représentables exactement par un double.
+   */
+  private static final double[] PUISSANCES_10 = new double[23];
+  
+  static {
+    PUISSANCES_10[0] = 1.0;
+    for (int i = 1; i < PUISSANCES_10.length; i++) {
+      PUISSANCES_10[i] = PUISSANCES_10[i - 1] * 10.0;
+    }
+  }
+  
+  private static final byte[] INGREDIENT = octets("INGREDIENT");
+  private static final byte[] PIZZA = octets("PIZZA");
+  private static final byte[] CLIENT = octets("CLIENT");
+  private static final byte[] INTERDICTION = octets("INTERDICTION");
+  private static final byte[] COMMANDE = octets("COMMANDE");
+  private static final byte[] EVALUATION = octets("EVALUATION");
+  private static final byte[] NULL = octets("null");
+  private static final byte[][] TYPES = new byte[TypePizza.values().length][];
+  private static final byte[][] ETATS =
+      new byte[EtatCommande.values().length][];
+  
+  static {
+    for (TypePizza type : TypePizza.values()) {
+      TYPES[type.ordinal()] = octets(type.name());
+    }
+    for (EtatCommande etat : EtatCommande.values()) {
+      ETATS[etat.ordinal()] = octets(etat.name());
+    }
+  }
+  
+  /**
+   * Le gestionnaire métier.
+   */
+  private GestPizzaiolo gestionnaire;
+  
+  /**
+   * Tampon projeté de la fenêtre courante.
+   */
+  private MappedByteBuffer tampon;
+  
+  /**
+   * Positions (dans la fenêtre) des débuts de champs de la ligne courante ;
+   * le champ i s'étend de debuts[i] à debuts[i + 1] - 1.
+   */
+  private int[] debuts = new int[16];
+  
+  /**
+   * Tableau de travail pour le décodage des chaînes.
+   */
+  private byte[] travail = new byte[256];
+  
+  /**
+   * Pizzas créées par le chargement en cours (clé : nom en minuscules).
+   */
+  private Map<String, Pizza> pizzasChargees;
+  
+  /**
+   * Lot d'import des ingrédients, pizzas et interdictions, publié à la fin
+   * du fichier.
+   */
+  private GestPizzaiolo.LotImport lot;
+  
+  /**
+   * Nombre d'octets lus lors du dernier chargement.
+   */
+  private long octetsLus;
+  
+  /**
+   * Durée du dernier chargement en nanosecondes.
+   */
+  private long dureeNanos;
+  
+  /**
+   * Construit un chargeur lié à un gestionnaire de pizzaiolo.
+   *
+   * @param gestionnaire le gestionnaire principal de l'application
+   */
+  public ChargeurMappe(GestPizzaiolo gestionnaire) {
+    this.gestionnaire = gestionnaire;
+  }
+  
+  @Override
+  public void sauvegarderDonnees(String nomFichier) throws IOException {
+    new GestionSauvegarde(gestionnaire).sauvegarderDonnees(nomFichier);
+  }
+  
+  @Override
+  public List<String> extraireSection(String nomFichier, String section)
+      throws IOException {
+    return new GestionSauvegarde(gestionnaire)
+        .extraireSection(nomFichier, section);
+  }
+  
+  @Override
+  public List<String> extraireEntite(String nomFichier, String section,
+      String cle) throws IOException {
+    return new GestionSauvegarde(gestionnaire)
+        .extraireEntite(nomFichier, section, cle);
+  }
+  
+  @Override
+  public void chargerDonnees(String nomFichier) throws IOException {
+    // La reconstruction de l'état n'est pas une suite de modifications
+    Observateurs.suspendre();
+    try {
+      charger(nomFichier);
+    } finally {
+      Observateurs.reprendre();
+    }
+  }
+  
+  /**
+   * Charge le fichier, notifications suspendues.
+   */
+  private void charger(String nomFichier) throws IOException {
+    long debut = System.nanoTime();
+    try (FileChannel canal = FileChannel.open(Paths.get(nomFichier),
+        StandardOpenOption.READ)) {
+      
+      Compte.resetMemoire();
+      pizzasChargees = new HashMap<>();
+      lot = gestionnaire.debuterImport();
+      
+      long taille = canal.size();
+      long position = 0;
+      while (position < taille) {
+        int longueur = (int) Math.min(TAILLE_FENETRE, taille - position);
+        boolean derniere = position + longueur == taille;
+        tampon = canal.map(FileChannel.MapMode.READ_ONLY, position, longueur);
+        
+        int debutLigne = 0;
+        int i = 0;
+        while (i < longueur) {
+          byte b = tampon.get(i);
+          if (b == '\n' || b == '\r') {
+            traiterLigne(debutLigne, i);
+            i++;
+            if (b == '\r' && i < longueur && tampon.get(i) == '\n') {
+              i++;
+            }
+            debutLigne = i;
+          } else {
+            i++;
+          }
+        }
+        if (debutLigne < longueur) {
+          if (derniere) {
+            // Dernière ligne sans fin de ligne
+            traiterLigne(debutLigne, longueur);
+          } else if (debutLigne == 0) {
+            throw new IOException("ligne trop longue à l'octet " + position);
+          } else {
+            // La ligne coupée sera relue au début de la fenêtre suivante
+            longueur = debutLigne;
+          }
+        }
+        position += longueur;
+      }
+      lot.publier();
+      octetsLus = taille;
+    } catch (IOException e) {
+      throw e;
+    } catch (Exception e) {
+      throw new IOException("Erreur lecture fichier : " + e.getMessage(), e);
+    } finally {
+      tampon = null;
+      pizzasChargees = null;
+      lot = null;
+      dureeNanos = System.nanoTime() - debut;
+    }
+    // Sauvegardes différentielles éventuelles (peu volumineuses)
+    new GestionSauvegarde(gestionnaire).appliquerDeltas(nomFichier);
+  }
+  
+  /**
+   * Retourne le nombre d'octets lus lors du dernier chargement.
+   *
+   * @return la taille du dernier fichier chargé
+   */
+  public long getOctetsLus() {
+    return octetsLus;
+  }
+  
+  /**
+   * Retourne la durée du dernier chargement.
+   *
+   * @return la durée en nanosecondes
+   */
+  public long getDureeNanos() {
+    return dureeNanos;
+  }
+  
+  /**
+   * Retourne le débit du dernier chargement.
+   *
+   * @return le débit en mégaoctets (10^6 octets) par seconde
+   */
+  public double getDebitMoParSeconde() {
+    if (dureeNanos == 0) {
+      return 0;
+    }
+    return octetsLus / (dureeNanos / 1e9) / 1e6;
+  }
+  
+  /**
+   * Découpe puis applique une ligne [debut, fin) de la fenêtre courante. Comme
+   * String.split(";"), les champs vides en fin de ligne sont ignorés.
+   */
+  private void traiterLigne(int debut, int fin) throws Exception {
+    int nb = 0;
+    debuts[nb++] = debut;
+    for (int i = debut; i < fin; i++) {
+      if (tampon.get(i) == ';') {
+        if (nb == debuts.length - 1) {
+          int[] plusGrand = new int[debuts.length * 2];
+          System.arraycopy(debuts, 0, plusGrand, 0, nb);
+          debuts = plusGrand;
+        }
+        debuts[nb++] = i + 1;
+      }
+    }
+    debuts[nb] = fin + 1;
+    while (nb > 0 && longueur(nb - 1) == 0) {
+      nb--;
+    }
+    if (nb < 2) {
+      return;
+    }
+    
+    if (egal(0, INGREDIENT)) {
+      if (nb >= 3) {
+        lot.creerIngredient(texte(1), lireDouble(2));
+      }
+      
+    } else if (egal(0, PIZZA)) {
+      if (nb >= 5) {
+        String nom = texte(1);
+        TypePizza type = lireType(2);
+        double prix = lireDouble(3);
+        
+        Pizza p = lot.creerPizza(nom, type);
+        if (p != null) {
+          for (int i = 5; i < nb; i++) {
+            lot.ajouterIngredientPizza(p, texte(i));
+          }
+          lot.setPrixPizza(p, prix);
+          if (!egal(4, NULL)) {
+            lot.ajouterPhoto(p, texte(4));
+          }
+          pizzasChargees.put(nom.toLowerCase(Locale.ROOT), p);
+        }
+      }
+      
+    } else if (egal(0, CLIENT)) {
+      if (nb >= 7) {
+        InformationPersonnelle info = new InformationPersonnelle(texte(3),
+            texte(4), texte(5), lireEntier(6));
+        Compte.inscription(texte(1), texte(2), info);
+      }
+      
+    } else if (egal(0, INTERDICTION)) {
+      if (nb >= 3) {
+        lot.interdireIngredient(texte(1), lireType(2));
+      }
+      
+    } else if (egal(0, COMMANDE)) {
+      if (nb >= 4) {
+        EtatCommande etat = lireEtat(2);
+        int id = Instantane.lireIdentifiant(texte(3));
+        int debutPizzas = id >= 0 ? 4 : 3;
+        long[] prix = debutPizzas < nb
+            ? Instantane.lirePrix(texte(debutPizzas)) : null;
+        if (prix != null) {
+          debutPizzas++;
+        }
+        Client client = rechercherClient(texte(1));
+        if (client != null) {
+          Pizza[] pizzas = new Pizza[nb - debutPizzas];
+          for (int i = 0; i < pizzas.length; i++) {
+            pizzas[i] = rechercherPizza(texte(debutPizzas + i));
+          }
+          Instantane.restaurerCommande(client, id, etat, pizzas, prix);
+        }
+      }
+      
+    } else if (egal(0, EVALUATION)) {
+      if (nb >= 5) {
+        String nomPizza = texte(1);
+        String email = texte(2);
+        int note = lireEntier(3);
+        String commentaire = texte(4);
+        
+        Pizza p = rechercherPizza(nomPizza);
+        Client client = rechercherClient(email);
+        if (p != null && client != null) {
+          p.getEvaluations().add(new Evaluation(note, commentaire, client));
+        }
+      }
+    }
+  }
+  
+  /**
+   * Longueur en octets du champ i de la ligne courante.
+   */
+  private int longueur(int champ) {
+    return debuts[champ + 1] - 1 - debuts[champ];
+  }
+  
+  /**
+   * Compare le champ i de la ligne courante à une constante, sans décodage.
+   */
+  private boolean egal(int champ, byte[] attendu) {
+    if (longueur(champ) != attendu.length) {
+      return false;
+    }
+    int debut = debuts[champ];
+    for (int i = 0; i < attendu.length; i++) {
+      if (tampon.get(debut + i) != attendu[i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+  
+  /**
+   * Décode le champ i de la ligne courante en chaîne (UTF-8).
+   */
+  private String texte(int champ) {
+    int longueur = longueur(champ);
+    if (travail.length < longueur) {
+      travail = new byte[Math.max(longueur, travail.length * 2)];
+    }
+    tampon.get(debuts[champ], travail, 0, longueur);
+    return new String(travail, 0, longueur, StandardCharsets.UTF_8);
+  }
+  
+  /**
+   * Lit un entier décimal. Tout format inattendu (ou dépassement) est confié à
+   * Integer.parseInt pour conserver exactement son comportement.
+   */
+  private int lireEntier(int champ) {
+    int debut = debuts[champ];
+    int fin = debut + longueur(champ);
+    int i = debut;
+    boolean negatif = false;
+    if (i < fin && (tampon.get(i) == '-' || tampon.get(i) == '+')) {
+      negatif = tampon.get(i) == '-';
+      i++;
+    }
+    if (i == fin || fin - i > 9) {
+      return Integer.parseInt(texte(champ));
+    }
+    int valeur = 0;
+    for (; i < fin; i++) {
+      int chiffre = tampon.get(i) - '0';
+      if (chiffre < 0 || chiffre > 9) {
+        return Integer.parseInt(texte(champ));
+      }
+      valeur = valeur * 10 + chiffre;
+    }
+    return negatif ? -valeur : valeur;
+  }
+  
+  /**
+   * Lit un nombre décimal de la forme [-]chiffres[.chiffres]. Tant que la
+   * mantisse tient sur 15 chiffres, mantisse / 10^k est correctement arrondi
+   * et donne le même résultat que Double.parseDouble ; les autres formes
+   * (exposant, espaces...) lui sont confiées.
+   */
+  private double lireDouble(int champ) {
+    int debut = debuts[champ];
+    int fin = debut + longueur(champ);
+    int i = debut;
+    boolean negatif = false;
+    if (i < fin && (tampon.get(i) == '-' || tampon.get(i) == '+')) {
+      negatif = tampon.get(i) == '-';
+      i++;
+    }
+    long mantisse = 0;
+    int nbChiffres = 0;
+    int decimales = -1;
+    for (; i < fin; i++) {
+      byte b = tampon.get(i);
+      if (b == '.' && decimales < 0) {
+        decimales = 0;
+      } else if (b >= '0' && b <= '9') {
+        mantisse = mantisse * 10 + (b - '0');
+        nbChiffres++;
+        if (decimales >= 0) {
+          decimales++;
+        }
+      } else {
+        return Double.parseDouble(texte(champ));
+      }
+    }
+    if (nbChiffres == 0 || nbChiffres > 15
+        || decimales >= PUISSANCES_10.length) {
+      return Double.parseDouble(texte(champ));
+    }
+    double valeur = decimales > 0 ? mantisse / PUISSANCES_10[decimales]
+        : (double) mantisse;
+    return negatif ? -valeur : valeur;
+  }
+  
+  /**
+   * Lit un type de pizza en comparant les octets aux noms des constantes.
+   */
+  private TypePizza lireType(int champ) {
+    for (TypePizza type : TypePizza.values()) {
+      if (egal(champ, TYPES[type.ordinal()])) {
+        return type;
+      }
+    }
+    return TypePizza.valueOf(texte(champ));
+  }
+  
+  /**
+   * Lit un état de commande en comparant les octets aux noms des constantes.
+   */
+  private EtatCommande lireEtat(int champ) {
+    for (EtatCommande etat : EtatCommande.values()) {
+      if (egal(champ, ETATS[etat.ordinal()])) {
+        return etat;
+      }
+    }
+    return EtatCommande.valueOf(texte(champ));
+  }
+  
+  /**
+   * Retrouve un client par email (même critère que le chargeur texte).
+   */
+  private static Client rechercherClient(String email) {
+    Client client = Compte.getClientParEmail(email);
+    if (client != null
+        && !client.getCompte().getEmail().equalsIgnoreCase(email)) {
+      return null;
+    }
+    return client;
+  }
+  
+  /**
+   * Retrouve une pizza par son nom, d'abord parmi celles chargées.
+   */
+  private Pizza rechercherPizza(String nom) {
+    Pizza p = pizzasChargees.get(nom.toLowerCase(Locale.ROOT));
+    if (p == null) {
+      p = Pizza.getPizzaParNom(nom);
+    }
+    return p;
+  }
+  
+  /**
+   * Encode une constante en octets UTF-8.
+   */
+  private static byte[] octets(String s) {
+    return s.getBytes(StandardCharsets.UTF_8);
+  }
+}
@@ -0,0 +1,599 @@
+package io;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import pizzas.Client;
+import pizzas.Commande;
+import pizzas.Compte;
+import pizzas.EtatCommande;
+import pizzas.Evaluation;
+import pizzas.GestPizzaiolo;
+import pizzas.InformationPersonnelle;
+import pizzas.Observateurs;
+import pizzas.Pizza;
+import pizzas.TypePizza;
+
+/**
+ * Chargement en parallèle du fichier texte de sauvegarde (format de
+ * {@link GestionSauvegarde}).
+ *
+ * <p>Le fichier est découpé en blocs de lignes complètes, lus et analysés en
+ * parallèle sur un {@link ForkJoinPool}. Le chargement se fait ensuite en
+ * quatre étapes :
+ * <ol>
+ * <li>analyse des blocs (en parallèle) : découpage des lignes et lecture des
+ * nombres et des états ;</li>
+ * <li>création des ingrédients, des pizzas, des clients et des interdictions,
+ * dans l'ordre du fichier (sections peu volumineuses) ;</li>
+ * <li>résolution des références des commandes et des évaluations (email vers
+ * client, nom vers pizza) en parallèle, les catalogues n'étant plus
+ * modifiés ;</li>
+ * <li>création des commandes et des évaluations dans l'ordre du fichier (les
+ * numéros de commande sont attribués dans cet ordre).</li>
+ * </ol>
+ *
+ * <p>Les sections sont appliquées dans l'ordre où {@link GestionSauvegarde}
+ * les écrit, chacune dans l'ordre du fichier : pour un fichier écrit par
+ * l'application, l'état obtenu est le même qu'avec
+ * {@link GestionSauvegarde#chargerDonnees(String)} (fichier encodé en UTF-8).
+ *
+ * <p>La sauvegarde est déléguée à {@link GestionSauvegarde}, le format étant
+ * identique.
+ *
+ * @author Kevin SIDER
+ * @version 1.0
+ */
+public class ChargeurParallele implements InterSauvegarde {
+  
+  /**
+   * Taille minimale d'un bloc : en dessous, le découpage coûte plus qu'il ne
+   * rapporte.
+   */
+  private static final int TAILLE_BLOC_MIN = 64 * 1024;
+  
+  /**
+   * Taille du tampon utilisé pour chercher les fins de ligne aux limites des
+   * blocs.
+   */
+  private static final int TAILLE_SONDE = 8 * 1024;
+  
+  /**
+   * Le gestionnaire métier.
+   */
+  private GestPizzaiolo gestionnaire;
+  
+  /**
+   * Le pool des tâches d'analyse.
+   */
+  private ForkJoinPool pool;
+  
+  /**
+   * Taille maximale d'un bloc, en octets.
+   */
+  private int tailleBlocMax = 8 * 1024 * 1024;
+  
+  /**
+   * Nombre de blocs du dernier chargement.
+   */
+  private int nbBlocs;
+  
+  /**
+   * Nombre d'octets lus lors du dernier chargement.
+   */
+  private long octetsLus;
+  
+  /**
+   * Durée du dernier chargement en nanosecondes.
+   */
+  private long dureeNanos;
+  
+  /**
+   * Construit un chargeur utilisant le pool commun.
+   *
+   * @param gestionnaire le gestionnaire principal de l'application
+   */
+  public ChargeurParallele(GestPizzaiolo gestionnaire) {
+    this(gestionnaire, ForkJoinPool.commonPool());
+  }
+  
+  /**
+   * Construit un chargeur utilisant le pool donné.
+   *
+   * @param gestionnaire le gestionnaire principal de l'application
+   * @param pool le pool des tâches d'analyse
+   */
+  public ChargeurParallele(GestPizzaiolo gestionnaire, ForkJoinPool pool) {
+    this.gestionnaire = gestionnaire;
+    this.pool = pool;
+  }
+  
+  @Override
+  public void sauvegarderDonnees(String nomFichier) throws IOException {
+    new GestionSauvegarde(gestionnaire).sauvegarderDonnees(nomFichier);
+  }
+  
+  @Override
+  public List<String> extraireSection(String nomFichier, String section)
+      throws IOException {
+    return new GestionSauvegarde(gestionnaire)
+        .extraireSection(nomFichier, section);
+  }
+  
+  @Override
+  public List<String> extraireEntite(String nomFichier, String section,
+      String cle) throws IOException {
+    return new GestionSauvegarde(gestionnaire)
+        .extraireEntite(nomFichier, section, cle);
+  }
+  
+  @Override
+  public void chargerDonnees(String nomFichier) throws IOException {
+    // La reconstruction de l'état n'est pas une suite de modifications
+    Observateurs.suspendre();
+    try {
+      charger(nomFichier);
+    } finally {
+      Observateurs.reprendre();
+    }
+  }
+  
+  /**
+   * Retourne la taille maximale d'un bloc analysé par une tâche.
+   *
+   * @return la taille en octets
+   */
+  public int getTailleBlocMax() {
+    return tailleBlocMax;
+  }
+  
+  /**
+   * Fixe la taille maximale d'un bloc analysé par une tâche. Le fichier est
+   * découpé en au moins quatre blocs par thread du pool, sans descendre sous
+   * 64 Ko (sauf si cette taille maximale est plus petite).
+   *
+   * @param tailleBlocMax la taille en octets (au moins 1)
+   */
+  public void setTailleBlocMax(int tailleBlocMax) {
+    if (tailleBlocMax < 1) {
+      throw new IllegalArgumentException("Taille de bloc invalide");
+    }
+    this.tailleBlocMax = tailleBlocMax;
+  }
+  
+  /**
+   * Retourne le nombre de blocs analysés lors du dernier chargement.
+   *
+   * @return le nombre de blocs
+   */
+  public int getNbBlocs() {
+    return nbBlocs;
+  }
+  
+  /**
+   * Retourne le nombre d'octets lus lors du dernier chargement.
+   *
+   * @return la taille du dernier fichier chargé
+   */
+  public long getOctetsLus() {
+    return octetsLus;
+  }
+  
+  /**
+   * Retourne la durée du dernier chargement.
+   *
+   * @return la durée en nanosecondes
+   */
+  public long getDureeNanos() {
+    return dureeNanos;
+  }
+  
+  /**
+   * Retourne le débit du dernier chargement.
+   *
+   * @return le débit en mégaoctets (10^6 octets) par seconde
+   */
+  public double getDebitMoParSeconde() {
+    if (dureeNanos == 0) {
+      return 0;
+    }
+    return octetsLus / (dureeNanos / 1e9) / 1e6;
+  }
+  
+  /**
+   * Charge le fichier, notifications suspendues.
+   */
+  private void charger(String nomFichier) throws IOException {
+    long debut = System.nanoTime();
+    try (FileChannel canal = FileChannel.open(Paths.get(nomFichier),
+        StandardOpenOption.READ)) {
+      
+      long taille = canal.size();
+      List<Long> limites = decouper(canal, taille);
+      
+      // 1. Analyse des blocs en parallèle
+      List<ForkJoinTask<Bloc>> analyses = new ArrayList<>();
+      for (int i = 0; i + 1 < limites.size(); i++) {
+        long debutBloc = limites.get(i);
+        long finBloc = limites.get(i + 1);
+        analyses.add(pool.submit(() -> analyser(canal, debutBloc, finBloc)));
+      }
+      List<Bloc> blocs = new ArrayList<>();
+      for (ForkJoinTask<Bloc> analyse : analyses) {
+        blocs.add(analyse.get());
+      }
+      
+      appliquer(blocs);
+      nbBlocs = blocs.size();
+      octetsLus = taille;
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof IOException) {
+        throw (IOException) cause;
+      }
+      throw new IOException("Erreur lecture fichier : " + cause.getMessage(),
+          cause);
+    } catch (IOException e) {
+      throw e;
+    } catch (Exception e) {
+      throw new IOException("Erreur lecture fichier : " + e.getMessage(), e);
+    } finally {
+      dureeNanos = System.nanoTime() - debut;
+    }
+    // Sauvegardes différentielles éventuelles (peu volumineuses)
+    new GestionSauvegarde(gestionnaire).appliquerDeltas(nomFichier);
+  }
+  
+  /**
+   * Applique au gestionnaire des blocs déjà analysés (étapes 2 à 4), dans
+   * l'ordre de la liste. Les notifications doivent être suspendues.
+   *
+   * @param blocs les blocs analysés, dans l'ordre du fichier
+   * @throws ExecutionException si la résolution d'un bloc a échoué
+   * @throws InterruptedException si l'attente de la résolution est
+   *         interrompue
+   */
+  void appliquer(List<Bloc> blocs)
+      throws ExecutionException, InterruptedException {
+    // 2. Catalogues, dans l'ordre du fichier, publiés en une fois
+    Compte.resetMemoire();
+    GestPizzaiolo.LotImport lot = gestionnaire.debuterImport();
+    Map<String, Pizza> pizzasChargees = new HashMap<>();
+    for (Bloc bloc : blocs) {
+      for (String[] parts : bloc.ingredients) {
+        lot.creerIngredient(parts[1], Double.parseDouble(parts[2]));
+      }
+    }
+    for (Bloc bloc : blocs) {
+      for (String[] parts : bloc.pizzas) {
+        creerPizza(lot, parts, pizzasChargees);
+      }
+    }
+    List<Compte> comptes = new ArrayList<>();
+    for (Bloc bloc : blocs) {
+      for (String[] parts : bloc.clients) {
+        InformationPersonnelle info = new InformationPersonnelle(parts[3],
+            parts[4], parts[5], Integer.parseInt(parts[6]));
+        if (Compte.estEmailValide(parts[1]) && !parts[2].isBlank()) {
+          comptes.add(new Compte(parts[1], parts[2], info));
+        }
+      }
+    }
+    Compte.inscriptionEnMasse(comptes);
+    for (Bloc bloc : blocs) {
+      for (String[] parts : bloc.interdictions) {
+        lot.interdireIngredient(parts[1], TypePizza.valueOf(parts[2]));
+      }
+    }
+    lot.publier();
+    
+    // 3. Résolution des références en parallèle (lectures seules)
+    List<ForkJoinTask<?>> resolutions = new ArrayList<>();
+    for (Bloc bloc : blocs) {
+      resolutions.add(pool.submit(() -> resoudre(bloc, pizzasChargees)));
+    }
+    for (ForkJoinTask<?> resolution : resolutions) {
+      resolution.get();
+    }
+    
+    // 4. Commandes puis évaluations, dans l'ordre du fichier
+    for (Bloc bloc : blocs) {
+      for (LigneCommande ligne : bloc.commandes) {
+        if (ligne.client != null) {
+          Instantane.restaurerCommande(ligne.client, ligne.id, ligne.etat,
+              ligne.pizzasResolues, ligne.prix);
+        }
+      }
+    }
+    for (Bloc bloc : blocs) {
+      for (LigneEvaluation ligne : bloc.evaluations) {
+        if (ligne.pizza != null && ligne.auteur != null) {
+          ligne.pizza.getEvaluations().add(
+              new Evaluation(ligne.note, ligne.commentaire, ligne.auteur));
+        }
+      }
+    }
+  }
+  
+  /**
+   * Découpe le fichier en blocs de lignes complètes. Retourne les positions
+   * des débuts de blocs, suivies de la taille du fichier.
+   */
+  private List<Long> decouper(FileChannel canal, long taille)
+      throws IOException {
+    long parBloc = taille / (4L * pool.getParallelism());
+    parBloc = Math.min(tailleBlocMax,
+        Math.max(Math.min(TAILLE_BLOC_MIN, tailleBlocMax), parBloc));
+    
+    List<Long> limites = new ArrayList<>();
+    limites.add(0L);
+    ByteBuffer sonde = ByteBuffer.allocate(TAILLE_SONDE);
+    long limite = 0;
+    while (taille - limite > parBloc) {
+      // Le bloc s'arrête après la première fin de ligne suivant sa taille
+      long position = limite + parBloc - 1;
+      long fin = -1;
+      while (fin < 0 && position < taille) {
+        sonde.clear();
+        int lus = canal.read(sonde, position);
+        if (lus <= 0) {
+          break;
+        }
+        for (int i = 0; i < lus; i++) {
+          if (sonde.get(i) == '\n') {
+            fin = position + i + 1;
+            break;
+          }
+        }
+        position += lus;
+      }
+      if (fin < 0 || fin >= taille) {
+        break;
+      }
+      if (fin - limite > Integer.MAX_VALUE - 8) {
+        throw new IOException("ligne trop longue à l'octet " + limite);
+      }
+      limites.add(fin);
+      limite = fin;
+    }
+    if (taille - limite > Integer.MAX_VALUE - 8) {
+      throw new IOException("ligne trop longue à l'octet " + limite);
+    }
+    limites.add(taille);
+    return limites;
+  }
+  
+  /**
+   * Lit et analyse le bloc [debut, fin) du fichier (sur un thread du pool).
+   */
+  private static Bloc analyser(FileChannel canal, long debut, long fin)
+      throws IOException {
+    ByteBuffer tampon = ByteBuffer.allocate((int) (fin - debut));
+    while (tampon.hasRemaining()) {
+      if (canal.read(tampon, debut + tampon.position()) < 0) {
+        throw new IOException("fin de fichier inattendue à l'octet "
+            + (debut + tampon.position()));
+      }
+    }
+    // Un bloc commence et finit sur une fin de ligne : pas de caractère coupé
+    return Bloc.analyser(new String(tampon.array(), StandardCharsets.UTF_8));
+  }
+  
+  /**
+   * Crée dans le lot une pizza lue dans le fichier.
+   * Format : PIZZA;nom;type;prix;photo;ingredient1;ingredient2...
+   */
+  private static void creerPizza(GestPizzaiolo.LotImport lot, String[] parts,
+      Map<String, Pizza> pizzasChargees) {
+    String nom = parts[1];
+    TypePizza type = TypePizza.valueOf(parts[2]);
+    double prix = Double.parseDouble(parts[3]);
+    
+    Pizza p = lot.creerPizza(nom, type);
+    if (p != null) {
+      for (int i = 5; i < parts.length; i++) {
+        lot.ajouterIngredientPizza(p, parts[i]);
+      }
+      lot.setPrixPizza(p, prix);
+      if (!parts[4].equals("null")) {
+        lot.ajouterPhoto(p, parts[4]);
+      }
+      pizzasChargees.put(nom.toLowerCase(Locale.ROOT), p);
+    }
+  }
+  
+  /**
+   * Retrouve les clients et les pizzas des commandes et des évaluations d'un
+   * bloc (sur un thread du pool ; les catalogues ne sont que lus).
+   */
+  private static void resoudre(Bloc bloc, Map<String, Pizza> pizzasChargees) {
+    for (LigneCommande ligne : bloc.commandes) {
+      ligne.client = rechercherClient(ligne.email);
+      if (ligne.client != null) {
+        ligne.pizzasResolues = new Pizza[ligne.pizzas.length];
+        for (int i = 0; i < ligne.pizzas.length; i++) {
+          ligne.pizzasResolues[i] =
+              rechercherPizza(ligne.pizzas[i], pizzasChargees);
+        }
+      }
+    }
+    for (LigneEvaluation ligne : bloc.evaluations) {
+      ligne.pizza = rechercherPizza(ligne.nomPizza, pizzasChargees);
+      ligne.auteur = rechercherClient(ligne.email);
+    }
+  }
+  
+  /**
+   * Retrouve un client par email (même critère que le chargeur texte).
+   */
+  private static Client rechercherClient(String email) {
+    Client client = Compte.getClientParEmail(email);
+    if (client != null
+        && !client.getCompte().getEmail().equalsIgnoreCase(email)) {
+      return null;
+    }
+    return client;
+  }
+  
+  /**
+   * Retrouve une pizza par son nom, d'abord parmi celles chargées.
+   */
+  private static Pizza rechercherPizza(String nom,
+      Map<String, Pizza> pizzasChargees) {
+    Pizza p = pizzasChargees.get(nom.toLowerCase(Locale.ROOT));
+    if (p == null) {
+      p = Pizza.getPizzaParNom(nom);
+    }
+    return p;
+  }
+  
+  /**
+   * Lignes d'un bloc, classées par section.
+   */
+  static final class Bloc {
+    
+    private final List<String[]> ingredients = new ArrayList<>();
+    private final List<String[]> pizzas = new ArrayList<>();
+    private final List<String[]> clients = new ArrayList<>();
+    private final List<String[]> interdictions = new ArrayList<>();
+    private final List<LigneCommande> commandes = new ArrayList<>();
+    private final List<LigneEvaluation> evaluations = new ArrayList<>();
+    
+    /**
+     * Découpe un texte (lignes complètes du format texte) et classe ses
+     * lignes.
+     *
+     * @param texte les lignes, séparées par des fins de ligne
+     * @return le bloc analysé
+     */
+    static Bloc analyser(String texte) {
+      Bloc bloc = new Bloc();
+      int debutLigne = 0;
+      int longueur = texte.length();
+      while (debutLigne < longueur) {
+        int finLigne = debutLigne;
+        while (finLigne < longueur && texte.charAt(finLigne) != '\n'
+            && texte.charAt(finLigne) != '\r') {
+          finLigne++;
+        }
+        bloc.ajouter(texte.substring(debutLigne, finLigne).split(";"));
+        if (finLigne < longueur && texte.charAt(finLigne) == '\r') {
+          finLigne++;
+        }
+        if (finLigne < longueur && texte.charAt(finLigne) == '\n') {
+          finLigne++;
+        }
+        debutLigne = finLigne;
+      }
+      return bloc;
+    }
+    
+    /**
+     * Classe une ligne découpée (mêmes règles que le chargeur texte). Les
+     * commandes et les évaluations, qui forment l'essentiel du fichier, sont
+     * analysées tout de suite.
+     */
+    private void ajouter(String[] parts) {
+      if (parts.length < 2) {
+        return;
+      }
+      switch (parts[0]) {
+        case "INGREDIENT":
+          if (parts.length >= 3) {
+            ingredients.add(parts);
+          }
+          break;
+        case "PIZZA":
+          if (parts.length >= 5) {
+            pizzas.add(parts);
+          }
+          break;
+        case "CLIENT":
+          if (parts.length >= 7) {
+            clients.add(parts);
+          }
+          break;
+        case "INTERDICTION":
+          if (parts.length >= 3) {
+            interdictions.add(parts);
+          }
+          break;
+        case "COMMANDE":
+          if (parts.length >= 4) {
+            commandes.add(new LigneCommande(parts));
+          }
+          break;
+        case "EVALUATION":
+          if (parts.length >= 5) {
+            evaluations.add(new LigneEvaluation(parts));
+          }
+          break;
+        default:
+          break;
+      }
+    }
+  }
+  
+  /**
+   * Format : COMMANDE;emailClient;Etat;#id;$prix/cout,...;NomPizza1;
+   * NomPizza2...
+   */
+  private static final class LigneCommande {
+    
+    private final String email;
+    private final EtatCommande etat;
+    private final int id;
+    private final long[] prix;
+    private final String[] pizzas;
+    
+    // Références résolues à l'étape 3
+    private Client client;
+    private Pizza[] pizzasResolues;
+    
+    private LigneCommande(String[] parts) {
+      email = parts[1];
+      etat = EtatCommande.valueOf(parts[2]);
+      id = Instantane.lireIdentifiant(parts[3]);
+      int debut = id >= 0 ? 4 : 3;
+      prix = debut < parts.length ? Instantane.lirePrix(parts[debut]) : null;
+      if (prix != null) {
+        debut++;
+      }
+      pizzas = new String[parts.length - debut];
+      System.arraycopy(parts, debut, pizzas, 0, pizzas.length);
+    }
+  }
+  
+  /**
+   * Format : EVALUATION;NomPizza;EmailAuteur;Note;Commentaire.
+   */
+  private static final class LigneEvaluation {
+    
+    private final String nomPizza;
+    private final String email;
+    private final int note;
+    private final String commentaire;
+    
+    // Références résolues à l'étape 3
+    private Pizza pizza;
+    private Client auteur;
+    
+    private LigneEvaluation(String[] parts) {
+      nomPizza = parts[1];
+      email = parts[2];
+      note = Integer.parseInt(parts[3]);
+      commentaire = parts[4];
+    }
+  }
+}
@@ -0,0 +1,86 @@
+package io;
+
+import java.io.IOException;
+import pizzas.GestPizzaiolo;
+import pizzas.Pizzaiolo;
+
+/**
+ * Conversion d'un fichier de sauvegarde entre le format texte (import/export)
+ * et le format binaire (chargement rapide) ou compressé (archivage, copie
+ * entre machines).
+ *
+ * <p>La conversion passe par un gestionnaire temporaire : comme le chargement,
+ * elle remplace les comptes clients présents en mémoire par ceux du fichier
+ * source.
+ *
+ * @author Kevin SIDER
+ * @version 1.0
+ */
+public final class ConvertisseurSauvegarde {
+  
+  /**
+   * Classe utilitaire, non instanciable.
+   */
+  private ConvertisseurSauvegarde() {
+  }
+  
+  /**
+   * Convertit une sauvegarde texte en sauvegarde binaire.
+   *
+   * @param source le fichier texte à lire
+   * @param destination le fichier binaire à écrire
+   * @throws IOException en cas de problème de lecture ou d'écriture
+   */
+  public static void texteVersBinaire(String source, String destination)
+      throws IOException {
+    GestPizzaiolo gestionnaire =
+        new GestPizzaiolo(new Pizzaiolo("Conversion"));
+    new GestionSauvegarde(gestionnaire).chargerDonnees(source);
+    new SauvegardeBinaire(gestionnaire).sauvegarderDonnees(destination);
+  }
+  
+  /**
+   * Convertit une sauvegarde binaire en sauvegarde texte.
+   *
+   * @param source le fichier binaire à lire
+   * @param destination le fichier texte à écrire
+   * @throws IOException en cas de problème de lecture ou d'écriture
+   */
+  public static void binaireVersTexte(String source, String destination)
+      throws IOException {
+    GestPizzaiolo gestionnaire =
+        new GestPizzaiolo(new Pizzaiolo("Conversion"));
+    new SauvegardeBinaire(gestionnaire).chargerDonnees(source);
+    new GestionSauvegarde(gestionnaire).sauvegarderDonnees(destination);
+  }
+  
+  /**
+   * Convertit une sauvegarde texte en sauvegarde compressée.
+   *
+   * @param source le fichier texte à lire
+   * @param destination le fichier compressé à écrire
+   * @throws IOException en cas de problème de lecture ou d'écriture
+   */
+  public static void texteVersCompresse(String source, String destination)
+      throws IOException {
+    GestPizzaiolo gestionnaire =
+        new GestPizzaiolo(new Pizzaiolo("Conversion"));
+    new GestionSauvegarde(gestionnaire).chargerDonnees(source);
+    new SauvegardeCompressee(gestionnaire).sauvegarderDonnees(destination);
+  }
+  
+  /**
+   * Convertit une sauvegarde compressée en sauvegarde texte.
+   *
+   * @param source le fichier compressé à lire
+   * @param destination le fichier texte à écrire
+   * @throws IOException en cas de problème de lecture ou d'écriture
+   */
+  public static void compresseVersTexte(String source, String destination)
+      throws IOException {
+    GestPizzaiolo gestionnaire =
+        new GestPizzaiolo(new Pizzaiolo("Conversion"));
+    new SauvegardeCompressee(gestionnaire).chargerDonnees(source);
+    new GestionSauvegarde(gestionnaire).sauvegarderDonnees(destination);
+  }
+}
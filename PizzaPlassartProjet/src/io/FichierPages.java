@@ -0,0 +1,283 @@
+package io;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Fichier découpé en pages de taille fixe, avec un cache des pages en mémoire
+ * (pool de tampons).
+ *
+ * <p>La page 0 est l'en-tête : nombre magique, version, taille des pages,
+ * nombre de pages, première page libre et page racine de l'arbre. Les pages
+ * libérées sont chaînées et réutilisées par les allocations suivantes. Les
+ * pages modifiées ne sont écrites qu'à leur sortie du cache ou à la
+ * synchronisation. Le cache peut dépasser sa capacité pendant une opération :
+ * il n'est réduit qu'entre deux opérations, par {@link #ajuster()}, pour
+ * qu'aucune page en cours d'utilisation n'en sorte.
+ *
+ * @author Kevin SIDER
+ * @version 1.0
+ */
+final class FichierPages implements Closeable {
+
+  /**
+   * Taille d'une page, en octets.
+   */
+  static final int TAILLE_PAGE = 4096;
+
+  private static final int MAGIQUE = 0x505A5047;
+  private static final int VERSION = 1;
+
+  /**
+   * Aucune page (fin de chaîne, arbre vide).
+   */
+  static final int AUCUNE = -1;
+
+  /**
+   * Page du fichier en mémoire.
+   */
+  static final class Page {
+
+    final int numero;
+    final ByteBuffer donnees;
+    boolean modifiee;
+
+    private Page(int numero, ByteBuffer donnees) {
+      this.numero = numero;
+      this.donnees = donnees;
+    }
+  }
+
+  private final FileChannel canal;
+
+  /**
+   * Nombre de pages gardées dans le cache entre deux opérations.
+   */
+  private final int capacite;
+
+  /**
+   * Pages en mémoire, de la moins récemment utilisée à la plus récente.
+   */
+  private final LinkedHashMap<Integer, Page> cache =
+      new LinkedHashMap<>(16, 0.75f, true);
+
+  private int nbPages;
+  private int premiereLibre;
+  private int racine;
+  private boolean enteteModifie;
+
+  private long nbLectures;
+  private long nbEcritures;
+
+  /**
+   * Ouvre (ou crée) un fichier de pages.
+   *
+   * @param chemin le fichier
+   * @param capacite le nombre de pages du cache (au moins 8)
+   * @throws IOException si le fichier n'est pas un fichier de pages
+   */
+  FichierPages(Path chemin, int capacite) throws IOException {
+    this.capacite = Math.max(8, capacite);
+    this.canal = FileChannel.open(chemin, StandardOpenOption.CREATE,
+        StandardOpenOption.READ, StandardOpenOption.WRITE);
+    try {
+      if (canal.size() == 0) {
+        nbPages = 1;
+        premiereLibre = AUCUNE;
+        racine = AUCUNE;
+        enteteModifie = true;
+        synchroniser();
+      } else {
+        ByteBuffer entete = ByteBuffer.allocate(24);
+        canal.read(entete, 0);
+        entete.flip();
+        if (entete.remaining() < 24 || entete.getInt() != MAGIQUE) {
+          throw new IOException("Fichier de pages invalide : " + chemin);
+        }
+        if (entete.getInt() != VERSION || entete.getInt() != TAILLE_PAGE) {
+          throw new IOException("Version de fichier non gérée : " + chemin);
+        }
+        nbPages = entete.getInt();
+        premiereLibre = entete.getInt();
+        racine = entete.getInt();
+      }
+    } catch (IOException e) {
+      canal.close();
+      throw e;
+    }
+  }
+
+  /**
+   * Retourne une page, lue depuis le fichier si elle n'est pas en cache.
+   *
+   * @param numero le numéro de la page
+   * @return la page
+   * @throws IOException en cas de problème de lecture
+   */
+  Page lire(int numero) throws IOException {
+    Page page = cache.get(numero);
+    if (page == null) {
+      if (numero <= 0 || numero >= nbPages) {
+        throw new IOException("Page invalide : " + numero);
+      }
+      ByteBuffer donnees = ByteBuffer.allocate(TAILLE_PAGE);
+      long position = (long) numero * TAILLE_PAGE;
+      while (donnees.hasRemaining()) {
+        if (canal.read(donnees, position + donnees.position()) < 0) {
+          break;
+        }
+      }
+      donnees.clear();
+      nbLectures++;
+      page = new Page(numero, donnees);
+      cache.put(numero, page);
+    }
+    return page;
+  }
+
+  /**
+   * Alloue une page vide, de préférence parmi les pages libérées.
+   *
+   * @return la page, marquée modifiée
+   * @throws IOException en cas de problème de lecture
+   */
+  Page allouer() throws IOException {
+    Page page;
+    if (premiereLibre != AUCUNE) {
+      page = lire(premiereLibre);
+      premiereLibre = page.donnees.getInt(0);
+      Arrays.fill(page.donnees.array(), (byte) 0);
+    } else {
+      page = new Page(nbPages++, ByteBuffer.allocate(TAILLE_PAGE));
+      cache.put(page.numero, page);
+    }
+    enteteModifie = true;
+    page.modifiee = true;
+    return page;
+  }
+
+  /**
+   * Rend une page à la liste des pages libres.
+   *
+   * @param numero le numéro de la page
+   * @throws IOException en cas de problème de lecture
+   */
+  void liberer(int numero) throws IOException {
+    Page page = lire(numero);
+    page.donnees.putInt(0, premiereLibre);
+    page.modifiee = true;
+    premiereLibre = numero;
+    enteteModifie = true;
+  }
+
+  /**
+   * Retourne la page racine de l'arbre.
+   */
+  int getRacine() {
+    return racine;
+  }
+
+  /**
+   * Fixe la page racine de l'arbre.
+   */
+  void setRacine(int racine) {
+    this.racine = racine;
+    enteteModifie = true;
+  }
+
+  /**
+   * Retourne le nombre de pages du fichier (en-tête compris).
+   */
+  int getNbPages() {
+    return nbPages;
+  }
+
+  /**
+   * Retourne le nombre de pages lues dans le fichier depuis l'ouverture.
+   */
+  long getNbLectures() {
+    return nbLectures;
+  }
+
+  /**
+   * Retourne le nombre de pages écrites dans le fichier depuis l'ouverture.
+   */
+  long getNbEcritures() {
+    return nbEcritures;
+  }
+
+  /**
+   * Ramène le cache à sa capacité en écrivant les pages modifiées qui en
+   * sortent. À appeler entre deux opérations seulement.
+   *
+   * @throws IOException en cas de problème d'écriture
+   */
+  void ajuster() throws IOException {
+    Iterator<Map.Entry<Integer, Page>> it = cache.entrySet().iterator();
+    while (cache.size() > capacite && it.hasNext()) {
+      Page page = it.next().getValue();
+      if (page.modifiee) {
+        ecrire(page);
+      }
+      it.remove();
+    }
+  }
+
+  /**
+   * Écrit toutes les pages modifiées et l'en-tête, puis force leur écriture
+   * sur le disque.
+   *
+   * @throws IOException en cas de problème d'écriture
+   */
+  void synchroniser() throws IOException {
+    for (Page page : cache.values()) {
+      if (page.modifiee) {
+        ecrire(page);
+      }
+    }
+    if (enteteModifie) {
+      ByteBuffer entete = ByteBuffer.allocate(TAILLE_PAGE);
+      entete.putInt(MAGIQUE).putInt(VERSION).putInt(TAILLE_PAGE)
+          .putInt(nbPages).putInt(premiereLibre).putInt(racine);
+      entete.clear();
+      ecrireTampon(entete, 0);
+      enteteModifie = false;
+    }
+    canal.force(false);
+  }
+
+  private void ecrire(Page page) throws IOException {
+    ByteBuffer tampon = page.donnees.duplicate();
+    tampon.clear();
+    ecrireTampon(tampon, (long) page.numero * TAILLE_PAGE);
+    page.modifiee = false;
+  }
+
+  private void ecrireTampon(ByteBuffer tampon, long position)
+      throws IOException {
+    while (tampon.hasRemaining()) {
+      canal.write(tampon, position + tampon.position());
+    }
+    nbEcritures++;
+  }
+
+  /**
+   * Synchronise puis ferme le fichier.
+   */
+  @Override
+  public void close() throws IOException {
+    try {
+      synchroniser();
+    } finally {
+      canal.close();
+    }
+  }
+}
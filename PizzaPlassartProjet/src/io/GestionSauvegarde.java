@@ -1,11 +1,16 @@
 package io;
 
 import java.io.BufferedReader;
-import java.io.BufferedWriter;
+import java.io.File;
 import java.io.FileReader;
-import java.io.FileWriter;
 import java.io.IOException;
-import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.time.Clock;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 import pizzas.Client;
 import pizzas.Commande;
 import pizzas.Compte;
@@ -14,6 +19,7 @@ import pizzas.Evaluation;
 import pizzas.GestPizzaiolo;
 import pizzas.InformationPersonnelle;
 import pizzas.Ingredient;
+import pizzas.Observateurs;
 import pizzas.Pizza;
 import pizzas.TypePizza;
 
@@ -23,8 +29,27 @@ import pizzas.TypePizza;
  * <p>Elle permet de sauvegarder et charger les ingrédients, les pizzas, les
  * clients, les interdictions, les commandes et les évaluations.
  *
+ * <p>Une fois le suivi des modifications activé, {@link #sauvegarderDelta}
+ * n'écrit que les entités modifiées depuis la dernière sauvegarde, à la fin
+ * du fichier {@code nomFichier + ".delta"}. Au chargement, ce fichier est
+ * appliqué après la sauvegarde complète ; il est replié dans celle-ci toutes
+ * les {@link #getFusionTousLes()} sauvegardes différentielles.
+ *
+ * <p>Une fois l'archivage activé, les commandes traitées ne sont plus dans le
+ * fichier mais dans une {@link ArchiveCommandes} découpée par jour : le
+ * chargement ne lit que le segment du jour, les autres sont chargés quand une
+ * statistique ou un historique les demande.
+ *
+ * <p>La sauvegarde complète se termine par un {@link IndexSauvegarde} :
+ * {@link #extraireSection} et {@link #extraireEntite} lisent une section ou
+ * une entité sans analyser tout le fichier.
+ *
+ * <p>Les fichiers sont lus et écrits en UTF-8, quel que soit l'encodage par
+ * défaut de la plateforme, comme le font {@link ChargeurMappe} et
+ * {@link ChargeurParallele}.
+ *
  * @author Kevin SIDER
- * @version 1.1
+ * @version 1.2
  */
 public class GestionSauvegarde implements InterSauvegarde {
   
@@ -33,6 +58,50 @@ public class GestionSauvegarde implements InterSauvegarde {
    */
   private GestPizzaiolo gestionnaire;
   
+  /**
+   * Suffixe du fichier des sauvegardes différentielles.
+   */
+  public static final String SUFFIXE_DELTA = ".delta";
+  
+  /**
+   * Suivi des modifications (null tant qu'il n'est pas activé).
+   */
+  private SuiviModifications suivi;
+  
+  /**
+   * Nombre de sauvegardes différentielles avant leur fusion dans une
+   * sauvegarde complète.
+   */
+  private int fusionTousLes = 20;
+  
+  /**
+   * Nombre de sauvegardes différentielles depuis la dernière fusion.
+   */
+  private int nbDeltas;
+  
+  /**
+   * Pizzas créées par le chargement en cours : le catalogue statique de Pizza
+   * peut contenir une pizza homonyme provenant d'un autre gestionnaire.
+   */
+  private Map<String, Pizza> pizzasChargees = new HashMap<>();
+  
+  /**
+   * Lot d'import du chargement complet en cours (null en dehors de ce
+   * chargement, en particulier pendant l'application des deltas).
+   */
+  private GestPizzaiolo.LotImport lot;
+  
+  /**
+   * Horloge de l'archive des commandes (null tant que l'archivage n'est pas
+   * activé).
+   */
+  private Clock horlogeArchive;
+  
+  /**
+   * Archive des commandes de la sauvegarde chargée ou écrite en dernier.
+   */
+  private ArchiveCommandes archive;
+  
   /**
    * Construit une instance de gestion de sauvegarde liée à un gestionnaire de
    * pizzaiolo.
@@ -46,185 +115,496 @@ public class GestionSauvegarde implements InterSauvegarde {
   
   @Override
   public void sauvegarderDonnees(String nomFichier) throws IOException {
-    try (PrintWriter writer =
-        new PrintWriter(new BufferedWriter(new FileWriter(nomFichier)))) {
+    capturer(nomFichier).ecrire(nomFichier, false, null);
+    
+    // Les différences sont désormais dans la sauvegarde complète
+    new File(nomFichier + SUFFIXE_DELTA).delete();
+    nbDeltas = 0;
+    if (suivi != null) {
+      suivi.vider();
+    }
+  }
+  
+  /**
+   * Ajoute au fichier {@code nomFichier + ".delta"} les entités modifiées
+   * depuis la dernière sauvegarde (complète ou différentielle). Toutes les
+   * {@link #getFusionTousLes()} sauvegardes différentielles, une sauvegarde
+   * complète est faite à la place et le fichier delta est supprimé.
+   *
+   * @param nomFichier le fichier de la sauvegarde complète
+   * @throws IOException en cas de problème de sauvegarde
+   * @throws IllegalStateException si le suivi des modifications n'est pas
+   *         activé
+   */
+  public void sauvegarderDelta(String nomFichier) throws IOException {
+    if (suivi == null) {
+      throw new IllegalStateException("Suivi des modifications non activé");
+    }
+    if (!new File(nomFichier).exists() || nbDeltas + 1 >= fusionTousLes) {
+      fusionnerDeltas(nomFichier);
+      return;
+    }
+    if (suivi.estVide()) {
+      return;
+    }
+    
+    // Chaque ligne remplace l'état précédent de l'entité au chargement
+    Instantane delta = new Instantane();
+    for (Ingredient ing : suivi.getIngredients()) {
+      delta.ajouterIngredient(ing);
+    }
+    for (Pizza p : suivi.getPizzas()) {
+      delta.ajouterPizza(p);
+    }
+    for (Client c : suivi.getClients()) {
+      delta.ajouterClient(c);
+    }
+    for (Ingredient ing : suivi.getInterdictions()) {
+      for (TypePizza type : TypePizza.values()) {
+        delta.ajouterInterdiction(ing.getNom(), type,
+            gestionnaire.estIngredientInterdit(type, ing));
+      }
+    }
+    for (Commande c : suivi.getCommandesTraitees()) {
+      delta.ajouterCommande(c);
+    }
+    for (Map.Entry<Evaluation, Pizza> e : suivi.getEvaluations().entrySet()) {
+      delta.ajouterEvaluation(e.getValue(), e.getKey());
+    }
+    delta.ecrire(nomFichier + SUFFIXE_DELTA, true, null);
+    nbDeltas++;
+    suivi.vider();
+  }
+  
+  /**
+   * Replie les sauvegardes différentielles dans une nouvelle sauvegarde
+   * complète.
+   *
+   * @param nomFichier le fichier de la sauvegarde complète
+   * @throws IOException en cas de problème de sauvegarde
+   */
+  public void fusionnerDeltas(String nomFichier) throws IOException {
+    sauvegarderDonnees(nomFichier);
+  }
+  
+  /**
+   * Active le suivi des modifications nécessaire à
+   * {@link #sauvegarderDelta}. Seules les modifications faites après cet
+   * appel sont suivies : il doit être fait juste après un chargement ou une
+   * sauvegarde complète.
+   */
+  public void activerSuiviModifications() {
+    if (suivi == null) {
+      suivi = new SuiviModifications();
+      Observateurs.ajouter(suivi);
+    }
+  }
+  
+  /**
+   * Désactive le suivi des modifications.
+   */
+  public void desactiverSuiviModifications() {
+    if (suivi != null) {
+      Observateurs.retirer(suivi);
+      suivi = null;
+    }
+  }
+  
+  /**
+   * Active l'archivage des commandes traitées, par jour de l'horloge du
+   * système. Il prend effet au prochain chargement ou à la prochaine
+   * sauvegarde complète ; les commandes d'une ancienne sauvegarde passent
+   * alors dans l'archive.
+   */
+  public void activerArchivage() {
+    activerArchivage(Clock.systemDefaultZone());
+  }
+  
+  /**
+   * Active l'archivage des commandes traitées.
+   *
+   * @param horloge l'horloge donnant le jour du segment actif
+   * @see #activerArchivage()
+   */
+  public void activerArchivage(Clock horloge) {
+    this.horlogeArchive = horloge;
+  }
+  
+  /**
+   * Retourne l'archive des commandes de la dernière sauvegarde chargée ou
+   * écrite.
+   *
+   * @return l'archive, ou null si l'archivage n'est pas activé ou pas encore
+   *         utilisé
+   */
+  public ArchiveCommandes getArchive() {
+    return archive;
+  }
+  
+  /**
+   * Capture l'état à écrire dans une sauvegarde complète. Avec l'archivage,
+   * les commandes traitées ne font pas partie de l'instantané : les segments
+   * d'archive modifiés sont capturés avec lui et écrits au début de
+   * {@link Instantane#ecrire}, sur le thread de la sauvegarde.
+   *
+   * @param nomFichier le fichier de la sauvegarde complète
+   * @return la copie de l'état
+   * @throws IOException en cas de problème de lecture de l'archive
+   */
+  Instantane capturer(String nomFichier) throws IOException {
+    if (horlogeArchive == null) {
+      return Instantane.capturer(gestionnaire);
+    }
+    File repertoire = new File(nomFichier + ArchiveCommandes.SUFFIXE_ARCHIVE);
+    ArchiveCommandes precedente = null;
+    if (archive != null && !archive.getRepertoire().getAbsoluteFile()
+        .equals(repertoire.getAbsoluteFile())) {
+      // Nouvelle sauvegarde : elle reprend tout l'historique, les segments
+      // non chargés sont recopiés à l'écriture
+      precedente = archive;
+    }
+    if (archive == null || precedente != null) {
+      utiliserArchive(nomFichier);
+    }
+    ArchiveCommandes.Capture segments = archive.capturer(precedente);
+    Instantane instantane = Instantane.capturer(gestionnaire, false);
+    instantane.joindreArchive(segments);
+    return instantane;
+  }
+  
+  /**
+   * Crée l'archive d'une sauvegarde et la donne au gestionnaire comme source
+   * de l'historique.
+   */
+  private void utiliserArchive(String nomFichier) {
+    if (archive != null) {
+      Observateurs.retirer(archive);
+    }
+    archive = new ArchiveCommandes(gestionnaire, nomFichier, horlogeArchive);
+    Observateurs.ajouter(archive);
+    gestionnaire.setHistorique(archive);
+  }
+  
+  /**
+   * Retourne le nombre de sauvegardes différentielles après lequel elles sont
+   * fusionnées dans une sauvegarde complète.
+   *
+   * @return le nombre de sauvegardes différentielles entre deux fusions
+   */
+  public int getFusionTousLes() {
+    return fusionTousLes;
+  }
+  
+  /**
+   * Fixe le nombre de sauvegardes différentielles après lequel elles sont
+   * fusionnées dans une sauvegarde complète.
+   *
+   * @param fusionTousLes le nombre de sauvegardes différentielles (au moins 1)
+   */
+  public void setFusionTousLes(int fusionTousLes) {
+    if (fusionTousLes < 1) {
+      throw new IllegalArgumentException("Nombre de sauvegardes invalide");
+    }
+    this.fusionTousLes = fusionTousLes;
+  }
+  
+  @Override
+  public void chargerDonnees(String nomFichier) throws IOException {
+    // La reconstruction de l'état n'est pas une suite de modifications
+    Observateurs.suspendre();
+    try {
+      charger(nomFichier);
+    } finally {
+      Observateurs.reprendre();
+    }
+  }
+  
+  /**
+   * Charge le fichier, notifications suspendues.
+   */
+  private void charger(String nomFichier) throws IOException {
+    try (BufferedReader reader = new BufferedReader(
+        new FileReader(nomFichier, StandardCharsets.UTF_8))) {
+      
+      Compte.resetMemoire();
+      pizzasChargees = new HashMap<>();
+      lot = gestionnaire.debuterImport();
       
-      // 1. INGRÉDIENTS
-      for (Ingredient ing : gestionnaire.getIngredients()) {
-        writer.println("INGREDIENT;" + ing.getNom() + ";" + ing.getPrix());
+      String ligne;
+      while ((ligne = reader.readLine()) != null) {
+        traiterLigne(ligne.split(";"), false);
+      }
+      lot.publier();
+    } catch (Exception e) {
+      throw new IOException("Erreur lecture fichier : " + e.getMessage(), e);
+    } finally {
+      lot = null;
+    }
+    if (horlogeArchive != null) {
+      // Seul le segment du jour est chargé, le reste à la demande
+      utiliserArchive(nomFichier);
+      archive.ouvrir();
+    }
+    appliquerDeltas(nomFichier);
+  }
+  
+  /**
+   * Applique au gestionnaire les sauvegardes différentielles associées à une
+   * sauvegarde complète déjà chargée (sans effet s'il n'y en a pas).
+   *
+   * @param nomFichier le fichier de la sauvegarde complète
+   * @throws IOException en cas de problème de lecture
+   */
+  void appliquerDeltas(String nomFichier) throws IOException {
+    File delta = new File(nomFichier + SUFFIXE_DELTA);
+    nbDeltas = 0;
+    if (suivi != null) {
+      suivi.vider();
+    }
+    if (!delta.exists()) {
+      return;
+    }
+    Observateurs.suspendre();
+    try (BufferedReader reader = new BufferedReader(
+        new FileReader(delta, StandardCharsets.UTF_8))) {
+      String ligne;
+      while ((ligne = reader.readLine()) != null) {
+        traiterLigne(ligne.split(";"), true);
+      }
+    } catch (Exception e) {
+      throw new IOException("Erreur lecture fichier : " + e.getMessage(), e);
+    } finally {
+      Observateurs.reprendre();
+    }
+  }
+  
+  /**
+   * Traite une ligne du fichier. En mode fusion (fichier delta), une ligne
+   * d'ingrédient ou de pizza met à jour l'entité existante de même nom, et
+   * une interdiction donne son état au lieu de l'inverser.
+   */
+  private void traiterLigne(String[] parts, boolean fusion)
+      throws IOException {
+    if (parts.length < 2) {
+      return;
+    }
+    
+    String typeDonnee = parts[0];
+    
+    if (typeDonnee.equals("INGREDIENT")) {
+      if (parts.length >= 3) {
+        double prix = Double.parseDouble(parts[2]);
+        Ingredient existant =
+            fusion ? gestionnaire.getIngredientParNom(parts[1]) : null;
+        if (existant != null) {
+          existant.setPrix(prix);
+        } else if (lot != null) {
+          lot.creerIngredient(parts[1], prix);
+        } else {
+          gestionnaire.creerIngredient(parts[1], prix);
+        }
       }
       
-      // 2. PIZZAS
-      for (Pizza p : gestionnaire.getPizzas()) {
-        StringBuilder ligne = new StringBuilder();
-        ligne.append("PIZZA;").append(p.getNom()).append(";")
-            .append(p.getType()).append(";").append(p.getPrix()).append(";")
-            .append(p.getPhoto() != null ? p.getPhoto() : "null");
-        for (Ingredient ing : p.getIngredients()) {
-          ligne.append(";").append(ing.getNom());
+    } else if (typeDonnee.equals("PIZZA")) {
+      if (parts.length >= 5) {
+        String nom = parts[1];
+        TypePizza type = TypePizza.valueOf(parts[2]);
+        double prix = Double.parseDouble(parts[3]);
+        String photo = parts[4];
+        
+        if (lot != null) {
+          Pizza p = lot.creerPizza(nom, type);
+          if (p != null) {
+            for (int i = 5; i < parts.length; i++) {
+              lot.ajouterIngredientPizza(p, parts[i]);
+            }
+            lot.setPrixPizza(p, prix);
+            if (!photo.equals("null")) {
+              lot.ajouterPhoto(p, photo);
+            }
+            pizzasChargees.put(nom.toLowerCase(Locale.ROOT), p);
+          }
+          return;
+        }
+        
+        Pizza p = fusion ? gestionnaire.getPizzaParNom(nom) : null;
+        if (p != null) {
+          // Mise à jour : la composition est entièrement réécrite
+          p.setType(type);
+          for (Ingredient ing : new ArrayList<>(p.getIngredients())) {
+            p.retirerIngredient(ing);
+          }
+          p.setPhoto(null);
+        } else {
+          p = gestionnaire.creerPizza(nom, type);
+        }
+        if (p != null) {
+          for (int i = 5; i < parts.length; i++) {
+            gestionnaire.ajouterIngredientPizza(p, parts[i]);
+          }
+          gestionnaire.setPrixPizza(p, prix);
+          if (!photo.equals("null")) {
+            gestionnaire.ajouterPhoto(p, photo);
+          }
+          pizzasChargees.put(nom.toLowerCase(Locale.ROOT), p);
         }
-        writer.println(ligne.toString());
       }
       
-      // 3. CLIENTS
-      for (Client c : Compte.getTousLesClients()) {
-        Compte compte = c.getCompte();
-        writer.println(
-            "CLIENT;" + compte.getEmail() + ";" + compte.getMotDePasse() + ";"
-                + compte.getNom() + ";" + compte.getPrenom() + ";"
-                + compte.getAdresse() + ";" + compte.getAge());
+    } else if (typeDonnee.equals("CLIENT")) {
+      if (parts.length >= 7) {
+        InformationPersonnelle info = new InformationPersonnelle(parts[3],
+            parts[4], parts[5], Integer.parseInt(parts[6]));
+        Compte.inscription(parts[1], parts[2], info);
       }
       
-      // 4. INTERDICTIONS
-      for (TypePizza type : TypePizza.values()) {
-        for (Ingredient ing : gestionnaire.getIngredients()) {
-          if (gestionnaire.estIngredientInterdit(type, ing)) {
-            writer.println("INTERDICTION;" + ing.getNom() + ";" + type);
-          }
+    } else if (typeDonnee.equals("INTERDICTION")) {
+      if (parts.length >= 4) {
+        // Format delta : INTERDICTION;nomIngredient;type;interdit
+        TypePizza type = TypePizza.valueOf(parts[2]);
+        Ingredient ing = gestionnaire.getIngredientParNom(parts[1]);
+        if (ing != null && gestionnaire.estIngredientInterdit(type, ing)
+            != Boolean.parseBoolean(parts[3])) {
+          gestionnaire.interdireIngredient(parts[1], type);
+        }
+      } else if (parts.length >= 3) {
+        if (lot != null) {
+          lot.interdireIngredient(parts[1], TypePizza.valueOf(parts[2]));
+        } else {
+          gestionnaire.interdireIngredient(parts[1],
+              TypePizza.valueOf(parts[2]));
         }
       }
       
-      // 5. COMMANDES
-      // Format : COMMANDE;emailClient;Etat;NomPizza1;NomPizza2...
-      for (Commande c : gestionnaire.commandesDejaTraitees()) {
-        // Sauvegarde les commandes traitées/validées
-        StringBuilder ligne = new StringBuilder();
-        ligne.append("COMMANDE;").append(c.getClient().getCompte().getEmail())
-            .append(";").append(c.getEtat());
+    } else if (typeDonnee.equals("COMMANDE")) {
+      // Format : COMMANDE;email;etat;#id;$prix/cout,...;pizza1;pizza2...
+      if (parts.length >= 4) {
+        String email = parts[1];
+        EtatCommande etat = EtatCommande.valueOf(parts[2]);
+        int id = Instantane.lireIdentifiant(parts[3]);
+        int debut = id >= 0 ? 4 : 3;
+        long[] prix = debut < parts.length
+            ? Instantane.lirePrix(parts[debut]) : null;
+        if (prix != null) {
+          debut++;
+        }
         
-        for (Pizza p : c.getPizzas()) {
-          ligne.append(";").append(p.getNom());
+        Client client = rechercherClient(email);
+        if (client != null) {
+          Pizza[] pizzas = new Pizza[parts.length - debut];
+          for (int i = 0; i < pizzas.length; i++) {
+            pizzas[i] = rechercherPizza(parts[debut + i]);
+          }
+          Instantane.restaurerCommande(client, id, etat, pizzas, prix);
         }
-        writer.println(ligne.toString());
       }
       
-      // 6. EVALUATIONS
-      // Format : EVALUATION;NomPizza;EmailAuteur;Note;Commentaire
-      for (Pizza p : gestionnaire.getPizzas()) {
-        for (Evaluation e : p.getEvaluations()) {
-          writer.println("EVALUATION;" + p.getNom() + ";"
-              + e.getAuteur().getCompte().getEmail() + ";" + e.getNote() + ";"
-              + e.getCommentaire());
+    } else if (typeDonnee.equals("EVALUATION")) {
+      // Format : EVALUATION;nomPizza;email;note;commentaire
+      if (parts.length >= 5) {
+        String nomPizza = parts[1];
+        String email = parts[2];
+        int note = Integer.parseInt(parts[3]);
+        String commentaire = parts[4];
+        
+        Pizza p = rechercherPizza(nomPizza);
+        Client client = rechercherClient(email);
+        if (p != null && client != null) {
+          // On ajoute directement l'évaluation à la liste de la pizza
+          // On ne passe pas par p.ajouterEvaluation() car cette méthode
+          // exige que le client soit connecté
+          Evaluation eval = new Evaluation(note, commentaire, client);
+          p.getEvaluations().add(eval);
         }
       }
     }
   }
   
+  /**
+   * Lit la section avec l'index du fichier s'il en a un, sinon en parcourant
+   * le fichier. Les lignes de la section des sauvegardes différentielles sont
+   * ajoutées à la suite (elles complètent ou remplacent les précédentes).
+   */
   @Override
-  public void chargerDonnees(String nomFichier) throws IOException {
-    try (BufferedReader reader =
-        new BufferedReader(new FileReader(nomFichier))) {
-      
-      Compte.resetMemoire();
-      
+  public List<String> extraireSection(String nomFichier, String section)
+      throws IOException {
+    return extraireEntite(nomFichier, section, null);
+  }
+  
+  /**
+   * Lit l'entité avec l'index du fichier s'il en a un, sinon en parcourant
+   * le fichier. Les lignes de l'entité des sauvegardes différentielles sont
+   * ajoutées à la suite (elles complètent ou remplacent les précédentes).
+   * Avec l'archivage, les commandes traitées sont dans l'archive et non dans
+   * le fichier.
+   */
+  @Override
+  public List<String> extraireEntite(String nomFichier, String section,
+      String cle) throws IOException {
+    IndexSauvegarde.verifierSection(section);
+    IndexSauvegarde index = IndexSauvegarde.ouvrir(nomFichier);
+    List<String> lignes;
+    if (index == null) {
+      lignes = parcourir(new File(nomFichier), section, cle);
+    } else if (cle == null) {
+      lignes = index.lireSection(section);
+    } else {
+      lignes = index.lireEntite(section, cle);
+    }
+    File delta = new File(nomFichier + SUFFIXE_DELTA);
+    if (delta.exists()) {
+      lignes.addAll(parcourir(delta, section, cle));
+    }
+    return lignes;
+  }
+  
+  /**
+   * Lit tout un fichier et retourne les lignes d'une section, de la clé
+   * donnée si elle n'est pas null.
+   */
+  private static List<String> parcourir(File fichier, String section,
+      String cle) throws IOException {
+    List<String> lignes = new ArrayList<>();
+    try (BufferedReader reader = new BufferedReader(
+        new FileReader(fichier, StandardCharsets.UTF_8))) {
       String ligne;
       while ((ligne = reader.readLine()) != null) {
-        String[] parts = ligne.split(";");
-        if (parts.length < 2) {
-          continue;
-        }
-        
-        String typeDonnee = parts[0];
-        
-        if (typeDonnee.equals("INGREDIENT")) {
-          if (parts.length >= 3) {
-            gestionnaire.creerIngredient(parts[1],
-                Double.parseDouble(parts[2]));
-          }
-          
-        } else if (typeDonnee.equals("PIZZA")) {
-          if (parts.length >= 5) {
-            String nom = parts[1];
-            TypePizza type = TypePizza.valueOf(parts[2]);
-            double prix = Double.parseDouble(parts[3]);
-            String photo = parts[4];
-            
-            Pizza p = gestionnaire.creerPizza(nom, type);
-            if (p != null) {
-              for (int i = 5; i < parts.length; i++) {
-                gestionnaire.ajouterIngredientPizza(p, parts[i]);
-              }
-              gestionnaire.setPrixPizza(p, prix);
-              if (!photo.equals("null")) {
-                gestionnaire.ajouterPhoto(p, photo);
-              }
-            }
-          }
-          
-        } else if (typeDonnee.equals("CLIENT")) {
-          if (parts.length >= 7) {
-            InformationPersonnelle info = new InformationPersonnelle(parts[3],
-                parts[4], parts[5], Integer.parseInt(parts[6]));
-            Compte.inscription(parts[1], parts[2], info);
-          }
-          
-        } else if (typeDonnee.equals("INTERDICTION")) {
-          if (parts.length >= 3) {
-            gestionnaire.interdireIngredient(parts[1],
-                TypePizza.valueOf(parts[2]));
-          }
-          
-        } else if (typeDonnee.equals("COMMANDE")) {
-          // Format : COMMANDE;email;etat;pizza1;pizza2...
-          if (parts.length >= 4) {
-            String email = parts[1];
-            EtatCommande etat = EtatCommande.valueOf(parts[2]);
-            
-            // Retrouver le client
-            Client client = null;
-            for (Client c : Compte.getTousLesClients()) {
-              if (c.getCompte().getEmail().equalsIgnoreCase(email)) {
-                client = c;
-                break;
-              }
-            }
-            
-            if (client != null) {
-              Commande cmd = client.nouvelleCommande();
-              // Ajout des pizzas
-              for (int i = 3; i < parts.length; i++) {
-                // On utilise la méthode statique de Pizza car le gestionnaire
-                // ne retourne pas facilement l'objet Pizza
-                Pizza p = Pizza.getPizzaParNom(parts[i]);
-                if (p != null) {
-                  cmd.ajouterPizza(p);
-                }
-              }
-              // On force l'état (nécessaire pour contourner les règles de
-              // transition si on veut charger directement en TRAITEE)
-              cmd.setEtat(etat);
-            }
-          }
-          
-        } else if (typeDonnee.equals("EVALUATION")) {
-          // Format : EVALUATION;nomPizza;email;note;commentaire
-          if (parts.length >= 5) {
-            String nomPizza = parts[1];
-            String email = parts[2];
-            int note = Integer.parseInt(parts[3]);
-            String commentaire = parts[4];
-            
-            Pizza p = Pizza.getPizzaParNom(nomPizza);
-            Client client = null;
-            for (Client c : Compte.getTousLesClients()) {
-              if (c.getCompte().getEmail().equalsIgnoreCase(email)) {
-                client = c;
-                break;
-              }
-            }
-            
-            if (p != null && client != null) {
-              // On ajoute directement l'évaluation à la liste de la pizza
-              // On ne passe pas par p.ajouterEvaluation() car cette méthode
-              // exige que le client soit connecté
-              Evaluation eval = new Evaluation(note, commentaire, client);
-              p.getEvaluations().add(eval);
-            }
-          }
+        if (IndexSauvegarde.section(ligne).equals(section)
+            && (cle == null || cle.equals(IndexSauvegarde.cle(ligne)))) {
+          lignes.add(ligne);
         }
       }
-    } catch (Exception e) {
-      throw new IOException("Erreur lecture fichier : " + e.getMessage(), e);
     }
+    return lignes;
+  }
+  
+  /**
+   * Retrouve un client par email, sans tenir compte de la casse. L'email
+   * stocké étant normalisé, la table des comptes suffit ; un email entouré
+   * d'espaces ne correspond à aucun client.
+   */
+  private static Client rechercherClient(String email) {
+    Client client = Compte.getClientParEmail(email);
+    if (client != null
+        && !client.getCompte().getEmail().equalsIgnoreCase(email)) {
+      return null;
+    }
+    return client;
+  }
+  
+  /**
+   * Retrouve une pizza par son nom (sans tenir compte de la casse), d'abord
+   * parmi celles créées par le chargement en cours, puis parmi celles du
+   * gestionnaire, puis dans le catalogue.
+   */
+  private Pizza rechercherPizza(String nom) {
+    Pizza p = pizzasChargees.get(nom.toLowerCase(Locale.ROOT));
+    if (p == null) {
+      p = gestionnaire.getPizzaParNom(nom);
+    }
+    if (p == null) {
+      // En dernier recours, le catalogue statique de Pizza
+      p = Pizza.getPizzaParNom(nom);
+    }
+    return p;
   }
 }
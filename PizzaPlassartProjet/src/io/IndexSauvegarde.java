@@ -0,0 +1,311 @@
+package io;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Index des positions (en octets) des lignes d'une sauvegarde au format texte,
+ * écrit à la fin du fichier par {@link GestionSauvegarde}.
+ *
+ * <p>L'index donne les plages de chaque section et, pour les pizzas, les
+ * clients, les commandes et les évaluations, les plages des lignes de chaque
+ * clé (le second champ de la ligne : nom de la pizza ou email du client). Une
+ * section ou une entité se lit alors sans analyser le reste du fichier. Un
+ * index ouvert peut servir à plusieurs lectures, par exemple dans un outil
+ * de statistiques externe.
+ *
+ * <p>Format du pied de fichier, ignoré par les chargements :
+ * <ul>
+ * <li>INDEX_SECTION;section;début;longueur</li>
+ * <li>INDEX;section;clé;début;longueur</li>
+ * <li>INDEX_FIN;début du pied (dernière ligne)</li>
+ * </ul>
+ *
+ * @author Kevin SIDER
+ * @version 1.0
+ */
+public final class IndexSauvegarde {
+  
+  /**
+   * Sections du format texte, dans l'ordre du fichier.
+   */
+  public static final List<String> SECTIONS = List.of("INGREDIENT", "PIZZA",
+      "CLIENT", "INTERDICTION", "COMMANDE", "EVALUATION");
+  
+  /**
+   * Sections dont les lignes sont indexées par clé.
+   */
+  static final Set<String> SECTIONS_INDEXEES =
+      Set.of("PIZZA", "CLIENT", "COMMANDE", "EVALUATION");
+  
+  private static final String SECTION = "INDEX_SECTION";
+  private static final String ENTREE = "INDEX";
+  private static final String FIN = "INDEX_FIN";
+  
+  /**
+   * Nombre d'octets lus à la fin du fichier pour trouver la dernière ligne.
+   */
+  private static final int TAILLE_FIN = 64;
+  
+  private final File fichier;
+  
+  /**
+   * Plages {début, longueur} de chaque section.
+   */
+  private final Map<String, List<long[]>> sections = new HashMap<>();
+  
+  /**
+   * Plages {début, longueur} de chaque clé, par section indexée.
+   */
+  private final Map<String, Map<String, List<long[]>>> entites =
+      new HashMap<>();
+  
+  private IndexSauvegarde(File fichier) {
+    this.fichier = fichier;
+  }
+  
+  /**
+   * Lit l'index d'une sauvegarde.
+   *
+   * @param nomFichier le fichier de la sauvegarde
+   * @return l'index, ou null si le fichier n'en contient pas (sauvegarde
+   *         antérieure à l'index)
+   * @throws IOException en cas de problème de lecture
+   */
+  public static IndexSauvegarde ouvrir(String nomFichier) throws IOException {
+    File fichier = new File(nomFichier);
+    try (RandomAccessFile raf = new RandomAccessFile(fichier, "r")) {
+      long longueur = raf.length();
+      int taille = (int) Math.min(longueur, TAILLE_FIN);
+      String fin = lire(raf, longueur - taille, taille);
+      int position = fin.lastIndexOf(FIN + ";");
+      if (position < 0) {
+        return null;
+      }
+      String[] dernier = fin.substring(position).trim().split(";");
+      long debut;
+      try {
+        debut = Long.parseLong(dernier[1]);
+      } catch (NumberFormatException | ArrayIndexOutOfBoundsException e) {
+        return null;
+      }
+      
+      IndexSauvegarde index = new IndexSauvegarde(fichier);
+      String pied = lire(raf, debut, (int) (longueur - debut));
+      for (String ligne : pied.split("\\R")) {
+        index.lireEntree(ligne.split(";"));
+      }
+      return index;
+    }
+  }
+  
+  /**
+   * Ajoute une ligne du pied à l'index.
+   */
+  private void lireEntree(String[] parts) throws IOException {
+    try {
+      if (parts[0].equals(SECTION) && parts.length >= 4) {
+        sections.computeIfAbsent(parts[1], s -> new ArrayList<>())
+            .add(new long[] {Long.parseLong(parts[2]),
+                Long.parseLong(parts[3])});
+      } else if (parts[0].equals(ENTREE) && parts.length >= 5) {
+        entites.computeIfAbsent(parts[1], s -> new HashMap<>())
+            .computeIfAbsent(parts[2], c -> new ArrayList<>())
+            .add(new long[] {Long.parseLong(parts[3]),
+                Long.parseLong(parts[4])});
+      }
+    } catch (NumberFormatException e) {
+      throw new IOException("Index invalide : " + e.getMessage(), e);
+    }
+  }
+  
+  /**
+   * Retourne les clés indexées d'une section.
+   *
+   * @param section le type de ligne (PIZZA, CLIENT, COMMANDE ou EVALUATION)
+   * @return les noms de pizza ou emails présents dans la section
+   */
+  public Set<String> getCles(String section) {
+    verifierSection(section);
+    Map<String, List<long[]>> cles = entites.get(section);
+    return cles != null ? Collections.unmodifiableSet(cles.keySet())
+        : Collections.emptySet();
+  }
+  
+  /**
+   * Lit les lignes d'une section.
+   *
+   * @param section le type de ligne (INGREDIENT, PIZZA...)
+   * @return les lignes de la section, dans l'ordre du fichier
+   * @throws IOException en cas de problème de lecture
+   */
+  public List<String> lireSection(String section) throws IOException {
+    verifierSection(section);
+    return lire(sections.getOrDefault(section, Collections.emptyList()));
+  }
+  
+  /**
+   * Lit les lignes d'une section dont la clé (le second champ) est donnée :
+   * la pizza ou le client, ses commandes, les évaluations d'une pizza...
+   *
+   * @param section le type de ligne (INGREDIENT, PIZZA...)
+   * @param cle le nom ou l'email, tel qu'il est écrit dans le fichier
+   * @return les lignes de l'entité, dans l'ordre du fichier
+   * @throws IOException en cas de problème de lecture
+   */
+  public List<String> lireEntite(String section, String cle)
+      throws IOException {
+    verifierSection(section);
+    if (!SECTIONS_INDEXEES.contains(section)) {
+      // Sections courtes : filtrées après lecture
+      List<String> lignes = new ArrayList<>();
+      for (String ligne : lireSection(section)) {
+        if (cle.equals(cle(ligne))) {
+          lignes.add(ligne);
+        }
+      }
+      return lignes;
+    }
+    Map<String, List<long[]>> cles = entites.get(section);
+    List<long[]> plages = cles != null ? cles.get(cle) : null;
+    return lire(plages != null ? plages : Collections.emptyList());
+  }
+  
+  /**
+   * Lit les lignes de plages du fichier.
+   */
+  private List<String> lire(List<long[]> plages) throws IOException {
+    List<String> lignes = new ArrayList<>();
+    if (plages.isEmpty()) {
+      return lignes;
+    }
+    try (RandomAccessFile raf = new RandomAccessFile(fichier, "r")) {
+      for (long[] plage : plages) {
+        String texte = lire(raf, plage[0], (int) plage[1]);
+        for (String ligne : texte.split("\\R")) {
+          if (!ligne.isEmpty()) {
+            lignes.add(ligne);
+          }
+        }
+      }
+    }
+    return lignes;
+  }
+  
+  /**
+   * Lit et décode une plage du fichier.
+   */
+  private static String lire(RandomAccessFile raf, long debut, int longueur)
+      throws IOException {
+    byte[] octets = new byte[longueur];
+    raf.seek(debut);
+    raf.readFully(octets);
+    return new String(octets, StandardCharsets.UTF_8);
+  }
+  
+  /**
+   * Vérifie qu'une section existe dans le format texte.
+   */
+  static void verifierSection(String section) {
+    if (!SECTIONS.contains(section)) {
+      throw new IllegalArgumentException("Section inconnue : " + section);
+    }
+  }
+  
+  /**
+   * Retourne le type d'une ligne (son premier champ).
+   */
+  static String section(String ligne) {
+    int fin = ligne.indexOf(';');
+    return fin < 0 ? ligne : ligne.substring(0, fin);
+  }
+  
+  /**
+   * Retourne la clé d'une ligne (son second champ), ou null.
+   */
+  static String cle(String ligne) {
+    int debut = ligne.indexOf(';');
+    if (debut < 0) {
+      return null;
+    }
+    int fin = ligne.indexOf(';', debut + 1);
+    return fin < 0 ? ligne.substring(debut + 1)
+        : ligne.substring(debut + 1, fin);
+  }
+  
+  /**
+   * Construit le pied d'index pendant l'écriture des lignes d'une
+   * sauvegarde. Les lignes consécutives d'une même section (ou d'une même
+   * clé) forment une seule plage.
+   */
+  static final class Redacteur {
+    
+    private final List<String> pied = new ArrayList<>();
+    
+    private String section;
+    private long debutSection;
+    private String cle;
+    private long debutCle;
+    private long position;
+    
+    /**
+     * Signale une ligne écrite.
+     *
+     * @param ligne la ligne, sans fin de ligne
+     * @param longueur le nombre d'octets écrits, fin de ligne comprise
+     */
+    void ajouter(String ligne, int longueur) {
+      String s = section(ligne);
+      String c = SECTIONS_INDEXEES.contains(s) ? cle(ligne) : null;
+      if (!s.equals(section)) {
+        terminerCle();
+        terminerSection();
+        section = s;
+        debutSection = position;
+      } else if (c == null ? cle != null : !c.equals(cle)) {
+        terminerCle();
+      }
+      if (cle == null && c != null) {
+        cle = c;
+        debutCle = position;
+      }
+      position += longueur;
+    }
+    
+    /**
+     * Termine l'index.
+     *
+     * @return les lignes du pied, à écrire à la suite des lignes indexées
+     */
+    List<String> terminer() {
+      terminerCle();
+      terminerSection();
+      pied.add(FIN + ";" + position);
+      return pied;
+    }
+    
+    private void terminerSection() {
+      if (section != null && SECTIONS.contains(section)) {
+        pied.add(SECTION + ";" + section + ";" + debutSection + ";"
+            + (position - debutSection));
+      }
+      section = null;
+    }
+    
+    private void terminerCle() {
+      if (cle != null) {
+        pied.add(ENTREE + ";" + section + ";" + cle + ";" + debutCle + ";"
+            + (position - debutCle));
+      }
+      cle = null;
+    }
+  }
+}
@@ -0,0 +1,434 @@
+package io;
+
+import java.io.BufferedOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.DoubleConsumer;
+import java.util.function.Supplier;
+import pizzas.Client;
+import pizzas.Commande;
+import pizzas.Compte;
+import pizzas.EtatCommande;
+import pizzas.Evaluation;
+import pizzas.GestPizzaiolo;
+import pizzas.Ingredient;
+import pizzas.LigneCommande;
+import pizzas.Pizza;
+import pizzas.TypePizza;
+
+/**
+ * Copie figée de l'état de la pizzeria, prête à être écrite au format texte de
+ * {@link GestionSauvegarde}.
+ *
+ * <p>La capture ne fait que relever les valeurs des entités (sans mise en
+ * forme) : elle est rapide et doit être faite sur le thread qui modifie les
+ * données. L'écriture, qui met en forme les lignes et fait les entrées-sorties,
+ * peut ensuite se faire sur un autre thread sans voir les modifications
+ * faites entre-temps.
+ *
+ * <p>Avec l'archivage des commandes, l'instantané porte aussi les segments
+ * d'archive capturés en même temps ({@link ArchiveCommandes.Capture}) : ils
+ * sont écrits avant le fichier principal d'une sauvegarde complète.
+ *
+ * @author Kevin SIDER
+ * @version 1.0
+ */
+final class Instantane {
+  
+  /**
+   * Lignes du fichier, mises en forme seulement à l'écriture.
+   */
+  private final List<Supplier<String>> lignes = new ArrayList<>();
+  
+  /**
+   * Segments d'archive à écrire avec la sauvegarde complète, ou null.
+   */
+  private ArchiveCommandes.Capture archive;
+  
+  /**
+   * Capture l'état complet du gestionnaire et des comptes clients.
+   *
+   * @param gestionnaire le gestionnaire de la pizzeria
+   * @return la copie de l'état
+   */
+  static Instantane capturer(GestPizzaiolo gestionnaire) {
+    return capturer(gestionnaire, true);
+  }
+  
+  /**
+   * Capture l'état du gestionnaire et des comptes clients.
+   *
+   * @param gestionnaire le gestionnaire de la pizzeria
+   * @param avecCommandes false si les commandes traitées sont sauvegardées
+   *        ailleurs (archive des commandes)
+   * @return la copie de l'état
+   */
+  static Instantane capturer(GestPizzaiolo gestionnaire,
+      boolean avecCommandes) {
+    Instantane instantane = new Instantane();
+    
+    // 1. INGRÉDIENTS
+    for (Ingredient ing : gestionnaire.getIngredients()) {
+      instantane.ajouterIngredient(ing);
+    }
+    
+    // 2. PIZZAS
+    for (Pizza p : gestionnaire.getPizzas()) {
+      instantane.ajouterPizza(p);
+    }
+    
+    // 3. CLIENTS
+    for (Client c : Compte.getTousLesClients()) {
+      instantane.ajouterClient(c);
+    }
+    
+    // 4. INTERDICTIONS
+    for (TypePizza type : TypePizza.values()) {
+      for (Ingredient ing : gestionnaire.getIngredients()) {
+        if (gestionnaire.estIngredientInterdit(type, ing)) {
+          instantane.ajouterInterdiction(ing.getNom(), type, null);
+        }
+      }
+    }
+    
+    // 5. COMMANDES
+    if (avecCommandes) {
+      for (Commande c : gestionnaire.commandesDejaTraitees()) {
+        instantane.ajouterCommande(c);
+      }
+    }
+    
+    // 6. EVALUATIONS
+    for (Pizza p : gestionnaire.getPizzas()) {
+      for (Evaluation e : p.getEvaluations()) {
+        instantane.ajouterEvaluation(p, e);
+      }
+    }
+    return instantane;
+  }
+  
+  /**
+   * Format : INGREDIENT;nom;prix.
+   */
+  void ajouterIngredient(Ingredient ing) {
+    String nom = ing.getNom();
+    double prix = ing.getPrix();
+    lignes.add(() -> "INGREDIENT;" + nom + ";" + prix);
+  }
+  
+  /**
+   * Format : PIZZA;nom;type;prix;photo;ingredient1;ingredient2...
+   */
+  void ajouterPizza(Pizza p) {
+    String nom = p.getNom();
+    TypePizza type = p.getType();
+    double prix = p.getPrix();
+    String photo = p.getPhoto();
+    List<Ingredient> ingredients = p.getIngredients();
+    String[] noms = new String[ingredients.size()];
+    for (int i = 0; i < noms.length; i++) {
+      noms[i] = ingredients.get(i).getNom();
+    }
+    lignes.add(() -> {
+      StringBuilder ligne = new StringBuilder();
+      ligne.append("PIZZA;").append(nom).append(";").append(type).append(";")
+          .append(prix).append(";").append(photo != null ? photo : "null");
+      for (String ing : noms) {
+        ligne.append(";").append(ing);
+      }
+      return ligne.toString();
+    });
+  }
+  
+  /**
+   * Format : CLIENT;email;mdp;nom;prenom;adresse;age.
+   */
+  void ajouterClient(Client c) {
+    Compte compte = c.getCompte();
+    String email = compte.getEmail();
+    String mdp = compte.getMotDePasse();
+    String nom = compte.getNom();
+    String prenom = compte.getPrenom();
+    String adresse = compte.getAdresse();
+    int age = compte.getAge();
+    lignes.add(() -> "CLIENT;" + email + ";" + mdp + ";" + nom + ";" + prenom
+        + ";" + adresse + ";" + age);
+  }
+  
+  /**
+   * Format : INTERDICTION;nomIngredient;type, suivi de l'état (true ou false)
+   * dans un fichier delta.
+   */
+  void ajouterInterdiction(String nom, TypePizza type, Boolean interdit) {
+    lignes.add(() -> "INTERDICTION;" + nom + ";" + type
+        + (interdit != null ? ";" + interdit : ""));
+  }
+  
+  /**
+   * Format : COMMANDE;emailClient;Etat;#id;$prix/cout,...;NomPizza1;
+   * NomPizza2... Le champ $ donne les prix figés à la validation, une paire
+   * par pizza, et manque pour une commande créée. Les fichiers plus anciens
+   * n'ont ni le champ #id ni le champ $.
+   */
+  void ajouterCommande(Commande c) {
+    String email = c.getClient().getCompte().getEmail();
+    EtatCommande etat = c.getEtat();
+    int id = c.getIdCommande();
+    List<Pizza> pizzas = c.getPizzas();
+    String[] noms = new String[pizzas.size()];
+    for (int i = 0; i < noms.length; i++) {
+      noms[i] = pizzas.get(i).getNom();
+    }
+    long[] prix = prixFiges(c);
+    lignes.add(() -> {
+      StringBuilder ligne = new StringBuilder();
+      ligne.append("COMMANDE;").append(email).append(";").append(etat)
+          .append(";#").append(id);
+      if (prix != null) {
+        ligne.append(";").append(formaterPrix(prix));
+      }
+      for (String p : noms) {
+        ligne.append(";").append(p);
+      }
+      return ligne.toString();
+    });
+  }
+  
+  /**
+   * Lit le champ #id d'une ligne COMMANDE.
+   *
+   * @param champ le quatrième champ de la ligne
+   * @return l'identifiant, ou -1 si le champ n'en est pas un (ligne écrite
+   *         avant l'ajout de ce champ)
+   */
+  static int lireIdentifiant(String champ) {
+    if (champ.length() < 2 || champ.charAt(0) != '#') {
+      return -1;
+    }
+    for (int i = 1; i < champ.length(); i++) {
+      if (champ.charAt(i) < '0' || champ.charAt(i) > '9') {
+        return -1;
+      }
+    }
+    return Integer.parseInt(champ.substring(1));
+  }
+  
+  /**
+   * Relève les prix figés d'une commande : une paire (prix de vente, coût)
+   * en centimes par pizza, dans l'ordre de {@link Commande#getPizzas()}.
+   *
+   * @param c la commande
+   * @return les prix, ou null pour une commande créée (pas encore figée)
+   */
+  static long[] prixFiges(Commande c) {
+    if (c.getEtat() == EtatCommande.CREE) {
+      return null;
+    }
+    Map<Pizza, LigneCommande> parPizza = new IdentityHashMap<>();
+    for (LigneCommande l : c.getLignes()) {
+      parPizza.put(l.getPizza(), l);
+    }
+    List<Pizza> pizzas = c.getPizzas();
+    long[] prix = new long[2 * pizzas.size()];
+    for (int i = 0; i < pizzas.size(); i++) {
+      LigneCommande l = parPizza.get(pizzas.get(i));
+      prix[2 * i] = l.getPrixUnitaireCentimes();
+      prix[2 * i + 1] = l.getCoutUnitaireCentimes();
+    }
+    return prix;
+  }
+  
+  /**
+   * Met en forme le champ $ d'une ligne COMMANDE.
+   *
+   * @param prix les prix relevés par {@link #prixFiges}
+   * @return le champ ($prix/cout,prix/cout...)
+   */
+  static String formaterPrix(long[] prix) {
+    StringBuilder champ = new StringBuilder("$");
+    for (int i = 0; i < prix.length; i += 2) {
+      if (i > 0) {
+        champ.append(',');
+      }
+      champ.append(prix[i]).append('/').append(prix[i + 1]);
+    }
+    return champ.toString();
+  }
+  
+  /**
+   * Lit le champ $ d'une ligne COMMANDE.
+   *
+   * @param champ le champ suivant l'identifiant
+   * @return les prix, ou null si le champ n'en est pas un (commande créée,
+   *         ou ligne écrite avant l'ajout de ce champ)
+   */
+  static long[] lirePrix(String champ) {
+    if (champ.isEmpty() || champ.charAt(0) != '$') {
+      return null;
+    }
+    if (champ.length() == 1) {
+      return new long[0];
+    }
+    String[] paires = champ.substring(1).split(",");
+    long[] prix = new long[2 * paires.length];
+    try {
+      for (int i = 0; i < paires.length; i++) {
+        int barre = paires[i].indexOf('/');
+        if (barre < 0) {
+          return null;
+        }
+        prix[2 * i] = Long.parseLong(paires[i].substring(0, barre));
+        prix[2 * i + 1] = Long.parseLong(paires[i].substring(barre + 1));
+      }
+    } catch (NumberFormatException e) {
+      return null;
+    }
+    return prix;
+  }
+  
+  /**
+   * Recrée une commande chargée, avec son identifiant s'il est connu : les
+   * enregistrements du journal qui la désignent retrouvent ainsi la bonne
+   * commande. Une commande validée ou traitée garde les prix relevés à sa
+   * validation s'ils ont été sauvegardés ; sinon elle est figée aux prix
+   * actuels.
+   *
+   * @param client le client de la commande
+   * @param id l'identifiant sauvegardé, ou -1 pour en attribuer un nouveau
+   * @param etat l'état de la commande
+   * @param pizzas les pizzas de la commande (null pour une pizza inconnue)
+   * @param prix les prix figés (voir {@link #prixFiges}), ou null
+   * @return la commande, ou null si le client a déjà une commande de cet
+   *         identifiant
+   */
+  static Commande restaurerCommande(Client client, int id, EtatCommande etat,
+      Pizza[] pizzas, long[] prix) {
+    if (id >= 0 && client.getCommandes(id) != null) {
+      return null;
+    }
+    Commande cmd = id >= 0 ? client.restaurerCommande(id)
+        : client.nouvelleCommande();
+    for (Pizza p : pizzas) {
+      if (p != null) {
+        cmd.ajouterPizza(p);
+      }
+    }
+    if (prix != null && prix.length == 2 * pizzas.length
+        && etat != EtatCommande.CREE) {
+      Set<Pizza> restaurees =
+          Collections.newSetFromMap(new IdentityHashMap<>());
+      for (int i = 0; i < pizzas.length; i++) {
+        if (pizzas[i] != null && restaurees.add(pizzas[i])) {
+          cmd.restaurerPrix(pizzas[i], prix[2 * i], prix[2 * i + 1]);
+        }
+      }
+    }
+    // On force l'état (nécessaire pour contourner les règles de transition
+    // si on veut charger directement en TRAITEE)
+    cmd.setEtat(etat);
+    return cmd;
+  }
+  
+  /**
+   * Format : EVALUATION;NomPizza;EmailAuteur;Note;Commentaire.
+   */
+  void ajouterEvaluation(Pizza p, Evaluation e) {
+    String pizza = p.getNom();
+    String email = e.getAuteur().getCompte().getEmail();
+    int note = e.getNote();
+    String commentaire = e.getCommentaire();
+    lignes.add(() -> "EVALUATION;" + pizza + ";" + email + ";" + note + ";"
+        + commentaire);
+  }
+  
+  /**
+   * Place en première ligne le numéro de génération de l'instantané, qui
+   * l'identifie auprès de son journal (voir {@link JournalModifications}).
+   * Les chargeurs ignorent cette ligne.
+   */
+  void numeroter(long generation) {
+    String ligne = JournalModifications.PREFIXE_GENERATION
+        + Long.toHexString(generation);
+    lignes.add(0, () -> ligne);
+  }
+  
+  /**
+   * Joint les segments d'archive capturés en même temps que l'instantané.
+   */
+  void joindreArchive(ArchiveCommandes.Capture capture) {
+    this.archive = capture;
+  }
+  
+  /**
+   * Retourne le nombre de lignes capturées.
+   */
+  int getNbLignes() {
+    return lignes.size();
+  }
+  
+  /**
+   * Met en forme la ligne d'indice i (peut être appelé sur n'importe quel
+   * thread).
+   */
+  String getLigne(int i) {
+    return lignes.get(i).get();
+  }
+  
+  /**
+   * Écrit les lignes dans un fichier. Une sauvegarde complète (écrite depuis
+   * le début du fichier) se termine par l'index des positions des lignes
+   * (voir {@link IndexSauvegarde}) et commence par l'écriture des segments
+   * d'archive joints.
+   *
+   * @param nomFichier le fichier à écrire
+   * @param ajout true pour écrire à la fin du fichier existant (sans index)
+   * @param progression reçoit l'avancement entre 0 et 1 (au plus une centaine
+   *        de fois), ou null
+   * @throws IOException en cas de problème d'écriture
+   */
+  void ecrire(String nomFichier, boolean ajout, DoubleConsumer progression)
+      throws IOException {
+    if (archive != null && !ajout) {
+      archive.ecrire();
+    }
+    int total = lignes.size();
+    int pas = Math.max(1, total / 100);
+    // Encodage fait ici pour connaître la position de chaque ligne ; toujours
+    // en UTF-8, quel que soit l'encodage par défaut de la plateforme
+    byte[] finLigne = System.lineSeparator().getBytes(StandardCharsets.UTF_8);
+    IndexSauvegarde.Redacteur index =
+        ajout ? null : new IndexSauvegarde.Redacteur();
+    try (OutputStream out = new BufferedOutputStream(
+        new FileOutputStream(nomFichier, ajout))) {
+      for (int i = 0; i < total; i++) {
+        String ligne = lignes.get(i).get();
+        byte[] octets = ligne.getBytes(StandardCharsets.UTF_8);
+        out.write(octets);
+        out.write(finLigne);
+        if (index != null) {
+          index.ajouter(ligne, octets.length + finLigne.length);
+        }
+        if (progression != null && (i + 1) % pas == 0 && i + 1 < total) {
+          progression.accept((double) (i + 1) / total);
+        }
+      }
+      if (index != null) {
+        for (String ligne : index.terminer()) {
+          out.write(ligne.getBytes(StandardCharsets.UTF_8));
+          out.write(finLigne);
+        }
+      }
+    }
+    if (progression != null) {
+      progression.accept(1.0);
+    }
+  }
+}
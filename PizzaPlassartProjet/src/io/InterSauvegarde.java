@@ -1,6 +1,7 @@
 package io;
 
 import java.io.IOException;
+import java.util.List;
 
 /**
  * Définit les méthodes permettant de sauvegarder les données de l'application
@@ -25,4 +26,32 @@ public interface InterSauvegarde {
    * @throws IOException en cas de problème de chargement
    */
   void chargerDonnees(String nomFichier) throws IOException;
+  
+  /**
+   * Lit une section d'un fichier de sauvegarde sans charger les données.
+   *
+   * @param nomFichier le fichier dans lequel les données ont été sauvegardées
+   * @param section le type de ligne (INGREDIENT, PIZZA, CLIENT, INTERDICTION,
+   *        COMMANDE ou EVALUATION)
+   * @return les lignes de la section, au format texte de
+   *         {@link GestionSauvegarde}
+   * @throws IOException en cas de problème de lecture
+   */
+  List<String> extraireSection(String nomFichier, String section)
+      throws IOException;
+  
+  /**
+   * Lit les lignes d'une section dont la clé (le second champ) est donnée,
+   * sans charger les données : une pizza ou ses évaluations par le nom de la
+   * pizza, un client ou ses commandes par son email...
+   *
+   * @param nomFichier le fichier dans lequel les données ont été sauvegardées
+   * @param section le type de ligne
+   * @param cle le nom ou l'email, tel qu'il est écrit dans le fichier
+   * @return les lignes de l'entité, au format texte de
+   *         {@link GestionSauvegarde}
+   * @throws IOException en cas de problème de lecture
+   */
+  List<String> extraireEntite(String nomFichier, String section,
+      String cle) throws IOException;
 }
@@ -0,0 +1,904 @@
+package io;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+import pizzas.Client;
+import pizzas.Commande;
+import pizzas.Compte;
+import pizzas.EtatCommande;
+import pizzas.Evaluation;
+import pizzas.GestPizzaiolo;
+import pizzas.InformationPersonnelle;
+import pizzas.Ingredient;
+import pizzas.LigneCommande;
+import pizzas.ObservateurModifications;
+import pizzas.Observateurs;
+import pizzas.Pizza;
+import pizzas.TypePizza;
+
+/**
+ * Journal des modifications de la pizzeria, en ajout seul.
+ *
+ * <p>Chaque modification notifiée par {@link Observateurs} est écrite à la fin
+ * du fichier sous la forme d'un enregistrement binaire compact : un octet de
+ * code d'opération suivi des seuls champs modifiés. Le coût d'une écriture
+ * dépend donc de la modification, pas de la taille des données.
+ *
+ * <p>L'entête du journal mémorise l'identifiant de l'instantané (sauvegarde
+ * complète) auquel il s'applique : le numéro de génération écrit en première
+ * ligne d'un instantané texte ({@link #PREFIXE_GENERATION}), ou à défaut une
+ * somme de contrôle de son contenu. Contrairement à la taille et à la date,
+ * il ne change pas quand le fichier est copié et ne peut pas coïncider par
+ * hasard d'un instantané à l'autre. Un journal dont l'entête ne correspond
+ * pas à l'instantané n'est jamais rejoué ni écrasé (voir
+ * {@link #ouvrir}). Un enregistrement tronqué en fin de
+ * fichier (arrêt brutal pendant l'écriture) est supprimé à la relecture.
+ * Un changement groupé de tarifs forme un seul enregistrement : il est
+ * rejoué en entier ou pas du tout.
+ *
+ * @author Kevin SIDER
+ * @version 1.0
+ * @see SauvegardeJournalisee
+ */
+public class JournalModifications implements ObservateurModifications,
+    Closeable {
+  
+  /**
+   * Nombre magique en tête de journal ("PZJL").
+   */
+  public static final int MAGIQUE = 0x505A4A4C;
+  
+  /**
+   * Version courante du format du journal.
+   */
+  public static final int VERSION = 2;
+  
+  /**
+   * Début de la première ligne d'un instantané texte, suivi de son numéro de
+   * génération en hexadécimal.
+   */
+  static final String PREFIXE_GENERATION = "GENERATION;";
+  
+  // Codes d'opération des enregistrements
+  private static final byte INGREDIENT_CREE = 1;
+  private static final byte PRIX_INGREDIENT = 2;
+  private static final byte INTERDICTION = 3;
+  private static final byte PIZZA_CREEE = 4;
+  private static final byte INGREDIENT_AJOUTE = 5;
+  private static final byte INGREDIENT_RETIRE = 6;
+  private static final byte PRIX_PIZZA = 7;
+  private static final byte PHOTO_PIZZA = 8;
+  private static final byte TYPE_PIZZA = 9;
+  private static final byte CLIENT_INSCRIT = 10;
+  private static final byte COMMANDE_CREEE = 11;
+  private static final byte PIZZA_AJOUTEE_COMMANDE = 12;
+  private static final byte PIZZA_RETIREE_COMMANDE = 13;
+  private static final byte ETAT_COMMANDE = 14;
+  private static final byte COMMANDE_RETIREE = 15;
+  private static final byte EVALUATION = 16;
+  private static final byte TARIFS = 17;
+  private static final byte LIGNES_COMMANDE = 18;
+  
+  /**
+   * Flux d'écriture en fin de journal.
+   */
+  private final DataOutputStream out;
+  
+  /**
+   * Fichier du journal (null pour un journal écrit en mémoire).
+   */
+  private final File fichier;
+  
+  /**
+   * Première erreur d'écriture rencontrée (le journal n'est alors plus
+   * alimenté jusqu'au prochain instantané).
+   */
+  private IOException erreur;
+  
+  /**
+   * Écouteur prévenu de la première erreur d'écriture.
+   */
+  private SauvegardeAsynchrone.Ecouteur ecouteur =
+      new SauvegardeAsynchrone.Ecouteur() {
+      };
+  
+  /**
+   * Nombre d'enregistrements écrits depuis l'ouverture.
+   */
+  private int nbEnregistrements;
+  
+  /**
+   * Ouvre un journal existant et valide en écriture, à la suite des
+   * enregistrements déjà présents.
+   */
+  private JournalModifications(File fichier) throws IOException {
+    out = new DataOutputStream(
+        new BufferedOutputStream(new FileOutputStream(fichier, true)));
+    this.fichier = fichier;
+  }
+  
+  /**
+   * Construit un journal écrivant ses enregistrements (sans entête) dans un
+   * flux, pour préparer des enregistrements à recopier dans un journal.
+   *
+   * @param flux le flux de destination
+   */
+  JournalModifications(OutputStream flux) {
+    out = new DataOutputStream(flux);
+    this.fichier = null;
+  }
+  
+  /**
+   * Crée un nouveau journal vide pour l'instantané donné, en remplaçant
+   * l'éventuel journal existant.
+   *
+   * @param fichier le fichier du journal
+   * @param instantane le fichier de l'instantané auquel le journal s'applique
+   * @return le journal ouvert en écriture
+   * @throws IOException en cas de problème d'écriture
+   */
+  public static JournalModifications creer(File fichier, File instantane)
+      throws IOException {
+    return creer(fichier, instantane, new byte[0]);
+  }
+  
+  /**
+   * Crée un nouveau journal pour l'instantané donné, commençant par des
+   * enregistrements déjà préparés, en remplaçant l'éventuel journal existant.
+   *
+   * @param fichier le fichier du journal
+   * @param instantane le fichier de l'instantané auquel le journal s'applique
+   * @param enregistrements les enregistrements à placer après l'entête
+   * @return le journal ouvert en écriture
+   * @throws IOException en cas de problème d'écriture
+   */
+  public static JournalModifications creer(File fichier, File instantane,
+      byte[] enregistrements) throws IOException {
+    try (DataOutputStream entete = new DataOutputStream(
+        new BufferedOutputStream(new FileOutputStream(fichier)))) {
+      entete.writeInt(MAGIQUE);
+      entete.writeInt(VERSION);
+      entete.writeLong(identifiantDe(instantane));
+      entete.write(enregistrements);
+    }
+    return new JournalModifications(fichier);
+  }
+  
+  /**
+   * Lit les enregistrements écrits dans un journal à partir d'une position
+   * obtenue par {@link #marquer()}.
+   *
+   * @param fichier le fichier du journal
+   * @param position la position de départ
+   * @return les octets des enregistrements suivants
+   * @throws IOException en cas de problème de lecture
+   */
+  public static byte[] lireSuite(File fichier, long position)
+      throws IOException {
+    try (RandomAccessFile raf = new RandomAccessFile(fichier, "r")) {
+      byte[] suite = new byte[(int) Math.max(0, raf.length() - position)];
+      raf.seek(position);
+      raf.readFully(suite);
+      return suite;
+    }
+  }
+  
+  /**
+   * Ouvre le journal de l'instantané donné en écriture : à la suite du
+   * journal existant, ou dans un nouveau journal s'il n'existe pas. Un
+   * journal existant d'un autre instantané n'est pas écrasé : ses
+   * modifications ne sont peut-être dans aucune sauvegarde.
+   *
+   * @param fichier le fichier du journal
+   * @param instantane le fichier de l'instantané auquel le journal s'applique
+   * @return le journal ouvert en écriture
+   * @throws IOException en cas de problème d'écriture, ou si le journal
+   *         existant ne s'applique pas à cet instantané
+   */
+  public static JournalModifications ouvrir(File fichier, File instantane)
+      throws IOException {
+    if (estValide(fichier, instantane)) {
+      return new JournalModifications(fichier);
+    }
+    if (fichier.exists()) {
+      throw new IOException("Journal d'un autre instantané : " + fichier);
+    }
+    return creer(fichier, instantane);
+  }
+  
+  /**
+   * Indique si le journal existe et s'applique bien à cet instantané.
+   */
+  static boolean estValide(File fichier, File instantane)
+      throws IOException {
+    if (!fichier.isFile()) {
+      return false;
+    }
+    try (DataInputStream in = new DataInputStream(
+        new BufferedInputStream(new FileInputStream(fichier)))) {
+      return lireEntete(in, instantane);
+    } catch (EOFException e) {
+      return false;
+    }
+  }
+  
+  /**
+   * Lit l'entête du journal et le compare à l'instantané.
+   */
+  private static boolean lireEntete(DataInputStream in, File instantane)
+      throws IOException {
+    return in.readInt() == MAGIQUE && in.readInt() == VERSION
+        && in.readLong() == identifiantDe(instantane);
+  }
+  
+  /**
+   * Retourne l'identifiant d'un instantané : son numéro de génération s'il
+   * commence par {@link #PREFIXE_GENERATION}, sinon la somme de contrôle de
+   * son contenu (0 si le fichier n'existe pas).
+   */
+  static long identifiantDe(File instantane) throws IOException {
+    if (!instantane.isFile()) {
+      return 0;
+    }
+    try (InputStream in = new BufferedInputStream(
+        new FileInputStream(instantane))) {
+      byte[] prefixe = PREFIXE_GENERATION.getBytes(StandardCharsets.UTF_8);
+      byte[] debut = in.readNBytes(prefixe.length + 16);
+      int fin = prefixe.length;
+      while (fin < debut.length && Character.digit(debut[fin], 16) >= 0) {
+        fin++;
+      }
+      if (fin > prefixe.length && Arrays.equals(debut, 0, prefixe.length,
+          prefixe, 0, prefixe.length)) {
+        return Long.parseUnsignedLong(new String(debut, prefixe.length,
+            fin - prefixe.length, StandardCharsets.US_ASCII), 16);
+      }
+      CRC32 somme = new CRC32();
+      somme.update(debut);
+      byte[] tampon = new byte[8192];
+      int lus;
+      while ((lus = in.read(tampon)) > 0) {
+        somme.update(tampon, 0, lus);
+      }
+      return somme.getValue();
+    }
+  }
+  
+  /**
+   * Rejoue sur le gestionnaire les modifications du journal qui suivent
+   * l'instantané (déjà chargé). Les notifications sont suspendues pendant la
+   * relecture. Un enregistrement incomplet en fin de journal est supprimé.
+   *
+   * @param fichier le fichier du journal
+   * @param instantane le fichier de l'instantané auquel le journal s'applique
+   * @param gestionnaire le gestionnaire sur lequel rejouer les modifications
+   * @return le nombre d'enregistrements rejoués (0 si le journal est absent
+   *         ou périmé)
+   * @throws IOException si le journal est illisible
+   */
+  public static int rejouer(File fichier, File instantane,
+      GestPizzaiolo gestionnaire) throws IOException {
+    if (!estValide(fichier, instantane)) {
+      return 0;
+    }
+    Map<Integer, Commande> commandes = new HashMap<>();
+    int nombre = 0;
+    long finValide;
+    Observateurs.suspendre();
+    try (CompteurOctets compteur = new CompteurOctets(
+        new BufferedInputStream(new FileInputStream(fichier)))) {
+      DataInputStream in = new DataInputStream(compteur);
+      lireEntete(in, instantane);
+      finValide = compteur.lus;
+      while (true) {
+        int code = in.read();
+        if (code < 0) {
+          break;
+        }
+        try {
+          rejouerEnregistrement((byte) code, in, gestionnaire, commandes);
+        } catch (EOFException e) {
+          // Enregistrement tronqué : arrêt brutal pendant son écriture
+          break;
+        }
+        finValide = compteur.lus;
+        nombre++;
+      }
+    } finally {
+      Observateurs.reprendre();
+    }
+    if (finValide < fichier.length()) {
+      try (RandomAccessFile raf = new RandomAccessFile(fichier, "rw")) {
+        raf.setLength(finValide);
+      }
+    }
+    return nombre;
+  }
+  
+  /**
+   * Lit un enregistrement et applique la modification correspondante.
+   */
+  private static void rejouerEnregistrement(byte code, DataInputStream in,
+      GestPizzaiolo gest, Map<Integer, Commande> commandes)
+      throws IOException {
+    switch (code) {
+      case INGREDIENT_CREE: {
+        String nom = in.readUTF();
+        gest.creerIngredient(nom, in.readDouble());
+        break;
+      }
+      case PRIX_INGREDIENT: {
+        Ingredient ing = gest.getIngredientParNom(in.readUTF());
+        double prix = in.readDouble();
+        if (ing != null) {
+          ing.setPrix(prix);
+        }
+        break;
+      }
+      case INTERDICTION: {
+        String nom = in.readUTF();
+        TypePizza type = TypePizza.values()[in.readByte()];
+        boolean interdit = in.readBoolean();
+        Ingredient ing = gest.getIngredientParNom(nom);
+        if (ing != null && gest.estIngredientInterdit(type, ing) != interdit) {
+          gest.interdireIngredient(nom, type);
+        }
+        break;
+      }
+      case PIZZA_CREEE: {
+        String nom = in.readUTF();
+        gest.creerPizza(nom, TypePizza.values()[in.readByte()]);
+        break;
+      }
+      case INGREDIENT_AJOUTE:
+      case INGREDIENT_RETIRE: {
+        Pizza p = gest.getPizzaParNom(in.readUTF());
+        Ingredient ing = gest.getIngredientParNom(in.readUTF());
+        if (p != null && ing != null) {
+          if (code == INGREDIENT_AJOUTE) {
+            p.ajouterIngredient(ing);
+          } else {
+            p.retirerIngredient(ing);
+          }
+        }
+        break;
+      }
+      case PRIX_PIZZA: {
+        Pizza p = gest.getPizzaParNom(in.readUTF());
+        double prix = in.readDouble();
+        if (p != null) {
+          p.setPrix(prix);
+        }
+        break;
+      }
+      case PHOTO_PIZZA: {
+        Pizza p = gest.getPizzaParNom(in.readUTF());
+        String photo = lireTexte(in);
+        if (p != null) {
+          p.setPhoto(photo);
+        }
+        break;
+      }
+      case TYPE_PIZZA: {
+        Pizza p = gest.getPizzaParNom(in.readUTF());
+        TypePizza type = TypePizza.values()[in.readByte()];
+        if (p != null) {
+          p.setType(type);
+        }
+        break;
+      }
+      case CLIENT_INSCRIT: {
+        String email = in.readUTF();
+        String mdp = in.readUTF();
+        InformationPersonnelle info = new InformationPersonnelle(lireTexte(in),
+            lireTexte(in), lireTexte(in), in.readInt());
+        Compte.inscription(email, mdp, info);
+        break;
+      }
+      case COMMANDE_CREEE: {
+        int id = in.readInt();
+        Client client = Compte.getClientParEmail(in.readUTF());
+        // Une commande déjà archivée par une sauvegarde interrompue n'est
+        // pas recréée (ses enregistrements suivants sont ignorés)
+        if (client != null && client.getCommandes(id) == null) {
+          commandes.put(id, client.restaurerCommande(id));
+        }
+        break;
+      }
+      case PIZZA_AJOUTEE_COMMANDE:
+      case PIZZA_RETIREE_COMMANDE: {
+        Commande cmd = commandes.get(in.readInt());
+        Pizza p = gest.getPizzaParNom(in.readUTF());
+        if (cmd != null && p != null) {
+          if (code == PIZZA_AJOUTEE_COMMANDE) {
+            cmd.ajouterPizza(p);
+          } else {
+            cmd.retirerPizza(p);
+          }
+        }
+        break;
+      }
+      case ETAT_COMMANDE: {
+        Commande cmd = commandes.get(in.readInt());
+        EtatCommande etat = EtatCommande.values()[in.readByte()];
+        if (cmd != null) {
+          cmd.setEtat(etat);
+        }
+        break;
+      }
+      case COMMANDE_RETIREE: {
+        Commande cmd = commandes.remove(in.readInt());
+        if (cmd != null) {
+          cmd.getClient().retirerCommande(cmd);
+        }
+        break;
+      }
+      case EVALUATION: {
+        Pizza p = gest.getPizzaParNom(in.readUTF());
+        Client client = Compte.getClientParEmail(in.readUTF());
+        int note = in.readByte();
+        String commentaire = lireTexte(in);
+        if (p != null && client != null) {
+          // Comme au chargement : sans passer par le client connecté
+          p.getEvaluations().add(new Evaluation(note, commentaire, client));
+        }
+        break;
+      }
+      case LIGNES_COMMANDE: {
+        Commande cmd = commandes.get(in.readInt());
+        int nb = in.readInt();
+        for (int i = 0; i < nb; i++) {
+          Pizza p = gest.getPizzaParNom(in.readUTF());
+          long prix = in.readLong();
+          long cout = in.readLong();
+          if (cmd != null && p != null) {
+            cmd.restaurerPrix(p, prix, cout);
+          }
+        }
+        break;
+      }
+      case TARIFS: {
+        Map<String, Double> prix = new LinkedHashMap<>();
+        int nb = in.readInt();
+        for (int i = 0; i < nb; i++) {
+          String nom = in.readUTF();
+          double valeur = in.readDouble();
+          if (gest.getIngredientParNom(nom) != null) {
+            prix.put(nom, valeur);
+          }
+        }
+        Map<Pizza, Double> ajustes = new LinkedHashMap<>();
+        nb = in.readInt();
+        for (int i = 0; i < nb; i++) {
+          Pizza p = gest.getPizzaParNom(in.readUTF());
+          double valeur = in.readDouble();
+          if (p != null) {
+            ajustes.put(p, valeur);
+          }
+        }
+        // Appliqué seulement une fois l'enregistrement lu en entier
+        gest.changerPrixIngredients(prix, false);
+        for (Map.Entry<Pizza, Double> e : ajustes.entrySet()) {
+          e.getKey().setPrix(e.getValue());
+        }
+        break;
+      }
+      default:
+        throw new IOException("Journal corrompu : code d'opération " + code);
+    }
+  }
+  
+  /**
+   * Fixe l'écouteur prévenu (par {@link SauvegardeAsynchrone.Ecouteur#echec})
+   * de la première erreur d'écriture. Il est appelé sur le thread qui
+   * modifie les données, pendant la notification de la modification.
+   *
+   * @param ecouteur l'écouteur
+   */
+  public synchronized void setEcouteur(SauvegardeAsynchrone.Ecouteur ecouteur) {
+    this.ecouteur = ecouteur;
+  }
+  
+  /**
+   * Indique si une écriture dans le journal a échoué depuis son ouverture.
+   *
+   * @return l'erreur rencontrée, ou null si le journal est à jour
+   */
+  public synchronized IOException getErreur() {
+    return erreur;
+  }
+  
+  /**
+   * Transmet au système les enregistrements en attente et retourne la
+   * position de fin du journal.
+   *
+   * @return la taille du journal, ou -1 pour un journal en mémoire
+   * @throws IOException en cas de problème d'écriture
+   */
+  public synchronized long marquer() throws IOException {
+    out.flush();
+    return fichier != null ? fichier.length() : -1;
+  }
+  
+  /**
+   * Retourne le nombre d'enregistrements écrits depuis l'ouverture du
+   * journal.
+   *
+   * @return le nombre d'enregistrements
+   */
+  public synchronized int getNbEnregistrements() {
+    return nbEnregistrements;
+  }
+  
+  /**
+   * Retourne la taille du fichier du journal (les enregistrements sont
+   * transmis au système dès leur écriture).
+   *
+   * @return la taille en octets, ou -1 pour un journal en mémoire
+   */
+  public synchronized long getTaille() {
+    return fichier != null ? fichier.length() : -1;
+  }
+  
+  @Override
+  public synchronized void close() throws IOException {
+    out.close();
+  }
+  
+  @Override
+  public synchronized void ingredientCree(Ingredient ingredient) {
+    try {
+      debuter(INGREDIENT_CREE);
+      out.writeUTF(ingredient.getNom());
+      out.writeDouble(ingredient.getPrix());
+      terminer();
+    } catch (IOException e) {
+      echec(e);
+    }
+  }
+  
+  @Override
+  public synchronized void prixIngredientModifie(Ingredient ingredient) {
+    try {
+      debuter(PRIX_INGREDIENT);
+      out.writeUTF(ingredient.getNom());
+      out.writeDouble(ingredient.getPrix());
+      terminer();
+    } catch (IOException e) {
+      echec(e);
+    }
+  }
+  
+  /**
+   * Les prix du tarif sont écrits dans un seul enregistrement.
+   */
+  @Override
+  public synchronized void tarifsModifies(List<Ingredient> ingredients,
+      List<Pizza> pizzas) {
+    try {
+      debuter(TARIFS);
+      out.writeInt(ingredients.size());
+      for (Ingredient ingredient : ingredients) {
+        out.writeUTF(ingredient.getNom());
+        out.writeDouble(ingredient.getPrix());
+      }
+      out.writeInt(pizzas.size());
+      for (Pizza pizza : pizzas) {
+        out.writeUTF(pizza.getNom());
+        out.writeDouble(pizza.getPrix());
+      }
+      terminer();
+    } catch (IOException e) {
+      echec(e);
+    }
+  }
+  
+  @Override
+  public synchronized void interdictionModifiee(Ingredient ingredient,
+      TypePizza type, boolean interdit) {
+    try {
+      debuter(INTERDICTION);
+      out.writeUTF(ingredient.getNom());
+      out.writeByte(type.ordinal());
+      out.writeBoolean(interdit);
+      terminer();
+    } catch (IOException e) {
+      echec(e);
+    }
+  }
+  
+  @Override
+  public synchronized void pizzaCreee(Pizza pizza) {
+    try {
+      debuter(PIZZA_CREEE);
+      out.writeUTF(pizza.getNom());
+      out.writeByte(pizza.getType().ordinal());
+      terminer();
+    } catch (IOException e) {
+      echec(e);
+    }
+  }
+  
+  @Override
+  public synchronized void ingredientAjoute(Pizza pizza,
+      Ingredient ingredient) {
+    ecrireIngredientPizza(INGREDIENT_AJOUTE, pizza, ingredient);
+  }
+  
+  @Override
+  public synchronized void ingredientRetire(Pizza pizza,
+      Ingredient ingredient) {
+    ecrireIngredientPizza(INGREDIENT_RETIRE, pizza, ingredient);
+  }
+  
+  private void ecrireIngredientPizza(byte code, Pizza pizza,
+      Ingredient ingredient) {
+    try {
+      debuter(code);
+      out.writeUTF(pizza.getNom());
+      out.writeUTF(ingredient.getNom());
+      terminer();
+    } catch (IOException e) {
+      echec(e);
+    }
+  }
+  
+  @Override
+  public synchronized void prixPizzaModifie(Pizza pizza) {
+    try {
+      debuter(PRIX_PIZZA);
+      out.writeUTF(pizza.getNom());
+      out.writeDouble(pizza.getPrix());
+      terminer();
+    } catch (IOException e) {
+      echec(e);
+    }
+  }
+  
+  @Override
+  public synchronized void photoPizzaModifiee(Pizza pizza) {
+    try {
+      debuter(PHOTO_PIZZA);
+      out.writeUTF(pizza.getNom());
+      ecrireTexte(out, pizza.getPhoto());
+      terminer();
+    } catch (IOException e) {
+      echec(e);
+    }
+  }
+  
+  @Override
+  public synchronized void typePizzaModifie(Pizza pizza) {
+    try {
+      debuter(TYPE_PIZZA);
+      out.writeUTF(pizza.getNom());
+      out.writeByte(pizza.getType().ordinal());
+      terminer();
+    } catch (IOException e) {
+      echec(e);
+    }
+  }
+  
+  @Override
+  public synchronized void clientInscrit(Client client) {
+    Compte compte = client.getCompte();
+    try {
+      debuter(CLIENT_INSCRIT);
+      out.writeUTF(compte.getEmail());
+      out.writeUTF(compte.getMotDePasse());
+      ecrireTexte(out, compte.getNom());
+      ecrireTexte(out, compte.getPrenom());
+      ecrireTexte(out, compte.getAdresse());
+      out.writeInt(compte.getAge());
+      terminer();
+    } catch (IOException e) {
+      echec(e);
+    }
+  }
+  
+  @Override
+  public synchronized void commandeCreee(Commande commande) {
+    try {
+      debuter(COMMANDE_CREEE);
+      out.writeInt(commande.getIdCommande());
+      out.writeUTF(commande.getClient().getCompte().getEmail());
+      terminer();
+    } catch (IOException e) {
+      echec(e);
+    }
+  }
+  
+  @Override
+  public synchronized void pizzaAjouteeCommande(Commande commande,
+      Pizza pizza) {
+    ecrirePizzaCommande(PIZZA_AJOUTEE_COMMANDE, commande, pizza);
+  }
+  
+  @Override
+  public synchronized void pizzaRetireeCommande(Commande commande,
+      Pizza pizza) {
+    ecrirePizzaCommande(PIZZA_RETIREE_COMMANDE, commande, pizza);
+  }
+  
+  private void ecrirePizzaCommande(byte code, Commande commande,
+      Pizza pizza) {
+    try {
+      debuter(code);
+      out.writeInt(commande.getIdCommande());
+      out.writeUTF(pizza.getNom());
+      terminer();
+    } catch (IOException e) {
+      echec(e);
+    }
+  }
+  
+  @Override
+  public synchronized void etatCommandeModifie(Commande commande,
+      EtatCommande ancienEtat) {
+    try {
+      debuter(ETAT_COMMANDE);
+      out.writeInt(commande.getIdCommande());
+      out.writeByte(commande.getEtat().ordinal());
+      terminer();
+    } catch (IOException e) {
+      echec(e);
+    }
+  }
+  
+  /**
+   * Enregistre les prix figés d'une commande validée, pour qu'elle les
+   * retrouve au rejeu au lieu d'être figée aux prix du moment. N'est pas une
+   * notification : sert à recréer les commandes en cours après une
+   * sauvegarde complète.
+   *
+   * @param commande une commande validée
+   */
+  public synchronized void lignesCommande(Commande commande) {
+    try {
+      debuter(LIGNES_COMMANDE);
+      out.writeInt(commande.getIdCommande());
+      List<LigneCommande> lignes = commande.getLignes();
+      out.writeInt(lignes.size());
+      for (LigneCommande ligne : lignes) {
+        out.writeUTF(ligne.getPizza().getNom());
+        out.writeLong(ligne.getPrixUnitaireCentimes());
+        out.writeLong(ligne.getCoutUnitaireCentimes());
+      }
+      terminer();
+    } catch (IOException e) {
+      echec(e);
+    }
+  }
+  
+  @Override
+  public synchronized void commandeRetiree(Commande commande) {
+    try {
+      debuter(COMMANDE_RETIREE);
+      out.writeInt(commande.getIdCommande());
+      terminer();
+    } catch (IOException e) {
+      echec(e);
+    }
+  }
+  
+  @Override
+  public synchronized void evaluationAjoutee(Pizza pizza,
+      Evaluation evaluation) {
+    try {
+      debuter(EVALUATION);
+      out.writeUTF(pizza.getNom());
+      out.writeUTF(evaluation.getAuteur().getCompte().getEmail());
+      out.writeByte(evaluation.getNote());
+      ecrireTexte(out, evaluation.getCommentaire());
+      terminer();
+    } catch (IOException e) {
+      echec(e);
+    }
+  }
+  
+  /**
+   * Débute un enregistrement par son code d'opération (refusé après une
+   * erreur d'écriture).
+   */
+  private void debuter(byte code) throws IOException {
+    if (erreur != null) {
+      throw erreur;
+    }
+    out.writeByte(code);
+  }
+  
+  /**
+   * Termine un enregistrement : il est transmis au système dès maintenant
+   * pour survivre à un arrêt de l'application.
+   */
+  private void terminer() throws IOException {
+    out.flush();
+    nbEnregistrements++;
+  }
+  
+  /**
+   * Mémorise une erreur d'écriture et prévient l'écouteur ; les
+   * enregistrements suivants ne sont plus fiables.
+   */
+  private void echec(IOException e) {
+    if (erreur == null) {
+      erreur = e;
+      ecouteur.echec(e);
+    }
+  }
+  
+  /**
+   * Écrit une chaîne pouvant être null.
+   */
+  private static void ecrireTexte(DataOutputStream out, String texte)
+      throws IOException {
+    out.writeBoolean(texte != null);
+    if (texte != null) {
+      out.writeUTF(texte);
+    }
+  }
+  
+  /**
+   * Lit une chaîne écrite par {@link #ecrireTexte}.
+   */
+  private static String lireTexte(DataInputStream in) throws IOException {
+    return in.readBoolean() ? in.readUTF() : null;
+  }
+  
+  /**
+   * Flux comptant les octets lus, pour connaître la fin du dernier
+   * enregistrement complet.
+   */
+  private static class CompteurOctets extends FilterInputStream {
+    
+    private long lus;
+    
+    CompteurOctets(InputStream in) {
+      super(in);
+    }
+    
+    @Override
+    public int read() throws IOException {
+      int b = super.read();
+      if (b >= 0) {
+        lus++;
+      }
+      return b;
+    }
+    
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+      int n = super.read(b, off, len);
+      if (n > 0) {
+        lus += n;
+      }
+      return n;
+    }
+    
+    @Override
+    public long skip(long n) throws IOException {
+      long s = super.skip(n);
+      lus += s;
+      return s;
+    }
+  }
+}
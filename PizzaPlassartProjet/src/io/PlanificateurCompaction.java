@@ -0,0 +1,227 @@
+package io;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Compaction automatique d'une sauvegarde journalisée.
+ *
+ * <p>Un thread de surveillance vérifie périodiquement la taille et le nombre
+ * d'enregistrements du journal. Au-delà d'un des seuils, une sauvegarde
+ * complète est demandée au service de sauvegarde en arrière-plan : le nouvel
+ * instantané et le nouveau journal remplacent ensemble les anciens fichiers.
+ * Le journal à rejouer au démarrage reste ainsi borné par les seuils, quelle
+ * que soit l'ancienneté de la pizzeria.
+ *
+ * <p>Les échecs, de la compaction comme de la surveillance, sont transmis à
+ * l'écouteur ({@link #setEcouteur}) sur le thread de l'exécuteur de rappel.
+ *
+ * @author Kevin SIDER
+ * @version 1.0
+ * @see SauvegardeAsynchrone
+ */
+public class PlanificateurCompaction {
+  
+  /**
+   * Taille du journal déclenchant une compaction par défaut (4 Mo).
+   */
+  public static final long SEUIL_OCTETS_DEFAUT = 4L * 1024 * 1024;
+  
+  /**
+   * Nombre d'enregistrements déclenchant une compaction par défaut.
+   */
+  public static final int SEUIL_ENREGISTREMENTS_DEFAUT = 50_000;
+  
+  /**
+   * La sauvegarde journalisée surveillée.
+   */
+  private final SauvegardeJournalisee sauvegarde;
+  
+  /**
+   * Service écrivant les instantanés.
+   */
+  private final SauvegardeAsynchrone asynchrone;
+  
+  /**
+   * Exécuteur sur le thread qui modifie les données.
+   */
+  private final Executor rappel;
+  
+  /**
+   * Thread de surveillance du journal.
+   */
+  private final ScheduledExecutorService surveillance =
+      Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "compaction");
+        t.setDaemon(true);
+        return t;
+      });
+  
+  private volatile long seuilOctets = SEUIL_OCTETS_DEFAUT;
+  private volatile int seuilEnregistrements = SEUIL_ENREGISTREMENTS_DEFAUT;
+  
+  /**
+   * Indique si une compaction est demandée et pas encore terminée.
+   */
+  private final AtomicBoolean enCours = new AtomicBoolean();
+  
+  private volatile int nbCompactions;
+  
+  /**
+   * Vrai quand l'échec de la dernière vérification a été signalé : une
+   * erreur persistante n'est signalée qu'une fois.
+   */
+  private volatile boolean surveillanceEnEchec;
+  
+  private volatile SauvegardeAsynchrone.Ecouteur ecouteur =
+      new SauvegardeAsynchrone.Ecouteur() {
+      };
+  
+  /**
+   * Déroulement des compactions, transmis à l'écouteur.
+   */
+  private final SauvegardeAsynchrone.Ecouteur fin =
+      new SauvegardeAsynchrone.Ecouteur() {
+        @Override
+        public void progression(double avancement) {
+          ecouteur.progression(avancement);
+        }
+        
+        @Override
+        public void terminee() {
+          nbCompactions++;
+          enCours.set(false);
+          ecouteur.terminee();
+        }
+        
+        @Override
+        public void echec(Exception e) {
+          enCours.set(false);
+          ecouteur.echec(e);
+        }
+      };
+  
+  /**
+   * Construit un planificateur de compaction.
+   *
+   * @param sauvegarde la sauvegarde journalisée surveillée
+   * @param asynchrone le service écrivant ses instantanés (partagé avec les
+   *        sauvegardes demandées par l'utilisateur, qui sont alors
+   *        regroupées avec les compactions)
+   * @param rappel l'exécuteur sur le thread qui modifie les données (par
+   *        exemple {@code Platform::runLater})
+   */
+  public PlanificateurCompaction(SauvegardeJournalisee sauvegarde,
+      SauvegardeAsynchrone asynchrone, Executor rappel) {
+    this.sauvegarde = sauvegarde;
+    this.asynchrone = asynchrone;
+    this.rappel = rappel;
+  }
+  
+  /**
+   * Fixe les seuils de déclenchement d'une compaction.
+   *
+   * @param octets la taille maximale du journal
+   * @param enregistrements le nombre maximal d'enregistrements du journal
+   */
+  public void setSeuils(long octets, int enregistrements) {
+    if (octets <= 0 || enregistrements <= 0) {
+      throw new IllegalArgumentException("Seuils invalides : " + octets
+          + ", " + enregistrements);
+    }
+    seuilOctets = octets;
+    seuilEnregistrements = enregistrements;
+  }
+  
+  /**
+   * Retourne la taille du journal déclenchant une compaction.
+   *
+   * @return le seuil en octets
+   */
+  public long getSeuilOctets() {
+    return seuilOctets;
+  }
+  
+  /**
+   * Retourne le nombre d'enregistrements déclenchant une compaction.
+   *
+   * @return le seuil en enregistrements
+   */
+  public int getSeuilEnregistrements() {
+    return seuilEnregistrements;
+  }
+  
+  /**
+   * Fixe l'écouteur des compactions, appelé par l'exécuteur de rappel.
+   *
+   * @param ecouteur l'écouteur
+   */
+  public void setEcouteur(SauvegardeAsynchrone.Ecouteur ecouteur) {
+    this.ecouteur = ecouteur;
+  }
+  
+  /**
+   * Retourne le nombre de compactions terminées.
+   *
+   * @return le nombre de compactions
+   */
+  public int getNbCompactions() {
+    return nbCompactions;
+  }
+  
+  /**
+   * Démarre la surveillance du journal.
+   *
+   * @param periode l'intervalle entre deux vérifications
+   * @param unite l'unité de l'intervalle
+   */
+  public void demarrer(long periode, TimeUnit unite) {
+    surveillance.scheduleWithFixedDelay(() -> {
+      try {
+        verifier();
+        surveillanceEnEchec = false;
+      } catch (RuntimeException e) {
+        // Une erreur ne doit pas arrêter la surveillance
+        if (!surveillanceEnEchec) {
+          surveillanceEnEchec = true;
+          rappel.execute(() -> ecouteur.echec(e));
+        }
+      }
+    }, periode, periode, unite);
+  }
+  
+  /**
+   * Arrête la surveillance (une compaction en cours se termine).
+   */
+  public void arreter() {
+    surveillance.shutdownNow();
+  }
+  
+  /**
+   * Indique si le journal dépasse un des seuils.
+   *
+   * @return true si une compaction est nécessaire
+   */
+  public boolean estNecessaire() {
+    return sauvegarde.getTailleJournal() >= seuilOctets
+        || sauvegarde.getNbEnregistrementsJournal() >= seuilEnregistrements;
+  }
+  
+  /**
+   * Demande une compaction si le journal dépasse un des seuils et qu'aucune
+   * n'est en cours (appelée périodiquement par le thread de surveillance,
+   * peut être appelée sur n'importe quel thread).
+   *
+   * @return true si une compaction a été demandée
+   */
+  public boolean verifier() {
+    if (!estNecessaire() || !enCours.compareAndSet(false, true)) {
+      return false;
+    }
+    rappel.execute(() -> asynchrone.demanderSauvegarde(fin));
+    return true;
+  }
+}
@@ -0,0 +1,220 @@
+package io;
+
+import io.SauvegardeJournalisee.PointDeControle;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Service de sauvegarde complète en arrière-plan.
+ *
+ * <p>Une demande de sauvegarde copie l'état des données sur le thread
+ * appelant (celui de l'interface), puis l'écriture se fait sur un thread
+ * dédié. L'avancement et la fin de la sauvegarde sont signalés à l'écouteur
+ * par l'exécuteur de rappel (par exemple {@code Platform::runLater}). Les
+ * demandes faites pendant une sauvegarde sont regroupées en une seule
+ * sauvegarde, lancée à la fin de celle en cours.
+ *
+ * @author Kevin SIDER
+ * @version 1.0
+ */
+public class SauvegardeAsynchrone {
+  
+  /**
+   * Écouteur du déroulement des sauvegardes. Ses méthodes sont appelées par
+   * l'exécuteur de rappel.
+   */
+  public interface Ecouteur {
+    
+    /**
+     * Avancement de l'écriture de la sauvegarde en cours.
+     *
+     * @param avancement l'avancement entre 0 et 1
+     */
+    default void progression(double avancement) {
+    }
+    
+    /**
+     * La sauvegarde est terminée.
+     */
+    default void terminee() {
+    }
+    
+    /**
+     * La sauvegarde a échoué.
+     *
+     * @param e l'erreur rencontrée
+     */
+    default void echec(Exception e) {
+    }
+  }
+  
+  /**
+   * La sauvegarde journalisée utilisée.
+   */
+  private final SauvegardeJournalisee sauvegarde;
+  
+  /**
+   * Le fichier de l'instantané.
+   */
+  private final String nomFichier;
+  
+  /**
+   * Exécuteur des rappels, sur le thread qui modifie les données.
+   */
+  private final Executor rappel;
+  
+  /**
+   * Thread d'écriture des sauvegardes.
+   */
+  private final ExecutorService ecriture = Executors.newSingleThreadExecutor(
+      r -> {
+        Thread t = new Thread(r, "sauvegarde");
+        t.setDaemon(true);
+        return t;
+      });
+  
+  private Ecouteur ecouteur = new Ecouteur() {
+  };
+  
+  /**
+   * Indique si une sauvegarde est en cours d'écriture.
+   */
+  private boolean enCours;
+  
+  /**
+   * Écouteurs des demandes faites pendant la sauvegarde en cours (vide si
+   * aucune sauvegarde n'est en attente).
+   */
+  private final Set<Ecouteur> enAttente = new LinkedHashSet<>();
+  
+  /**
+   * Construit un service de sauvegarde en arrière-plan.
+   *
+   * @param sauvegarde la sauvegarde journalisée (instantané au format texte)
+   * @param nomFichier le fichier de l'instantané
+   * @param rappel l'exécuteur des rappels, sur le thread qui modifie les
+   *        données
+   */
+  public SauvegardeAsynchrone(SauvegardeJournalisee sauvegarde,
+      String nomFichier, Executor rappel) {
+    this.sauvegarde = sauvegarde;
+    this.nomFichier = nomFichier;
+    this.rappel = rappel;
+  }
+  
+  /**
+   * Fixe l'écouteur du déroulement des sauvegardes.
+   *
+   * @param ecouteur l'écouteur
+   */
+  public synchronized void setEcouteur(Ecouteur ecouteur) {
+    this.ecouteur = ecouteur;
+  }
+  
+  /**
+   * Demande une sauvegarde. Elle démarre tout de suite si aucune n'est en
+   * cours, sinon elle est regroupée avec les autres demandes et faite après
+   * celle en cours. Doit être appelée sur le thread qui modifie les données.
+   *
+   * @return true si la sauvegarde a démarré, false si elle a été regroupée
+   */
+  public synchronized boolean demanderSauvegarde() {
+    return demanderSauvegarde(ecouteur);
+  }
+  
+  /**
+   * Demande une sauvegarde dont le déroulement est signalé à un écouteur
+   * particulier plutôt qu'à celui du service (par exemple pour une
+   * sauvegarde automatique). Doit être appelée sur le thread qui modifie les
+   * données.
+   *
+   * @param ecouteurDemande l'écouteur de cette sauvegarde
+   * @return true si la sauvegarde a démarré, false si elle a été regroupée
+   */
+  public synchronized boolean demanderSauvegarde(Ecouteur ecouteurDemande) {
+    if (enCours) {
+      enAttente.add(ecouteurDemande);
+      return false;
+    }
+    Set<Ecouteur> ecouteurs = new LinkedHashSet<>();
+    ecouteurs.add(ecouteurDemande);
+    lancer(ecouteurs);
+    return true;
+  }
+  
+  /**
+   * Indique si une sauvegarde est en cours.
+   *
+   * @return true si une sauvegarde est en cours d'écriture
+   */
+  public synchronized boolean estEnCours() {
+    return enCours;
+  }
+  
+  /**
+   * Arrête le thread d'écriture après la sauvegarde en cours.
+   */
+  public void arreter() {
+    ecriture.shutdown();
+  }
+  
+  /**
+   * Copie l'état puis confie l'écriture au thread de sauvegarde.
+   */
+  private void lancer(Set<Ecouteur> ecouteurs) {
+    PointDeControle point;
+    try {
+      point = sauvegarde.preparerPointDeControle(nomFichier);
+    } catch (Exception e) {
+      for (Ecouteur courant : ecouteurs) {
+        courant.echec(e);
+      }
+      return;
+    }
+    enCours = true;
+    ecriture.execute(() -> {
+      try {
+        point.ecrire(avancement -> rappel.execute(() -> {
+          for (Ecouteur courant : ecouteurs) {
+            courant.progression(avancement);
+          }
+        }));
+        rappel.execute(() -> terminer(point, null, ecouteurs));
+      } catch (Exception e) {
+        point.abandonner();
+        rappel.execute(() -> terminer(point, e, ecouteurs));
+      }
+    });
+  }
+  
+  /**
+   * Valide la sauvegarde écrite, prévient l'écouteur et lance la sauvegarde
+   * regroupée éventuelle.
+   */
+  private synchronized void terminer(PointDeControle point, Exception erreur,
+      Set<Ecouteur> ecouteurs) {
+    enCours = false;
+    if (erreur == null) {
+      try {
+        sauvegarde.validerPointDeControle(point);
+      } catch (Exception e) {
+        erreur = e;
+      }
+    }
+    for (Ecouteur courant : ecouteurs) {
+      if (erreur == null) {
+        courant.terminee();
+      } else {
+        courant.echec(erreur);
+      }
+    }
+    if (!enAttente.isEmpty()) {
+      Set<Ecouteur> suivants = new LinkedHashSet<>(enAttente);
+      enAttente.clear();
+      lancer(suivants);
+    }
+  }
+}
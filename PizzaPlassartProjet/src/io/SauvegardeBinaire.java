@@ -0,0 +1,466 @@
+package io;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import pizzas.Client;
+import pizzas.Commande;
+import pizzas.Compte;
+import pizzas.EtatCommande;
+import pizzas.Evaluation;
+import pizzas.GestPizzaiolo;
+import pizzas.InformationPersonnelle;
+import pizzas.Ingredient;
+import pizzas.Observateurs;
+import pizzas.Pizza;
+import pizzas.TypePizza;
+
+/**
+ * Sauvegarde des données de l'application dans un fichier binaire versionné.
+ *
+ * <p>Le fichier commence par un entête (nombre magique puis version), suivi
+ * d'une table des chaînes dans laquelle chaque nom d'ingrédient, nom de pizza
+ * et email de client n'est stocké qu'une seule fois. Les sections suivantes
+ * (ingrédients, pizzas, clients, interdictions, commandes, évaluations) font
+ * référence à ces chaînes par leur indice dans la table, ce qui évite tout
+ * découpage de texte et toute conversion de nombre au chargement.
+ *
+ * <p>Le format texte de {@link GestionSauvegarde} reste le format d'échange ;
+ * {@link ConvertisseurSauvegarde} permet de passer de l'un à l'autre.
+ *
+ * @author Kevin SIDER
+ * @version 1.0
+ */
+public class SauvegardeBinaire implements InterSauvegarde {
+  
+  /**
+   * Nombre magique en tête de fichier ("PZPL").
+   */
+  public static final int MAGIQUE = 0x505A504C;
+  
+  /**
+   * Version courante du format binaire (2 : identifiant des commandes, 3 :
+   * prix figés des commandes).
+   */
+  public static final int VERSION = 3;
+  
+  /**
+   * Le gestionnaire métier.
+   */
+  private GestPizzaiolo gestionnaire;
+  
+  /**
+   * Construit une sauvegarde binaire liée à un gestionnaire de pizzaiolo.
+   *
+   * @param gestionnaire le gestionnaire principal de l'application
+   */
+  public SauvegardeBinaire(GestPizzaiolo gestionnaire) {
+    this.gestionnaire = gestionnaire;
+  }
+  
+  @Override
+  public void sauvegarderDonnees(String nomFichier) throws IOException {
+    List<Ingredient> ingredients = gestionnaire.getIngredients();
+    Set<Pizza> pizzas = gestionnaire.getPizzas();
+    List<Client> clients = new ArrayList<>(Compte.getTousLesClients());
+    List<Commande> commandes = gestionnaire.commandesDejaTraitees();
+    
+    // Table des chaînes : chaque nom n'est écrit qu'une seule fois
+    Map<String, Integer> table = new LinkedHashMap<>();
+    for (Ingredient ing : ingredients) {
+      indiceChaine(table, ing.getNom());
+    }
+    for (Pizza p : pizzas) {
+      indiceChaine(table, p.getNom());
+      for (Ingredient ing : p.getIngredients()) {
+        indiceChaine(table, ing.getNom());
+      }
+    }
+    for (Client c : clients) {
+      indiceChaine(table, c.getCompte().getEmail());
+    }
+    for (Commande c : commandes) {
+      indiceChaine(table, c.getClient().getCompte().getEmail());
+      for (Pizza p : c.getPizzas()) {
+        indiceChaine(table, p.getNom());
+      }
+    }
+    for (Pizza p : pizzas) {
+      for (Evaluation e : p.getEvaluations()) {
+        indiceChaine(table, e.getAuteur().getCompte().getEmail());
+      }
+    }
+    
+    try (DataOutputStream out = new DataOutputStream(
+        new BufferedOutputStream(new FileOutputStream(nomFichier)))) {
+      out.writeInt(MAGIQUE);
+      out.writeInt(VERSION);
+      
+      out.writeInt(table.size());
+      for (String s : table.keySet()) {
+        out.writeUTF(s);
+      }
+      
+      // 1. INGRÉDIENTS
+      out.writeInt(ingredients.size());
+      for (Ingredient ing : ingredients) {
+        out.writeInt(table.get(ing.getNom()));
+        out.writeDouble(ing.getPrix());
+      }
+      
+      // 2. PIZZAS
+      out.writeInt(pizzas.size());
+      for (Pizza p : pizzas) {
+        out.writeInt(table.get(p.getNom()));
+        out.writeByte(p.getType().ordinal());
+        out.writeDouble(p.getPrix());
+        ecrireTexte(out, p.getPhoto());
+        out.writeInt(p.getIngredients().size());
+        for (Ingredient ing : p.getIngredients()) {
+          out.writeInt(table.get(ing.getNom()));
+        }
+      }
+      
+      // 3. CLIENTS
+      out.writeInt(clients.size());
+      for (Client c : clients) {
+        Compte compte = c.getCompte();
+        out.writeInt(table.get(compte.getEmail()));
+        out.writeUTF(compte.getMotDePasse());
+        ecrireTexte(out, compte.getNom());
+        ecrireTexte(out, compte.getPrenom());
+        ecrireTexte(out, compte.getAdresse());
+        out.writeInt(compte.getAge());
+      }
+      
+      // 4. INTERDICTIONS
+      List<int[]> interdictions = new ArrayList<>();
+      for (TypePizza type : TypePizza.values()) {
+        for (Ingredient ing : ingredients) {
+          if (gestionnaire.estIngredientInterdit(type, ing)) {
+            interdictions.add(
+                new int[] {table.get(ing.getNom()), type.ordinal()});
+          }
+        }
+      }
+      out.writeInt(interdictions.size());
+      for (int[] interdiction : interdictions) {
+        out.writeInt(interdiction[0]);
+        out.writeByte(interdiction[1]);
+      }
+      
+      // 5. COMMANDES
+      out.writeInt(commandes.size());
+      for (Commande c : commandes) {
+        out.writeInt(table.get(c.getClient().getCompte().getEmail()));
+        out.writeByte(c.getEtat().ordinal());
+        out.writeInt(c.getIdCommande());
+        long[] prix = Instantane.prixFiges(c);
+        out.writeBoolean(prix != null);
+        out.writeInt(c.getPizzas().size());
+        for (int j = 0; j < c.getPizzas().size(); j++) {
+          out.writeInt(table.get(c.getPizzas().get(j).getNom()));
+          if (prix != null) {
+            out.writeLong(prix[2 * j]);
+            out.writeLong(prix[2 * j + 1]);
+          }
+        }
+      }
+      
+      // 6. EVALUATIONS
+      int nbEvaluations = 0;
+      for (Pizza p : pizzas) {
+        nbEvaluations += p.getEvaluations().size();
+      }
+      out.writeInt(nbEvaluations);
+      for (Pizza p : pizzas) {
+        for (Evaluation e : p.getEvaluations()) {
+          out.writeInt(table.get(p.getNom()));
+          out.writeInt(table.get(e.getAuteur().getCompte().getEmail()));
+          out.writeByte(e.getNote());
+          out.writeUTF(e.getCommentaire());
+        }
+      }
+    }
+  }
+  
+  @Override
+  public void chargerDonnees(String nomFichier) throws IOException {
+    // La reconstruction de l'état n'est pas une suite de modifications
+    Observateurs.suspendre();
+    try {
+      charger(nomFichier);
+    } finally {
+      Observateurs.reprendre();
+    }
+  }
+  
+  /**
+   * Charge le fichier, notifications suspendues.
+   */
+  private void charger(String nomFichier) throws IOException {
+    try (DataInputStream in = new DataInputStream(
+        new BufferedInputStream(new FileInputStream(nomFichier)))) {
+      String[] table = lireTable(in);
+      Compte.resetMemoire();
+      
+      // Pizzas et clients résolus, indexés comme la table des chaînes
+      Pizza[] pizzas = new Pizza[table.length];
+      Client[] clients = new Client[table.length];
+      
+      // Catalogue publié en une fois, après les interdictions
+      GestPizzaiolo.LotImport lot = gestionnaire.debuterImport();
+      
+      // 1. INGRÉDIENTS
+      int nb = in.readInt();
+      for (int i = 0; i < nb; i++) {
+        lot.creerIngredient(table[in.readInt()], in.readDouble());
+      }
+      
+      // 2. PIZZAS
+      nb = in.readInt();
+      for (int i = 0; i < nb; i++) {
+        int nom = in.readInt();
+        TypePizza type = TypePizza.values()[in.readByte()];
+        double prix = in.readDouble();
+        String photo = lireTexte(in);
+        int nbIngredients = in.readInt();
+        
+        Pizza p = lot.creerPizza(table[nom], type);
+        for (int j = 0; j < nbIngredients; j++) {
+          int ing = in.readInt();
+          if (p != null) {
+            lot.ajouterIngredientPizza(p, table[ing]);
+          }
+        }
+        if (p != null) {
+          lot.setPrixPizza(p, prix);
+          if (photo != null) {
+            lot.ajouterPhoto(p, photo);
+          }
+          pizzas[nom] = p;
+        }
+      }
+      
+      // 3. CLIENTS
+      nb = in.readInt();
+      for (int i = 0; i < nb; i++) {
+        int email = in.readInt();
+        String mdp = in.readUTF();
+        InformationPersonnelle info = new InformationPersonnelle(lireTexte(in),
+            lireTexte(in), lireTexte(in), in.readInt());
+        Compte.inscription(table[email], mdp, info);
+        clients[email] = Compte.getClientParEmail(table[email]);
+      }
+      
+      // 4. INTERDICTIONS
+      nb = in.readInt();
+      for (int i = 0; i < nb; i++) {
+        lot.interdireIngredient(table[in.readInt()],
+            TypePizza.values()[in.readByte()]);
+      }
+      lot.publier();
+      
+      // 5. COMMANDES
+      nb = in.readInt();
+      for (int i = 0; i < nb; i++) {
+        Client client = clients[in.readInt()];
+        EtatCommande etat = EtatCommande.values()[in.readByte()];
+        int id = in.readInt();
+        boolean figee = in.readBoolean();
+        Pizza[] pizzasCommande = new Pizza[in.readInt()];
+        long[] prix = figee ? new long[2 * pizzasCommande.length] : null;
+        for (int j = 0; j < pizzasCommande.length; j++) {
+          pizzasCommande[j] = pizzas[in.readInt()];
+          if (figee) {
+            prix[2 * j] = in.readLong();
+            prix[2 * j + 1] = in.readLong();
+          }
+        }
+        if (client != null) {
+          Instantane.restaurerCommande(client, id, etat, pizzasCommande,
+              prix);
+        }
+      }
+      
+      // 6. EVALUATIONS
+      nb = in.readInt();
+      for (int i = 0; i < nb; i++) {
+        Pizza p = pizzas[in.readInt()];
+        Client client = clients[in.readInt()];
+        int note = in.readByte();
+        String commentaire = in.readUTF();
+        if (p != null && client != null) {
+          // Comme pour le format texte, on ne passe pas par
+          // p.ajouterEvaluation() qui exige un client connecté
+          p.getEvaluations().add(new Evaluation(note, commentaire, client));
+        }
+      }
+    } catch (IOException e) {
+      throw e;
+    } catch (Exception e) {
+      throw new IOException("Erreur lecture fichier : " + e.getMessage(), e);
+    }
+  }
+  
+  /**
+   * Lit le fichier jusqu'à la fin de la section (sans charger les données)
+   * et convertit ses lignes au format texte.
+   */
+  @Override
+  public List<String> extraireSection(String nomFichier, String section)
+      throws IOException {
+    return extraireEntite(nomFichier, section, null);
+  }
+  
+  /**
+   * Lit le fichier jusqu'à la fin de la section (sans charger les données)
+   * et convertit au format texte les lignes de la clé donnée.
+   */
+  @Override
+  public List<String> extraireEntite(String nomFichier, String section,
+      String cle) throws IOException {
+    IndexSauvegarde.verifierSection(section);
+    List<String> lignes = new ArrayList<>();
+    try (DataInputStream in = new DataInputStream(
+        new BufferedInputStream(new FileInputStream(nomFichier)))) {
+      String[] table = lireTable(in);
+      // Les sections sont dans l'ordre du format texte
+      for (String s : IndexSauvegarde.SECTIONS) {
+        int nb = in.readInt();
+        for (int i = 0; i < nb; i++) {
+          String ligne = lireLigne(in, s, table);
+          if (s.equals(section)
+              && (cle == null || cle.equals(IndexSauvegarde.cle(ligne)))) {
+            lignes.add(ligne);
+          }
+        }
+        if (s.equals(section)) {
+          break;
+        }
+      }
+    } catch (IOException e) {
+      throw e;
+    } catch (Exception e) {
+      throw new IOException("Erreur lecture fichier : " + e.getMessage(), e);
+    }
+    return lignes;
+  }
+  
+  /**
+   * Vérifie l'entête et lit la table des chaînes.
+   */
+  private static String[] lireTable(DataInputStream in) throws IOException {
+    if (in.readInt() != MAGIQUE) {
+      throw new IOException("le fichier n'est pas une sauvegarde binaire");
+    }
+    int version = in.readInt();
+    if (version != VERSION) {
+      throw new IOException("version de sauvegarde non gérée : " + version);
+    }
+    String[] table = new String[in.readInt()];
+    for (int i = 0; i < table.length; i++) {
+      table[i] = in.readUTF();
+    }
+    return table;
+  }
+  
+  /**
+   * Lit un enregistrement d'une section et le met au format texte de
+   * {@link GestionSauvegarde}.
+   */
+  private static String lireLigne(DataInputStream in, String section,
+      String[] table) throws IOException {
+    StringBuilder ligne = new StringBuilder(section);
+    switch (section) {
+      case "INGREDIENT":
+        ligne.append(";").append(table[in.readInt()]).append(";")
+            .append(in.readDouble());
+        break;
+      case "PIZZA":
+        ligne.append(";").append(table[in.readInt()]).append(";")
+            .append(TypePizza.values()[in.readByte()]).append(";")
+            .append(in.readDouble()).append(";").append(lireTexte(in));
+        int nbIngredients = in.readInt();
+        for (int j = 0; j < nbIngredients; j++) {
+          ligne.append(";").append(table[in.readInt()]);
+        }
+        break;
+      case "CLIENT":
+        ligne.append(";").append(table[in.readInt()]).append(";")
+            .append(in.readUTF()).append(";").append(lireTexte(in))
+            .append(";").append(lireTexte(in)).append(";")
+            .append(lireTexte(in)).append(";").append(in.readInt());
+        break;
+      case "INTERDICTION":
+        ligne.append(";").append(table[in.readInt()]).append(";")
+            .append(TypePizza.values()[in.readByte()]);
+        break;
+      case "COMMANDE":
+        ligne.append(";").append(table[in.readInt()]).append(";")
+            .append(EtatCommande.values()[in.readByte()]).append(";#")
+            .append(in.readInt());
+        boolean figee = in.readBoolean();
+        int nbPizzas = in.readInt();
+        StringBuilder noms = new StringBuilder();
+        long[] prix = new long[2 * nbPizzas];
+        for (int j = 0; j < nbPizzas; j++) {
+          noms.append(";").append(table[in.readInt()]);
+          if (figee) {
+            prix[2 * j] = in.readLong();
+            prix[2 * j + 1] = in.readLong();
+          }
+        }
+        if (figee) {
+          ligne.append(";").append(Instantane.formaterPrix(prix));
+        }
+        ligne.append(noms);
+        break;
+      default:
+        ligne.append(";").append(table[in.readInt()]).append(";")
+            .append(table[in.readInt()]).append(";").append(in.readByte())
+            .append(";").append(in.readUTF());
+        break;
+    }
+    return ligne.toString();
+  }
+  
+  /**
+   * Retourne l'indice d'une chaîne dans la table, en l'y ajoutant si besoin.
+   */
+  private static int indiceChaine(Map<String, Integer> table, String s) {
+    Integer indice = table.get(s);
+    if (indice == null) {
+      indice = table.size();
+      table.put(s, indice);
+    }
+    return indice;
+  }
+  
+  /**
+   * Écrit une chaîne pouvant être null (un booléen de présence la précède).
+   */
+  private static void ecrireTexte(DataOutputStream out, String s)
+      throws IOException {
+    out.writeBoolean(s != null);
+    if (s != null) {
+      out.writeUTF(s);
+    }
+  }
+  
+  /**
+   * Lit une chaîne écrite par {@link #ecrireTexte}.
+   */
+  private static String lireTexte(DataInputStream in) throws IOException {
+    return in.readBoolean() ? in.readUTF() : null;
+  }
+}
@@ -0,0 +1,422 @@
+package io;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+import pizzas.GestPizzaiolo;
+import pizzas.Observateurs;
+
+/**
+ * Sauvegarde compressée des données de l'application, découpée en blocs
+ * indépendants.
+ *
+ * <p>Le fichier commence par un entête (nombre magique puis version), suivi
+ * de blocs. Chaque bloc contient des lignes d'une seule section du format
+ * texte de {@link GestionSauvegarde}, compressées avec {@link Deflater}. Il
+ * est précédé d'un entête : la section (un octet), le nombre
+ * d'enregistrements, la taille décompressée et la taille compressée (des
+ * entiers). Au chargement, les blocs sont décompressés et analysés en
+ * parallèle, puis appliqués comme par {@link ChargeurParallele} ; un bloc qui
+ * n'est pas utile peut être sauté sans être décompressé (voir
+ * {@link #lireSection(String, String)}).
+ *
+ * <p>Le format texte reste le format d'échange ;
+ * {@link ConvertisseurSauvegarde} permet de passer de l'un à l'autre.
+ *
+ * @author Kevin SIDER
+ * @version 1.0
+ */
+public class SauvegardeCompressee implements InterSauvegarde {
+  
+  /**
+   * Nombre magique en tête de fichier ("PZCZ").
+   */
+  public static final int MAGIQUE = 0x505A435A;
+  
+  /**
+   * Version courante du format compressé.
+   */
+  public static final int VERSION = 1;
+  
+  /**
+   * Sections du format texte, dans l'ordre d'écriture ; l'indice est le code
+   * écrit dans l'entête des blocs.
+   */
+  private static final String[] SECTIONS = {"INGREDIENT", "PIZZA", "CLIENT",
+      "INTERDICTION", "COMMANDE", "EVALUATION"};
+  
+  /**
+   * Le gestionnaire métier.
+   */
+  private GestPizzaiolo gestionnaire;
+  
+  /**
+   * Le pool des tâches de décompression.
+   */
+  private ForkJoinPool pool;
+  
+  /**
+   * Nombre maximal d'enregistrements par bloc.
+   */
+  private int enregistrementsParBloc = 4096;
+  
+  /**
+   * Niveau de compression (de 0 à 9, ou {@link Deflater#DEFAULT_COMPRESSION}).
+   */
+  private int niveauCompression = Deflater.DEFAULT_COMPRESSION;
+  
+  /**
+   * Construit une sauvegarde compressée utilisant le pool commun.
+   *
+   * @param gestionnaire le gestionnaire principal de l'application
+   */
+  public SauvegardeCompressee(GestPizzaiolo gestionnaire) {
+    this(gestionnaire, ForkJoinPool.commonPool());
+  }
+  
+  /**
+   * Construit une sauvegarde compressée utilisant le pool donné.
+   *
+   * @param gestionnaire le gestionnaire principal de l'application
+   * @param pool le pool des tâches de décompression
+   */
+  public SauvegardeCompressee(GestPizzaiolo gestionnaire, ForkJoinPool pool) {
+    this.gestionnaire = gestionnaire;
+    this.pool = pool;
+  }
+  
+  /**
+   * Retourne le nombre maximal d'enregistrements par bloc.
+   *
+   * @return le nombre d'enregistrements
+   */
+  public int getEnregistrementsParBloc() {
+    return enregistrementsParBloc;
+  }
+  
+  /**
+   * Fixe le nombre maximal d'enregistrements par bloc. Des blocs plus grands
+   * se compressent mieux, des blocs plus petits se répartissent mieux entre
+   * les threads.
+   *
+   * @param enregistrementsParBloc le nombre d'enregistrements (au moins 1)
+   */
+  public void setEnregistrementsParBloc(int enregistrementsParBloc) {
+    if (enregistrementsParBloc < 1) {
+      throw new IllegalArgumentException("Taille de bloc invalide");
+    }
+    this.enregistrementsParBloc = enregistrementsParBloc;
+  }
+  
+  /**
+   * Retourne le niveau de compression.
+   *
+   * @return le niveau de 0 à 9, ou {@link Deflater#DEFAULT_COMPRESSION}
+   */
+  public int getNiveauCompression() {
+    return niveauCompression;
+  }
+  
+  /**
+   * Fixe le niveau de compression.
+   *
+   * @param niveauCompression le niveau de 0 (aucune) à 9 (la meilleure), ou
+   *        {@link Deflater#DEFAULT_COMPRESSION}
+   */
+  public void setNiveauCompression(int niveauCompression) {
+    if ((niveauCompression < 0 || niveauCompression > 9)
+        && niveauCompression != Deflater.DEFAULT_COMPRESSION) {
+      throw new IllegalArgumentException("Niveau de compression invalide");
+    }
+    this.niveauCompression = niveauCompression;
+  }
+  
+  @Override
+  public void sauvegarderDonnees(String nomFichier) throws IOException {
+    Instantane instantane = Instantane.capturer(gestionnaire);
+    Deflater deflater = new Deflater(niveauCompression);
+    try (DataOutputStream out = new DataOutputStream(
+        new BufferedOutputStream(new FileOutputStream(nomFichier)))) {
+      out.writeInt(MAGIQUE);
+      out.writeInt(VERSION);
+      
+      StringBuilder texte = new StringBuilder();
+      int section = -1;
+      int nb = 0;
+      for (int i = 0; i < instantane.getNbLignes(); i++) {
+        String ligne = instantane.getLigne(i);
+        int sectionLigne = section(ligne);
+        if (nb > 0
+            && (sectionLigne != section || nb == enregistrementsParBloc)) {
+          ecrireBloc(out, deflater, section, nb, texte);
+          texte.setLength(0);
+          nb = 0;
+        }
+        section = sectionLigne;
+        texte.append(ligne).append('\n');
+        nb++;
+      }
+      if (nb > 0) {
+        ecrireBloc(out, deflater, section, nb, texte);
+      }
+    } finally {
+      deflater.end();
+    }
+  }
+  
+  @Override
+  public void chargerDonnees(String nomFichier) throws IOException {
+    // La reconstruction de l'état n'est pas une suite de modifications
+    Observateurs.suspendre();
+    try {
+      charger(nomFichier);
+    } finally {
+      Observateurs.reprendre();
+    }
+  }
+  
+  /**
+   * Compte les enregistrements de chaque section sans rien décompresser (les
+   * blocs sont sautés).
+   *
+   * @param nomFichier le fichier compressé
+   * @return le nombre d'enregistrements par section, dans l'ordre du fichier
+   * @throws IOException en cas de problème de lecture ou de format
+   */
+  public static Map<String, Integer> compterEnregistrements(String nomFichier)
+      throws IOException {
+    Map<String, Integer> comptes = new LinkedHashMap<>();
+    try (DataInputStream in = ouvrir(nomFichier)) {
+      Entete entete;
+      while ((entete = lireEntete(in)) != null) {
+        in.skipNBytes(entete.tailleCompressee);
+        comptes.merge(SECTIONS[entete.section], entete.nb, Integer::sum);
+      }
+    }
+    return comptes;
+  }
+  
+  /**
+   * Lit les lignes d'une section ; seuls les blocs de cette section sont
+   * décompressés.
+   *
+   * @param nomFichier le fichier compressé
+   * @param section le nom de la section (INGREDIENT, PIZZA, CLIENT,
+   *        INTERDICTION, COMMANDE ou EVALUATION)
+   * @return les lignes de la section, au format texte
+   * @throws IOException en cas de problème de lecture ou de format
+   */
+  public static List<String> lireSection(String nomFichier, String section)
+      throws IOException {
+    int code = Arrays.asList(SECTIONS).indexOf(section);
+    if (code < 0) {
+      throw new IllegalArgumentException("Section inconnue : " + section);
+    }
+    List<String> lignes = new ArrayList<>();
+    try (DataInputStream in = ouvrir(nomFichier)) {
+      Entete entete;
+      while ((entete = lireEntete(in)) != null) {
+        if (entete.section != code) {
+          in.skipNBytes(entete.tailleCompressee);
+          continue;
+        }
+        String texte = decompresser(in.readNBytes(entete.tailleCompressee),
+            entete.tailleTexte);
+        for (String ligne : texte.split("\n")) {
+          lignes.add(ligne);
+        }
+      }
+    }
+    return lignes;
+  }
+  
+  @Override
+  public List<String> extraireSection(String nomFichier, String section)
+      throws IOException {
+    return lireSection(nomFichier, section);
+  }
+  
+  /**
+   * Les blocs des autres sections ne sont pas décompressés ; ceux de la
+   * section le sont entièrement.
+   */
+  @Override
+  public List<String> extraireEntite(String nomFichier, String section,
+      String cle) throws IOException {
+    List<String> lignes = new ArrayList<>();
+    for (String ligne : lireSection(nomFichier, section)) {
+      if (cle.equals(IndexSauvegarde.cle(ligne))) {
+        lignes.add(ligne);
+      }
+    }
+    return lignes;
+  }
+  
+  /**
+   * Charge le fichier, notifications suspendues.
+   */
+  private void charger(String nomFichier) throws IOException {
+    try (DataInputStream in = ouvrir(nomFichier)) {
+      // Décompression et analyse des blocs en parallèle, pendant la lecture
+      List<ForkJoinTask<ChargeurParallele.Bloc>> analyses = new ArrayList<>();
+      Entete entete;
+      while ((entete = lireEntete(in)) != null) {
+        byte[] compresse = in.readNBytes(entete.tailleCompressee);
+        if (compresse.length != entete.tailleCompressee) {
+          throw new EOFException("bloc tronqué");
+        }
+        int tailleTexte = entete.tailleTexte;
+        analyses.add(pool.submit(() -> ChargeurParallele.Bloc.analyser(
+            decompresser(compresse, tailleTexte))));
+      }
+      List<ChargeurParallele.Bloc> blocs = new ArrayList<>();
+      for (ForkJoinTask<ChargeurParallele.Bloc> analyse : analyses) {
+        blocs.add(analyse.get());
+      }
+      new ChargeurParallele(gestionnaire, pool).appliquer(blocs);
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof IOException) {
+        throw (IOException) cause;
+      }
+      throw new IOException("Erreur lecture fichier : " + cause.getMessage(),
+          cause);
+    } catch (IOException e) {
+      throw e;
+    } catch (Exception e) {
+      throw new IOException("Erreur lecture fichier : " + e.getMessage(), e);
+    }
+  }
+  
+  /**
+   * Retourne le code de la section d'une ligne du format texte.
+   */
+  private static int section(String ligne) {
+    int fin = ligne.indexOf(';');
+    String nom = fin < 0 ? ligne : ligne.substring(0, fin);
+    for (int i = 0; i < SECTIONS.length; i++) {
+      if (SECTIONS[i].equals(nom)) {
+        return i;
+      }
+    }
+    throw new IllegalStateException("Ligne de section inconnue : " + nom);
+  }
+  
+  /**
+   * Compresse et écrit un bloc avec son entête.
+   */
+  private static void ecrireBloc(DataOutputStream out, Deflater deflater,
+      int section, int nb, CharSequence texte) throws IOException {
+    byte[] brut = texte.toString().getBytes(StandardCharsets.UTF_8);
+    deflater.reset();
+    deflater.setInput(brut);
+    deflater.finish();
+    ByteArrayOutputStream compresse = new ByteArrayOutputStream(
+        brut.length / 4 + 64);
+    byte[] tampon = new byte[8192];
+    while (!deflater.finished()) {
+      int n = deflater.deflate(tampon);
+      compresse.write(tampon, 0, n);
+    }
+    out.writeByte(section);
+    out.writeInt(nb);
+    out.writeInt(brut.length);
+    out.writeInt(compresse.size());
+    compresse.writeTo(out);
+  }
+  
+  /**
+   * Décompresse un bloc en texte (peut être appelé sur n'importe quel
+   * thread).
+   */
+  private static String decompresser(byte[] compresse, int tailleTexte)
+      throws IOException {
+    Inflater inflater = new Inflater();
+    try {
+      inflater.setInput(compresse);
+      byte[] brut = new byte[tailleTexte];
+      int lus = 0;
+      while (lus < tailleTexte) {
+        int n = inflater.inflate(brut, lus, tailleTexte - lus);
+        if (n == 0 && (inflater.finished() || inflater.needsInput())) {
+          throw new IOException("bloc compressé incomplet");
+        }
+        lus += n;
+      }
+      return new String(brut, StandardCharsets.UTF_8);
+    } catch (DataFormatException e) {
+      throw new IOException("bloc compressé invalide : " + e.getMessage(), e);
+    } finally {
+      inflater.end();
+    }
+  }
+  
+  /**
+   * Ouvre le fichier et vérifie son entête.
+   */
+  private static DataInputStream ouvrir(String nomFichier) throws IOException {
+    DataInputStream in = new DataInputStream(
+        new BufferedInputStream(new FileInputStream(nomFichier)));
+    try {
+      if (in.readInt() != MAGIQUE) {
+        throw new IOException("le fichier n'est pas une sauvegarde compressée");
+      }
+      int version = in.readInt();
+      if (version != VERSION) {
+        throw new IOException("version de sauvegarde non gérée : " + version);
+      }
+      return in;
+    } catch (IOException e) {
+      in.close();
+      throw e;
+    }
+  }
+  
+  /**
+   * Lit l'entête du bloc suivant, ou retourne null à la fin du fichier.
+   */
+  private static Entete lireEntete(DataInputStream in) throws IOException {
+    int section = in.read();
+    if (section < 0) {
+      return null;
+    }
+    Entete entete = new Entete();
+    entete.section = section;
+    entete.nb = in.readInt();
+    entete.tailleTexte = in.readInt();
+    entete.tailleCompressee = in.readInt();
+    if (section >= SECTIONS.length || entete.nb < 0 || entete.tailleTexte < 0
+        || entete.tailleCompressee < 0) {
+      throw new IOException("entête de bloc invalide");
+    }
+    return entete;
+  }
+  
+  /**
+   * Entête d'un bloc.
+   */
+  private static final class Entete {
+    private int section;
+    private int nb;
+    private int tailleTexte;
+    private int tailleCompressee;
+  }
+}
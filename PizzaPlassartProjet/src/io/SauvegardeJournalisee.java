@@ -0,0 +1,504 @@
+package io;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.DoubleConsumer;
+import pizzas.Client;
+import pizzas.Commande;
+import pizzas.Compte;
+import pizzas.EtatCommande;
+import pizzas.GestPizzaiolo;
+import pizzas.Observateurs;
+import pizzas.Pizza;
+
+/**
+ * Sauvegarde combinant un instantané (sauvegarde complète) et un journal des
+ * modifications faites depuis cet instantané.
+ *
+ * <p>Une fois les données chargées, chaque modification est ajoutée au
+ * journal {@code nomFichier + ".journal"} au moment où elle est faite : le
+ * coût de la persistance dépend du nombre de modifications et non plus de la
+ * taille des données. Au chargement, l'instantané est lu puis le journal est
+ * rejoué. La sauvegarde complète réécrit l'instantané (de façon atomique) et
+ * repart d'un journal vide.
+ *
+ * <p>Chaque instantané texte porte un nouveau numéro de génération, repris
+ * dans l'entête de son journal. Un journal trouvé au chargement qui ne
+ * correspond pas à l'instantané (copie partielle, restauration d'une
+ * ancienne sauvegarde...) n'est ni rejoué ni écrasé : il est mis de côté
+ * sous le suffixe {@link #SUFFIXE_ECARTE} (voir {@link #getJournalEcarte()}).
+ *
+ * @author Kevin SIDER
+ * @version 1.0
+ * @see JournalModifications
+ */
+public class SauvegardeJournalisee implements InterSauvegarde {
+  
+  /**
+   * Suffixe du fichier journal, ajouté au nom de l'instantané.
+   */
+  public static final String SUFFIXE_JOURNAL = ".journal";
+  
+  /**
+   * Suffixe du fichier temporaire écrit avant de remplacer l'instantané.
+   */
+  private static final String SUFFIXE_TEMPORAIRE = ".tmp";
+  
+  /**
+   * Suffixe d'un journal mis de côté car il ne correspond pas à
+   * l'instantané.
+   */
+  public static final String SUFFIXE_ECARTE = ".ecarte";
+  
+  /**
+   * Source des numéros de génération des instantanés.
+   */
+  private static final SecureRandom GENERATIONS = new SecureRandom();
+  
+  /**
+   * Le gestionnaire métier.
+   */
+  private GestPizzaiolo gestionnaire;
+  
+  /**
+   * Format utilisé pour l'instantané.
+   */
+  private InterSauvegarde instantane;
+  
+  /**
+   * Journal en cours d'écriture (null avant le premier chargement ou la
+   * première sauvegarde).
+   */
+  private JournalModifications journal;
+  
+  /**
+   * Écouteur prévenu des erreurs d'écriture du journal.
+   */
+  private SauvegardeAsynchrone.Ecouteur ecouteur =
+      new SauvegardeAsynchrone.Ecouteur() {
+      };
+  
+  /**
+   * Nombre d'enregistrements rejoués lors du dernier chargement.
+   */
+  private int nbRejoues;
+  
+  /**
+   * Journal mis de côté lors du dernier chargement, ou null.
+   */
+  private File journalEcarte;
+  
+  /**
+   * Nombre d'enregistrements du journal en cours écrits avant son ouverture
+   * (rejoués au chargement, ou repris par un point de contrôle).
+   */
+  private int nbEnregistrementsAnterieurs;
+  
+  /**
+   * Construit une sauvegarde journalisée dont l'instantané est au format
+   * texte de {@link GestionSauvegarde}.
+   *
+   * @param gestionnaire le gestionnaire principal de l'application
+   */
+  public SauvegardeJournalisee(GestPizzaiolo gestionnaire) {
+    this(gestionnaire, new GestionSauvegarde(gestionnaire));
+  }
+  
+  /**
+   * Construit une sauvegarde journalisée avec le format d'instantané donné.
+   *
+   * @param gestionnaire le gestionnaire principal de l'application
+   * @param instantane le format de l'instantané, lié au même gestionnaire
+   */
+  public SauvegardeJournalisee(GestPizzaiolo gestionnaire,
+      InterSauvegarde instantane) {
+    this.gestionnaire = gestionnaire;
+    this.instantane = instantane;
+  }
+  
+  /**
+   * Réécrit l'instantané complet puis repart d'un journal vide. Les commandes
+   * en cours, que l'instantané ne contient pas, sont recopiées dans le
+   * nouveau journal.
+   */
+  @Override
+  public synchronized void sauvegarderDonnees(String nomFichier)
+      throws IOException {
+    fermer();
+    File fichier = new File(nomFichier);
+    File temporaire = new File(nomFichier + SUFFIXE_TEMPORAIRE);
+    if (instantane instanceof GestionSauvegarde) {
+      // L'archive éventuelle est celle du fichier final, pas du temporaire
+      Instantane capture =
+          ((GestionSauvegarde) instantane).capturer(nomFichier);
+      capture.numeroter(nouvelleGeneration());
+      capture.ecrire(temporaire.getPath(), false, null);
+    } else {
+      instantane.sauvegarderDonnees(temporaire.getPath());
+    }
+    basculer(temporaire, fichier, journalDe(nomFichier), commandesEnCours());
+    nbEnregistrementsAnterieurs = 0;
+  }
+  
+  /**
+   * Prépare une sauvegarde complète dont l'écriture pourra se faire sur un
+   * autre thread : l'état est copié et la position du journal est notée. Les
+   * modifications continuent d'être journalisées pendant l'écriture. Cette
+   * méthode doit être appelée sur le thread qui modifie les données.
+   *
+   * @param nomFichier le fichier de l'instantané
+   * @return le point de contrôle à écrire puis à valider
+   * @throws IOException en cas de problème d'accès au journal
+   * @throws IllegalStateException si l'instantané n'est pas au format texte
+   */
+  public synchronized PointDeControle preparerPointDeControle(
+      String nomFichier) throws IOException {
+    if (!(instantane instanceof GestionSauvegarde)) {
+      throw new IllegalStateException(
+          "Sauvegarde en arrière-plan possible au format texte uniquement");
+    }
+    Instantane capture =
+        ((GestionSauvegarde) instantane).capturer(nomFichier);
+    capture.numeroter(nouvelleGeneration());
+    return new PointDeControle(nomFichier, capture, commandesEnCours(),
+        journal, journal != null ? journal.marquer() : -1,
+        journal != null ? journal.getNbEnregistrements() : 0);
+  }
+  
+  /**
+   * Termine une sauvegarde préparée par {@link #preparerPointDeControle} et
+   * écrite : l'instantané remplace l'ancien, et le nouveau journal reprend
+   * les modifications faites pendant l'écriture. Cette méthode doit être
+   * appelée sur le thread qui modifie les données.
+   *
+   * @param point le point de contrôle écrit
+   * @throws IOException en cas de problème de remplacement des fichiers
+   * @throws IllegalStateException si les données ont été rechargées ou
+   *         sauvegardées depuis la préparation
+   */
+  public synchronized void validerPointDeControle(PointDeControle point)
+      throws IOException {
+    File temporaire = new File(point.nomFichier + SUFFIXE_TEMPORAIRE);
+    if (journal != point.journal) {
+      temporaire.delete();
+      throw new IllegalStateException("Point de contrôle périmé");
+    }
+    File fichier = new File(point.nomFichier);
+    File fichierJournal = journalDe(point.nomFichier);
+    byte[] suite = new byte[0];
+    int nbSuite = 0;
+    if (journal != null) {
+      journal.marquer();
+      suite = JournalModifications.lireSuite(fichierJournal, point.marque);
+      nbSuite = journal.getNbEnregistrements() - point.nbMarque;
+    }
+    fermer();
+    
+    byte[] enregistrements =
+        Arrays.copyOf(point.commandesEnCours, point.commandesEnCours.length
+            + suite.length);
+    System.arraycopy(suite, 0, enregistrements, point.commandesEnCours.length,
+        suite.length);
+    basculer(temporaire, fichier, fichierJournal, enregistrements);
+    nbEnregistrementsAnterieurs = nbSuite;
+  }
+  
+  /**
+   * Remplace l'instantané et le journal par le nouvel instantané écrit dans
+   * le fichier temporaire et un journal commençant par les enregistrements
+   * donnés, puis reprend la journalisation.
+   *
+   * <p>Le nouveau journal est d'abord écrit à côté de l'ancien, pour
+   * l'instantané temporaire (un renommage conserve son identifiant).
+   * Après un arrêt entre les deux renommages, le chargement retrouve ce
+   * journal et termine le remplacement : l'instantané et son journal
+   * changent ensemble.
+   */
+  private void basculer(File temporaire, File fichier, File fichierJournal,
+      byte[] enregistrements) throws IOException {
+    File journalTemporaire = temporaireDe(fichierJournal);
+    JournalModifications.creer(journalTemporaire, temporaire, enregistrements)
+        .close();
+    remplacer(temporaire.toPath(), fichier.toPath());
+    remplacer(journalTemporaire.toPath(), fichierJournal.toPath());
+    journal = JournalModifications.ouvrir(fichierJournal, fichier);
+    journal.setEcouteur(ecouteur);
+    Observateurs.ajouter(journal);
+  }
+  
+  /**
+   * Termine ou abandonne un remplacement interrompu par un arrêt : le
+   * nouveau journal est gardé si le nouvel instantané est en place, sinon
+   * les fichiers temporaires sont supprimés.
+   */
+  private static void reprendreBascule(File fichier, File fichierJournal)
+      throws IOException {
+    File journalTemporaire = temporaireDe(fichierJournal);
+    if (journalTemporaire.exists()) {
+      if (JournalModifications.estValide(journalTemporaire, fichier)) {
+        remplacer(journalTemporaire.toPath(), fichierJournal.toPath());
+      } else {
+        Files.delete(journalTemporaire.toPath());
+      }
+    }
+    Files.deleteIfExists(temporaireDe(fichier).toPath());
+  }
+  
+  /**
+   * Charge l'instantané (s'il existe), rejoue le journal puis y ajoute les
+   * modifications suivantes. Un journal qui ne correspond pas à
+   * l'instantané est mis de côté et un nouveau journal est commencé.
+   */
+  @Override
+  public synchronized void chargerDonnees(String nomFichier)
+      throws IOException {
+    fermer();
+    File fichier = new File(nomFichier);
+    File fichierJournal = journalDe(nomFichier);
+    reprendreBascule(fichier, fichierJournal);
+    if (fichier.exists()) {
+      instantane.chargerDonnees(nomFichier);
+    } else if (!fichierJournal.exists()) {
+      throw new IOException("Fichier introuvable : " + nomFichier);
+    }
+    journalEcarte = null;
+    if (fichierJournal.exists()
+        && !JournalModifications.estValide(fichierJournal, fichier)) {
+      journalEcarte = ecarter(fichierJournal);
+    }
+    nbRejoues = JournalModifications.rejouer(fichierJournal, fichier,
+        gestionnaire);
+    journal = JournalModifications.ouvrir(fichierJournal, fichier);
+    journal.setEcouteur(ecouteur);
+    nbEnregistrementsAnterieurs = nbRejoues;
+    Observateurs.ajouter(journal);
+  }
+  
+  /**
+   * Lit la section dans l'instantané : les modifications journalisées depuis
+   * la dernière sauvegarde complète n'y sont pas.
+   */
+  @Override
+  public List<String> extraireSection(String nomFichier, String section)
+      throws IOException {
+    return instantane.extraireSection(nomFichier, section);
+  }
+  
+  /**
+   * Lit l'entité dans l'instantané : les modifications journalisées depuis
+   * la dernière sauvegarde complète n'y sont pas.
+   */
+  @Override
+  public List<String> extraireEntite(String nomFichier, String section,
+      String cle) throws IOException {
+    return instantane.extraireEntite(nomFichier, section, cle);
+  }
+  
+  /**
+   * Fixe l'écouteur prévenu de la première erreur d'écriture de chaque
+   * journal (voir {@link JournalModifications#setEcouteur}) : les
+   * modifications suivantes ne sont plus enregistrées avant la prochaine
+   * sauvegarde complète.
+   *
+   * @param ecouteur l'écouteur
+   */
+  public synchronized void setEcouteur(SauvegardeAsynchrone.Ecouteur ecouteur) {
+    this.ecouteur = ecouteur;
+    if (journal != null) {
+      journal.setEcouteur(ecouteur);
+    }
+  }
+  
+  /**
+   * Retourne le journal mis de côté lors du dernier chargement parce qu'il
+   * ne correspondait pas à l'instantané : ses modifications n'ont pas été
+   * rejouées.
+   *
+   * @return le fichier du journal mis de côté, ou null
+   */
+  public File getJournalEcarte() {
+    return journalEcarte;
+  }
+  
+  /**
+   * Retourne le nombre de modifications rejouées depuis le journal lors du
+   * dernier chargement.
+   *
+   * @return le nombre d'enregistrements rejoués
+   */
+  public int getNbRejoues() {
+    return nbRejoues;
+  }
+  
+  /**
+   * Retourne la taille du journal en cours, qui détermine la durée de sa
+   * relecture au prochain démarrage.
+   *
+   * @return la taille en octets (0 si aucun journal n'est ouvert)
+   */
+  public synchronized long getTailleJournal() {
+    return journal != null ? journal.getTaille() : 0;
+  }
+  
+  /**
+   * Retourne le nombre de modifications du journal en cours, à rejouer au
+   * prochain démarrage (sans compter les commandes en cours recopiées dans
+   * le journal par les sauvegardes complètes).
+   *
+   * @return le nombre d'enregistrements (0 si aucun journal n'est ouvert)
+   */
+  public synchronized int getNbEnregistrementsJournal() {
+    return journal != null
+        ? nbEnregistrementsAnterieurs + journal.getNbEnregistrements() : 0;
+  }
+  
+  /**
+   * Arrête la journalisation et ferme le journal.
+   *
+   * @throws IOException en cas de problème de fermeture
+   */
+  public synchronized void fermer() throws IOException {
+    if (journal != null) {
+      Observateurs.retirer(journal);
+      journal.close();
+      journal = null;
+    }
+  }
+  
+  /**
+   * Prépare les enregistrements recréant les commandes en cours (créées ou
+   * validées, avec leurs prix figés), que l'instantané ne contient pas.
+   */
+  private static byte[] commandesEnCours() throws IOException {
+    ByteArrayOutputStream tampon = new ByteArrayOutputStream();
+    try (JournalModifications enregistrements =
+        new JournalModifications(tampon)) {
+      for (Client c : Compte.getTousLesClients()) {
+        List<Commande> enCours = new ArrayList<>(c.getCommandesEnCours());
+        enCours.addAll(c.getCommandesPassees());
+        for (Commande cmd : enCours) {
+          if (cmd.getEtat() == EtatCommande.TRAITEE) {
+            continue;
+          }
+          enregistrements.commandeCreee(cmd);
+          for (Pizza p : cmd.getPizzas()) {
+            enregistrements.pizzaAjouteeCommande(cmd, p);
+          }
+          if (cmd.getEtat() != EtatCommande.CREE) {
+            enregistrements.lignesCommande(cmd);
+            enregistrements.etatCommandeModifie(cmd, EtatCommande.CREE);
+          }
+        }
+      }
+      if (enregistrements.getErreur() != null) {
+        throw enregistrements.getErreur();
+      }
+    }
+    return tampon.toByteArray();
+  }
+  
+  /**
+   * Renomme un journal sans l'écraser ni écraser un journal déjà mis de
+   * côté.
+   */
+  private static File ecarter(File fichierJournal) throws IOException {
+    File ecarte = new File(fichierJournal.getPath() + SUFFIXE_ECARTE);
+    for (int i = 1; ecarte.exists(); i++) {
+      ecarte = new File(fichierJournal.getPath() + SUFFIXE_ECARTE + i);
+    }
+    Files.move(fichierJournal.toPath(), ecarte.toPath());
+    return ecarte;
+  }
+  
+  /**
+   * Tire un numéro de génération pour un nouvel instantané (0 est réservé à
+   * l'absence d'instantané).
+   */
+  private static long nouvelleGeneration() {
+    long generation;
+    do {
+      generation = GENERATIONS.nextLong();
+    } while (generation == 0);
+    return generation;
+  }
+  
+  /**
+   * Retourne le fichier journal associé à un instantané.
+   */
+  private static File journalDe(String nomFichier) {
+    return new File(nomFichier + SUFFIXE_JOURNAL);
+  }
+  
+  /**
+   * Retourne le fichier temporaire écrit avant de remplacer un fichier.
+   */
+  private static File temporaireDe(File fichier) {
+    return new File(fichier.getPath() + SUFFIXE_TEMPORAIRE);
+  }
+  
+  /**
+   * Remplace la cible par le fichier temporaire, de façon atomique si le
+   * système le permet : une sauvegarde interrompue laisse l'ancien instantané
+   * intact.
+   */
+  private static void remplacer(Path source, Path cible) throws IOException {
+    try {
+      Files.move(source, cible, StandardCopyOption.ATOMIC_MOVE,
+          StandardCopyOption.REPLACE_EXISTING);
+    } catch (AtomicMoveNotSupportedException e) {
+      Files.move(source, cible, StandardCopyOption.REPLACE_EXISTING);
+    }
+  }
+  
+  /**
+   * Sauvegarde complète préparée sur le thread qui modifie les données, dont
+   * l'écriture peut se faire sur un autre thread.
+   */
+  public static final class PointDeControle {
+    
+    private final String nomFichier;
+    private final Instantane instantane;
+    private final byte[] commandesEnCours;
+    private final JournalModifications journal;
+    private final long marque;
+    private final int nbMarque;
+    
+    private PointDeControle(String nomFichier, Instantane instantane,
+        byte[] commandesEnCours, JournalModifications journal, long marque,
+        int nbMarque) {
+      this.nomFichier = nomFichier;
+      this.instantane = instantane;
+      this.commandesEnCours = commandesEnCours;
+      this.journal = journal;
+      this.marque = marque;
+      this.nbMarque = nbMarque;
+    }
+    
+    /**
+     * Écrit l'instantané dans un fichier temporaire (peut être appelé sur
+     * n'importe quel thread).
+     *
+     * @param progression reçoit l'avancement entre 0 et 1, ou null
+     * @throws IOException en cas de problème d'écriture
+     */
+    public void ecrire(DoubleConsumer progression) throws IOException {
+      instantane.ecrire(nomFichier + SUFFIXE_TEMPORAIRE, false, progression);
+    }
+    
+    /**
+     * Supprime l'instantané temporaire d'une écriture qui a échoué.
+     */
+    void abandonner() {
+      new File(nomFichier + SUFFIXE_TEMPORAIRE).delete();
+    }
+  }
+}
@@ -0,0 +1,687 @@
+package io;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Consumer;
+import pizzas.Client;
+import pizzas.Commande;
+import pizzas.Compte;
+import pizzas.EtatCommande;
+import pizzas.Evaluation;
+import pizzas.GestPizzaiolo;
+import pizzas.Ingredient;
+import pizzas.InformationPersonnelle;
+import pizzas.ObservateurModifications;
+import pizzas.Observateurs;
+import pizzas.Pizza;
+import pizzas.SourceClients;
+import pizzas.TypePizza;
+
+/**
+ * Sauvegarde dans un fichier de pages contenant un arbre B+ : chaque entité
+ * (ingrédient, pizza, client, interdiction, commande traitée, évaluation) est
+ * un enregistrement, au format d'une ligne de {@link GestionSauvegarde},
+ * rangé sous une clé qui l'identifie.
+ *
+ * <p>La sauvegarde complète ne réécrit que les pages des enregistrements
+ * modifiés. Une fois {@link #activerMisesAJour()} appelée, chaque
+ * modification est écrite tout de suite dans le fichier (mise à jour
+ * ponctuelle), sans sauvegarde complète.
+ *
+ * <p>{@link #chargerCatalogue} ne charge que les ingrédients, les pizzas, les
+ * interdictions et les évaluations : les clients et leurs commandes sont lus
+ * un par un quand {@link Compte} les demande, ce qui permet de travailler avec
+ * plus de clients que la mémoire n'en contient.
+ *
+ * <p>Le fichier reste ouvert jusqu'à {@link #close()} (ou jusqu'à
+ * l'utilisation d'un autre fichier). Une interruption pendant une écriture
+ * peut laisser l'arbre incohérent : pour une reprise sûre, cette sauvegarde
+ * peut servir d'instantané à une {@link SauvegardeJournalisee}.
+ *
+ * @author Kevin SIDER
+ * @version 1.0
+ */
+public class SauvegardePages implements InterSauvegarde, Closeable {
+  
+  /*
+   * Préfixes des clés : l'ordre des clés est celui du chargement.
+   */
+  private static final String INGREDIENT = "0:";
+  private static final String PIZZA = "1:";
+  private static final String CLIENT = "2:";
+  private static final String INTERDICTION = "3:";
+  private static final String COMMANDE = "4:";
+  private static final String EVALUATION = "5:";
+  
+  /**
+   * Nombre de lignes par bloc analysé au chargement.
+   */
+  private static final int LIGNES_PAR_BLOC = 4096;
+  
+  /**
+   * Le gestionnaire métier.
+   */
+  private final GestPizzaiolo gestionnaire;
+  
+  private int pagesEnCache = 1024;
+  
+  /**
+   * Arbre du fichier ouvert (null si aucun).
+   */
+  private ArbreBPlus arbre;
+  
+  private File fichierOuvert;
+  
+  /**
+   * Répercute les modifications dans l'arbre (null si inactif).
+   */
+  private MisesAJour misesAJour;
+  
+  /**
+   * Écouteur prévenu de l'échec d'une mise à jour ponctuelle.
+   */
+  private volatile SauvegardeAsynchrone.Ecouteur ecouteur =
+      new SauvegardeAsynchrone.Ecouteur() {
+      };
+  
+  /**
+   * Construit une sauvegarde dans un fichier de pages.
+   *
+   * @param gestionnaire le gestionnaire principal de l'application
+   */
+  public SauvegardePages(GestPizzaiolo gestionnaire) {
+    this.gestionnaire = gestionnaire;
+  }
+  
+  /**
+   * Retourne le nombre de pages gardées en mémoire.
+   *
+   * @return la capacité du cache, en pages
+   */
+  public int getPagesEnCache() {
+    return pagesEnCache;
+  }
+  
+  /**
+   * Fixe le nombre de pages gardées en mémoire, pour les fichiers ouverts
+   * ensuite.
+   *
+   * @param pagesEnCache la capacité du cache, en pages (au moins 8)
+   */
+  public void setPagesEnCache(int pagesEnCache) {
+    if (pagesEnCache < 8) {
+      throw new IllegalArgumentException("Cache trop petit : " + pagesEnCache);
+    }
+    this.pagesEnCache = pagesEnCache;
+  }
+  
+  /**
+   * Retourne le nombre de pages écrites dans le fichier ouvert.
+   *
+   * @return le nombre d'écritures de pages depuis l'ouverture
+   */
+  public long getNbPagesEcrites() {
+    return arbre != null ? arbre.getPages().getNbEcritures() : 0;
+  }
+  
+  /**
+   * Retourne le nombre de pages lues dans le fichier ouvert.
+   *
+   * @return le nombre de lectures de pages depuis l'ouverture
+   */
+  public long getNbPagesLues() {
+    return arbre != null ? arbre.getPages().getNbLectures() : 0;
+  }
+  
+  /**
+   * Écrit les enregistrements modifiés et supprime ceux des entités qui
+   * n'existent plus. Les enregistrements des clients non chargés (voir
+   * {@link #chargerCatalogue}) sont conservés.
+   */
+  @Override
+  public void sauvegarderDonnees(String nomFichier) throws IOException {
+    ouvrir(nomFichier);
+    Map<String, String> enregistrements = capturer();
+    for (Map.Entry<String, String> e : enregistrements.entrySet()) {
+      arbre.ecrire(e.getKey(), octets(e.getValue()));
+    }
+    
+    Set<String> charges = new HashSet<>();
+    for (Client c : Compte.getTousLesClients()) {
+      charges.add(c.getCompte().getEmail());
+    }
+    List<String> obsoletes = new ArrayList<>();
+    arbre.parcourir("", (cle, valeur) -> {
+      if (!enregistrements.containsKey(cle) && estCharge(cle, charges)) {
+        obsoletes.add(cle);
+      }
+      return true;
+    });
+    for (String cle : obsoletes) {
+      arbre.supprimer(cle);
+    }
+    arbre.synchroniser();
+  }
+  
+  @Override
+  public void chargerDonnees(String nomFichier) throws IOException {
+    charger(nomFichier, true);
+  }
+  
+  /**
+   * Charge les ingrédients, les pizzas, les interdictions et les évaluations.
+   * Les clients et leurs commandes traitées ne sont lus que lorsque
+   * {@link Compte} les demande (les auteurs des évaluations sont donc lus
+   * tout de suite).
+   *
+   * @param nomFichier le fichier de la sauvegarde
+   * @throws IOException en cas de problème de lecture
+   */
+  public void chargerCatalogue(String nomFichier) throws IOException {
+    charger(nomFichier, false);
+  }
+  
+  /**
+   * Active les mises à jour ponctuelles : chaque modification des données
+   * est écrite dans le fichier ouvert dès qu'elle est faite.
+   *
+   * @throws IllegalStateException si aucun fichier n'est ouvert
+   */
+  public void activerMisesAJour() {
+    if (arbre == null) {
+      throw new IllegalStateException("Aucun fichier ouvert");
+    }
+    if (misesAJour == null) {
+      misesAJour = new MisesAJour();
+      Observateurs.ajouter(misesAJour);
+    }
+  }
+  
+  /**
+   * Désactive les mises à jour ponctuelles.
+   */
+  public void desactiverMisesAJour() {
+    if (misesAJour != null) {
+      Observateurs.retirer(misesAJour);
+      misesAJour = null;
+    }
+  }
+  
+  /**
+   * Fixe l'écouteur prévenu (par {@link SauvegardeAsynchrone.Ecouteur#echec})
+   * de la première erreur d'écriture d'une mise à jour ponctuelle. Il est
+   * appelé sur le thread qui modifie les données, pendant la notification de
+   * la modification.
+   *
+   * @param ecouteur l'écouteur
+   */
+  public void setEcouteur(SauvegardeAsynchrone.Ecouteur ecouteur) {
+    this.ecouteur = ecouteur;
+  }
+  
+  /**
+   * Retourne la première erreur d'écriture d'une mise à jour ponctuelle.
+   *
+   * @return l'erreur, ou null s'il n'y en a pas eu
+   */
+  public IOException getErreur() {
+    return misesAJour != null ? misesAJour.erreur : null;
+  }
+  
+  /**
+   * Lit un enregistrement sans charger les données.
+   *
+   * @param nomFichier le fichier de la sauvegarde
+   * @param section le type de ligne (INGREDIENT, PIZZA, CLIENT...)
+   * @param cle le nom ou l'email de l'entité
+   * @return les lignes de l'entité : l'enregistrement, ou pour COMMANDE et
+   *         EVALUATION ceux du client ou de la pizza
+   */
+  @Override
+  public List<String> extraireEntite(String nomFichier, String section,
+      String cle) throws IOException {
+    IndexSauvegarde.verifierSection(section);
+    String prefixe = prefixe(section) + cle;
+    if (section.equals("COMMANDE") || section.equals("EVALUATION")) {
+      prefixe += ":";
+    }
+    return lireLignes(nomFichier, prefixe, section, cle);
+  }
+  
+  @Override
+  public List<String> extraireSection(String nomFichier, String section)
+      throws IOException {
+    IndexSauvegarde.verifierSection(section);
+    return lireLignes(nomFichier, prefixe(section), section, null);
+  }
+  
+  /**
+   * Ferme le fichier ouvert et arrête les mises à jour ponctuelles.
+   */
+  @Override
+  public void close() throws IOException {
+    desactiverMisesAJour();
+    if (arbre != null) {
+      try {
+        arbre.close();
+      } finally {
+        arbre = null;
+        fichierOuvert = null;
+      }
+    }
+  }
+  
+  /**
+   * Ouvre le fichier s'il n'est pas déjà ouvert.
+   */
+  private void ouvrir(String nomFichier) throws IOException {
+    File fichier = new File(nomFichier).getAbsoluteFile();
+    if (arbre != null && fichier.equals(fichierOuvert)) {
+      return;
+    }
+    close();
+    arbre = new ArbreBPlus(fichier.toPath(), pagesEnCache);
+    fichierOuvert = fichier;
+  }
+  
+  /**
+   * Lit les lignes des enregistrements d'un préfixe.
+   */
+  private List<String> lireLignes(String nomFichier, String prefixe,
+      String section, String cle) throws IOException {
+    if (!new File(nomFichier).exists()) {
+      throw new IOException("Fichier introuvable : " + nomFichier);
+    }
+    ouvrir(nomFichier);
+    List<String> lignes = new ArrayList<>();
+    arbre.parcourir(prefixe, (k, valeur) -> {
+      String ligne = texte(valeur);
+      // Un préfixe d'ingrédient ou de pizza peut couvrir d'autres noms
+      if (cle == null || cle.equals(IndexSauvegarde.cle(ligne))) {
+        lignes.add(ligne);
+      }
+      return true;
+    });
+    return lignes;
+  }
+  
+  /**
+   * Charge le fichier, notifications suspendues.
+   */
+  private void charger(String nomFichier, boolean clients) throws IOException {
+    if (!new File(nomFichier).exists()) {
+      throw new IOException("Fichier introuvable : " + nomFichier);
+    }
+    ouvrir(nomFichier);
+    Observateurs.suspendre();
+    try {
+      // Ingrédients, pizzas, clients et interdictions par le chargeur
+      // parallèle ; commandes et évaluations ensuite
+      List<ChargeurParallele.Bloc> blocs = new ArrayList<>();
+      StringBuilder texte = new StringBuilder();
+      int[] nb = new int[1];
+      List<String> commandes = new ArrayList<>();
+      List<String> evaluations = new ArrayList<>();
+      arbre.parcourir("", (cle, valeur) -> {
+        if (cle.startsWith(COMMANDE)) {
+          if (clients) {
+            commandes.add(cle);
+            commandes.add(texte(valeur));
+          }
+        } else if (cle.startsWith(EVALUATION)) {
+          evaluations.add(texte(valeur));
+        } else if (clients || !cle.startsWith(CLIENT)) {
+          texte.append(texte(valeur)).append('\n');
+          if (++nb[0] % LIGNES_PAR_BLOC == 0) {
+            blocs.add(ChargeurParallele.Bloc.analyser(texte.toString()));
+            texte.setLength(0);
+          }
+        }
+        return true;
+      });
+      blocs.add(ChargeurParallele.Bloc.analyser(texte.toString()));
+      new ChargeurParallele(gestionnaire).appliquer(blocs);
+      
+      if (!clients) {
+        Compte.setSourceClients(new ClientsALaDemande());
+      }
+      for (int i = 0; i < commandes.size(); i += 2) {
+        restaurerCommande(commandes.get(i), commandes.get(i + 1));
+      }
+      for (String ligne : evaluations) {
+        restaurerEvaluation(ligne);
+      }
+    } catch (ExecutionException e) {
+      throw new IOException("Erreur lecture fichier : "
+          + e.getCause().getMessage(), e.getCause());
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IOException("Chargement interrompu", e);
+    } catch (RuntimeException e) {
+      throw new IOException("Erreur lecture fichier : " + e.getMessage(), e);
+    } finally {
+      Observateurs.reprendre();
+    }
+  }
+  
+  /**
+   * Recrée une commande traitée avec son identifiant (il fait partie de la
+   * clé de son enregistrement).
+   */
+  private void restaurerCommande(String cle, String ligne) {
+    // Format : COMMANDE;email;etat;#id;$prix/cout,...;pizza1;pizza2...
+    String[] parts = ligne.split(";");
+    Client client = Compte.getClientParEmail(parts[1]);
+    int id = Integer.parseInt(cle.substring(cle.lastIndexOf(':') + 1));
+    if (client == null) {
+      return;
+    }
+    int debut = parts.length > 3 && Instantane.lireIdentifiant(parts[3]) >= 0
+        ? 4 : 3;
+    long[] prix = debut < parts.length
+        ? Instantane.lirePrix(parts[debut]) : null;
+    if (prix != null) {
+      debut++;
+    }
+    Pizza[] pizzas = new Pizza[parts.length - debut];
+    for (int i = 0; i < pizzas.length; i++) {
+      pizzas[i] = gestionnaire.getPizzaParNom(parts[debut + i]);
+    }
+    Instantane.restaurerCommande(client, id, EtatCommande.valueOf(parts[2]),
+        pizzas, prix);
+  }
+  
+  /**
+   * Ajoute une évaluation à sa pizza.
+   */
+  private void restaurerEvaluation(String ligne) {
+    // Format : EVALUATION;nomPizza;email;note;commentaire
+    String[] parts = ligne.split(";");
+    if (parts.length < 5) {
+      return;
+    }
+    Pizza p = gestionnaire.getPizzaParNom(parts[1]);
+    Client client = Compte.getClientParEmail(parts[2]);
+    if (p != null && client != null) {
+      p.getEvaluations().add(
+          new Evaluation(Integer.parseInt(parts[3]), parts[4], client));
+    }
+  }
+  
+  /**
+   * Lit dans le fichier les clients absents de la mémoire.
+   */
+  private final class ClientsALaDemande implements SourceClients {
+    
+    @Override
+    public Client chargerClient(String email) {
+      if (arbre == null) {
+        return null;
+      }
+      Observateurs.suspendre();
+      try {
+        byte[] valeur = arbre.lire(CLIENT + email);
+        if (valeur == null) {
+          return null;
+        }
+        // Format : CLIENT;email;mdp;nom;prenom;adresse;age
+        String[] parts = texte(valeur).split(";");
+        InformationPersonnelle info = new InformationPersonnelle(parts[3],
+            parts[4], parts[5], Integer.parseInt(parts[6]));
+        List<Client> inscrits = Compte.inscriptionEnMasse(
+            List.of(new Compte(parts[1], parts[2], info)));
+        if (inscrits.isEmpty()) {
+          return null;
+        }
+        List<String[]> commandes = new ArrayList<>();
+        arbre.parcourir(COMMANDE + email + ":", (cle, ligne) -> {
+          commandes.add(new String[] {cle, texte(ligne)});
+          return true;
+        });
+        for (String[] commande : commandes) {
+          restaurerCommande(commande[0], commande[1]);
+        }
+        return inscrits.get(0);
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      } finally {
+        Observateurs.reprendre();
+      }
+    }
+  }
+  
+  /**
+   * Répercute chaque modification dans le fichier ouvert.
+   */
+  private final class MisesAJour implements ObservateurModifications {
+    
+    private IOException erreur;
+    
+    @Override
+    public void ingredientCree(Ingredient ingredient) {
+      ecrire(cleIngredient(ingredient), i -> i.ajouterIngredient(ingredient));
+    }
+    
+    @Override
+    public void prixIngredientModifie(Ingredient ingredient) {
+      ingredientCree(ingredient);
+    }
+    
+    @Override
+    public void interdictionModifiee(Ingredient ingredient, TypePizza type,
+        boolean interdit) {
+      String cle = cleInterdiction(ingredient.getNom(), type);
+      if (interdit) {
+        ecrire(cle, i -> i.ajouterInterdiction(ingredient.getNom(), type,
+            null));
+      } else {
+        supprimer(cle);
+      }
+    }
+    
+    @Override
+    public void pizzaCreee(Pizza pizza) {
+      ecrire(clePizza(pizza), i -> i.ajouterPizza(pizza));
+    }
+    
+    @Override
+    public void ingredientAjoute(Pizza pizza, Ingredient ingredient) {
+      pizzaCreee(pizza);
+    }
+    
+    @Override
+    public void ingredientRetire(Pizza pizza, Ingredient ingredient) {
+      pizzaCreee(pizza);
+    }
+    
+    @Override
+    public void prixPizzaModifie(Pizza pizza) {
+      pizzaCreee(pizza);
+    }
+    
+    @Override
+    public void photoPizzaModifiee(Pizza pizza) {
+      pizzaCreee(pizza);
+    }
+    
+    @Override
+    public void typePizzaModifie(Pizza pizza) {
+      pizzaCreee(pizza);
+    }
+    
+    @Override
+    public void clientInscrit(Client client) {
+      ecrire(cleClient(client), i -> i.ajouterClient(client));
+    }
+    
+    @Override
+    public void pizzaAjouteeCommande(Commande commande, Pizza pizza) {
+      commandeModifiee(commande);
+    }
+    
+    @Override
+    public void pizzaRetireeCommande(Commande commande, Pizza pizza) {
+      commandeModifiee(commande);
+    }
+    
+    @Override
+    public void etatCommandeModifie(Commande commande,
+        EtatCommande ancienEtat) {
+      commandeModifiee(commande);
+    }
+    
+    @Override
+    public void commandeRetiree(Commande commande) {
+      supprimer(cleCommande(commande));
+    }
+    
+    @Override
+    public void evaluationAjoutee(Pizza pizza, Evaluation evaluation) {
+      ecrire(cleEvaluation(pizza, evaluation),
+          i -> i.ajouterEvaluation(pizza, evaluation));
+    }
+    
+    /**
+     * Seules les commandes traitées sont enregistrées.
+     */
+    private void commandeModifiee(Commande commande) {
+      if (commande.getEtat() == EtatCommande.TRAITEE) {
+        ecrire(cleCommande(commande), i -> i.ajouterCommande(commande));
+      } else {
+        supprimer(cleCommande(commande));
+      }
+    }
+    
+    private void ecrire(String cle, Consumer<Instantane> capture) {
+      try {
+        if (arbre.ecrire(cle, octets(ligne(capture)))) {
+          arbre.synchroniser();
+        }
+      } catch (IOException e) {
+        echec(e);
+      }
+    }
+    
+    private void supprimer(String cle) {
+      try {
+        if (arbre.supprimer(cle)) {
+          arbre.synchroniser();
+        }
+      } catch (IOException e) {
+        echec(e);
+      }
+    }
+    
+    private void echec(IOException e) {
+      if (erreur == null) {
+        erreur = e;
+        ecouteur.echec(e);
+      }
+    }
+  }
+  
+  /**
+   * Enregistrements de toutes les entités en mémoire, par clé.
+   */
+  private Map<String, String> capturer() {
+    Map<String, String> enregistrements = new LinkedHashMap<>();
+    for (Ingredient ing : gestionnaire.getIngredients()) {
+      enregistrements.put(cleIngredient(ing),
+          ligne(i -> i.ajouterIngredient(ing)));
+      for (TypePizza type : TypePizza.values()) {
+        if (gestionnaire.estIngredientInterdit(type, ing)) {
+          enregistrements.put(cleInterdiction(ing.getNom(), type),
+              ligne(i -> i.ajouterInterdiction(ing.getNom(), type, null)));
+        }
+      }
+    }
+    for (Pizza p : gestionnaire.getPizzas()) {
+      enregistrements.put(clePizza(p), ligne(i -> i.ajouterPizza(p)));
+      for (Evaluation e : p.getEvaluations()) {
+        enregistrements.put(cleEvaluation(p, e),
+            ligne(i -> i.ajouterEvaluation(p, e)));
+      }
+    }
+    for (Client c : Compte.getTousLesClients()) {
+      enregistrements.put(cleClient(c), ligne(i -> i.ajouterClient(c)));
+    }
+    for (Commande c : gestionnaire.commandesDejaTraitees()) {
+      enregistrements.put(cleCommande(c), ligne(i -> i.ajouterCommande(c)));
+    }
+    return enregistrements;
+  }
+  
+  /**
+   * Indique si l'enregistrement d'une clé concerne des données en mémoire
+   * (les clients non chargés et leurs commandes ne le sont pas).
+   */
+  private static boolean estCharge(String cle, Set<String> clientsCharges) {
+    if (cle.startsWith(CLIENT)) {
+      return clientsCharges.contains(cle.substring(CLIENT.length()));
+    }
+    if (cle.startsWith(COMMANDE)) {
+      return clientsCharges.contains(
+          cle.substring(COMMANDE.length(), cle.lastIndexOf(':')));
+    }
+    return true;
+  }
+  
+  /**
+   * Met en forme une ligne au format texte.
+   */
+  private static String ligne(Consumer<Instantane> capture) {
+    Instantane instantane = new Instantane();
+    capture.accept(instantane);
+    return instantane.getLigne(0);
+  }
+  
+  private static String prefixe(String section) {
+    return IndexSauvegarde.SECTIONS.indexOf(section) + ":";
+  }
+  
+  private static String cleIngredient(Ingredient ing) {
+    return INGREDIENT + ing.getNom();
+  }
+  
+  private static String clePizza(Pizza p) {
+    return PIZZA + p.getNom();
+  }
+  
+  private static String cleClient(Client c) {
+    return CLIENT + c.getCompte().getEmail();
+  }
+  
+  private static String cleInterdiction(String ingredient, TypePizza type) {
+    return INTERDICTION + ingredient + ":" + type;
+  }
+  
+  private static String cleCommande(Commande c) {
+    return COMMANDE + c.getClient().getCompte().getEmail() + ":"
+        + String.format("%010d", c.getIdCommande());
+  }
+  
+  /**
+   * Un client n'évalue qu'une fois une pizza (voir {@link Pizza#ajouterEvaluation}).
+   */
+  private static String cleEvaluation(Pizza p, Evaluation e) {
+    return EVALUATION + p.getNom() + ":" + e.getAuteur().getCompte().getEmail();
+  }
+  
+  private static byte[] octets(String ligne) {
+    return ligne.getBytes(StandardCharsets.UTF_8);
+  }
+  
+  private static String texte(byte[] valeur) {
+    return new String(valeur, StandardCharsets.UTF_8);
+  }
+}
@@ -0,0 +1,160 @@
+package io;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import pizzas.Client;
+import pizzas.Commande;
+import pizzas.EtatCommande;
+import pizzas.Evaluation;
+import pizzas.Ingredient;
+import pizzas.ObservateurModifications;
+import pizzas.Pizza;
+import pizzas.TypePizza;
+
+/**
+ * Suivi des entités modifiées depuis la dernière sauvegarde, utilisé par la
+ * sauvegarde différentielle de {@link GestionSauvegarde}.
+ *
+ * <p>Seules les entités que le format texte sait écrire sont suivies : les
+ * ingrédients, les pizzas, les clients, les interdictions, les commandes
+ * passées à l'état TRAITEE et les nouvelles évaluations.
+ *
+ * @author Kevin SIDER
+ * @version 1.0
+ */
+class SuiviModifications implements ObservateurModifications {
+  
+  private final Set<Ingredient> ingredients = new LinkedHashSet<>();
+  
+  private final Set<Pizza> pizzas = new LinkedHashSet<>();
+  
+  private final Set<Client> clients = new LinkedHashSet<>();
+  
+  /**
+   * Ingrédients dont au moins une interdiction a changé.
+   */
+  private final Set<Ingredient> interdictions = new LinkedHashSet<>();
+  
+  private final List<Commande> commandesTraitees = new ArrayList<>();
+  
+  private final Map<Evaluation, Pizza> evaluations = new LinkedHashMap<>();
+  
+  /**
+   * Indique si rien n'a été modifié depuis la dernière sauvegarde.
+   *
+   * @return true si aucune entité n'est à sauvegarder
+   */
+  synchronized boolean estVide() {
+    return ingredients.isEmpty() && pizzas.isEmpty() && clients.isEmpty()
+        && interdictions.isEmpty() && commandesTraitees.isEmpty()
+        && evaluations.isEmpty();
+  }
+  
+  /**
+   * Oublie toutes les modifications (après une sauvegarde).
+   */
+  synchronized void vider() {
+    ingredients.clear();
+    pizzas.clear();
+    clients.clear();
+    interdictions.clear();
+    commandesTraitees.clear();
+    evaluations.clear();
+  }
+  
+  synchronized List<Ingredient> getIngredients() {
+    return new ArrayList<>(ingredients);
+  }
+  
+  synchronized List<Pizza> getPizzas() {
+    return new ArrayList<>(pizzas);
+  }
+  
+  synchronized List<Client> getClients() {
+    return new ArrayList<>(clients);
+  }
+  
+  synchronized List<Ingredient> getInterdictions() {
+    return new ArrayList<>(interdictions);
+  }
+  
+  synchronized List<Commande> getCommandesTraitees() {
+    return new ArrayList<>(commandesTraitees);
+  }
+  
+  synchronized Map<Evaluation, Pizza> getEvaluations() {
+    return new LinkedHashMap<>(evaluations);
+  }
+  
+  @Override
+  public synchronized void ingredientCree(Ingredient ingredient) {
+    ingredients.add(ingredient);
+  }
+  
+  @Override
+  public synchronized void prixIngredientModifie(Ingredient ingredient) {
+    ingredients.add(ingredient);
+  }
+  
+  @Override
+  public synchronized void interdictionModifiee(Ingredient ingredient,
+      TypePizza type, boolean interdit) {
+    interdictions.add(ingredient);
+  }
+  
+  @Override
+  public synchronized void pizzaCreee(Pizza pizza) {
+    pizzas.add(pizza);
+  }
+  
+  @Override
+  public synchronized void ingredientAjoute(Pizza pizza,
+      Ingredient ingredient) {
+    pizzas.add(pizza);
+  }
+  
+  @Override
+  public synchronized void ingredientRetire(Pizza pizza,
+      Ingredient ingredient) {
+    pizzas.add(pizza);
+  }
+  
+  @Override
+  public synchronized void prixPizzaModifie(Pizza pizza) {
+    pizzas.add(pizza);
+  }
+  
+  @Override
+  public synchronized void photoPizzaModifiee(Pizza pizza) {
+    pizzas.add(pizza);
+  }
+  
+  @Override
+  public synchronized void typePizzaModifie(Pizza pizza) {
+    pizzas.add(pizza);
+  }
+  
+  @Override
+  public synchronized void clientInscrit(Client client) {
+    clients.add(client);
+  }
+  
+  @Override
+  public synchronized void etatCommandeModifie(Commande commande,
+      EtatCommande ancienEtat) {
+    // Une commande traitée n'est plus modifiée : elle est écrite une fois
+    if (commande.getEtat() == EtatCommande.TRAITEE) {
+      commandesTraitees.add(commande);
+    }
+  }
+  
+  @Override
+  public synchronized void evaluationAjoutee(Pizza pizza,
+      Evaluation evaluation) {
+    evaluations.put(evaluation, pizza);
+  }
+}
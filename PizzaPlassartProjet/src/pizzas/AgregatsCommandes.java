@@ -0,0 +1,201 @@
+package pizzas;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Totaux des commandes traitées en mémoire, tenus à jour par {@link Client}
+ * à chaque fois qu'une commande entre dans l'état traité ou en sort : les
+ * statistiques du pizzaiolo se lisent sans parcourir les commandes.
+ *
+ * <p>Les totaux sont calculés sur les lignes des commandes ({@link
+ * LigneCommande}), comme ceux de {@link Statistique}, et donnent les mêmes
+ * résultats. Les totaux par client sont gardés par client, et regroupés par
+ * informations personnelles à la lecture (elles peuvent changer).
+ *
+ * @author Rayan Ladrait
+ */
+final class AgregatsCommandes {
+  
+  /**
+   * Bénéfice (indice 0, en centimes) et quantité commandée (indice 1) par
+   * pizza. Une pizza qui n'est plus commandée est retirée.
+   */
+  private static final Map<Pizza, long[]> parPizza = new HashMap<>();
+  
+  /**
+   * Bénéfice (indice 0, en centimes), nombre de pizzas (indice 1) et nombre de
+   * commandes traitées (indice 2) par client.
+   */
+  private static final Map<Client, long[]> parClient = new IdentityHashMap<>();
+  
+  private static long beneficeTotal;
+  
+  private AgregatsCommandes() {
+  }
+  
+  /**
+   * Ajoute une commande qui vient d'entrer dans l'état traité.
+   *
+   * @param commande la commande
+   */
+  static synchronized void ajouter(Commande commande) {
+    cumuler(commande, commande.getLignes(), 1);
+  }
+  
+  /**
+   * Retire une commande qui vient de sortir de l'état traité.
+   *
+   * @param commande la commande
+   */
+  static synchronized void retirer(Commande commande) {
+    cumuler(commande, commande.getLignes(), -1);
+  }
+  
+  /**
+   * Remplace les lignes d'une commande traitée dont les pizzas ont changé.
+   *
+   * @param commande la commande
+   * @param anciennes les lignes qui avaient été ajoutées
+   */
+  static synchronized void lignesModifiees(Commande commande,
+      List<LigneCommande> anciennes) {
+    cumuler(commande, anciennes, -1);
+    cumuler(commande, commande.getLignes(), 1);
+  }
+  
+  /**
+   * Oublie tous les totaux.
+   */
+  static synchronized void vider() {
+    parPizza.clear();
+    parClient.clear();
+    beneficeTotal = 0;
+  }
+  
+  private static void cumuler(Commande commande, List<LigneCommande> lignes,
+      int signe) {
+    long benefice = 0;
+    long nbPizzas = 0;
+    for (LigneCommande l : lignes) {
+      long[] total = parPizza.computeIfAbsent(l.getPizza(), p -> new long[2]);
+      total[0] += signe * l.getBeneficeCentimes();
+      total[1] += signe * l.getQuantite();
+      if (total[1] == 0) {
+        parPizza.remove(l.getPizza());
+      }
+      benefice += l.getBeneficeCentimes();
+      nbPizzas += l.getQuantite();
+    }
+    beneficeTotal += signe * benefice;
+    long[] total = parClient.computeIfAbsent(commande.getClient(),
+        c -> new long[3]);
+    total[0] += signe * benefice;
+    total[1] += signe * nbPizzas;
+    total[2] += signe;
+    if (total[2] == 0) {
+      parClient.remove(commande.getClient());
+    }
+  }
+  
+  /**
+   * Retourne le bénéfice de toutes les commandes traitées.
+   *
+   * @return le bénéfice en centimes
+   */
+  static synchronized long beneficeTotalCentimes() {
+    return beneficeTotal;
+  }
+  
+  /**
+   * Retourne le bénéfice apporté par chaque pizza (voir
+   * {@link Statistique#beneficeParPizza}).
+   *
+   * @param catalogue les pizzas à inclure même si elles n'ont pas été
+   *        commandées
+   * @return le bénéfice en euros par pizza
+   */
+  static synchronized Map<Pizza, Double> beneficeParPizza(
+      Set<Pizza> catalogue) {
+    Map<Pizza, Double> result = new HashMap<>();
+    for (Pizza p : catalogue) {
+      result.put(p, 0.0);
+    }
+    for (Map.Entry<Pizza, long[]> e : parPizza.entrySet()) {
+      result.put(e.getKey(), Montant.enEuros(e.getValue()[0]));
+    }
+    return result;
+  }
+  
+  /**
+   * Retourne le nombre de fois qu'une pizza a été commandée.
+   *
+   * @param pizza la pizza
+   * @return le nombre de pizzas commandées
+   */
+  static synchronized int nombrePizzasCommandees(Pizza pizza) {
+    long[] total = parPizza.get(pizza);
+    return total != null ? (int) total[1] : 0;
+  }
+  
+  /**
+   * Retourne les pizzas de la plus commandée à la moins commandée (voir
+   * {@link Statistique#classementPizzas}).
+   *
+   * @param catalogue les pizzas à inclure même si elles n'ont pas été
+   *        commandées
+   * @return les pizzas par nombre de commandes décroissant
+   */
+  static synchronized List<Pizza> classementPizzas(Set<Pizza> catalogue) {
+    Map<Pizza, Long> quantites = new HashMap<>();
+    for (Pizza p : catalogue) {
+      quantites.put(p, 0L);
+    }
+    for (Map.Entry<Pizza, long[]> e : parPizza.entrySet()) {
+      quantites.put(e.getKey(), e.getValue()[1]);
+    }
+    List<Pizza> classement = new ArrayList<>(quantites.keySet());
+    classement.sort(Comparator.comparing(quantites::get).reversed());
+    return classement;
+  }
+  
+  /**
+   * Retourne le nombre de pizzas commandées par chaque client (voir
+   * {@link Statistique#nombrePizzasParClient}).
+   *
+   * @return le nombre de pizzas par client
+   */
+  static synchronized Map<InformationPersonnelle, Integer>
+      nombrePizzasParClient() {
+    Map<InformationPersonnelle, Integer> result = new HashMap<>();
+    for (Map.Entry<Client, long[]> e : parClient.entrySet()) {
+      result.merge(e.getKey().getInfoPersonnelle(), (int) e.getValue()[1],
+          Integer::sum);
+    }
+    return result;
+  }
+  
+  /**
+   * Retourne le bénéfice apporté par chaque client (voir
+   * {@link Statistique#beneficeParClient}).
+   *
+   * @return le bénéfice en euros par client
+   */
+  static synchronized Map<InformationPersonnelle, Double> beneficeParClient() {
+    Map<InformationPersonnelle, long[]> totaux = new HashMap<>();
+    for (Map.Entry<Client, long[]> e : parClient.entrySet()) {
+      totaux.computeIfAbsent(e.getKey().getInfoPersonnelle(),
+          k -> new long[1])[0] += e.getValue()[0];
+    }
+    Map<InformationPersonnelle, Double> result = new HashMap<>();
+    for (Map.Entry<InformationPersonnelle, long[]> e : totaux.entrySet()) {
+      result.put(e.getKey(), Montant.enEuros(e.getValue()[0]));
+    }
+    return result;
+  }
+}
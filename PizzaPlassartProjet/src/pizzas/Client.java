@@ -2,8 +2,14 @@ package pizzas;
 
 import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
 
 /**
  * Description d'un client de la pizzeria : un compte et la liste de ses
@@ -28,6 +34,13 @@ public final class Client implements Serializable {
    */
   private final List<Commande> commandes;
   
+  /**
+   * Les commandes de ce client par état, tenues à jour à chaque changement
+   * d'état.
+   */
+  private final Map<EtatCommande, Set<Commande>> commandesParEtat =
+      creerCasesEtats();
+  
   private final GestCommande gestCommande;
   
   /**
@@ -35,6 +48,32 @@ public final class Client implements Serializable {
    */
   private static int compteurCommande = 1;
   
+  /**
+   * Commandes de tous les clients par identifiant.
+   */
+  private static final IndexCommandes indexCommandes = new IndexCommandes();
+  
+  /**
+   * Commandes de tous les clients par état (protégées, comme l'index, par le
+   * verrou de {@link #indexCommandes}).
+   */
+  private static final Map<EtatCommande, Set<Commande>> toutesParEtat =
+      creerCasesEtats();
+  
+  /**
+   * Clients ayant au moins une commande dans chaque état, par identité
+   * (protégés par le même verrou).
+   */
+  private static final Map<EtatCommande, Set<Client>> clientsParEtat =
+      new EnumMap<>(EtatCommande.class);
+  
+  static {
+    for (EtatCommande etat : EtatCommande.values()) {
+      clientsParEtat.put(etat,
+          Collections.newSetFromMap(new IdentityHashMap<>()));
+    }
+  }
+  
   /**
    * Crée un client à partir de son compte.
    *
@@ -65,12 +104,17 @@ public final class Client implements Serializable {
   }
   
   /**
-   * Renvoie la liste de toutes les commandes du client.
+   * Renvoie la commande de ce client ayant l'identifiant donné.
    *
    * @param idCmd l'identifiant unique de la commande recherchée
-   * @return une vue non modifiable de la liste des commandes
+   * @return la commande, ou null si ce client n'en a pas avec cet identifiant
    */
   public Commande getCommandes(int idCmd) {
+    Commande commande = getCommandeParId(idCmd);
+    if (commande == null || commande.getClient() == this) {
+      return commande;
+    }
+    // Identifiant repris par la commande d'un autre client
     for (Commande c : commandes) {
       if (c.getIdCommande() == idCmd) {
         return c;
@@ -87,6 +131,14 @@ public final class Client implements Serializable {
   public void ajouterCommande(Commande commande) {
     if (commande != null) {
       commandes.add(commande);
+      synchronized (indexCommandes) {
+        indexCommandes.ajouter(commande);
+        ajouterDansEtat(commande, commande.getEtat());
+        if (toutesParEtat.get(commande.getEtat()).add(commande)
+            && commande.getEtat() == EtatCommande.TRAITEE) {
+          AgregatsCommandes.ajouter(commande);
+        }
+      }
     }
   }
   
@@ -96,7 +148,20 @@ public final class Client implements Serializable {
    * @param commande la commande à retirer
    */
   public void retirerCommande(Commande commande) {
-    commandes.remove(commande);
+    if (commandes.remove(commande)) {
+      synchronized (indexCommandes) {
+        indexCommandes.retirer(commande);
+        // Une commande ajoutée deux fois reste dans son état
+        if (!commandes.contains(commande)) {
+          retirerDeEtat(commande, commande.getEtat());
+          if (toutesParEtat.get(commande.getEtat()).remove(commande)
+              && commande.getEtat() == EtatCommande.TRAITEE) {
+            AgregatsCommandes.retirer(commande);
+          }
+        }
+      }
+      Observateurs.commandeRetiree(commande);
+    }
   }
   
   /**
@@ -143,7 +208,32 @@ public final class Client implements Serializable {
    * @return la liste des commandes non traitées
    */
   public List<Commande> getCommandesEnCours() {
-    return GestCommande.commandesNonTraitees(commandes);
+    return getCommandes(EtatCommande.CREE);
+  }
+  
+  /**
+   * Renvoie les commandes de ce client dans un état, dans l'ordre où elles y
+   * sont entrées.
+   *
+   * @param etat l'état des commandes
+   * @return la liste des commandes dans cet état
+   */
+  public List<Commande> getCommandes(EtatCommande etat) {
+    synchronized (indexCommandes) {
+      return new ArrayList<>(commandesParEtat.get(etat));
+    }
+  }
+  
+  /**
+   * Renvoie le nombre de commandes de ce client dans un état.
+   *
+   * @param etat l'état des commandes
+   * @return le nombre de commandes dans cet état
+   */
+  public int getNbCommandes(EtatCommande etat) {
+    synchronized (indexCommandes) {
+      return commandesParEtat.get(etat).size();
+    }
   }
   
   public GestCommande getGestionnaireCommande() {
@@ -178,9 +268,177 @@ public final class Client implements Serializable {
   public Commande nouvelleCommande() {
     Commande cmd = new Commande(compteurCommande++, this);
     this.ajouterCommande(cmd);
+    Observateurs.commandeCreee(cmd);
+    return cmd;
+  }
+  
+  /**
+   * Recrée une commande de ce client avec un identifiant déjà attribué (lors
+   * d'une reprise après redémarrage). Les identifiants générés ensuite sont
+   * tous supérieurs à celui-ci.
+   *
+   * @param idCommande l'identifiant de la commande à recréer
+   * @return la commande recréée
+   */
+  public Commande restaurerCommande(int idCommande) {
+    reserverIdentifiantCommande(idCommande);
+    Commande cmd = new Commande(idCommande, this);
+    this.ajouterCommande(cmd);
+    Observateurs.commandeCreee(cmd);
     return cmd;
   }
   
+  /**
+   * Garantit que les identifiants générés ensuite par
+   * {@link #nouvelleCommande()} sont tous supérieurs à celui donné (déjà
+   * attribué à une commande qui n'est pas en mémoire).
+   *
+   * @param idCommande l'identifiant déjà attribué
+   */
+  public static void reserverIdentifiantCommande(int idCommande) {
+    if (compteurCommande <= idCommande) {
+      compteurCommande = idCommande + 1;
+    }
+  }
+  
+  /**
+   * Retrouve une commande en mémoire, quel que soit son client, à partir de
+   * son identifiant.
+   *
+   * @param idCommande l'identifiant de la commande
+   * @return la commande, ou null si aucune commande en mémoire n'a cet
+   *         identifiant
+   */
+  public static Commande getCommandeParId(int idCommande) {
+    synchronized (indexCommandes) {
+      return indexCommandes.get(idCommande);
+    }
+  }
+  
+  /**
+   * Renvoie les commandes en mémoire de tous les clients dans un état, dans
+   * l'ordre où elles y sont entrées.
+   *
+   * @param etat l'état des commandes
+   * @return la liste des commandes dans cet état
+   */
+  public static List<Commande> getToutesCommandes(EtatCommande etat) {
+    synchronized (indexCommandes) {
+      return new ArrayList<>(toutesParEtat.get(etat));
+    }
+  }
+  
+  /**
+   * Renvoie les clients en mémoire qui ont au moins une commande dans un
+   * état.
+   *
+   * @param etat l'état des commandes
+   * @return la liste de ces clients
+   */
+  public static List<Client> getClientsAvecCommandes(EtatCommande etat) {
+    synchronized (indexCommandes) {
+      return new ArrayList<>(clientsParEtat.get(etat));
+    }
+  }
+  
+  /**
+   * Ajoute une commande à la case d'un état de ce client (sous le verrou de
+   * l'index).
+   */
+  private void ajouterDansEtat(Commande commande, EtatCommande etat) {
+    Set<Commande> commandesEtat = commandesParEtat.get(etat);
+    if (commandesEtat.add(commande) && commandesEtat.size() == 1) {
+      clientsParEtat.get(etat).add(this);
+    }
+  }
+  
+  /**
+   * Retire une commande de la case d'un état de ce client (sous le verrou de
+   * l'index).
+   *
+   * @return true si la commande était dans cette case
+   */
+  private boolean retirerDeEtat(Commande commande, EtatCommande etat) {
+    Set<Commande> commandesEtat = commandesParEtat.get(etat);
+    if (!commandesEtat.remove(commande)) {
+      return false;
+    }
+    if (commandesEtat.isEmpty()) {
+      clientsParEtat.get(etat).remove(this);
+    }
+    return true;
+  }
+  
+  /**
+   * Déplace une commande dans la case de son nouvel état (appelée par
+   * {@link Commande} à chaque changement d'état).
+   *
+   * @param commande la commande
+   * @param ancienEtat l'état qu'elle vient de quitter
+   */
+  static void etatCommandeModifie(Commande commande, EtatCommande ancienEtat) {
+    Client client = commande.getClient();
+    if (client == null || ancienEtat == null || commande.getEtat() == null) {
+      return;
+    }
+    synchronized (indexCommandes) {
+      // Les commandes qui ne sont pas à un client sont ignorées
+      if (client.retirerDeEtat(commande, ancienEtat)) {
+        client.ajouterDansEtat(commande, commande.getEtat());
+        if (toutesParEtat.get(ancienEtat).remove(commande)) {
+          toutesParEtat.get(commande.getEtat()).add(commande);
+          // Les totaux des commandes traitées suivent les entrées et sorties
+          if (ancienEtat == EtatCommande.TRAITEE) {
+            AgregatsCommandes.retirer(commande);
+          } else if (commande.getEtat() == EtatCommande.TRAITEE) {
+            AgregatsCommandes.ajouter(commande);
+          }
+        }
+      }
+    }
+  }
+  
+  /**
+   * Met à jour les totaux des commandes traitées quand les lignes d'une
+   * commande changent (appelée par {@link Commande}).
+   *
+   * @param commande la commande
+   * @param anciennes ses lignes avant le changement
+   */
+  static void lignesCommandeModifiees(Commande commande,
+      List<LigneCommande> anciennes) {
+    synchronized (indexCommandes) {
+      if (anciennes != null
+          && toutesParEtat.get(EtatCommande.TRAITEE).contains(commande)) {
+        AgregatsCommandes.lignesModifiees(commande, anciennes);
+      }
+    }
+  }
+  
+  /**
+   * Oublie toutes les commandes (voir {@link Compte#resetMemoire()}).
+   */
+  static void viderIndexCommandes() {
+    synchronized (indexCommandes) {
+      indexCommandes.vider();
+      for (Set<Commande> commandesEtat : toutesParEtat.values()) {
+        commandesEtat.clear();
+      }
+      for (Set<Client> clientsEtat : clientsParEtat.values()) {
+        clientsEtat.clear();
+      }
+      AgregatsCommandes.vider();
+    }
+  }
+  
+  private static Map<EtatCommande, Set<Commande>> creerCasesEtats() {
+    Map<EtatCommande, Set<Commande>> cases = new EnumMap<>(EtatCommande.class);
+    for (EtatCommande etat : EtatCommande.values()) {
+      cases.put(etat, new LinkedHashSet<>());
+    }
+    return cases;
+  }
+  
   @Override
   public int hashCode() {
     return Objects.hash(compte);
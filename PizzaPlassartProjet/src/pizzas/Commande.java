@@ -1,13 +1,20 @@
 package pizzas;
 
+import java.time.LocalDate;
 import java.util.ArrayList;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Représente une commande réalisée par un client. Une commande contient une
  * liste de pizzas, un client associé, un état (créée, validée, traitée) et un
  * prix total calculé en fonction des pizzas ajoutées.
  *
+ * <p>À la validation, les pizzas sont figées en lignes ({@link LigneCommande})
+ * qui gardent le prix de vente et le coût de chaque pizza à ce moment : les
+ * statistiques d'une commande validée ne changent plus avec les prix.
+ *
  * @author leo.montay
  * @version 1.0
  */
@@ -34,9 +41,19 @@ public class Commande {
   private EtatCommande etat;
   
   /**
-   * Prix total de la commande.
+   * Prix total de la commande, en centimes.
+   */
+  private long prixTotal;
+  
+  /**
+   * Lignes figées à la validation, ou null tant que la commande est créée.
+   */
+  private volatile List<LigneCommande> lignes;
+  
+  /**
+   * Jour de création de la commande.
    */
-  private double prixTotal;
+  private LocalDate date;
   
   /**
    * Construit une commande avec un identifiant et un client. L'état de la
@@ -50,7 +67,8 @@ public class Commande {
     this.client = client;
     this.pizzas = new ArrayList<>();
     this.etat = EtatCommande.CREE;
-    this.prixTotal = 0.0;
+    this.prixTotal = 0;
+    this.date = LocalDate.now();
   }
   
   /**
@@ -71,6 +89,25 @@ public class Commande {
     return client;
   }
   
+  /**
+   * Renvoie le jour de création de la commande.
+   *
+   * @return jour de création
+   */
+  public LocalDate getDate() {
+    return date;
+  }
+  
+  /**
+   * Modifie le jour de création de la commande (lors de la reprise d'une
+   * commande sauvegardée).
+   *
+   * @param date jour de création
+   */
+  public void setDate(LocalDate date) {
+    this.date = date;
+  }
+  
   /**
    * Renvoie l'état actuel de la commande.
    *
@@ -86,7 +123,17 @@ public class Commande {
    * @param etat nouvel état
    */
   public void setEtat(EtatCommande etat) {
+    EtatCommande ancienEtat = this.etat;
     this.etat = etat;
+    if (ancienEtat == EtatCommande.CREE && lignes == null) {
+      // Commande reprise sans ses prix (sauvegarde ancienne) : figée avec
+      // les prix actuels
+      figer();
+    }
+    if (ancienEtat != etat) {
+      Client.etatCommandeModifie(this, ancienEtat);
+      Observateurs.etatCommandeModifie(this, ancienEtat);
+    }
   }
   
   /**
@@ -98,12 +145,32 @@ public class Commande {
     return pizzas;
   }
   
+  /**
+   * Renvoie les lignes de la commande : celles figées à la validation, ou,
+   * tant que la commande est créée, des lignes aux prix actuels.
+   *
+   * @return les lignes, une par pizza distincte, dans l'ordre d'ajout
+   */
+  public List<LigneCommande> getLignes() {
+    List<LigneCommande> figees = lignes;
+    return figees != null ? figees : construireLignes(null);
+  }
+  
   /**
    * Renvoie le prix total de la commande.
    *
    * @return prix total
    */
   public double getPrixTotal() {
+    return Montant.enEuros(prixTotal);
+  }
+  
+  /**
+   * Renvoie le prix total de la commande en centimes.
+   *
+   * @return prix total en centimes
+   */
+  public long getPrixTotalCentimes() {
     return prixTotal;
   }
   
@@ -116,7 +183,10 @@ public class Commande {
     if (etat != EtatCommande.CREE) {
       throw new CommandeException("La commande ne peut pas être validée.");
     }
+    figer();
     etat = EtatCommande.VALIDEE;
+    Client.etatCommandeModifie(this, EtatCommande.CREE);
+    Observateurs.etatCommandeModifie(this, EtatCommande.CREE);
   }
   
   
@@ -128,7 +198,12 @@ public class Commande {
   public void ajouterPizza(Pizza pizza) {
     if (pizza != null) {
       pizzas.add(pizza);
-      prixTotal += pizza.getPrix(); // ← Vérifiez que cette ligne existe
+      if (lignes != null) {
+        figer();
+      } else {
+        prixTotal += pizza.getPrixCentimes();
+      }
+      Observateurs.pizzaAjouteeCommande(this, pizza);
     }
   }
   
@@ -140,24 +215,110 @@ public class Commande {
    */
   public void retirerPizza(Pizza pizza) {
     if (pizzas.remove(pizza)) {
-      prixTotal -= pizza.getPrix();
+      if (lignes != null) {
+        figer();
+      } else {
+        prixTotal -= pizza.getPrixCentimes();
+      }
+      Observateurs.pizzaRetireeCommande(this, pizza);
     }
   }
   
   /**
    * Recalcule intégralement le prix total des pizzas de la commande. Utile en
-   * cas de modifications multiples.
+   * cas de modifications multiples. Une commande validée garde les prix de
+   * ses lignes.
    */
   public void calculerPrixTotal() {
-    prixTotal = 0.0;
+    List<LigneCommande> figees = lignes;
+    prixTotal = 0;
+    if (figees != null) {
+      for (LigneCommande l : figees) {
+        prixTotal += l.getPrixCentimes();
+      }
+    } else {
+      for (Pizza p : pizzas) {
+        prixTotal += p.getPrixCentimes();
+      }
+    }
+  }
+  
+  /**
+   * Fige une pizza de la commande aux prix relevés lors de sa validation,
+   * pour reprendre une commande sauvegardée. Les pizzas dont les prix ne sont
+   * pas restaurés prennent les prix actuels. Appelée avant
+   * {@link #setEtat}, elle évite que la commande ne soit figée aux prix
+   * actuels.
+   *
+   * @param pizza une pizza de la commande
+   * @param prixUnitaire prix de vente unitaire relevé, en centimes
+   * @param coutUnitaire coût unitaire relevé, en centimes
+   */
+  public void restaurerPrix(Pizza pizza, long prixUnitaire,
+      long coutUnitaire) {
+    List<LigneCommande> anciennes = lignes;
+    List<LigneCommande> existantes = new ArrayList<>();
+    if (anciennes != null) {
+      for (LigneCommande l : anciennes) {
+        if (l.getPizza() != pizza) {
+          existantes.add(l);
+        }
+      }
+    }
+    existantes.add(new LigneCommande(pizza, 0, prixUnitaire, coutUnitaire));
+    lignes = construireLignes(existantes);
+    calculerPrixTotal();
+    Client.lignesCommandeModifiees(this, anciennes);
+  }
+  
+  /**
+   * Fige les pizzas de la commande en lignes. Les pizzas qui avaient déjà une
+   * ligne gardent leurs prix, les autres prennent les prix actuels.
+   */
+  private void figer() {
+    List<LigneCommande> anciennes = lignes;
+    lignes = construireLignes(anciennes);
+    calculerPrixTotal();
+    Client.lignesCommandeModifiees(this, anciennes);
+  }
+  
+  /**
+   * Regroupe les pizzas en lignes, avec les prix des lignes existantes pour
+   * les pizzas qui en ont une.
+   */
+  private List<LigneCommande> construireLignes(List<LigneCommande> existantes) {
+    Map<Pizza, LigneCommande> anciennes = new IdentityHashMap<>();
+    if (existantes != null) {
+      for (LigneCommande l : existantes) {
+        anciennes.put(l.getPizza(), l);
+      }
+    }
+    Map<Pizza, int[]> quantites = new IdentityHashMap<>();
+    List<Pizza> ordre = new ArrayList<>();
     for (Pizza p : pizzas) {
-      prixTotal += p.getPrix();
+      int[] quantite = quantites.get(p);
+      if (quantite == null) {
+        quantites.put(p, new int[] {1});
+        ordre.add(p);
+      } else {
+        quantite[0]++;
+      }
+    }
+    List<LigneCommande> resultat = new ArrayList<>(ordre.size());
+    for (Pizza p : ordre) {
+      LigneCommande ancienne = anciennes.get(p);
+      long prix = ancienne != null ? ancienne.getPrixUnitaireCentimes()
+          : p.getPrixCentimes();
+      long cout = ancienne != null ? ancienne.getCoutUnitaireCentimes()
+          : p.calculerPrixMinimalCentimes();
+      resultat.add(new LigneCommande(p, quantites.get(p)[0], prix, cout));
     }
+    return List.copyOf(resultat);
   }
   
   @Override
   public String toString() {
     return "Commande #" + idCommande + " - " + client.getCompte().getEmail()
-        + " - " + String.format("%.2f", prixTotal) + "€" + " - " + etat;
+        + " - " + String.format("%.2f", getPrixTotal()) + "€" + " - " + etat;
   }
 }
@@ -3,6 +3,7 @@ package pizzas;
 import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
@@ -28,6 +29,9 @@ public final class Compte implements Serializable {
   /** Clients enregistrés (clé = email normalisé). */
   private static final Map<String, Client> clientsParEmail = new HashMap<>();
   
+  /** Source des clients absents de la mémoire (ou null). */
+  private static SourceClients sourceClients = null;
+  
   /** Le seul client connecté à un instant donné (ou null). */
   private static Client clientConnecte = null;
   
@@ -56,15 +60,42 @@ public final class Compte implements Serializable {
     }
     
     String key = normaliserEmail(email);
-    if (clientsParEmail.containsKey(key)) {
+    if (rechercher(key) != null) {
       return 2;
     }
     
     Compte compte = new Compte(email, mdp, infoPersonnelle);
-    clientsParEmail.put(key, new Client(compte));
+    Client client = new Client(compte);
+    clientsParEmail.put(key, client);
+    Observateurs.clientInscrit(client);
     return 0;
   }
   
+  /**
+   * Inscrit un lot de clients (chargement d'un fichier...). Les comptes déjà
+   * inscrits ou en double dans le lot sont ignorés (le premier l'emporte).
+   * L'unicité est vérifiée à l'aide d'une table temporaire, puis les clients
+   * sont enregistrés en une seule fois.
+   *
+   * @param lot les comptes à inscrire (déjà validés par leur constructeur)
+   * @return les clients créés, dans l'ordre du lot
+   */
+  public static List<Client> inscriptionEnMasse(List<Compte> lot) {
+    Map<String, Client> nouveaux = new LinkedHashMap<>();
+    for (Compte compte : lot) {
+      String key = compte.getEmail();
+      if (!clientsParEmail.containsKey(key) && !nouveaux.containsKey(key)) {
+        nouveaux.put(key, new Client(compte));
+      }
+    }
+    clientsParEmail.putAll(nouveaux);
+    List<Client> clients = new ArrayList<>(nouveaux.values());
+    for (Client client : clients) {
+      Observateurs.clientInscrit(client);
+    }
+    return clients;
+  }
+  
   /**
    * Connecte un client si email+mdp corrects.
    *
@@ -81,7 +112,7 @@ public final class Compte implements Serializable {
     }
     
     String key = normaliserEmail(email);
-    Client c = clientsParEmail.get(key);
+    Client c = rechercher(key);
     if (c == null) {
       return false;
     }
@@ -113,7 +144,43 @@ public final class Compte implements Serializable {
    */
   public Client getClient() {
     String key = normaliserEmail(this.email);
-    return clientsParEmail.get(key);
+    return rechercher(key);
+  }
+  
+  /**
+   * Retrouve un client inscrit à partir de son email.
+   *
+   * @param email email (normalisé ou non)
+   * @return le client correspondant ou null s'il n'existe pas
+   */
+  public static Client getClientParEmail(String email) {
+    if (email == null) {
+      return null;
+    }
+    return rechercher(normaliserEmail(email));
+  }
+  
+  /**
+   * Retrouve un client en mémoire ou, à défaut, dans la source des clients.
+   */
+  private static Client rechercher(String key) {
+    Client c = clientsParEmail.get(key);
+    if (c == null && sourceClients != null) {
+      c = sourceClients.chargerClient(key);
+    }
+    return c;
+  }
+  
+  /**
+   * Fixe la source des clients qui ne sont pas gardés en mémoire : un client
+   * absent y est cherché avant de conclure qu'il n'existe pas.
+   * {@link #getTousLesClients()} et {@link #getComptes()} ne retournent que
+   * les clients en mémoire.
+   *
+   * @param source la source, ou null si tous les clients sont en mémoire
+   */
+  public static void setSourceClients(SourceClients source) {
+    sourceClients = source;
   }
   
   /**
@@ -141,7 +208,10 @@ public final class Compte implements Serializable {
    */
   public static void resetMemoire() {
     clientsParEmail.clear();
+    Client.viderIndexCommandes();
     clientConnecte = null;
+    // Une source ne vaut que pour les clients qu'elle complète
+    sourceClients = null;
   }
   
   /* -------------------- Partie “objet Compte” -------------------- */
@@ -1,6 +1,10 @@
 package pizzas;
 
+import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
 import java.util.Set;
 
 /**
@@ -63,7 +67,7 @@ public class Filtre {
       throw new IllegalArgumentException("Aucun filtre n'a été sélectionné");
     }
     for (String ing : ingredients) {
-      ingredientsFiltre.add(ing.toLowerCase());
+      ingredientsFiltre.add(ing.toLowerCase(Locale.ROOT));
     }
   }
   
@@ -90,6 +94,15 @@ public class Filtre {
    */
   public Set<Pizza> selectionPizzaFiltres() {
     Set<Pizza> res = new HashSet<>();
+    long prixMaximumCentimes =
+        prixMaximum != null ? Montant.depuisEurosParDefaut(prixMaximum)
+            : Long.MAX_VALUE;
+    
+    // Identifiants acceptés pour chaque ingrédient du filtre
+    List<BitSet> identifiantsFiltre = new ArrayList<>();
+    for (String nom : ingredientsFiltre) {
+      identifiantsFiltre.add(RegistreIngredients.identifiantsSansCasse(nom));
+    }
     
     for (Pizza pizza : pizzas) {
       // Filtre par type
@@ -97,17 +110,11 @@ public class Filtre {
         continue;
       }
       // Filtre par ingrédients
-      if (!ingredientsFiltre.isEmpty()) {
-        Set<String> nomsIngredientsPizza = new HashSet<>();
-        for (Ingredient ingredient : pizza.getIngredients()) {
-          nomsIngredientsPizza.add(ingredient.getNom().toLowerCase());
-        }
-        if (!nomsIngredientsPizza.containsAll(ingredientsFiltre)) {
-          continue;
-        }
+      if (!contientTous(pizza, identifiantsFiltre)) {
+        continue;
       }
       // Filtre par prix
-      if (prixMaximum != null && pizza.getPrix() > prixMaximum) {
+      if (pizza.getPrixCentimes() > prixMaximumCentimes) {
         continue;
       }
       
@@ -118,6 +125,18 @@ public class Filtre {
     return res;
   }
   
+  /**
+   * Indique si une pizza contient un des ingrédients de chaque ensemble.
+   */
+  private static boolean contientTous(Pizza pizza, List<BitSet> identifiants) {
+    for (BitSet ids : identifiants) {
+      if (!pizza.contientIngredientParmi(ids)) {
+        return false;
+      }
+    }
+    return true;
+  }
+  
   /**
    * Supprime tous les filtres qui ont été définis.
    */
@@ -111,13 +111,22 @@ public class GestClient implements InterClient {
     return client.getCommandesPassees();
   }
   
+  @Override
+  public Commande getCommande(int idCommande) throws NonConnecteException {
+    Client client = Compte.getClientConnecte();
+    if (client == null) {
+      throw new NonConnecteException("Aucun client n'est connecté.");
+    }
+    return client.getCommandes(idCommande);
+  }
+  
   /**
    * Gestion des pizzas et des filtres.
    */
   
   @Override
   public Set<Pizza> getPizzas() {
-    return new HashSet<>(Pizza.getCatalogue());
+    return Pizza.getEnsembleCatalogue();
   }
   
   @Override
@@ -137,8 +146,7 @@ public class GestClient implements InterClient {
   
   @Override
   public Set<Pizza> selectionPizzaFiltres() {
-    Set<Pizza> catalogueAjour = new HashSet<>(Pizza.getCatalogue());
-    this.filtre.setPizzas(catalogueAjour);
+    this.filtre.setPizzas(Pizza.getEnsembleCatalogue());
     return this.filtre.selectionPizzaFiltres();
   }
   
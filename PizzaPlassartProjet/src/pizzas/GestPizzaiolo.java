@@ -1,12 +1,19 @@
 package pizzas;
 
 import java.io.IOException;
+import java.time.Instant;
+import java.time.LocalDate;
 import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.EnumMap;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.function.Supplier;
 
 /**
  * Classe de base (Façade) pour la gestion des interactions du pizzaiolo avec la
@@ -21,11 +28,46 @@ import java.util.Set;
 public class GestPizzaiolo implements InterPizzaiolo {
   private List<Pizza> pizzas;
   private List<Ingredient> ingredients;
-  private Map<TypePizza, List<Ingredient>> ingredientsInterdits;
-  private List<Commande> commandes;
+  
+  /**
+   * Ingrédients interdits par type de pizza : le bit d'indice
+   * {@link Ingredient#getId()} est levé pour chaque ingrédient interdit.
+   */
+  private Map<TypePizza, BitSet> ingredientsInterdits;
+  
+  /**
+   * Index des ingrédients et des pizzas par nom, tenus à jour avec les
+   * listes.
+   */
+  private Map<String, Ingredient> ingredientsParNom;
+  private Map<String, Pizza> pizzasParNom;
+  
+  /**
+   * Pizzas gérées par ce gestionnaire, par identité (et non par nom comme
+   * {@link Pizza#equals}).
+   */
+  private Set<Pizza> pizzasGerees;
   @SuppressWarnings("unused")
   private Pizzaiolo pizzaiolo;
   
+  /**
+   * Source des commandes traitées non chargées (null si toutes les commandes
+   * sont en mémoire).
+   */
+  private SourceHistorique historique;
+  
+  /**
+   * Pizzas dont le prix minimal a changé lors du dernier changement de prix
+   * d'un ingrédient.
+   */
+  private List<Pizza> pizzasPrixMinimalModifie = List.of();
+  
+  /**
+   * Si vrai, les statistiques lues dans les totaux tenus à jour sont
+   * recalculées par {@link Statistique} et comparées.
+   */
+  private boolean verificationAgregats;
+  
   /**
    * Initialise le gestionnaire pour un pizzaiolo donné et instancie les
    * structures de données vides (pizzas, ingrédients, commandes).
@@ -36,15 +78,21 @@ public class GestPizzaiolo implements InterPizzaiolo {
     this.pizzaiolo = pizzaiolo;
     this.pizzas = new ArrayList<>();
     this.ingredients = new ArrayList<>();
-    this.ingredientsInterdits = new HashMap<>();
-    this.commandes = new ArrayList<>();
+    this.ingredientsInterdits = new EnumMap<>(TypePizza.class);
+    for (TypePizza type : TypePizza.values()) {
+      ingredientsInterdits.put(type, new BitSet());
+    }
+    this.ingredientsParNom = new HashMap<>();
+    this.pizzasParNom = new HashMap<>();
+    this.pizzasGerees = Collections.newSetFromMap(new IdentityHashMap<>());
   }
   
   /**
-   * Retourne la liste de tous les ingrédients.
+   * Retourne la liste de tous les ingrédients, dans l'ordre de création
+   * (vue non modifiable).
    */
   public List<Ingredient> getIngredients() {
-    return ingredients;
+    return Collections.unmodifiableList(ingredients);
   }
   
   /**
@@ -54,12 +102,17 @@ public class GestPizzaiolo implements InterPizzaiolo {
     if (nom == null || nom.trim().isEmpty()) {
       return null;
     }
-    for (Ingredient ing : ingredients) {
-      if (ing.getNom().equals(nom)) {
-        return ing;
-      }
-    }
-    return null;
+    return ingredientsParNom.get(nom);
+  }
+  
+  /**
+   * Retourne l'ingrédient de ce nom géré par ce gestionnaire.
+   *
+   * @param nom le nom de l'ingrédient
+   * @return l'ingrédient ou null s'il n'existe pas
+   */
+  public Ingredient getIngredientParNom(String nom) {
+    return rechercherIngredient(nom);
   }
   
   /**
@@ -71,48 +124,86 @@ public class GestPizzaiolo implements InterPizzaiolo {
    * @return true si l'ingrédient est interdit pour ce type, false sinon
    */
   public boolean estIngredientInterdit(TypePizza type, Ingredient ing) {
-    List<Ingredient> interdits = ingredientsInterdits.get(type);
-    if (interdits != null) {
-      return interdits.contains(ing);
+    if (type == null || ing == null) {
+      return false;
     }
-    return false;
+    return ingredientsInterdits.get(type).get(ing.getId());
   }
   
   /**
-   * Récupère toutes les commandes de tous les clients.
+   * Indique si une pizza contient un ingrédient interdit pour son type (un
+   * test de bit par ingrédient de sa recette).
+   *
+   * @param pizza la pizza à vérifier
+   * @return true si un de ses ingrédients est interdit pour son type
    */
-  private List<Commande> recupererToutesLesCommandes() {
-    List<Commande> toutes = new ArrayList<>();
-    
-    // Utiliser la méthode existante getTousLesClients()
-    for (Client client : Compte.getTousLesClients()) {
-      // Ajouter toutes les commandes du client (en cours + passées)
-      toutes.addAll(client.getCommandesEnCours());
-      toutes.addAll(client.getCommandesPassees());
-    }
-    
-    return toutes;
+  public boolean contientIngredientInterdit(Pizza pizza) {
+    return pizza.getType() != null && pizza
+        .contientIngredientParmi(ingredientsInterdits.get(pizza.getType()));
   }
   
   /**
    * Récupère la liste globale de toutes les commandes qui sont dans l'état
    * TRAITEE.
    * 
-   * <p>Cette méthode agrège les historiques de commandes de tous les clients
-   * enregistrés pour ne retourner que celles qui ont été finalisées.
+   * <p>Les commandes traitées de tous les clients sont tenues à jour à chaque
+   * changement d'état : le coût ne dépend que du nombre de commandes
+   * retournées.
+   * </p>
+   *
+   * <p>Seules les commandes en mémoire sont retournées : avec un historique
+   * (voir {@link #setHistorique}), les jours non encore chargés en sont
+   * absents.
    * </p>
    *
    * @return une liste contenant toutes les commandes traitées du système
    */
   public List<Commande> getCommandesTraitees() {
-    List<Commande> toutes = recupererToutesLesCommandes();
-    List<Commande> traitees = new ArrayList<>();
-    for (Commande c : toutes) {
-      if (c.getEtat() == EtatCommande.TRAITEE) {
-        traitees.add(c);
+    return getCommandesParEtat(EtatCommande.TRAITEE);
+  }
+  
+  /**
+   * Retourne les commandes traitées créées pendant une période. Les commandes
+   * de la période qui ne sont pas en mémoire sont d'abord chargées depuis
+   * l'historique.
+   *
+   * @param debut le premier jour (inclus), ou null pour le début de
+   *        l'historique
+   * @param fin le dernier jour (inclus), ou null pour la fin de l'historique
+   * @return les commandes traitées de la période
+   */
+  public List<Commande> getCommandesTraitees(LocalDate debut, LocalDate fin) {
+    chargerHistorique(debut, fin);
+    List<Commande> periode = new ArrayList<>();
+    for (Commande c : getCommandesTraitees()) {
+      LocalDate date = c.getDate();
+      if ((debut == null || !date.isBefore(debut))
+          && (fin == null || !date.isAfter(fin))) {
+        periode.add(c);
       }
     }
-    return traitees;
+    return periode;
+  }
+  
+  /**
+   * Fixe la source des commandes traitées qui ne sont pas gardées en mémoire.
+   * Les historiques et les statistiques y chargent alors les commandes dont
+   * ils ont besoin.
+   *
+   * @param historique la source de l'historique, ou null si toutes les
+   *        commandes sont en mémoire
+   */
+  public void setHistorique(SourceHistorique historique) {
+    this.historique = historique;
+  }
+  
+  /**
+   * Charge depuis l'historique les commandes traitées d'une période.
+   */
+  private void chargerHistorique(LocalDate debut, LocalDate fin) {
+    if (historique != null) {
+      historique.chargerPeriode(debut, fin);
+    }
   }
   
   /**
@@ -122,13 +213,7 @@ public class GestPizzaiolo implements InterPizzaiolo {
    * @return la liste des commandes correspondant à l'état donné
    */
   public List<Commande> getCommandesParEtat(EtatCommande etat) {
-    List<Commande> resultat = new ArrayList<>();
-    for (Commande c : commandes) {
-      if (c.getEtat() == etat) {
-        resultat.add(c);
-      }
-    }
-    return resultat;
+    return Client.getToutesCommandes(etat);
   }
   
   @Override
@@ -145,6 +230,8 @@ public class GestPizzaiolo implements InterPizzaiolo {
     
     Ingredient nouveauIngredient = new Ingredient(nom, prix);
     ingredients.add(nouveauIngredient);
+    ingredientsParNom.put(nom, nouveauIngredient);
+    Observateurs.ingredientCree(nouveauIngredient);
     return 0;
   }
   
@@ -162,10 +249,121 @@ public class GestPizzaiolo implements InterPizzaiolo {
       return -3;
     }
     
-    ingredient.setPrix(prix);
+    appliquerPrix(Map.of(ingredient, prix), System.currentTimeMillis());
+    Observateurs.prixIngredientModifie(ingredient);
     return 0;
   }
   
+  /**
+   * Change le prix de plusieurs ingrédients en une fois, par exemple à la
+   * réception d'un nouveau tarif du fournisseur. Tous les prix sont vérifiés
+   * avant qu'un seul soit changé, et seuls les prix minimaux des pizzas
+   * utilisant ces ingrédients sont recalculés.
+   *
+   * <p>Le rapport retourné donne les pizzas dont le prix de vente fixé est
+   * devenu inférieur au nouveau prix minimal. Avec {@code ajuster}, leur
+   * prix de vente est porté à ce prix minimal.
+   *
+   * <p>Le changement est un tout : tous les prix, ajustements compris,
+   * portent le même instant dans l'historique et sont notifiés ensemble
+   * ({@link ObservateurModifications#tarifsModifies}), si bien que le
+   * journal les rejoue tous ou aucun.
+   *
+   * @param nouveauxPrix les nouveaux prix en euros, par nom d'ingrédient
+   * @param ajuster true pour porter au prix minimal les pizzas vendues à
+   *        perte
+   * @return le rapport du changement
+   * @throws IllegalArgumentException si un ingrédient n'existe pas ou si un
+   *         prix est invalide (aucun prix n'est alors changé)
+   */
+  public RapportTarifs changerPrixIngredients(Map<String, Double> nouveauxPrix,
+      boolean ajuster) {
+    Map<Ingredient, Double> prix = new IdentityHashMap<>();
+    for (Map.Entry<String, Double> e : nouveauxPrix.entrySet()) {
+      Ingredient ingredient = rechercherIngredient(e.getKey());
+      if (ingredient == null) {
+        throw new IllegalArgumentException(
+            "Ingrédient inconnu : " + e.getKey());
+      }
+      if (e.getValue() == null || e.getValue() <= 0) {
+        throw new IllegalArgumentException(
+            "Prix invalide pour " + e.getKey() + " : " + e.getValue());
+      }
+      prix.put(ingredient, e.getValue());
+    }
+    
+    long instant = System.currentTimeMillis();
+    List<Pizza> modifiees = appliquerPrix(prix, instant);
+    // Seules les pizzas dont le prix minimal a changé peuvent être à perte
+    List<Pizza> sousPrixMinimal = new ArrayList<>();
+    Map<Pizza, Long> prixVente = new IdentityHashMap<>();
+    for (Pizza p : modifiees) {
+      if (p.getPrixCentimes() < p.calculerPrixMinimalCentimes()) {
+        sousPrixMinimal.add(p);
+        prixVente.put(p, p.getPrixCentimes());
+      }
+    }
+    if (ajuster) {
+      for (Pizza p : sousPrixMinimal) {
+        p.changerPrixCentimes(p.calculerPrixMinimalCentimes(), instant);
+      }
+    }
+    Observateurs.tarifsModifies(new ArrayList<>(prix.keySet()),
+        ajuster ? sousPrixMinimal : List.of());
+    return new RapportTarifs(modifiees, sousPrixMinimal, prixVente, ajuster);
+  }
+  
+  /**
+   * Change le prix d'ingrédients déjà vérifiés, à un même instant et sans
+   * notification, et retourne les pizzas dont le prix minimal a changé.
+   * Seules les pizzas utilisant ces ingrédients sont recalculées.
+   */
+  private List<Pizza> appliquerPrix(Map<Ingredient, Double> prix,
+      long instant) {
+    Map<Pizza, Long> anciensPrix = new IdentityHashMap<>();
+    for (Ingredient ingredient : prix.keySet()) {
+      for (Pizza p : pizzasAvecIngredient(ingredient)) {
+        anciensPrix.putIfAbsent(p, p.calculerPrixMinimalCentimes());
+      }
+    }
+    for (Map.Entry<Ingredient, Double> e : prix.entrySet()) {
+      e.getKey().changerPrix(Montant.depuisEuros(e.getValue()), instant);
+    }
+    List<Pizza> modifiees = new ArrayList<>();
+    for (Map.Entry<Pizza, Long> e : anciensPrix.entrySet()) {
+      if (e.getKey().calculerPrixMinimalCentimes() != e.getValue()) {
+        modifiees.add(e.getKey());
+      }
+    }
+    pizzasPrixMinimalModifie = modifiees;
+    return modifiees;
+  }
+  
+  @Override
+  public Set<Pizza> pizzasAvecIngredient(String nomIngredient) {
+    Ingredient ingredient = rechercherIngredient(nomIngredient);
+    return ingredient != null ? pizzasAvecIngredient(ingredient) : Set.of();
+  }
+  
+  /**
+   * Retourne les pizzas de ce gestionnaire qui utilisent un ingrédient, en
+   * parcourant l'index inverse de l'ingrédient.
+   */
+  private Set<Pizza> pizzasAvecIngredient(Ingredient ingredient) {
+    Set<Pizza> resultat = Collections.newSetFromMap(new IdentityHashMap<>());
+    for (Pizza p : ingredient.getPizzas()) {
+      if (pizzasGerees.contains(p)) {
+        resultat.add(p);
+      }
+    }
+    return resultat;
+  }
+  
+  @Override
+  public List<Pizza> getPizzasPrixMinimalModifie() {
+    return Collections.unmodifiableList(pizzasPrixMinimalModifie);
+  }
+  
   @Override
   public boolean interdireIngredient(String nomIngredient, TypePizza type) {
     Ingredient ingredient = rechercherIngredient(nomIngredient);
@@ -173,18 +371,12 @@ public class GestPizzaiolo implements InterPizzaiolo {
       return false;
     }
     
-    List<Ingredient> interdits = ingredientsInterdits.get(type);
-    if (interdits == null) {
-      interdits = new ArrayList<>();
-      ingredientsInterdits.put(type, interdits);
-    }
+    BitSet interdits = ingredientsInterdits.get(type);
     
     // Logique d'interrupteur (Toggle)
-    if (interdits.contains(ingredient)) {
-      interdits.remove(ingredient);
-    } else {
-      interdits.add(ingredient);
-    }
+    interdits.flip(ingredient.getId());
+    boolean interdit = interdits.get(ingredient.getId());
+    Observateurs.interdictionModifiee(ingredient, type, interdit);
     return true;
   }
   
@@ -195,27 +387,40 @@ public class GestPizzaiolo implements InterPizzaiolo {
     if (nom == null || nom.trim().isEmpty()) {
       return null;
     }
-    for (Pizza p : pizzas) {
-      if (p.getNom().equals(nom)) {
-        return p;
-      }
-    }
-    return null;
+    return pizzasParNom.get(nom);
+  }
+  
+  /**
+   * Retourne la pizza de ce nom gérée par ce gestionnaire.
+   *
+   * @param nom le nom de la pizza
+   * @return la pizza ou null si elle n'existe pas
+   */
+  public Pizza getPizzaParNom(String nom) {
+    return rechercherPizza(nom);
   }
   
   /**
    * Retrouve une commande à partir de son texte affiché dans la ListView.
+   * Seul l'identifiant est lu : préférer {@link #getCommande(int)}.
    */
   public Commande getCommandeByString(String txt) {
-    if (txt == null) {
+    if (txt == null || !txt.startsWith("Commande #")) {
       return null;
     }
-    for (Commande c : recupererToutesLesCommandes()) {
-      if (c.toString().equals(txt)) {
-        return c;
-      }
+    int fin = txt.indexOf(' ', "Commande #".length());
+    try {
+      Commande c = getCommande(Integer.parseInt(txt.substring(
+          "Commande #".length(), fin < 0 ? txt.length() : fin)));
+      return c != null && c.toString().equals(txt) ? c : null;
+    } catch (NumberFormatException e) {
+      return null;
     }
-    return null;
+  }
+  
+  @Override
+  public Commande getCommande(int idCommande) {
+    return Client.getCommandeParId(idCommande);
   }
   
   /**
@@ -223,8 +428,10 @@ public class GestPizzaiolo implements InterPizzaiolo {
    */
   public Set<InformationPersonnelle> getClientsAyantCommande() {
     Set<InformationPersonnelle> cl = new HashSet<>();
-    for (Commande c : commandes) {
-      cl.add(c.getClient().getInfoPersonnelle());
+    for (EtatCommande etat : EtatCommande.values()) {
+      for (Commande c : getCommandesParEtat(etat)) {
+        cl.add(c.getClient().getInfoPersonnelle());
+      }
     }
     return cl;
   }
@@ -242,10 +449,10 @@ public class GestPizzaiolo implements InterPizzaiolo {
   }
   
   /**
-   * Vérifie si une pizza est valide (non null et existe dans la liste).
+   * Vérifie si une pizza est valide (non null et gérée par ce gestionnaire).
    */
   private boolean estPizzaValide(Pizza pizza) {
-    return pizza != null && pizzas.contains(pizza);
+    return pizza != null && pizzasGerees.contains(pizza);
   }
   
   @Override
@@ -259,10 +466,25 @@ public class GestPizzaiolo implements InterPizzaiolo {
     
     Pizza nouvellePizza = new Pizza(nom, type);
     pizzas.add(nouvellePizza);
+    pizzasParNom.put(nom, nouvellePizza);
+    pizzasGerees.add(nouvellePizza);
     Pizza.ajouterPizzaCatalogue(nouvellePizza);
+    Observateurs.pizzaCreee(nouvellePizza);
     return nouvellePizza;
   }
   
+  /**
+   * Commence un import en masse (chargement d'un fichier...). Les
+   * ingrédients, pizzas et interdictions du lot sont vérifiés à l'aide de
+   * copies des index du gestionnaire, puis ajoutés au gestionnaire en une
+   * seule fois par {@link LotImport#publier()}.
+   *
+   * @return le lot d'import, vide
+   */
+  public LotImport debuterImport() {
+    return new LotImport();
+  }
+  
   @Override
   public int ajouterIngredientPizza(Pizza pizza, String nomIngredient) {
     if (!estPizzaValide(pizza)) {
@@ -299,7 +521,7 @@ public class GestPizzaiolo implements InterPizzaiolo {
       return -2;
     }
     
-    if (!pizza.getIngredients().contains(ingredient)) {
+    if (!pizza.contientIngredient(ingredient)) {
       return -3;
     }
     
@@ -314,6 +536,9 @@ public class GestPizzaiolo implements InterPizzaiolo {
     }
     
     Set<String> ingredientsInterditsSet = new HashSet<>();
+    if (!contientIngredientInterdit(pizza)) {
+      return ingredientsInterditsSet;
+    }
     for (Ingredient ing : pizza.getIngredients()) {
       if (estIngredientInterdit(pizza.getType(), ing)) {
         ingredientsInterditsSet.add(ing.getNom());
@@ -322,6 +547,24 @@ public class GestPizzaiolo implements InterPizzaiolo {
     return ingredientsInterditsSet;
   }
   
+  @Override
+  public List<Pizza> pizzasAvecIngredientInterdit(TypePizza type) {
+    List<Pizza> resultat = new ArrayList<>();
+    if (type == null) {
+      return resultat;
+    }
+    BitSet interdits = ingredientsInterdits.get(type);
+    if (interdits.isEmpty()) {
+      return resultat;
+    }
+    for (Pizza p : pizzas) {
+      if (p.getType() == type && p.contientIngredientParmi(interdits)) {
+        resultat.add(p);
+      }
+    }
+    return resultat;
+  }
+  
   @Override
   public boolean ajouterPhoto(Pizza pizza, String file) throws IOException {
     if (!estPizzaValide(pizza)) {
@@ -354,11 +597,11 @@ public class GestPizzaiolo implements InterPizzaiolo {
     if (!estPizzaValide(pizza)) {
       return false;
     }
-    double prixMinimal = pizza.calculerPrixMinimal();
-    if (prix < prixMinimal) {
+    long prixCentimes = Montant.depuisEuros(prix);
+    if (prixCentimes < pizza.calculerPrixMinimalCentimes()) {
       return false;
     }
-    pizza.setPrix(prix);
+    pizza.setPrixCentimes(prixCentimes);
     return true;
   }
   
@@ -370,17 +613,78 @@ public class GestPizzaiolo implements InterPizzaiolo {
     return pizza.calculerPrixMinimal();
   }
   
+  /**
+   * Calcule le prix minimal (le coût) d'une pizza avec les prix qu'avaient
+   * ses ingrédients à un instant passé. La recette utilisée est la recette
+   * actuelle.
+   *
+   * <p>Les prix ne sont historisés qu'en mémoire, depuis le démarrage ou le
+   * dernier chargement des données : avant, ils ne sont pas connus.
+   *
+   * @param pizza la pizza
+   * @param instant l'instant
+   * @return le prix minimal en euros, ou -1 si la pizza n'est pas gérée ou si
+   *         un de ses ingrédients n'existait pas encore
+   */
+  public double calculerPrixMinimalPizza(Pizza pizza, Instant instant) {
+    if (!estPizzaValide(pizza) || instant == null) {
+      return -1;
+    }
+    long prix = pizza.calculerPrixMinimalCentimesA(instant);
+    return prix >= 0 ? Montant.enEuros(prix) : -1;
+  }
+  
+  /**
+   * Retourne le prix de vente d'une pizza à un instant passé : le prix fixé
+   * à cet instant, ou à défaut son prix minimal à cet instant (connus depuis
+   * le dernier chargement, voir {@link #calculerPrixMinimalPizza(Pizza,
+   * Instant)}).
+   *
+   * @param pizza la pizza
+   * @param instant l'instant
+   * @return le prix de vente en euros, ou -1 s'il n'est pas connu
+   */
+  public double getPrixPizza(Pizza pizza, Instant instant) {
+    if (!estPizzaValide(pizza) || instant == null) {
+      return -1;
+    }
+    long prix = pizza.getPrixCentimesA(instant);
+    return prix >= 0 ? Montant.enEuros(prix) : -1;
+  }
+  
+  /**
+   * Calcule la marge d'une pizza à un instant passé : son prix de vente moins
+   * son prix minimal, tous deux à cet instant (connus depuis le dernier
+   * chargement, voir {@link #calculerPrixMinimalPizza(Pizza, Instant)}).
+   *
+   * @param pizza la pizza
+   * @param instant l'instant
+   * @return la marge en euros (négative si la pizza était vendue à perte), ou
+   *         {@link Double#NaN} si les prix ne sont pas connus à cet instant
+   */
+  public double calculerMargePizza(Pizza pizza, Instant instant) {
+    if (!estPizzaValide(pizza) || instant == null) {
+      return Double.NaN;
+    }
+    long cout = pizza.calculerPrixMinimalCentimesA(instant);
+    long prix = pizza.getPrixCentimesA(instant);
+    if (cout < 0 || prix < 0) {
+      return Double.NaN;
+    }
+    return Montant.enEuros(prix - cout);
+  }
+  
   @Override
   public Set<Pizza> getPizzas() {
-    return new java.util.HashSet<>(pizzas);
+    return new HashSet<>(pizzas);
   }
   
   @Override
   public Set<InformationPersonnelle> ensembleClients() {
     // Les clients sont ceux qui ont des commandes TRAITÉES
     Set<InformationPersonnelle> clients = new HashSet<>();
-    for (Commande c : getCommandesTraitees()) {
-      clients.add(c.getClient().getInfoPersonnelle());
+    for (Client client : Client.getClientsAvecCommandes(EtatCommande.TRAITEE)) {
+      clients.add(client.getInfoPersonnelle());
     }
     return clients;
   }
@@ -392,38 +696,63 @@ public class GestPizzaiolo implements InterPizzaiolo {
   
   @Override
   public List<Commande> commandeNonTraitees() {
-    List<Commande> toutes = recupererToutesLesCommandes();
-    List<Commande> nonTraitees = new ArrayList<>();
-    for (Commande c : toutes) {
-      if (c.getEtat() == EtatCommande.VALIDEE) {
-        nonTraitees.add(c);
-        c.setEtat(EtatCommande.TRAITEE);
-      }
-      if (c.getEtat() == EtatCommande.VALIDEE) {
-        nonTraitees.add(c);
-        // Les marquer comme traitées
-        c.setEtat(EtatCommande.TRAITEE);
-      }
+    List<Commande> nonTraitees = getCommandesParEtat(EtatCommande.VALIDEE);
+    for (Commande c : nonTraitees) {
+      // Les marquer comme traitées
+      c.setEtat(EtatCommande.TRAITEE);
     }
     return nonTraitees;
   }
   
   @Override
   public List<Commande> commandesTraiteesClient(InformationPersonnelle client) {
-    List<Commande> toutes = recupererToutesLesCommandes();
+    chargerHistorique(null, null);
     List<Commande> resultat = new ArrayList<>();
-    for (Commande c : toutes) {
-      if (c.getEtat() == EtatCommande.TRAITEE
-          && c.getClient().getInfoPersonnelle().equals(client)) {
-        resultat.add(c);
+    // Seuls les clients ayant des commandes traitées sont parcourus
+    for (Client c : Client.getClientsAvecCommandes(EtatCommande.TRAITEE)) {
+      if (c.getInfoPersonnelle().equals(client)) {
+        resultat.addAll(c.getCommandes(EtatCommande.TRAITEE));
       }
     }
     return resultat;
   }
   
+  /**
+   * Active ou désactive la vérification des statistiques. Les statistiques
+   * sur toutes les commandes traitées sont lues dans des totaux tenus à jour
+   * à chaque commande traitée ; en mode vérification, elles sont aussi
+   * recalculées sur les commandes par {@link Statistique}, et une différence
+   * lève une {@link IllegalStateException}.
+   *
+   * @param verification true pour vérifier chaque statistique
+   */
+  public void setVerificationAgregats(boolean verification) {
+    this.verificationAgregats = verification;
+  }
+  
+  /**
+   * Retourne une statistique lue dans les totaux, après l'avoir comparée à
+   * son recalcul en mode vérification.
+   */
+  private <T> T verifier(String statistique, T agregat,
+      Supplier<T> recalcul) {
+    if (verificationAgregats) {
+      T attendu = recalcul.get();
+      if (!attendu.equals(agregat)) {
+        throw new IllegalStateException("Statistique " + statistique
+            + " incohérente : " + agregat + " au lieu de " + attendu);
+      }
+    }
+    return agregat;
+  }
+  
   @Override
   public Map<Pizza, Double> beneficeParPizza() {
-    return Statistique.beneficeParPizza(getCommandesTraitees(), getPizzas());
+    chargerHistorique(null, null);
+    return verifier("beneficeParPizza",
+        AgregatsCommandes.beneficeParPizza(getPizzas()),
+        () -> Statistique.beneficeParPizza(getCommandesTraitees(),
+            getPizzas()));
   }
   
   @Override
@@ -433,17 +762,52 @@ public class GestPizzaiolo implements InterPizzaiolo {
   
   @Override
   public double beneficeToutesCommandes() {
-    return Statistique.calculerBeneficeTotal(getCommandesTraitees());
+    chargerHistorique(null, null);
+    long benefice = verifier("beneficeToutesCommandes",
+        AgregatsCommandes.beneficeTotalCentimes(),
+        () -> Statistique.calculerBeneficeTotalCentimes(
+            getCommandesTraitees()));
+    return Montant.enEuros(benefice);
+  }
+  
+  /**
+   * Calcule le bénéfice apporté par chaque pizza pendant une période.
+   *
+   * @param debut le premier jour (inclus), ou null pour le début de
+   *        l'historique
+   * @param fin le dernier jour (inclus), ou null pour la fin de l'historique
+   * @return le bénéfice de chaque pizza sur la période
+   */
+  public Map<Pizza, Double> beneficeParPizza(LocalDate debut, LocalDate fin) {
+    return Statistique.beneficeParPizza(getCommandesTraitees(debut, fin),
+        getPizzas());
+  }
+  
+  /**
+   * Calcule le bénéfice des commandes traitées pendant une période.
+   *
+   * @param debut le premier jour (inclus), ou null pour le début de
+   *        l'historique
+   * @param fin le dernier jour (inclus), ou null pour la fin de l'historique
+   * @return le bénéfice total de la période
+   */
+  public double beneficeToutesCommandes(LocalDate debut, LocalDate fin) {
+    return Statistique.calculerBeneficeTotal(getCommandesTraitees(debut, fin));
   }
   
   @Override
   public Map<InformationPersonnelle, Integer> nombrePizzasCommandeesParClient() {
-    return Statistique.nombrePizzasParClient(getCommandesTraitees());
+    chargerHistorique(null, null);
+    return verifier("nombrePizzasCommandeesParClient",
+        AgregatsCommandes.nombrePizzasParClient(),
+        () -> Statistique.nombrePizzasParClient(getCommandesTraitees()));
   }
   
   @Override
   public Map<InformationPersonnelle, Double> beneficeParClient() {
-    return Statistique.beneficeParClient(getCommandesTraitees());
+    chargerHistorique(null, null);
+    return verifier("beneficeParClient", AgregatsCommandes.beneficeParClient(),
+        () -> Statistique.beneficeParClient(getCommandesTraitees()));
   }
   
   @Override
@@ -451,11 +815,317 @@ public class GestPizzaiolo implements InterPizzaiolo {
     if (!estPizzaValide(pizza)) {
       return -1;
     }
-    return Statistique.nombrePizzasCommandees(getCommandesTraitees(), pizza);
+    chargerHistorique(null, null);
+    return verifier("nombrePizzasCommandees",
+        AgregatsCommandes.nombrePizzasCommandees(pizza),
+        () -> Statistique.nombrePizzasCommandees(getCommandesTraitees(),
+            pizza));
   }
   
   @Override
   public List<Pizza> classementPizzasParNombreCommandes() {
-    return Statistique.classementPizzas(getCommandesTraitees(), getPizzas());
+    chargerHistorique(null, null);
+    List<Pizza> classement = AgregatsCommandes.classementPizzas(getPizzas());
+    if (verificationAgregats) {
+      // Les pizzas commandées autant de fois peuvent être dans un autre
+      // ordre : on compare les nombres de commandes, rang par rang
+      List<Commande> commandes = getCommandesTraitees();
+      List<Pizza> attendu =
+          Statistique.classementPizzas(commandes, getPizzas());
+      verifier("classementPizzasParNombreCommandes",
+          nombresCommandes(commandes, classement),
+          () -> nombresCommandes(commandes, attendu));
+      verifier("classementPizzasParNombreCommandes", new HashSet<>(classement),
+          () -> new HashSet<>(attendu));
+    }
+    return classement;
+  }
+  
+  private static List<Integer> nombresCommandes(List<Commande> commandes,
+      List<Pizza> classement) {
+    List<Integer> nombres = new ArrayList<>();
+    for (Pizza p : classement) {
+      nombres.add(Statistique.nombrePizzasCommandees(commandes, p));
+    }
+    return nombres;
+  }
+  
+  /**
+   * Lot d'import en masse, créé par {@link GestPizzaiolo#debuterImport()}.
+   *
+   * <p>Les méthodes du lot ont les mêmes règles et les mêmes codes de retour
+   * que celles du gestionnaire, mais ne portent que sur les pizzas créées par
+   * le lot. Rien n'est visible dans le gestionnaire avant l'appel de
+   * {@link #publier()}, qui signale alors les créations aux observateurs. Un
+   * lot n'est pas prévu pour être utilisé par plusieurs threads.
+   */
+  public final class LotImport {
+    
+    /**
+     * Ingrédients du gestionnaire et du lot, par nom.
+     */
+    private final Map<String, Ingredient> ingredientsParNom = new HashMap<>();
+    
+    private final List<Ingredient> nouveauxIngredients = new ArrayList<>();
+    
+    /**
+     * Noms des pizzas du gestionnaire et du lot.
+     */
+    private final Set<String> nomsPizzas = new HashSet<>();
+    
+    private final List<Pizza> nouvellesPizzas = new ArrayList<>();
+    
+    private final Set<Pizza> pizzasDuLot =
+        Collections.newSetFromMap(new IdentityHashMap<>());
+    
+    /**
+     * Pizzas du lot dont le prix de vente a été fixé.
+     */
+    private final Set<Pizza> prixFixes =
+        Collections.newSetFromMap(new IdentityHashMap<>());
+    
+    /**
+     * Interdictions après application du lot, par type.
+     */
+    private final Map<TypePizza, BitSet> interdits =
+        new EnumMap<>(TypePizza.class);
+    
+    /**
+     * Interdictions inversées par le lot (une double inversion s'annule).
+     */
+    private final Map<TypePizza, BitSet> inversions =
+        new EnumMap<>(TypePizza.class);
+    
+    private boolean publie;
+    
+    private LotImport() {
+      ingredientsParNom.putAll(GestPizzaiolo.this.ingredientsParNom);
+      nomsPizzas.addAll(pizzasParNom.keySet());
+      for (TypePizza type : TypePizza.values()) {
+        interdits.put(type, (BitSet) ingredientsInterdits.get(type).clone());
+        inversions.put(type, new BitSet());
+      }
+    }
+    
+    /**
+     * Crée un ingrédient dans le lot (voir
+     * {@link GestPizzaiolo#creerIngredient(String, double)}).
+     *
+     * @param nom le nom de l'ingrédient
+     * @param prix le prix de l'ingrédient
+     * @return 0 si l'ingrédient est créé, -1 si le nom est invalide, -2 si
+     *         l'ingrédient existe déjà, -3 si le prix est invalide
+     */
+    public int creerIngredient(String nom, double prix) {
+      verifierOuvert();
+      if (nom == null || nom.trim().isEmpty()) {
+        return -1;
+      }
+      if (ingredientsParNom.containsKey(nom)) {
+        return -2;
+      }
+      if (prix <= 0) {
+        return -3;
+      }
+      Ingredient ingredient = new Ingredient(nom, prix);
+      ingredientsParNom.put(nom, ingredient);
+      nouveauxIngredients.add(ingredient);
+      return 0;
+    }
+    
+    /**
+     * Inverse l'interdiction d'un ingrédient pour un type de pizza (voir
+     * {@link GestPizzaiolo#interdireIngredient(String, TypePizza)}).
+     *
+     * @param nomIngredient le nom de l'ingrédient
+     * @param type le type de pizza
+     * @return true si l'ingrédient existe, false sinon
+     */
+    public boolean interdireIngredient(String nomIngredient, TypePizza type) {
+      verifierOuvert();
+      Ingredient ingredient = rechercher(nomIngredient);
+      if (ingredient == null) {
+        return false;
+      }
+      interdits.get(type).flip(ingredient.getId());
+      inversions.get(type).flip(ingredient.getId());
+      return true;
+    }
+    
+    /**
+     * Crée une pizza dans le lot (voir
+     * {@link GestPizzaiolo#creerPizza(String, TypePizza)}).
+     *
+     * @param nom le nom de la pizza
+     * @param type le type de la pizza
+     * @return la pizza créée, ou null si le nom est invalide ou déjà pris
+     */
+    public Pizza creerPizza(String nom, TypePizza type) {
+      verifierOuvert();
+      if (nom == null || nom.trim().isEmpty() || !nomsPizzas.add(nom)) {
+        return null;
+      }
+      Pizza pizza = new Pizza(nom, type);
+      nouvellesPizzas.add(pizza);
+      pizzasDuLot.add(pizza);
+      return pizza;
+    }
+    
+    /**
+     * Ajoute un ingrédient à une pizza du lot (voir
+     * {@link GestPizzaiolo#ajouterIngredientPizza(Pizza, String)}).
+     *
+     * @param pizza une pizza créée par ce lot
+     * @param nomIngredient le nom de l'ingrédient
+     * @return 0 si l'ingrédient est ajouté, -1 si la pizza n'est pas du lot, -2
+     *         si l'ingrédient n'existe pas, -3 s'il est interdit pour ce type
+     */
+    public int ajouterIngredientPizza(Pizza pizza, String nomIngredient) {
+      verifierOuvert();
+      if (!pizzasDuLot.contains(pizza)) {
+        return -1;
+      }
+      Ingredient ingredient = rechercher(nomIngredient);
+      if (ingredient == null) {
+        return -2;
+      }
+      if (interdits.get(pizza.getType()).get(ingredient.getId())) {
+        return -3;
+      }
+      // Les modifications d'une pizza non publiée ne sont pas signalées
+      Observateurs.suspendre();
+      try {
+        pizza.ajouterIngredient(ingredient);
+      } finally {
+        Observateurs.reprendre();
+      }
+      return 0;
+    }
+    
+    /**
+     * Fixe le prix d'une pizza du lot (voir
+     * {@link GestPizzaiolo#setPrixPizza(Pizza, double)}).
+     *
+     * @param pizza une pizza créée par ce lot
+     * @param prix le prix de vente
+     * @return true si le prix est accepté, false sinon
+     */
+    public boolean setPrixPizza(Pizza pizza, double prix) {
+      verifierOuvert();
+      long prixCentimes = Montant.depuisEuros(prix);
+      if (!pizzasDuLot.contains(pizza)
+          || prixCentimes < pizza.calculerPrixMinimalCentimes()) {
+        return false;
+      }
+      Observateurs.suspendre();
+      try {
+        pizza.setPrixCentimes(prixCentimes);
+      } finally {
+        Observateurs.reprendre();
+      }
+      prixFixes.add(pizza);
+      return true;
+    }
+    
+    /**
+     * Associe une photo à une pizza du lot (voir
+     * {@link GestPizzaiolo#ajouterPhoto(Pizza, String)}).
+     *
+     * @param pizza une pizza créée par ce lot
+     * @param file le chemin de la photo
+     * @return true si la photo est acceptée, false sinon
+     */
+    public boolean ajouterPhoto(Pizza pizza, String file) {
+      verifierOuvert();
+      if (!pizzasDuLot.contains(pizza) || file == null
+          || file.trim().isEmpty()) {
+        return false;
+      }
+      String extension = file.toLowerCase();
+      if (!extension.endsWith(".jpg") && !extension.endsWith(".jpeg")
+          && !extension.endsWith(".png") && !extension.endsWith(".gif")) {
+        return false;
+      }
+      Observateurs.suspendre();
+      try {
+        pizza.setPhoto(file);
+      } finally {
+        Observateurs.reprendre();
+      }
+      return true;
+    }
+    
+    /**
+     * Ajoute le contenu du lot au gestionnaire et au catalogue, puis signale
+     * les créations aux observateurs. Le lot ne peut plus être utilisé
+     * ensuite.
+     */
+    public void publier() {
+      verifierOuvert();
+      publie = true;
+      ingredients.addAll(nouveauxIngredients);
+      for (Ingredient ing : nouveauxIngredients) {
+        GestPizzaiolo.this.ingredientsParNom.put(ing.getNom(), ing);
+      }
+      pizzas.addAll(nouvellesPizzas);
+      for (Pizza p : nouvellesPizzas) {
+        pizzasParNom.put(p.getNom(), p);
+      }
+      pizzasGerees.addAll(nouvellesPizzas);
+      Pizza.ajouterPizzasCatalogue(nouvellesPizzas);
+      for (Map.Entry<TypePizza, BitSet> e : inversions.entrySet()) {
+        // Seules les interdictions inversées par le lot sont reprises
+        BitSet finals = interdits.get(e.getKey());
+        BitSet actuels = ingredientsInterdits.get(e.getKey());
+        BitSet inversees = e.getValue();
+        for (int id = inversees.nextSetBit(0); id >= 0;
+            id = inversees.nextSetBit(id + 1)) {
+          actuels.set(id, finals.get(id));
+        }
+      }
+      
+      for (Ingredient ing : nouveauxIngredients) {
+        Observateurs.ingredientCree(ing);
+      }
+      for (Pizza p : nouvellesPizzas) {
+        Observateurs.pizzaCreee(p);
+        for (Ingredient ing : p.getIngredients()) {
+          Observateurs.ingredientAjoute(p, ing);
+        }
+        if (prixFixes.contains(p)) {
+          Observateurs.prixPizzaModifie(p);
+        }
+        if (p.getPhoto() != null) {
+          Observateurs.photoPizzaModifiee(p);
+        }
+      }
+      for (Map.Entry<TypePizza, BitSet> e : inversions.entrySet()) {
+        if (e.getValue().isEmpty()) {
+          continue;
+        }
+        for (Ingredient ing : ingredientsParNom.values()) {
+          if (e.getValue().get(ing.getId())) {
+            Observateurs.interdictionModifiee(ing, e.getKey(),
+                interdits.get(e.getKey()).get(ing.getId()));
+          }
+        }
+      }
+    }
+    
+    /**
+     * Recherche un ingrédient du gestionnaire ou du lot.
+     */
+    private Ingredient rechercher(String nom) {
+      if (nom == null || nom.trim().isEmpty()) {
+        return null;
+      }
+      return ingredientsParNom.get(nom);
+    }
+    
+    private void verifierOuvert() {
+      if (publie) {
+        throw new IllegalStateException("Lot d'import déjà publié");
+      }
+    }
   }
 }
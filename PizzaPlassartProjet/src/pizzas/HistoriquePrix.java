@@ -0,0 +1,81 @@
+package pizzas;
+
+import java.time.Instant;
+import java.util.Arrays;
+
+/**
+ * Historique des prix d'un ingrédient ou d'une pizza : deux tableaux
+ * parallèles d'instants (en millisecondes) et de prix (en centimes), triés
+ * par instant, auxquels on ne fait qu'ajouter. Le prix à un instant donné se
+ * trouve par recherche dichotomique.
+ *
+ * <p>Deux changements dans la même milliseconde n'en font qu'un : seul le
+ * dernier prix est gardé.
+ *
+ * <p>L'historique n'existe qu'en mémoire : il ne fait partie d'aucun format
+ * de sauvegarde ni du journal. Le chargement recrée les ingrédients et les
+ * prix fixés, dont l'historique commence donc à l'instant du chargement ;
+ * les instants antérieurs donnent {@link #ABSENT}.
+ *
+ * @author Rayan Ladrait
+ */
+final class HistoriquePrix {
+  
+  /**
+   * Valeur retournée pour un instant antérieur au premier prix.
+   */
+  static final long ABSENT = -1;
+  
+  private long[] instants = new long[2];
+  private long[] prix = new long[2];
+  private int taille;
+  
+  /**
+   * Enregistre un prix à l'instant présent.
+   *
+   * @param valeur le prix en centimes
+   */
+  void enregistrer(long valeur) {
+    enregistrer(System.currentTimeMillis(), valeur);
+  }
+  
+  /**
+   * Enregistre un prix à un instant donné, qui ne doit pas précéder le
+   * dernier enregistré : les changements faits ensemble partagent le même
+   * instant.
+   *
+   * @param instant l'instant en millisecondes
+   * @param valeur le prix en centimes
+   */
+  synchronized void enregistrer(long instant, long valeur) {
+    if (taille > 0 && instant <= instants[taille - 1]) {
+      // Même milliseconde (ou horloge reculée) : le dernier prix remplace
+      prix[taille - 1] = valeur;
+      return;
+    }
+    if (taille == instants.length) {
+      instants = Arrays.copyOf(instants, taille * 2);
+      prix = Arrays.copyOf(prix, taille * 2);
+    }
+    instants[taille] = instant;
+    prix[taille] = valeur;
+    taille++;
+  }
+  
+  /**
+   * Retourne le prix en vigueur à un instant : le dernier enregistré à cet
+   * instant ou avant.
+   *
+   * @param instant l'instant
+   * @return le prix en centimes, ou {@link #ABSENT} si aucun prix n'avait
+   *         encore été enregistré
+   */
+  synchronized long prixA(Instant instant) {
+    int i = Arrays.binarySearch(instants, 0, taille, instant.toEpochMilli());
+    if (i < 0) {
+      // Dernier instant strictement antérieur
+      i = -i - 2;
+    }
+    return i >= 0 ? prix[i] : ABSENT;
+  }
+}
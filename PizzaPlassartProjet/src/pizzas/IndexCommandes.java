@@ -0,0 +1,156 @@
+package pizzas;
+
+import java.util.Arrays;
+
+/**
+ * Table des commandes par identifiant, à clés {@code int} : adressage ouvert
+ * avec sondage linéaire, sans objet {@code Integer} par entrée.
+ *
+ * <p>Les suppressions décalent les entrées suivantes de la même grappe, ce
+ * qui évite les marques de suppression. La table n'est pas synchronisée.
+ *
+ * @author Yaouanc kevin
+ */
+final class IndexCommandes {
+  
+  private static final int CAPACITE_INITIALE = 64;
+  
+  /**
+   * Les clés 0 marquent les cases vides : la commande d'identifiant 0 est
+   * gardée à part.
+   */
+  private int[] cles = new int[CAPACITE_INITIALE];
+  private Commande[] valeurs = new Commande[CAPACITE_INITIALE];
+  private Commande commandeZero;
+  private int taille;
+  
+  /**
+   * Retourne la commande d'un identifiant.
+   *
+   * @param id l'identifiant
+   * @return la commande, ou null si aucune n'a cet identifiant
+   */
+  Commande get(int id) {
+    if (id == 0) {
+      return commandeZero;
+    }
+    int masque = cles.length - 1;
+    for (int i = indice(id, masque); cles[i] != 0; i = (i + 1) & masque) {
+      if (cles[i] == id) {
+        return valeurs[i];
+      }
+    }
+    return null;
+  }
+  
+  /**
+   * Associe une commande à son identifiant, en remplaçant celle qui avait le
+   * même identifiant.
+   *
+   * @param commande la commande
+   */
+  void ajouter(Commande commande) {
+    int id = commande.getIdCommande();
+    if (id == 0) {
+      commandeZero = commande;
+      return;
+    }
+    if (2 * (taille + 1) > cles.length) {
+      agrandir();
+    }
+    int masque = cles.length - 1;
+    int i = indice(id, masque);
+    while (cles[i] != 0 && cles[i] != id) {
+      i = (i + 1) & masque;
+    }
+    if (cles[i] == 0) {
+      cles[i] = id;
+      taille++;
+    }
+    valeurs[i] = commande;
+  }
+  
+  /**
+   * Retire une commande, si c'est bien elle qui est associée à son
+   * identifiant.
+   *
+   * @param commande la commande
+   */
+  void retirer(Commande commande) {
+    int id = commande.getIdCommande();
+    if (id == 0) {
+      if (commandeZero == commande) {
+        commandeZero = null;
+      }
+      return;
+    }
+    int masque = cles.length - 1;
+    int i = indice(id, masque);
+    while (cles[i] != id) {
+      if (cles[i] == 0) {
+        return;
+      }
+      i = (i + 1) & masque;
+    }
+    if (valeurs[i] != commande) {
+      return;
+    }
+    // Décale les entrées suivantes qui ne sont plus à leur place
+    int vide = i;
+    for (int j = (i + 1) & masque; cles[j] != 0; j = (j + 1) & masque) {
+      int ideal = indice(cles[j], masque);
+      if (((j - ideal) & masque) >= ((j - vide) & masque)) {
+        cles[vide] = cles[j];
+        valeurs[vide] = valeurs[j];
+        vide = j;
+      }
+    }
+    cles[vide] = 0;
+    valeurs[vide] = null;
+    taille--;
+  }
+  
+  /**
+   * Vide la table.
+   */
+  void vider() {
+    Arrays.fill(cles, 0);
+    Arrays.fill(valeurs, null);
+    commandeZero = null;
+    taille = 0;
+  }
+  
+  /**
+   * Retourne le nombre de commandes de la table.
+   */
+  int taille() {
+    return taille + (commandeZero != null ? 1 : 0);
+  }
+  
+  private void agrandir() {
+    int[] anciennesCles = cles;
+    Commande[] anciennesValeurs = valeurs;
+    cles = new int[anciennesCles.length * 2];
+    valeurs = new Commande[anciennesCles.length * 2];
+    int masque = cles.length - 1;
+    for (int k = 0; k < anciennesCles.length; k++) {
+      if (anciennesCles[k] != 0) {
+        int i = indice(anciennesCles[k], masque);
+        while (cles[i] != 0) {
+          i = (i + 1) & masque;
+        }
+        cles[i] = anciennesCles[k];
+        valeurs[i] = anciennesValeurs[k];
+      }
+    }
+  }
+  
+  /**
+   * Case idéale d'un identifiant (les identifiants consécutifs sont
+   * dispersés).
+   */
+  private static int indice(int id, int masque) {
+    int h = id * 0x9E3779B9;
+    return (h ^ (h >>> 16)) & masque;
+  }
+}
@@ -1,7 +1,11 @@
 package pizzas;
 
+import java.time.Instant;
+import java.util.Collections;
+import java.util.IdentityHashMap;
 import java.util.Locale;
 import java.util.Objects;
+import java.util.Set;
 
 /**
  * Représente un ingrédient entrant dans la composition d'une pizza. Un
@@ -18,9 +22,28 @@ public class Ingredient {
   private String nom;
   
   /**
-   * Le prix de l'ingrédient en euros.
+   * Le prix de l'ingrédient en centimes.
    */
-  private double prix;
+  private long prix;
+  
+  /**
+   * L'identifiant entier de l'ingrédient, partagé par les ingrédients de même
+   * nom.
+   */
+  private final int id;
+  
+  /**
+   * Les pizzas dont la recette contient cet ingrédient, par identité (index
+   * inverse tenu à jour par {@link Pizza#ajouterIngredient} et
+   * {@link Pizza#retirerIngredient}).
+   */
+  private final Set<Pizza> pizzas =
+      Collections.newSetFromMap(new IdentityHashMap<>());
+  
+  /**
+   * Les prix successifs de l'ingrédient, depuis sa création.
+   */
+  private final HistoriquePrix historique = new HistoriquePrix();
   
   /**
    * Construit un nouvel ingrédient avec un nom et un prix.
@@ -30,7 +53,20 @@ public class Ingredient {
    */
   public Ingredient(String nom, double prix) {
     this.nom = nom;
-    this.prix = prix;
+    this.prix = Montant.depuisEuros(prix);
+    this.id = RegistreIngredients.identifiant(nom);
+    historique.enregistrer(this.prix);
+  }
+  
+  /**
+   * Retourne l'identifiant entier de l'ingrédient. Les identifiants sont
+   * petits et attribués sans trou : ils peuvent indexer un tableau ou un
+   * {@link java.util.BitSet}. Deux ingrédients égaux ont le même identifiant.
+   *
+   * @return l'identifiant, positif ou nul
+   */
+  public int getId() {
+    return id;
   }
   
   /**
@@ -48,16 +84,87 @@ public class Ingredient {
    * @return le prix en euros
    */
   public double getPrix() {
+    return Montant.enEuros(prix);
+  }
+  
+  /**
+   * Retourne le prix unitaire de l'ingrédient en centimes.
+   *
+   * @return le prix en centimes
+   */
+  public long getPrixCentimes() {
     return prix;
   }
   
+  /**
+   * Retourne le prix de l'ingrédient à un instant passé.
+   *
+   * @param instant l'instant
+   * @return le prix en euros, ou -1 si l'ingrédient n'existait pas encore
+   */
+  public double getPrixA(Instant instant) {
+    long centimes = getPrixCentimesA(instant);
+    return centimes != HistoriquePrix.ABSENT ? Montant.enEuros(centimes) : -1;
+  }
+  
+  /**
+   * Retourne le prix de l'ingrédient à un instant passé, en centimes.
+   *
+   * <p>L'historique n'est pas sauvegardé : pour un ingrédient chargé depuis
+   * un fichier, il commence au chargement.
+   *
+   * @param instant l'instant
+   * @return le prix en centimes, ou -1 si l'ingrédient n'existait pas encore
+   */
+  public long getPrixCentimesA(Instant instant) {
+    return historique.prixA(instant);
+  }
+  
   /**
    * Modifie le prix de l'ingrédient.
    *
    * @param prix le nouveau prix en euros
    */
   public void setPrix(double prix) {
-    this.prix = prix;
+    changerPrix(Montant.depuisEuros(prix), System.currentTimeMillis());
+    Observateurs.prixIngredientModifie(this);
+  }
+  
+  /**
+   * Modifie le prix de l'ingrédient sans notifier les observateurs, en
+   * datant le changement dans l'historique.
+   *
+   * @param centimes le nouveau prix en centimes
+   * @param instant l'instant du changement, en millisecondes
+   */
+  void changerPrix(long centimes, long instant) {
+    // Le prix et l'historique changent ensemble
+    synchronized (historique) {
+      this.prix = centimes;
+      historique.enregistrer(instant, centimes);
+    }
+    for (Pizza p : pizzas) {
+      p.invaliderPrixMinimal();
+    }
+  }
+  
+  /**
+   * Retourne les pizzas dont la recette contient cet ingrédient (et non un
+   * autre ingrédient de même nom). Le coût ne dépend que du nombre de ces
+   * pizzas.
+   *
+   * @return une vue non modifiable des pizzas utilisant l'ingrédient
+   */
+  public Set<Pizza> getPizzas() {
+    return Collections.unmodifiableSet(pizzas);
+  }
+  
+  void ajouterPizza(Pizza pizza) {
+    pizzas.add(pizza);
+  }
+  
+  void retirerPizza(Pizza pizza) {
+    pizzas.remove(pizza);
   }
   
   /**
@@ -98,6 +205,6 @@ public class Ingredient {
    */
   @Override
   public String toString() {
-    return nom + " (" + String.format(Locale.FRANCE, "%.2f", prix) + "€)";
+    return nom + " (" + String.format(Locale.FRANCE, "%.2f", getPrix()) + "€)";
   }
 }
\ No newline at end of file
@@ -115,6 +115,16 @@ public interface InterClient {
    */
   List<Commande> getCommandePassees() throws NonConnecteException;
   
+  /**
+   * Renvoie une commande du client connecté à partir de son identifiant.
+   *
+   * @param idCommande l'identifiant de la commande
+   * @return la commande, ou <code>null</code> si le client connecté n'a pas de
+   *         commande avec cet identifiant
+   * @throws NonConnecteException si aucun client n'est connecté
+   */
+  Commande getCommande(int idCommande) throws NonConnecteException;
+  
   /**
    * Renvoie l'ensemble des pizzas en vente.
    *
@@ -39,6 +39,24 @@ public interface InterPizzaiolo {
    */
   int changerPrixIngredient(String nom, double prix);
   
+  /**
+   * Retourne les pizzas dont la recette contient un ingrédient.
+   *
+   * @param nomIngredient le nom de l'ingrédient
+   * @return les pizzas utilisant l'ingrédient (ensemble vide si l'ingrédient
+   *         n'existe pas)
+   */
+  Set<Pizza> pizzasAvecIngredient(String nomIngredient);
+  
+  /**
+   * Retourne les pizzas dont le prix minimal a changé lors du dernier
+   * changement de prix d'un ingrédient (voir
+   * {@link #changerPrixIngredient(String, double)}).
+   *
+   * @return les pizzas dont le prix minimal a changé
+   */
+  List<Pizza> getPizzasPrixMinimalModifie();
+  
   /**
    * Précise qu'un ingrédient ne peut pas être utilisé pour un certain type de
    * pizza. Par exemple, du jambon ou du boeuf haché ne peut pas être utilisé
@@ -106,6 +124,17 @@ public interface InterPizzaiolo {
    */
   Set<String> verifierIngredientsPizza(Pizza pizza);
   
+  /**
+   * Retourne, en un seul parcours, les pizzas d'un type qui contiennent un
+   * ingrédient interdit pour ce type (voir
+   * {@link #verifierIngredientsPizza(Pizza)}).
+   *
+   * @param type le type de pizza
+   * @return les pizzas du type contenant un ingrédient interdit (liste vide si
+   *         aucune)
+   */
+  List<Pizza> pizzasAvecIngredientInterdit(TypePizza type);
+  
   /**
    * Ajoute une photo à une pizza. Remplace la photo précédente si une photo
    * était déjà associée à la pizza.
@@ -188,6 +217,15 @@ public interface InterPizzaiolo {
    */
   List<Commande> commandeNonTraitees();
   
+  /**
+   * Retourne une commande d'un client à partir de son identifiant.
+   *
+   * @param idCommande l'identifiant de la commande
+   * @return la commande, ou <code>null</code> si aucune commande en mémoire
+   *         n'a cet identifiant
+   */
+  Commande getCommande(int idCommande);
+  
   /**
    * Retourne l'ensemble des commandes passées par un certain client et déjà
    * traitées. Elles sont classées de la plus ancienne à la plus récente.
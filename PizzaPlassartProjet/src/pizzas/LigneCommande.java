@@ -0,0 +1,95 @@
+package pizzas;
+
+/**
+ * Ligne d'une commande validée : une pizza, sa quantité, et le prix de vente
+ * et le coût unitaires (prix minimal) relevés à la validation. Une ligne ne
+ * change plus ensuite : les statistiques d'une commande passée ne dépendent
+ * pas des prix actuels.
+ *
+ * @author leo.montay
+ * @version 1.0
+ */
+public final class LigneCommande {
+  
+  private final Pizza pizza;
+  
+  private final int quantite;
+  
+  /**
+   * Prix de vente unitaire, en centimes.
+   */
+  private final long prixUnitaire;
+  
+  /**
+   * Coût unitaire (prix minimal de la pizza), en centimes.
+   */
+  private final long coutUnitaire;
+  
+  LigneCommande(Pizza pizza, int quantite, long prixUnitaire,
+      long coutUnitaire) {
+    this.pizza = pizza;
+    this.quantite = quantite;
+    this.prixUnitaire = prixUnitaire;
+    this.coutUnitaire = coutUnitaire;
+  }
+  
+  /**
+   * Renvoie la pizza de la ligne.
+   *
+   * @return la pizza
+   */
+  public Pizza getPizza() {
+    return pizza;
+  }
+  
+  /**
+   * Renvoie le nombre de pizzas de la ligne.
+   *
+   * @return la quantité
+   */
+  public int getQuantite() {
+    return quantite;
+  }
+  
+  /**
+   * Renvoie le prix de vente unitaire relevé à la validation.
+   *
+   * @return le prix unitaire en centimes
+   */
+  public long getPrixUnitaireCentimes() {
+    return prixUnitaire;
+  }
+  
+  /**
+   * Renvoie le coût unitaire (prix minimal) relevé à la validation.
+   *
+   * @return le coût unitaire en centimes
+   */
+  public long getCoutUnitaireCentimes() {
+    return coutUnitaire;
+  }
+  
+  /**
+   * Renvoie le prix de vente de la ligne (prix unitaire × quantité).
+   *
+   * @return le prix de la ligne en centimes
+   */
+  public long getPrixCentimes() {
+    return prixUnitaire * quantite;
+  }
+  
+  /**
+   * Renvoie le bénéfice de la ligne ((prix - coût) × quantité).
+   *
+   * @return le bénéfice de la ligne en centimes
+   */
+  public long getBeneficeCentimes() {
+    return (prixUnitaire - coutUnitaire) * quantite;
+  }
+  
+  @Override
+  public String toString() {
+    return quantite + " x " + pizza.getNom() + " à "
+        + String.format("%.2f", Montant.enEuros(prixUnitaire)) + "€";
+  }
+}
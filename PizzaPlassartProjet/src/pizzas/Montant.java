@@ -0,0 +1,74 @@
+package pizzas;
+
+/**
+ * Montants en centimes d'euro. Les prix, les totaux de commandes et les
+ * statistiques sont calculés sur des {@code long} : les sommes et les
+ * différences sont exactes, quel que soit le nombre de commandes.
+ *
+ * <p>Les méthodes qui prennent ou retournent des euros en {@code double}
+ * servent d'adaptateurs pour l'interface et les formats de sauvegarde.
+ *
+ * @author Rayan Ladrait
+ * @version 1.0
+ */
+public final class Montant {
+  
+  /**
+   * Nombre de centimes dans un euro.
+   */
+  public static final long CENTIMES_PAR_EURO = 100;
+  
+  private Montant() {
+  }
+  
+  /**
+   * Convertit un montant en euros en centimes, arrondi au centime le plus
+   * proche.
+   *
+   * @param euros le montant en euros
+   * @return le montant en centimes
+   */
+  public static long depuisEuros(double euros) {
+    return Math.round(euros * CENTIMES_PAR_EURO);
+  }
+  
+  /**
+   * Convertit un montant en euros en centimes, arrondi au centime inférieur :
+   * le résultat n'est jamais supérieur au montant (utile pour une borne
+   * maximale). Un montant qui tombe sur un centime, au bruit du {@code double}
+   * près, n'est pas diminué.
+   *
+   * @param euros le montant en euros
+   * @return le montant en centimes, arrondi par défaut
+   */
+  public static long depuisEurosParDefaut(double euros) {
+    long arrondi = depuisEuros(euros);
+    return arrondi / (double) CENTIMES_PAR_EURO <= euros ? arrondi : arrondi - 1;
+  }
+  
+  /**
+   * Convertit un montant en centimes en euros.
+   *
+   * @param centimes le montant en centimes
+   * @return le montant en euros
+   */
+  public static double enEuros(long centimes) {
+    return centimes / (double) CENTIMES_PAR_EURO;
+  }
+  
+  /**
+   * Applique une marge en pourcentage à un montant, puis arrondit le
+   * résultat à la dizaine de centimes supérieure.
+   *
+   * @param centimes le montant en centimes
+   * @param pourcentage la marge en pourcentage (40 pour 40 %)
+   * @return le montant avec la marge, arrondi à la dizaine de centimes
+   *         supérieure
+   */
+  public static long avecMargeArrondie(long centimes, int pourcentage) {
+    // (centimes * (100 + pourcentage) / 100) arrondi au multiple de 10
+    // supérieur, soit un arrondi supérieur de la division par 1000
+    long produit = centimes * (100 + pourcentage);
+    return -Math.floorDiv(-produit, 1000) * 10;
+  }
+}
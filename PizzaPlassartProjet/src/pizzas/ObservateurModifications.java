@@ -0,0 +1,176 @@
+package pizzas;
+
+import java.util.List;
+
+/**
+ * Observateur des modifications de l'état de la pizzeria. Chaque méthode est
+ * appelée juste après que la modification correspondante a été faite ; par
+ * défaut elles ne font rien, un observateur ne redéfinit que celles qui
+ * l'intéressent.
+ *
+ * <p>Les observateurs sont enregistrés auprès de {@link Observateurs}.
+ *
+ * @author Léo Montay
+ * @version 1.0
+ * @see Observateurs
+ */
+public interface ObservateurModifications {
+  
+  /**
+   * Un ingrédient a été créé par le gestionnaire.
+   *
+   * @param ingredient l'ingrédient créé
+   */
+  default void ingredientCree(Ingredient ingredient) {
+  }
+  
+  /**
+   * Le prix d'un ingrédient a changé.
+   *
+   * @param ingredient l'ingrédient modifié
+   */
+  default void prixIngredientModifie(Ingredient ingredient) {
+  }
+  
+  /**
+   * Un ingrédient a été interdit ou autorisé pour un type de pizza.
+   *
+   * @param ingredient l'ingrédient concerné
+   * @param type le type de pizza
+   * @param interdit true si l'ingrédient est désormais interdit
+   */
+  default void interdictionModifiee(Ingredient ingredient, TypePizza type,
+      boolean interdit) {
+  }
+  
+  /**
+   * Une pizza a été créée par le gestionnaire.
+   *
+   * @param pizza la pizza créée
+   */
+  default void pizzaCreee(Pizza pizza) {
+  }
+  
+  /**
+   * Un ingrédient a été ajouté à une pizza.
+   *
+   * @param pizza la pizza modifiée
+   * @param ingredient l'ingrédient ajouté
+   */
+  default void ingredientAjoute(Pizza pizza, Ingredient ingredient) {
+  }
+  
+  /**
+   * Un ingrédient a été retiré d'une pizza.
+   *
+   * @param pizza la pizza modifiée
+   * @param ingredient l'ingrédient retiré
+   */
+  default void ingredientRetire(Pizza pizza, Ingredient ingredient) {
+  }
+  
+  /**
+   * Le prix de vente d'une pizza a été fixé.
+   *
+   * @param pizza la pizza modifiée
+   */
+  default void prixPizzaModifie(Pizza pizza) {
+  }
+  
+  /**
+   * Les prix de plusieurs ingrédients, et les prix de vente de pizzas
+   * ajustés en conséquence, ont changé ensemble (voir
+   * {@link GestPizzaiolo#changerPrixIngredients}). Par défaut, chaque
+   * changement est transmis séparément à {@link #prixIngredientModifie} et
+   * {@link #prixPizzaModifie}.
+   *
+   * @param ingredients les ingrédients modifiés
+   * @param pizzas les pizzas dont le prix de vente a été ajusté
+   */
+  default void tarifsModifies(List<Ingredient> ingredients,
+      List<Pizza> pizzas) {
+    for (Ingredient ingredient : ingredients) {
+      prixIngredientModifie(ingredient);
+    }
+    for (Pizza pizza : pizzas) {
+      prixPizzaModifie(pizza);
+    }
+  }
+  
+  /**
+   * La photo d'une pizza a changé.
+   *
+   * @param pizza la pizza modifiée
+   */
+  default void photoPizzaModifiee(Pizza pizza) {
+  }
+  
+  /**
+   * Le type d'une pizza a changé.
+   *
+   * @param pizza la pizza modifiée
+   */
+  default void typePizzaModifie(Pizza pizza) {
+  }
+  
+  /**
+   * Un client s'est inscrit.
+   *
+   * @param client le nouveau client
+   */
+  default void clientInscrit(Client client) {
+  }
+  
+  /**
+   * Une commande a été créée pour un client.
+   *
+   * @param commande la nouvelle commande
+   */
+  default void commandeCreee(Commande commande) {
+  }
+  
+  /**
+   * Une pizza a été ajoutée à une commande.
+   *
+   * @param commande la commande modifiée
+   * @param pizza la pizza ajoutée
+   */
+  default void pizzaAjouteeCommande(Commande commande, Pizza pizza) {
+  }
+  
+  /**
+   * Une pizza a été retirée d'une commande.
+   *
+   * @param commande la commande modifiée
+   * @param pizza la pizza retirée
+   */
+  default void pizzaRetireeCommande(Commande commande, Pizza pizza) {
+  }
+  
+  /**
+   * L'état d'une commande a changé.
+   *
+   * @param commande la commande modifiée
+   * @param ancienEtat l'état précédent de la commande
+   */
+  default void etatCommandeModifie(Commande commande,
+      EtatCommande ancienEtat) {
+  }
+  
+  /**
+   * Une commande a été retirée de la liste de son client (annulation).
+   *
+   * @param commande la commande retirée
+   */
+  default void commandeRetiree(Commande commande) {
+  }
+  
+  /**
+   * Une évaluation a été ajoutée à une pizza.
+   *
+   * @param pizza la pizza évaluée
+   * @param evaluation la nouvelle évaluation
+   */
+  default void evaluationAjoutee(Pizza pizza, Evaluation evaluation) {
+  }
+}
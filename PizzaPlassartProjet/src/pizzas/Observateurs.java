@@ -0,0 +1,211 @@
+package pizzas;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Registre des observateurs de modifications de la pizzeria.
+ *
+ * <p>Les classes du modèle signalent ici chacune de leurs modifications, qui
+ * sont transmises à tous les observateurs enregistrés (journal de
+ * persistance...). Sans observateur, une notification ne coûte qu'un test.
+ * Les notifications peuvent être suspendues, par exemple pendant un
+ * chargement de fichier, pour que la reconstruction de l'état ne soit pas
+ * vue comme une suite de modifications. La suspension ne vaut que pour le
+ * thread qui l'a demandée : les modifications faites en même temps sur les
+ * autres threads restent notifiées.
+ *
+ * @author Léo Montay
+ * @version 1.0
+ * @see ObservateurModifications
+ */
+public final class Observateurs {
+  
+  /**
+   * Tableau vide, retourné quand les notifications sont suspendues.
+   */
+  private static final ObservateurModifications[] AUCUN =
+      new ObservateurModifications[0];
+  
+  /**
+   * Observateurs enregistrés (tableau remplacé à chaque ajout ou retrait).
+   */
+  private static volatile ObservateurModifications[] observateurs = AUCUN;
+  
+  /**
+   * Nombre de suspensions en cours sur chaque thread (0 = notifications
+   * actives).
+   */
+  private static final ThreadLocal<int[]> suspensions =
+      ThreadLocal.withInitial(() -> new int[1]);
+  
+  /**
+   * Classe utilitaire, non instanciable.
+   */
+  private Observateurs() {
+  }
+  
+  /**
+   * Enregistre un observateur (sans effet s'il l'est déjà).
+   *
+   * @param observateur l'observateur à ajouter
+   */
+  public static synchronized void ajouter(
+      ObservateurModifications observateur) {
+    if (observateur == null
+        || Arrays.asList(observateurs).contains(observateur)) {
+      return;
+    }
+    ObservateurModifications[] nouveaux =
+        Arrays.copyOf(observateurs, observateurs.length + 1);
+    nouveaux[observateurs.length] = observateur;
+    observateurs = nouveaux;
+  }
+  
+  /**
+   * Retire un observateur.
+   *
+   * @param observateur l'observateur à retirer
+   */
+  public static synchronized void retirer(
+      ObservateurModifications observateur) {
+    observateurs = Arrays.stream(observateurs).filter(o -> o != observateur)
+        .toArray(ObservateurModifications[]::new);
+  }
+  
+  /**
+   * Suspend les notifications des modifications faites sur le thread
+   * courant jusqu'à l'appel de {@link #reprendre()} correspondant (les
+   * suspensions s'imbriquent).
+   */
+  public static void suspendre() {
+    suspensions.get()[0]++;
+  }
+  
+  /**
+   * Reprend les notifications suspendues par {@link #suspendre()} sur le
+   * thread courant.
+   */
+  public static void reprendre() {
+    int[] compteur = suspensions.get();
+    if (compteur[0] > 0) {
+      compteur[0]--;
+    }
+  }
+  
+  /**
+   * Retourne les observateurs à notifier (vide si suspendu sur le thread
+   * courant).
+   */
+  private static ObservateurModifications[] actifs() {
+    ObservateurModifications[] actuels = observateurs;
+    if (actuels.length == 0 || suspensions.get()[0] == 0) {
+      return actuels;
+    }
+    return AUCUN;
+  }
+  
+  static void ingredientCree(Ingredient ingredient) {
+    for (ObservateurModifications o : actifs()) {
+      o.ingredientCree(ingredient);
+    }
+  }
+  
+  static void prixIngredientModifie(Ingredient ingredient) {
+    for (ObservateurModifications o : actifs()) {
+      o.prixIngredientModifie(ingredient);
+    }
+  }
+  
+  static void interdictionModifiee(Ingredient ingredient, TypePizza type,
+      boolean interdit) {
+    for (ObservateurModifications o : actifs()) {
+      o.interdictionModifiee(ingredient, type, interdit);
+    }
+  }
+  
+  static void pizzaCreee(Pizza pizza) {
+    for (ObservateurModifications o : actifs()) {
+      o.pizzaCreee(pizza);
+    }
+  }
+  
+  static void ingredientAjoute(Pizza pizza, Ingredient ingredient) {
+    for (ObservateurModifications o : actifs()) {
+      o.ingredientAjoute(pizza, ingredient);
+    }
+  }
+  
+  static void ingredientRetire(Pizza pizza, Ingredient ingredient) {
+    for (ObservateurModifications o : actifs()) {
+      o.ingredientRetire(pizza, ingredient);
+    }
+  }
+  
+  static void prixPizzaModifie(Pizza pizza) {
+    for (ObservateurModifications o : actifs()) {
+      o.prixPizzaModifie(pizza);
+    }
+  }
+  
+  static void tarifsModifies(List<Ingredient> ingredients,
+      List<Pizza> pizzas) {
+    for (ObservateurModifications o : actifs()) {
+      o.tarifsModifies(ingredients, pizzas);
+    }
+  }
+  
+  static void photoPizzaModifiee(Pizza pizza) {
+    for (ObservateurModifications o : actifs()) {
+      o.photoPizzaModifiee(pizza);
+    }
+  }
+  
+  static void typePizzaModifie(Pizza pizza) {
+    for (ObservateurModifications o : actifs()) {
+      o.typePizzaModifie(pizza);
+    }
+  }
+  
+  static void clientInscrit(Client client) {
+    for (ObservateurModifications o : actifs()) {
+      o.clientInscrit(client);
+    }
+  }
+  
+  static void commandeCreee(Commande commande) {
+    for (ObservateurModifications o : actifs()) {
+      o.commandeCreee(commande);
+    }
+  }
+  
+  static void pizzaAjouteeCommande(Commande commande, Pizza pizza) {
+    for (ObservateurModifications o : actifs()) {
+      o.pizzaAjouteeCommande(commande, pizza);
+    }
+  }
+  
+  static void pizzaRetireeCommande(Commande commande, Pizza pizza) {
+    for (ObservateurModifications o : actifs()) {
+      o.pizzaRetireeCommande(commande, pizza);
+    }
+  }
+  
+  static void etatCommandeModifie(Commande commande, EtatCommande ancienEtat) {
+    for (ObservateurModifications o : actifs()) {
+      o.etatCommandeModifie(commande, ancienEtat);
+    }
+  }
+  
+  static void commandeRetiree(Commande commande) {
+    for (ObservateurModifications o : actifs()) {
+      o.commandeRetiree(commande);
+    }
+  }
+  
+  static void evaluationAjoutee(Pizza pizza, Evaluation evaluation) {
+    for (ObservateurModifications o : actifs()) {
+      o.evaluationAjoutee(pizza, evaluation);
+    }
+  }
+}
@@ -1,10 +1,17 @@
 package pizzas;
 
-import java.util.ArrayList;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Représente une pizza définie par un nom, un type, une liste d'ingrédients et
@@ -27,15 +34,50 @@ public class Pizza {
   private TypePizza type;
   
   /**
-   * La liste des ingrédients composant la pizza.
+   * La recette de la pizza : les identifiants ({@link Ingredient#getId()}) de
+   * ses ingrédients, triés par ordre croissant et sans doublon.
    */
-  private List<Ingredient> ingredients;
+  private int[] recette;
+  
+  /**
+   * Les ingrédients de la pizza, dans l'ordre où ils ont été ajoutés (la
+   * recette triée ne sert qu'aux recherches).
+   */
+  private Ingredient[] composants;
+  
+  /**
+   * Vue non modifiable de {@link #composants}, recréée à chaque modification
+   * de la recette.
+   */
+  private List<Ingredient> vueIngredients;
   
   /**
    * Le prix de vente fixé pour la pizza. Si null, le prix minimal calculé
    * s'applique par défaut.
    */
-  private Double prixVente;
+  private volatile Long prixVente;
+  
+  /**
+   * Les prix de vente fixés successivement, ou null si aucun prix n'a été
+   * fixé.
+   */
+  private HistoriquePrix historiquePrixVente;
+  
+  /**
+   * Le prix minimal calculé en centimes, ou {@link #A_RECALCULER} s'il doit
+   * être recalculé (la recette ou le prix d'un de ses ingrédients a changé).
+   * Le calcul et l'invalidation se font sous le verrou de la pizza : un
+   * calcul commencé avant une invalidation ne peut pas garder son résultat
+   * après elle.
+   */
+  private volatile long prixMinimal = A_RECALCULER;
+  
+  private static final long A_RECALCULER = Long.MIN_VALUE;
+  
+  /**
+   * La marge appliquée au prix des ingrédients, en pourcentage.
+   */
+  private static final int MARGE = 40;
   
   /**
    * Le chemin ou l'URL de la photo de la pizza.
@@ -48,9 +90,24 @@ public class Pizza {
   private Set<Evaluation> evaluations;
   
   /**
-   * Créer une liste de pizza "Catalogue".
+   * Le catalogue global des pizzas, par nom exact, dans l'ordre d'ajout
+   * (protégé par le verrou de la classe).
    */
-  private static final List<Pizza> catalogue = new ArrayList<>();
+  private static final Map<String, Pizza> catalogue = new LinkedHashMap<>();
+  
+  /**
+   * Pizzas du catalogue par nom normalisé (voir {@link #normaliserNom}) : la
+   * première pizza ajoutée pour un nom donné, quelle que soit la casse.
+   */
+  private static final Map<String, Pizza> catalogueParNom =
+      new ConcurrentHashMap<>();
+  
+  /**
+   * Vues non modifiables du catalogue partagées par les lecteurs, recréées
+   * à la première lecture qui suit un ajout (null si périmées).
+   */
+  private static volatile List<Pizza> vueCatalogue = List.of();
+  private static volatile Set<Pizza> ensembleCatalogue = Set.of();
   
   /**
    * Construit une nouvelle pizza avec un nom et un type. La liste des
@@ -62,7 +119,9 @@ public class Pizza {
   public Pizza(String nom, TypePizza type) {
     this.nom = nom;
     this.type = type;
-    this.ingredients = new ArrayList<>();
+    this.recette = new int[0];
+    this.composants = new Ingredient[0];
+    this.vueIngredients = List.of();
     this.prixVente = null;
     this.photo = null;
     this.evaluations = new HashSet<>();
@@ -87,12 +146,62 @@ public class Pizza {
   }
   
   /**
-   * Retourne la liste des ingrédients de la pizza.
+   * Retourne la liste des ingrédients de la pizza, dans l'ordre où ils ont
+   * été ajoutés. La liste n'est pas modifiable : la composition se change avec
+   * {@link #ajouterIngredient} et {@link #retirerIngredient}.
    *
    * @return la liste des ingrédients
    */
   public List<Ingredient> getIngredients() {
-    return ingredients;
+    return vueIngredients;
+  }
+  
+  /**
+   * Retourne la recette de la pizza : les identifiants de ses ingrédients,
+   * triés par ordre croissant.
+   *
+   * @return une copie des identifiants des ingrédients
+   */
+  public int[] getRecette() {
+    return recette.clone();
+  }
+  
+  /**
+   * Indique si la pizza contient un ingrédient (ou un ingrédient de même
+   * nom).
+   *
+   * @param ingredient l'ingrédient recherché
+   * @return true si l'ingrédient fait partie de la recette
+   */
+  public boolean contientIngredient(Ingredient ingredient) {
+    return ingredient != null
+        && Arrays.binarySearch(recette, ingredient.getId()) >= 0;
+  }
+  
+  /**
+   * Indique si la pizza contient au moins un des ingrédients donnés.
+   *
+   * @param identifiants les identifiants des ingrédients recherchés
+   * @return true si un des identifiants fait partie de la recette
+   */
+  public boolean contientIngredientParmi(BitSet identifiants) {
+    for (int id : recette) {
+      if (identifiants.get(id)) {
+        return true;
+      }
+    }
+    return false;
+  }
+  
+  /**
+   * Indique si deux pizzas ont la même recette (les mêmes ingrédients, au
+   * sens de {@link Ingredient#equals}).
+   *
+   * @param autre l'autre pizza
+   * @return true si les recettes sont identiques
+   */
+  public boolean memeRecette(Pizza autre) {
+    return autre != null && Arrays.equals(recette, autre.recette);
   }
   
   /**
@@ -106,9 +215,21 @@ public class Pizza {
     if (ingredient == null) {
       return;
     }
-    // Utilise la méthode equals() de Ingredient pour vérifier si on l'a déjà
-    if (!this.ingredients.contains(ingredient)) {
-      this.ingredients.add(ingredient);
+    // Les ingrédients égaux ont le même identifiant
+    int position = Arrays.binarySearch(recette, ingredient.getId());
+    if (position < 0) {
+      position = -position - 1;
+      int[] nouvelleRecette = new int[recette.length + 1];
+      System.arraycopy(recette, 0, nouvelleRecette, 0, position);
+      nouvelleRecette[position] = ingredient.getId();
+      System.arraycopy(recette, position, nouvelleRecette, position + 1,
+          recette.length - position);
+      Ingredient[] nouveauxComposants =
+          Arrays.copyOf(composants, composants.length + 1);
+      nouveauxComposants[composants.length] = ingredient;
+      changerRecette(nouvelleRecette, nouveauxComposants);
+      ingredient.ajouterPizza(this);
+      Observateurs.ingredientAjoute(this, ingredient);
     }
   }
   
@@ -122,7 +243,43 @@ public class Pizza {
     if (ingredient == null) {
       return;
     }
-    this.ingredients.remove(ingredient);
+    int position = Arrays.binarySearch(recette, ingredient.getId());
+    if (position >= 0) {
+      // L'ingrédient de la recette peut être un autre objet de même nom
+      int indice = 0;
+      while (composants[indice].getId() != ingredient.getId()) {
+        indice++;
+      }
+      composants[indice].retirerPizza(this);
+      int[] nouvelleRecette = new int[recette.length - 1];
+      System.arraycopy(recette, 0, nouvelleRecette, 0, position);
+      System.arraycopy(recette, position + 1, nouvelleRecette, position,
+          recette.length - position - 1);
+      Ingredient[] nouveauxComposants = new Ingredient[composants.length - 1];
+      System.arraycopy(composants, 0, nouveauxComposants, 0, indice);
+      System.arraycopy(composants, indice + 1, nouveauxComposants, indice,
+          composants.length - indice - 1);
+      changerRecette(nouvelleRecette, nouveauxComposants);
+      Observateurs.ingredientRetire(this, ingredient);
+    }
+  }
+  
+  private void changerRecette(int[] nouvelleRecette,
+      Ingredient[] nouveauxComposants) {
+    recette = nouvelleRecette;
+    composants = nouveauxComposants;
+    vueIngredients = List.of(nouveauxComposants);
+    invaliderPrixMinimal();
+  }
+  
+  /**
+   * Oublie le prix minimal calculé (appelée quand le prix d'un ingrédient de
+   * la recette change).
+   */
+  void invaliderPrixMinimal() {
+    synchronized (this) {
+      prixMinimal = A_RECALCULER;
+    }
   }
   
   /**
@@ -141,6 +298,7 @@ public class Pizza {
    */
   public void setPhoto(String photo) {
     this.photo = photo;
+    Observateurs.photoPizzaModifiee(this);
   }
   
   /**
@@ -151,10 +309,20 @@ public class Pizza {
    * @return le prix de la pizza
    */
   public double getPrix() {
+    return Montant.enEuros(getPrixCentimes());
+  }
+  
+  /**
+   * Retourne le prix de vente actuel de la pizza en centimes (voir
+   * {@link #getPrix()}).
+   *
+   * @return le prix de la pizza en centimes
+   */
+  public long getPrixCentimes() {
     if (prixVente != null) {
       return prixVente;
     }
-    return calculerPrixMinimal();
+    return calculerPrixMinimalCentimes();
   }
   
   /**
@@ -163,7 +331,35 @@ public class Pizza {
    * @param prix le nouveau prix de vente
    */
   public void setPrix(double prix) {
-    this.prixVente = prix;
+    setPrixCentimes(Montant.depuisEuros(prix));
+  }
+  
+  /**
+   * Définit un prix de vente manuel pour la pizza, en centimes.
+   *
+   * @param prix le nouveau prix de vente en centimes
+   */
+  public void setPrixCentimes(long prix) {
+    changerPrixCentimes(prix, System.currentTimeMillis());
+    Observateurs.prixPizzaModifie(this);
+  }
+  
+  /**
+   * Fixe le prix de vente sans notifier les observateurs, en datant le
+   * changement dans l'historique.
+   *
+   * @param prix le nouveau prix de vente en centimes
+   * @param instant l'instant du changement, en millisecondes
+   */
+  void changerPrixCentimes(long prix, long instant) {
+    // Le prix et l'historique changent ensemble
+    synchronized (this) {
+      if (historiquePrixVente == null) {
+        historiquePrixVente = new HistoriquePrix();
+      }
+      prixVente = prix;
+      historiquePrixVente.enregistrer(instant, prix);
+    }
   }
   
   /**
@@ -171,21 +367,83 @@ public class Pizza {
    * formule est la somme des prix des ingrédients + 40%, arrondi à la dizaine
    * de centimes supérieure.
    *
+   * <p>Le résultat est gardé jusqu'au prochain changement de la recette ou du
+   * prix d'un de ses ingrédients.
+   *
    * @return le prix minimal calculé
    */
   public double calculerPrixMinimal() {
-    double total = 0;
-    for (Ingredient i : ingredients) {
-      total += i.getPrix();
+    return Montant.enEuros(calculerPrixMinimalCentimes());
+  }
+  
+  /**
+   * Calcule le prix minimal de la pizza en centimes (voir
+   * {@link #calculerPrixMinimal()}).
+   *
+   * @return le prix minimal calculé en centimes
+   */
+  public long calculerPrixMinimalCentimes() {
+    long prix = prixMinimal;
+    if (prix != A_RECALCULER) {
+      return prix;
+    }
+    synchronized (this) {
+      if (prixMinimal == A_RECALCULER) {
+        long total = 0;
+        for (Ingredient i : composants) {
+          total += i.getPrixCentimes();
+        }
+        // Ajout de la marge, arrondi exact à la dizaine de centimes supérieure
+        prixMinimal = Montant.avecMargeArrondie(total, MARGE);
+      }
+      return prixMinimal;
     }
-    // Ajout de la marge de 40%
-    double avecMarge = total * 1.4;
-    
-    // Arrondi à la dizaine de centimes supérieure
-    // Math.ceil permet d'arrondir à l'entier supérieur.
-    // En multipliant par 10 avant et divisant par 10 après, on arrondit à la
-    // décimale.
-    return Math.ceil(avecMarge * 10.0) / 10.0;
+  }
+  
+  /**
+   * Retourne le prix de vente de la pizza à un instant passé : le prix fixé
+   * en vigueur à cet instant, ou à défaut le prix minimal à cet instant (voir
+   * {@link #calculerPrixMinimalCentimesA(Instant)}).
+   *
+   * <p>Les prix fixés ne sont connus que depuis le chargement des données :
+   * l'historique n'est pas sauvegardé.
+   *
+   * @param instant l'instant
+   * @return le prix en centimes, ou -1 s'il n'est pas connu à cet instant
+   */
+  public long getPrixCentimesA(Instant instant) {
+    HistoriquePrix historique;
+    synchronized (this) {
+      historique = historiquePrixVente;
+    }
+    if (historique != null) {
+      long prix = historique.prixA(instant);
+      if (prix != HistoriquePrix.ABSENT) {
+        return prix;
+      }
+    }
+    return calculerPrixMinimalCentimesA(instant);
+  }
+  
+  /**
+   * Calcule le prix minimal de la pizza avec les prix qu'avaient ses
+   * ingrédients à un instant passé. Seuls les prix sont historisés : la
+   * recette utilisée est la recette actuelle.
+   *
+   * @param instant l'instant
+   * @return le prix minimal en centimes, ou -1 si un des ingrédients
+   *         n'existait pas encore
+   */
+  public long calculerPrixMinimalCentimesA(Instant instant) {
+    long total = 0;
+    for (Ingredient i : composants) {
+      long prix = i.getPrixCentimesA(instant);
+      if (prix == HistoriquePrix.ABSENT) {
+        return -1;
+      }
+      total += prix;
+    }
+    return Montant.avecMargeArrondie(total, MARGE);
   }
   
   /**
@@ -252,7 +510,11 @@ public class Pizza {
         eval = new Evaluation(note, commentaire, client);
       }
       
-      return this.evaluations.add(eval);
+      if (!this.evaluations.add(eval)) {
+        return false;
+      }
+      Observateurs.evaluationAjoutee(this, eval);
+      return true;
       
     } catch (IllegalArgumentException e) {
       // Note invalide ou autre erreur d'argument
@@ -263,16 +525,34 @@ public class Pizza {
   /**
    * Ajoute une pizza au catalogue global de l'application. La pizza n'est
    * ajoutée que si elle n'est pas nulle et qu'elle n'est pas déjà présente dans
-   * la liste.
+   * le catalogue.
    *
    * @param p La pizza à ajouter au catalogue
    */
-  public static void ajouterPizzaCatalogue(Pizza p) {
-    if (p != null && !catalogue.contains(p)) {
-      catalogue.add(p);
+  public static synchronized void ajouterPizzaCatalogue(Pizza p) {
+    if (p != null && catalogue.putIfAbsent(p.getNom(), p) == null) {
+      catalogueParNom.putIfAbsent(normaliserNom(p.getNom()), p);
+      invaliderVues();
     }
   }
   
+  /**
+   * Ajoute plusieurs pizzas au catalogue global, avec les mêmes règles que
+   * {@link #ajouterPizzaCatalogue(Pizza)} (utilisé par les imports en
+   * masse).
+   *
+   * @param lot Les pizzas à ajouter au catalogue
+   */
+  public static synchronized void ajouterPizzasCatalogue(
+      Collection<Pizza> lot) {
+    for (Pizza p : lot) {
+      if (p != null && catalogue.putIfAbsent(p.getNom(), p) == null) {
+        catalogueParNom.putIfAbsent(normaliserNom(p.getNom()), p);
+      }
+    }
+    invaliderVues();
+  }
+  
   /**
    * Recherche et récupère une pizza dans le catalogue à partir de son nom. La
    * recherche n'est pas sensible à la casse (majuscules/minuscules).
@@ -281,16 +561,62 @@ public class Pizza {
    * @return La pizza correspondante si elle est trouvée, sinon null
    */
   public static Pizza getPizzaParNom(String nom) {
-    for (Pizza p : catalogue) {
-      if (p.getNom().equalsIgnoreCase(nom)) {
-        return p;
-      }
+    if (nom == null) {
+      return null;
     }
-    return null;
+    return catalogueParNom.get(normaliserNom(nom));
   }
   
+  /**
+   * Retourne le catalogue, dans l'ordre d'ajout des pizzas. La liste n'est
+   * pas modifiable et n'est pas copiée à chaque appel : elle reste celle de
+   * l'état du catalogue au moment de l'appel.
+   *
+   * @return les pizzas du catalogue
+   */
   public static List<Pizza> getCatalogue() {
-    return new ArrayList<>(catalogue);
+    List<Pizza> vue = vueCatalogue;
+    if (vue == null) {
+      synchronized (Pizza.class) {
+        if (vueCatalogue == null) {
+          vueCatalogue = List.copyOf(catalogue.values());
+        }
+        vue = vueCatalogue;
+      }
+    }
+    return vue;
+  }
+  
+  /**
+   * Retourne le catalogue sous forme d'ensemble non modifiable, partagé
+   * comme {@link #getCatalogue()}.
+   *
+   * @return les pizzas du catalogue
+   */
+  public static Set<Pizza> getEnsembleCatalogue() {
+    Set<Pizza> ensemble = ensembleCatalogue;
+    if (ensemble == null) {
+      synchronized (Pizza.class) {
+        if (ensembleCatalogue == null) {
+          ensembleCatalogue = Set.copyOf(catalogue.values());
+        }
+        ensemble = ensembleCatalogue;
+      }
+    }
+    return ensemble;
+  }
+  
+  /**
+   * Normalise un nom de pizza pour la recherche sans tenir compte de la
+   * casse.
+   */
+  private static String normaliserNom(String nom) {
+    return nom.toLowerCase(Locale.ROOT);
+  }
+  
+  private static void invaliderVues() {
+    vueCatalogue = null;
+    ensembleCatalogue = null;
   }
   
   /**
@@ -300,6 +626,7 @@ public class Pizza {
    */
   public void setType(TypePizza type) {
     this.type = type;
+    Observateurs.typePizzaModifie(this);
   }
   
   
@@ -0,0 +1,80 @@
+package pizzas;
+
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Rapport d'un changement groupé des prix des ingrédients (voir
+ * {@link GestPizzaiolo#changerPrixIngredients(Map, boolean)}) : les pizzas
+ * dont le prix minimal a changé et celles qui sont devenues vendues en
+ * dessous de leur prix minimal.
+ *
+ * @author Rayan Ladrait
+ * @version 1.0
+ */
+public final class RapportTarifs {
+  
+  private final List<Pizza> prixMinimalModifie;
+  
+  private final List<Pizza> sousPrixMinimal;
+  
+  /**
+   * Prix de vente des pizzas vendues à perte, avant un éventuel ajustement
+   * (en centimes).
+   */
+  private final Map<Pizza, Long> prixVente;
+  
+  private final boolean ajuste;
+  
+  RapportTarifs(List<Pizza> prixMinimalModifie, List<Pizza> sousPrixMinimal,
+      Map<Pizza, Long> prixVente, boolean ajuste) {
+    this.prixMinimalModifie = List.copyOf(prixMinimalModifie);
+    this.sousPrixMinimal = List.copyOf(sousPrixMinimal);
+    this.prixVente = Collections.unmodifiableMap(new IdentityHashMap<>(prixVente));
+    this.ajuste = ajuste;
+  }
+  
+  /**
+   * Retourne les pizzas dont le prix minimal a changé.
+   *
+   * @return les pizzas dont le prix minimal a changé
+   */
+  public List<Pizza> getPizzasPrixMinimalModifie() {
+    return prixMinimalModifie;
+  }
+  
+  /**
+   * Retourne les pizzas dont le prix de vente est devenu inférieur au prix
+   * minimal.
+   *
+   * @return les pizzas vendues à perte après le changement de prix
+   */
+  public List<Pizza> getPizzasSousPrixMinimal() {
+    return sousPrixMinimal;
+  }
+  
+  /**
+   * Retourne le prix de vente d'une pizza vendue à perte, tel qu'il était
+   * avant un éventuel ajustement.
+   *
+   * @param pizza une pizza de {@link #getPizzasSousPrixMinimal()}
+   * @return son prix de vente en euros, ou -1 si la pizza n'est pas vendue à
+   *         perte
+   */
+  public double getPrixVente(Pizza pizza) {
+    Long prix = prixVente.get(pizza);
+    return prix != null ? Montant.enEuros(prix) : -1;
+  }
+  
+  /**
+   * Indique si le prix de vente des pizzas vendues à perte a été porté à leur
+   * nouveau prix minimal.
+   *
+   * @return true si les prix de vente ont été ajustés
+   */
+  public boolean estAjuste() {
+    return ajuste;
+  }
+}
@@ -0,0 +1,62 @@
+package pizzas;
+
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Identifiants entiers des ingrédients. Chaque nom reçoit, à sa première
+ * apparition, le plus petit entier non encore attribué : les identifiants
+ * sont denses et peuvent indexer un tableau ou un {@link java.util.BitSet}.
+ *
+ * <p>Deux ingrédients de même nom (égaux au sens de {@link Ingredient#equals})
+ * ont le même identifiant. Un identifiant n'est jamais réattribué.
+ *
+ * @author Rayan Ladrait
+ */
+final class RegistreIngredients {
+  
+  private static final Map<String, Integer> identifiants = new HashMap<>();
+  
+  /**
+   * Identifiants par nom en minuscules (plusieurs noms peuvent ne différer
+   * que par la casse).
+   */
+  private static final Map<String, BitSet> identifiantsSansCasse =
+      new HashMap<>();
+  
+  private RegistreIngredients() {
+  }
+  
+  /**
+   * Retourne l'identifiant d'un nom d'ingrédient, attribué au premier appel.
+   *
+   * @param nom le nom de l'ingrédient
+   * @return l'identifiant, positif ou nul
+   */
+  static synchronized int identifiant(String nom) {
+    Integer id = identifiants.get(nom);
+    if (id == null) {
+      id = identifiants.size();
+      identifiants.put(nom, id);
+      if (nom != null) {
+        identifiantsSansCasse.computeIfAbsent(nom.toLowerCase(Locale.ROOT),
+            n -> new BitSet()).set(id);
+      }
+    }
+    return id;
+  }
+  
+  /**
+   * Retourne les identifiants des noms égaux à un nom sans tenir compte de la
+   * casse.
+   *
+   * @param nom le nom recherché
+   * @return les identifiants (ensemble vide si aucun nom ne correspond)
+   */
+  static synchronized BitSet identifiantsSansCasse(String nom) {
+    BitSet ids = identifiantsSansCasse.get(nom.toLowerCase(Locale.ROOT));
+    return ids != null ? (BitSet) ids.clone() : new BitSet();
+  }
+}
@@ -0,0 +1,23 @@
+package pizzas;
+
+/**
+ * Source des clients qui ne sont pas tous gardés en mémoire, par exemple un
+ * stockage sur disque trop grand pour être chargé en entier. {@link Compte}
+ * lui demande un client absent de la mémoire avant de conclure qu'il
+ * n'existe pas.
+ *
+ * @author Kevin SIDER
+ * @version 1.0
+ * @see Compte#setSourceClients(SourceClients)
+ */
+public interface SourceClients {
+  
+  /**
+   * Charge un client absent de la mémoire. Le client chargé doit être
+   * inscrit, par exemple avec {@link Compte#inscriptionEnMasse}.
+   *
+   * @param email l'email normalisé du client
+   * @return le client chargé, ou null s'il n'existe pas
+   */
+  Client chargerClient(String email);
+}
@@ -0,0 +1,27 @@
+package pizzas;
+
+import java.time.LocalDate;
+
+/**
+ * Source des commandes traitées qui ne sont pas toutes gardées en mémoire,
+ * par exemple une archive découpée par jour. Le gestionnaire lui demande de
+ * charger une période avant de calculer un historique ou une statistique qui
+ * la couvre.
+ *
+ * @author Kevin SIDER
+ * @version 1.0
+ * @see GestPizzaiolo#setHistorique(SourceHistorique)
+ */
+public interface SourceHistorique {
+  
+  /**
+   * Charge les commandes traitées de la période qui ne sont pas encore en
+   * mémoire.
+   *
+   * @param debut le premier jour (inclus), ou null pour le début de
+   *        l'historique
+   * @param fin le dernier jour (inclus), ou null pour la fin de l'historique
+   * @throws java.io.UncheckedIOException en cas de problème de lecture
+   */
+  void chargerPeriode(LocalDate debut, LocalDate fin);
+}
@@ -10,6 +10,14 @@ import java.util.stream.Collectors;
 /**
  * Classe utilitaire pour le calcul des statistiques de la pizzeria.
  *
+ * <p>Les bénéfices sont cumulés en centimes (voir {@link Montant}) : les
+ * totaux sont exacts, quel que soit le nombre de commandes. Les méthodes qui
+ * retournent des euros en {@code double} convertissent le total à la fin.
+ *
+ * <p>Les statistiques des commandes sont calculées sur leurs lignes
+ * ({@link Commande#getLignes()}), dont les prix sont figés à la validation :
+ * elles ne changent pas quand le prix d'une pizza ou d'un ingrédient change.
+ *
  * @author Rayan Ladrait
  * @version 1.0
  */
@@ -20,22 +28,36 @@ public class Statistique {
    * Calcule le bénéfice unitaire d'une pizza (Prix de vente - Prix minimal).
    */
   public static double calculerBeneficePizza(Pizza pizza) {
+    return Montant.enEuros(calculerBeneficePizzaCentimes(pizza));
+  }
+  
+  /**
+   * Calcule le bénéfice unitaire d'une pizza en centimes.
+   */
+  public static long calculerBeneficePizzaCentimes(Pizza pizza) {
     if (pizza == null) {
-      return 0.0;
+      return 0;
     }
-    return pizza.getPrix() - pizza.calculerPrixMinimal();
+    return pizza.getPrixCentimes() - pizza.calculerPrixMinimalCentimes();
   }
   
   /**
    * Calcule le bénéfice total d'une commande.
    */
   public static double calculerBeneficeCommande(Commande commande) {
+    return Montant.enEuros(calculerBeneficeCommandeCentimes(commande));
+  }
+  
+  /**
+   * Calcule le bénéfice total d'une commande en centimes.
+   */
+  public static long calculerBeneficeCommandeCentimes(Commande commande) {
     if (commande == null) {
-      return 0.0;
+      return 0;
     }
-    double total = 0.0;
-    for (Pizza p : commande.getPizzas()) {
-      total += calculerBeneficePizza(p);
+    long total = 0;
+    for (LigneCommande l : commande.getLignes()) {
+      total += l.getBeneficeCentimes();
     }
     return total;
   }
@@ -44,12 +66,19 @@ public class Statistique {
    * Calcule le bénéfice total sur une liste de commandes.
    */
   public static double calculerBeneficeTotal(List<Commande> commandes) {
+    return Montant.enEuros(calculerBeneficeTotalCentimes(commandes));
+  }
+  
+  /**
+   * Calcule le bénéfice total sur une liste de commandes en centimes.
+   */
+  public static long calculerBeneficeTotalCentimes(List<Commande> commandes) {
     if (commandes == null) {
-      return 0.0;
+      return 0;
     }
-    double total = 0.0;
+    long total = 0;
     for (Commande c : commandes) {
-      total += calculerBeneficeCommande(c);
+      total += calculerBeneficeCommandeCentimes(c);
     }
     return total;
   }
@@ -60,20 +89,20 @@ public class Statistique {
    */
   public static Map<Pizza, Double> beneficeParPizza(List<Commande> commandes,
       Set<Pizza> catalogue) {
-    Map<Pizza, Double> result = new HashMap<>();
+    Map<Pizza, long[]> totaux = new HashMap<>();
     // Initialisation à 0 pour toutes les pizzas du catalogue
     for (Pizza p : catalogue) {
-      result.put(p, 0.0);
+      totaux.put(p, new long[1]);
     }
     
     for (Commande c : commandes) {
-      for (Pizza p : c.getPizzas()) {
-        double benef = calculerBeneficePizza(p);
-        // On ajoute au total existant
-        result.put(p, result.getOrDefault(p, 0.0) + benef);
+      for (LigneCommande l : c.getLignes()) {
+        // On ajoute au total existant, en centimes
+        totaux.computeIfAbsent(l.getPizza(), k -> new long[1])[0] +=
+            l.getBeneficeCentimes();
       }
     }
-    return result;
+    return enEuros(totaux);
   }
   
   /**
@@ -84,7 +113,10 @@ public class Statistique {
     Map<InformationPersonnelle, Integer> result = new HashMap<>();
     for (Commande c : commandes) {
       InformationPersonnelle clientInfo = c.getClient().getInfoPersonnelle();
-      int nbPizzas = c.getPizzas().size();
+      int nbPizzas = 0;
+      for (LigneCommande l : c.getLignes()) {
+        nbPizzas += l.getQuantite();
+      }
       result.put(clientInfo, result.getOrDefault(clientInfo, 0) + nbPizzas);
     }
     return result;
@@ -95,11 +127,22 @@ public class Statistique {
    */
   public static Map<InformationPersonnelle, Double> beneficeParClient(
       List<Commande> commandes) {
-    Map<InformationPersonnelle, Double> result = new HashMap<>();
+    Map<InformationPersonnelle, long[]> totaux = new HashMap<>();
     for (Commande c : commandes) {
       InformationPersonnelle clientInfo = c.getClient().getInfoPersonnelle();
-      double benef = calculerBeneficeCommande(c);
-      result.put(clientInfo, result.getOrDefault(clientInfo, 0.0) + benef);
+      totaux.computeIfAbsent(clientInfo, k -> new long[1])[0] +=
+          calculerBeneficeCommandeCentimes(c);
+    }
+    return enEuros(totaux);
+  }
+  
+  /**
+   * Convertit en euros des totaux cumulés en centimes.
+   */
+  private static <K> Map<K, Double> enEuros(Map<K, long[]> totaux) {
+    Map<K, Double> result = new HashMap<>();
+    for (Map.Entry<K, long[]> e : totaux.entrySet()) {
+      result.put(e.getKey(), Montant.enEuros(e.getValue()[0]));
     }
     return result;
   }
@@ -111,9 +154,9 @@ public class Statistique {
       Pizza pizza) {
     int count = 0;
     for (Commande c : commandes) {
-      for (Pizza p : c.getPizzas()) {
-        if (p.equals(pizza)) {
-          count++;
+      for (LigneCommande l : c.getLignes()) {
+        if (l.getPizza().equals(pizza)) {
+          count += l.getQuantite();
         }
       }
     }
@@ -133,8 +176,8 @@ public class Statistique {
     
     // Comptage
     for (Commande c : commandes) {
-      for (Pizza p : c.getPizzas()) {
-        counts.put(p, counts.getOrDefault(p, 0) + 1);
+      for (LigneCommande l : c.getLignes()) {
+        counts.merge(l.getPizza(), l.getQuantite(), Integer::sum);
       }
     }
     
@@ -0,0 +1,254 @@
+package tests;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import io.ArchiveCommandes;
+import io.GestionSauvegarde;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.time.Clock;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.List;
+import java.util.Set;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import pizzas.Client;
+import pizzas.Commande;
+import pizzas.Compte;
+import pizzas.EtatCommande;
+import pizzas.GestPizzaiolo;
+import pizzas.InformationPersonnelle;
+import pizzas.Pizza;
+import pizzas.Pizzaiolo;
+import pizzas.TypePizza;
+
+/**
+ * Tests JUnit 5 de la classe {@link io.ArchiveCommandes} : seul le segment du
+ * jour est chargé avec la sauvegarde, les autres jours à la demande.
+ *
+ * @author Kevin SIDER
+ */
+public class ArchiveCommandesTest {
+  
+  // Fichier temporaire pour les tests
+  private final String testfile = "test_donnees_archive.txt";
+  
+  private final LocalDate aujourdhui = LocalDate.of(2024, 3, 15);
+  private final Clock horloge = Clock.fixed(
+      aujourdhui.atStartOfDay(ZoneId.systemDefault()).toInstant(),
+      ZoneId.systemDefault());
+  
+  private GestPizzaiolo gestPizzaiolo;
+  private GestionSauvegarde sauvegarde;
+  private Pizza pizza;
+  private Client client;
+  
+  @BeforeEach
+  void setUp() throws IOException {
+    Compte.resetMemoire();
+    gestPizzaiolo = new GestPizzaiolo(new Pizzaiolo("MarioArchive"));
+    sauvegarde = new GestionSauvegarde(gestPizzaiolo);
+    sauvegarde.activerArchivage(horloge);
+    
+    gestPizzaiolo.creerIngredient("TomateArchive", 0.50);
+    pizza = gestPizzaiolo.creerPizza("SimpleArchive", TypePizza.Viande);
+    gestPizzaiolo.ajouterIngredientPizza(pizza, "TomateArchive");
+    gestPizzaiolo.setPrixPizza(pizza, 8.0);
+    Compte.inscription("archive@test.com", "mdp",
+        new InformationPersonnelle("Nom", "Prenom", "Adresse", 30));
+    client = Compte.getClientParEmail("archive@test.com");
+    
+    // Une commande traitée par jour, sur trois jours
+    for (int i = 2; i >= 0; i--) {
+      traiter(aujourdhui.minusDays(i));
+    }
+  }
+  
+  @AfterEach
+  void tearDown() {
+    File repertoire = new File(testfile + ArchiveCommandes.SUFFIXE_ARCHIVE);
+    File[] segments = repertoire.listFiles();
+    if (segments != null) {
+      for (File f : segments) {
+        f.delete();
+      }
+    }
+    repertoire.delete();
+    new File(testfile).delete();
+    Compte.resetMemoire();
+  }
+  
+  /**
+   * Crée une commande traitée du client pour un jour donné.
+   */
+  private Commande traiter(LocalDate jour) {
+    Commande cmd = client.nouvelleCommande();
+    cmd.ajouterPizza(pizza);
+    cmd.setEtat(EtatCommande.TRAITEE);
+    cmd.setDate(jour);
+    return cmd;
+  }
+  
+  /**
+   * Recharge les données dans un nouveau gestionnaire.
+   */
+  private GestPizzaiolo recharger() throws IOException {
+    GestPizzaiolo gest = new GestPizzaiolo(new Pizzaiolo("Reprise"));
+    sauvegarde = new GestionSauvegarde(gest);
+    sauvegarde.activerArchivage(horloge);
+    sauvegarde.chargerDonnees(testfile);
+    return gest;
+  }
+  
+  @Test
+  void testSegmentsParJour() throws Exception {
+    sauvegarde.sauvegarderDonnees(testfile);
+    
+    assertEquals(List.of(aujourdhui.minusDays(2), aujourdhui.minusDays(1),
+        aujourdhui), sauvegarde.getArchive().getSegments());
+    // Les commandes traitées ne sont plus dans le fichier principal
+    for (String ligne : Files.readAllLines(new File(testfile).toPath())) {
+      assertFalse(ligne.startsWith("COMMANDE"));
+    }
+  }
+  
+  @Test
+  void testPrixFigesArchives() throws Exception {
+    double benefice = 8.0 - pizza.calculerPrixMinimal();
+    gestPizzaiolo.changerPrixIngredient("TomateArchive", 2.0);
+    gestPizzaiolo.setPrixPizza(pizza, 12.0);
+    sauvegarde.sauvegarderDonnees(testfile);
+    GestPizzaiolo gest = recharger();
+    
+    // Les segments chargés à la demande gardent les prix de la validation
+    assertEquals(3 * benefice, gest.beneficeToutesCommandes(
+        aujourdhui.minusDays(2), aujourdhui), 1e-9);
+    for (Commande c : gest.getCommandesTraitees()) {
+      assertEquals(800, c.getPrixTotalCentimes());
+    }
+  }
+  
+  @Test
+  void testChargementALaDemande() throws Exception {
+    sauvegarde.sauvegarderDonnees(testfile);
+    GestPizzaiolo gest = recharger();
+    ArchiveCommandes archive = sauvegarde.getArchive();
+    
+    // Au démarrage, seul le segment du jour est en mémoire
+    assertEquals(Set.of(aujourdhui), archive.getSegmentsCharges());
+    assertEquals(1, gest.getCommandesTraitees().size());
+    assertEquals(aujourdhui, gest.getCommandesTraitees().get(0).getDate());
+    
+    // Une période ne charge que ses jours
+    List<Commande> periode =
+        gest.getCommandesTraitees(aujourdhui.minusDays(1), aujourdhui);
+    assertEquals(2, periode.size());
+    assertEquals(Set.of(aujourdhui.minusDays(1), aujourdhui),
+        archive.getSegmentsCharges());
+    assertEquals(2 * (8.0 - pizza.calculerPrixMinimal()),
+        gest.beneficeToutesCommandes(aujourdhui.minusDays(1), aujourdhui),
+        1e-9);
+    
+    // L'historique d'un client charge tout, sans doublon
+    InformationPersonnelle info = Compte.getClientParEmail("archive@test.com")
+        .getInfoPersonnelle();
+    assertEquals(3, gest.commandesTraiteesClient(info).size());
+    assertEquals(3, archive.getSegmentsCharges().size());
+    assertEquals(3, gest.getCommandesTraitees().size());
+    
+    // Tout est chargé : les statistiques ne relisent plus le répertoire
+    File repertoire = new File(testfile + ArchiveCommandes.SUFFIXE_ARCHIVE);
+    File segment = repertoire.listFiles()[0];
+    String extension = segment.getName().substring(
+        aujourdhui.toString().length());
+    Files.copy(segment.toPath(), new File(repertoire,
+        aujourdhui.minusDays(10) + extension).toPath());
+    assertEquals(0, archive.charger(null, null));
+    gest.beneficeToutesCommandes();
+    assertEquals(3, archive.getSegmentsCharges().size());
+  }
+  
+  @Test
+  void testSauvegardeSansChargerLHistorique() throws Exception {
+    sauvegarde.sauvegarderDonnees(testfile);
+    File ancien = new File(testfile + ArchiveCommandes.SUFFIXE_ARCHIVE,
+        aujourdhui.minusDays(2) + ".txt");
+    long modification = ancien.lastModified();
+    
+    // Nouvelle commande du jour, après une reprise avec le segment actif seul
+    pizza = recharger().getPizzaParNom("SimpleArchive");
+    client = Compte.getClientParEmail("archive@test.com");
+    Commande nouvelle = traiter(aujourdhui);
+    sauvegarde.sauvegarderDonnees(testfile);
+    assertEquals(modification, ancien.lastModified());
+    
+    GestPizzaiolo gest = recharger();
+    assertEquals(2, gest.getCommandesTraitees().size());
+    assertEquals(4, gest.getCommandesTraitees(null, null).size());
+    
+    // Les identifiants archivés ne sont pas réattribués
+    int max = 0;
+    for (Commande c : gest.getCommandesTraitees()) {
+      max = Math.max(max, c.getIdCommande());
+    }
+    assertEquals(nouvelle.getIdCommande(), max);
+    assertTrue(Compte.getClientParEmail("archive@test.com").nouvelleCommande()
+        .getIdCommande() > max);
+  }
+  
+  @Test
+  void testModificationCommandeArchivee() throws Exception {
+    sauvegarde.sauvegarderDonnees(testfile);
+    GestPizzaiolo gest = recharger();
+    LocalDate jour = aujourdhui.minusDays(2);
+    Commande ancienne = gest.getCommandesTraitees(jour, jour).get(0);
+    
+    // Même nombre de commandes ce jour-là, mais une pizza de plus
+    ancienne.ajouterPizza(gest.getPizzaParNom("SimpleArchive"));
+    File segment = new File(testfile + ArchiveCommandes.SUFFIXE_ARCHIVE,
+        jour + ".txt");
+    long taille = segment.length();
+    ArchiveCommandes.Capture capture = sauvegarde.getArchive().capturer();
+    assertEquals(Set.of(jour), capture.getJours());
+    // Rien n'est écrit avant l'écriture de la capture
+    assertEquals(taille, segment.length());
+    capture.ecrire();
+    assertTrue(segment.length() > taille);
+    
+    gest = recharger();
+    assertEquals(2, gest.getCommandesTraitees(jour, jour).get(0).getPizzas()
+        .size());
+  }
+  
+  @Test
+  void testNouvelleSauvegardeRepriseHistorique() throws Exception {
+    sauvegarde.sauvegarderDonnees(testfile);
+    recharger();
+    String copie = "test_donnees_archive_copie.txt";
+    File repertoire = new File(copie + ArchiveCommandes.SUFFIXE_ARCHIVE);
+    try {
+      // Seul le segment du jour est en mémoire : les autres sont recopiés
+      sauvegarde.sauvegarderDonnees(copie);
+      assertEquals(1, sauvegarde.getArchive().getSegmentsCharges().size());
+      GestPizzaiolo gest = new GestPizzaiolo(new Pizzaiolo("Copie"));
+      GestionSauvegarde reprise = new GestionSauvegarde(gest);
+      reprise.activerArchivage(horloge);
+      reprise.chargerDonnees(copie);
+      assertEquals(3, gest.getCommandesTraitees(null, null).size());
+    } finally {
+      File[] segments = repertoire.listFiles();
+      if (segments != null) {
+        for (File f : segments) {
+          f.delete();
+        }
+      }
+      repertoire.delete();
+      new File(copie).delete();
+    }
+  }
+}
@@ -0,0 +1,147 @@
+package tests;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import io.ChargeurMappe;
+import io.GestionSauvegarde;
+import io.InterSauvegarde;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import pizzas.Client;
+import pizzas.Commande;
+import pizzas.Compte;
+import pizzas.Evaluation;
+import pizzas.GestPizzaiolo;
+import pizzas.Ingredient;
+import pizzas.Pizza;
+import pizzas.Pizzaiolo;
+import pizzas.TypePizza;
+
+/**
+ * Tests JUnit 5 de la classe {@link io.ChargeurMappe} : l'état chargé doit
+ * être identique à celui du chargeur texte de {@link io.GestionSauvegarde}.
+ *
+ * @author Kevin SIDER
+ */
+public class ChargeurMappeTest {
+  
+  // Nom du fichier temporaire pour les tests
+  private final String testfile = "test_donnees_mappe.txt";
+  
+  @BeforeEach
+  void setUp() {
+    Compte.resetMemoire();
+  }
+  
+  @AfterEach
+  void tearDown() {
+    new File(testfile).delete();
+    Compte.resetMemoire();
+  }
+  
+  /**
+   * Écrit le fichier de test avec des fins de ligne données.
+   */
+  private void ecrireFichier(String finLigne, String... lignes)
+      throws IOException {
+    Files.write(Paths.get(testfile),
+        (String.join(finLigne, lignes) + finLigne)
+            .getBytes(StandardCharsets.UTF_8));
+  }
+  
+  /**
+   * Charge le fichier de test et résume l'état obtenu sous forme de texte.
+   */
+  private String charger(InterSauvegarde sauvegarde, GestPizzaiolo gest)
+      throws IOException {
+    sauvegarde.chargerDonnees(testfile);
+    List<String> etat = new ArrayList<>();
+    for (Ingredient ing : gest.getIngredients()) {
+      etat.add("I " + ing.getNom() + " " + ing.getPrix());
+      for (TypePizza type : TypePizza.values()) {
+        if (gest.estIngredientInterdit(type, ing)) {
+          etat.add("X " + ing.getNom() + " " + type);
+        }
+      }
+    }
+    for (Pizza p : gest.getPizzas()) {
+      etat.add("P " + p.getNom() + " " + p.getType() + " " + p.getPrix() + " "
+          + p.getPhoto() + " " + p.getIngredients());
+      for (Evaluation e : p.getEvaluations()) {
+        etat.add("E " + p.getNom() + " " + e.getAuteur().getCompte().getEmail()
+            + " " + e.getNote() + " " + e.getCommentaire());
+      }
+    }
+    for (Client c : Compte.getTousLesClients()) {
+      etat.add("C " + c.getCompte() + " " + c.getInfoPersonnelle());
+    }
+    for (Commande c : gest.getCommandesTraitees()) {
+      List<String> noms = new ArrayList<>();
+      for (Pizza p : c.getPizzas()) {
+        noms.add(p.getNom());
+      }
+      etat.add("O " + c.getClient().getCompte().getEmail() + " " + noms);
+    }
+    Collections.sort(etat);
+    return String.join("\n", etat);
+  }
+  
+  /**
+   * Compare les deux chargeurs sur le fichier de test.
+   */
+  private void verifierIdentique() throws IOException {
+    GestPizzaiolo gestTexte = new GestPizzaiolo(new Pizzaiolo("Texte"));
+    String attendu = charger(new GestionSauvegarde(gestTexte), gestTexte);
+    GestPizzaiolo gestMappe = new GestPizzaiolo(new Pizzaiolo("Mappe"));
+    String obtenu = charger(new ChargeurMappe(gestMappe), gestMappe);
+    assertEquals(attendu, obtenu);
+  }
+  
+  @Test
+  void testFinsDeLigneEtNombres() throws IOException {
+    ecrireFichier("\r\n", "INGREDIENT;PateMap;0.30000000000000004",
+        "INGREDIENT;SauceMap;+2", "INGREDIENT;HerbeMap;.5",
+        "INGREDIENT;Fromage de chèvre Map;4.0",
+        "INGREDIENT;SelMap;1.0E-4", "INGREDIENT;PoivreMap;12.",
+        "PIZZA;SimpleMap;Vegetarienne;7.0;null;PateMap;SauceMap;HerbeMap;",
+        "PIZZA;EpiceeMap;Regionale;1.5;photo.png;SelMap;PoivreMap;Inconnu",
+        "PIZZA;4 fromages Map;Vegetarienne;9.1;C:\\Capture d’écran.png;"
+            + "Fromage de chèvre Map",
+        "CLIENT;map@test.com;mdp;Nom;Prénom;Adresse;33", "INTERDICTION;SelMap",
+        "INTERDICTION;SelMap;Viande", "COMMANDE;MAP@test.com;TRAITEE;simplemap",
+        "EVALUATION;SimpleMap;map@test.com;3;", "EVALUATION;EpiceeMap;"
+            + "map@test.com;5;Épicée !",
+        "", ";;;", "AUTRE;ligne;ignorée");
+    verifierIdentique();
+  }
+  
+  @Test
+  void testFinsDeLigneUnix() throws IOException {
+    ecrireFichier("\n", "INGREDIENT;TomateMap;0.5",
+        "PIZZA;UnixMap;Viande;4.0;null;TomateMap",
+        "CLIENT;unix@test.com;mdp;Nom;Prenom;Adresse;20",
+        "COMMANDE;unix@test.com;TRAITEE;UnixMap;UnixMap");
+    verifierIdentique();
+    assertTrue(Compte.connexion("unix@test.com", "mdp"));
+    Compte.deconnexion();
+  }
+  
+  @Test
+  void testNombreInvalide() throws IOException {
+    ecrireFichier("\n", "INGREDIENT;TomateMap;abc");
+    GestPizzaiolo gest = new GestPizzaiolo(new Pizzaiolo("Mappe"));
+    assertThrows(IOException.class,
+        () -> new ChargeurMappe(gest).chargerDonnees(testfile));
+  }
+}
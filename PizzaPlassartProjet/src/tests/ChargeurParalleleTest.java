@@ -0,0 +1,169 @@
+package tests;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import io.ChargeurParallele;
+import io.GestionSauvegarde;
+import io.InterSauvegarde;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import pizzas.Client;
+import pizzas.Commande;
+import pizzas.Compte;
+import pizzas.Evaluation;
+import pizzas.GestPizzaiolo;
+import pizzas.Ingredient;
+import pizzas.Pizza;
+import pizzas.Pizzaiolo;
+import pizzas.TypePizza;
+
+/**
+ * Tests JUnit 5 de la classe {@link io.ChargeurParallele} : l'état chargé
+ * doit être identique à celui du chargeur texte de
+ * {@link io.GestionSauvegarde}, quel que soit le découpage en blocs.
+ *
+ * @author Kevin SIDER
+ */
+public class ChargeurParalleleTest {
+  
+  // Nom du fichier temporaire pour les tests
+  private final String testfile = "test_donnees_parallele.txt";
+  
+  @BeforeEach
+  void setUp() {
+    Compte.resetMemoire();
+  }
+  
+  @AfterEach
+  void tearDown() {
+    new File(testfile).delete();
+    Compte.resetMemoire();
+  }
+  
+  /**
+   * Écrit le fichier de test avec des fins de ligne données.
+   */
+  private void ecrireFichier(String finLigne, String... lignes)
+      throws IOException {
+    Files.write(Paths.get(testfile),
+        (String.join(finLigne, lignes) + finLigne)
+            .getBytes(StandardCharsets.UTF_8));
+  }
+  
+  /**
+   * Charge le fichier de test et résume l'état obtenu sous forme de texte.
+   */
+  private String charger(InterSauvegarde sauvegarde, GestPizzaiolo gest)
+      throws IOException {
+    sauvegarde.chargerDonnees(testfile);
+    List<String> etat = new ArrayList<>();
+    for (Ingredient ing : gest.getIngredients()) {
+      etat.add("I " + ing.getNom() + " " + ing.getPrix());
+      for (TypePizza type : TypePizza.values()) {
+        if (gest.estIngredientInterdit(type, ing)) {
+          etat.add("X " + ing.getNom() + " " + type);
+        }
+      }
+    }
+    for (Pizza p : gest.getPizzas()) {
+      etat.add("P " + p.getNom() + " " + p.getType() + " " + p.getPrix() + " "
+          + p.getPhoto() + " " + p.getIngredients());
+      for (Evaluation e : p.getEvaluations()) {
+        etat.add("E " + p.getNom() + " " + e.getAuteur().getCompte().getEmail()
+            + " " + e.getNote() + " " + e.getCommentaire());
+      }
+    }
+    for (Client c : Compte.getTousLesClients()) {
+      etat.add("C " + c.getCompte() + " " + c.getInfoPersonnelle());
+    }
+    for (Commande c : gest.getCommandesTraitees()) {
+      List<String> noms = new ArrayList<>();
+      for (Pizza p : c.getPizzas()) {
+        noms.add(p.getNom());
+      }
+      etat.add("O " + c.getClient().getCompte().getEmail() + " " + noms);
+    }
+    Collections.sort(etat);
+    return String.join("\n", etat);
+  }
+  
+  /**
+   * Compare les deux chargeurs sur le fichier de test, avec des blocs de la
+   * taille donnée.
+   */
+  private ChargeurParallele verifierIdentique(int tailleBloc)
+      throws IOException {
+    GestPizzaiolo gestTexte = new GestPizzaiolo(new Pizzaiolo("Texte"));
+    String attendu = charger(new GestionSauvegarde(gestTexte), gestTexte);
+    GestPizzaiolo gestParallele = new GestPizzaiolo(new Pizzaiolo("Para"));
+    ChargeurParallele chargeur = new ChargeurParallele(gestParallele);
+    chargeur.setTailleBlocMax(tailleBloc);
+    String obtenu = charger(chargeur, gestParallele);
+    assertEquals(attendu, obtenu);
+    return chargeur;
+  }
+  
+  @Test
+  void testFinsDeLigneEtNombres() throws IOException {
+    ecrireFichier("\r\n", "INGREDIENT;PatePar;0.30000000000000004",
+        "INGREDIENT;SaucePar;+2", "INGREDIENT;HerbePar;.5",
+        "INGREDIENT;Fromage de chèvre Par;4.0",
+        "PIZZA;SimplePar;Vegetarienne;7.0;null;PatePar;SaucePar;HerbePar;",
+        "PIZZA;4 fromages Par;Vegetarienne;9.1;C:\\Capture d’écran.png;"
+            + "Fromage de chèvre Par",
+        "CLIENT;par@test.com;mdp;Nom;Prénom;Adresse;33", "INTERDICTION;PatePar",
+        "INTERDICTION;PatePar;Viande", "COMMANDE;PAR@test.com;TRAITEE;simplepar",
+        "EVALUATION;SimplePar;par@test.com;3;", "EVALUATION;4 fromages Par;"
+            + "par@test.com;5;Fondante !",
+        "", ";;;", "AUTRE;ligne;ignorée");
+    // Un bloc par ligne, puis un seul bloc
+    assertTrue(verifierIdentique(1).getNbBlocs() > 10);
+    assertEquals(1, verifierIdentique(1 << 20).getNbBlocs());
+  }
+  
+  @Test
+  void testCommandesDansPlusieursBlocs() throws IOException {
+    List<String> lignes = new ArrayList<>();
+    for (int i = 0; i < 10; i++) {
+      lignes.add("INGREDIENT;Ingredient Par " + i + ";" + (0.5 + i));
+    }
+    for (int i = 0; i < 20; i++) {
+      lignes.add("PIZZA;Pizza Par " + i + ";Viande;" + (10 + i) + ".5;null;"
+          + "Ingredient Par " + (i % 10) + ";Ingredient Par " + (i * 3 % 10));
+    }
+    for (int i = 0; i < 30; i++) {
+      lignes.add("CLIENT;client" + i + "@par.fr;mdp;Nom;Prenom;Adresse;20");
+    }
+    for (int i = 0; i < 3000; i++) {
+      lignes.add("COMMANDE;client" + (i % 30) + "@par.fr;TRAITEE;Pizza Par "
+          + (i % 20) + ";Pizza Par " + (i * 7 % 20));
+    }
+    for (int i = 0; i < 100; i++) {
+      lignes.add("EVALUATION;Pizza Par " + (i % 20) + ";client" + (i % 30)
+          + "@par.fr;" + (i % 5 + 1) + ";Avis " + i);
+    }
+    ecrireFichier("\n", lignes.toArray(new String[0]));
+    assertTrue(verifierIdentique(4096).getNbBlocs() > 10);
+  }
+  
+  @Test
+  void testNombreInvalide() throws IOException {
+    ecrireFichier("\n", "INGREDIENT;TomatePar;0.5",
+        "COMMANDE;a@par.fr;TRAITEE;Pizza", "EVALUATION;Pizza;a@par.fr;x;Bon");
+    GestPizzaiolo gest = new GestPizzaiolo(new Pizzaiolo("Para"));
+    ChargeurParallele chargeur = new ChargeurParallele(gest);
+    chargeur.setTailleBlocMax(1);
+    assertThrows(IOException.class, () -> chargeur.chargerDonnees(testfile));
+  }
+}
@@ -8,6 +8,7 @@ import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import java.util.Arrays;
 import java.util.HashSet;
+import java.util.Locale;
 import java.util.Set;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -130,6 +131,18 @@ public class FiltreTest {
     assertTrue(resultats2.containsAll(Arrays.asList(p1, p3, p2)));
   }
   
+  /**
+   * Teste que le prix maximum est arrondi au centime inférieur.
+   */
+  @Test
+  public void testAjouterFiltreParPrixArrondi() {
+    // 9,999 € n'admet pas la pizza à 10,00 €, 5,20 € admet celle à 5,20 €
+    filtre.ajouterFiltre(9.999);
+    assertFalse(filtre.selectionPizzaFiltres().contains(p4));
+    filtre.ajouterFiltre(5.20);
+    assertTrue(filtre.selectionPizzaFiltres().contains(p2));
+  }
+  
   /**
    * Teste le filtre par prix avec une valeur qui ne retourne aucun résultat.
    */
@@ -166,6 +179,24 @@ public class FiltreTest {
     assertTrue(resultats.contains(p2));
   }
   
+  /**
+   * Teste que la casse des noms d'ingrédients est ignorée quelle que soit la
+   * langue par défaut (en turc, « I » en minuscule n'est pas « i »).
+   */
+  @Test
+  public void testAjouterFiltreParIngredientLangueTurque() {
+    Locale defaut = Locale.getDefault();
+    try {
+      Locale.setDefault(Locale.forLanguageTag("tr"));
+      filtre.ajouterFiltre("CHAMPIGNON");
+      Set<Pizza> resultats = filtre.selectionPizzaFiltres();
+      
+      assertEquals(Set.of(p2, p3), resultats);
+    } finally {
+      Locale.setDefault(defaut);
+    }
+  }
+  
   /**
    * Teste le filtre par ingrédients multiples (Tomate ET Fromage : P1, P2, P3).
    */
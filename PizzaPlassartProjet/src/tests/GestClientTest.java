@@ -3,6 +3,8 @@ package tests;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
@@ -128,6 +130,20 @@ public class GestClientTest {
     });
   }
   
+  @Test
+  void testGetCommande() throws NonConnecteException {
+    gestClient.inscription(email, mdp, infoClient);
+    gestClient.connexion(email, mdp);
+    
+    Commande cmd = gestClient.debuterCommande();
+    assertSame(cmd, gestClient.getCommande(cmd.getIdCommande()));
+    assertNull(gestClient.getCommande(-1));
+    
+    gestClient.deconnexion();
+    assertThrows(NonConnecteException.class,
+        () -> gestClient.getCommande(cmd.getIdCommande()));
+  }
+  
   @Test
   void testGetPizzas() {
     Set<Pizza> pizzas = gestClient.getPizzas();
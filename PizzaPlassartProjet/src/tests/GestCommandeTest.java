@@ -3,8 +3,12 @@ package tests;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 
+import java.util.ArrayList;
+import java.util.List;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import pizzas.Client;
@@ -146,6 +150,43 @@ public class GestCommandeTest {
     assertFalse(client.getCommandesEnCours().contains(commande));
   }
   
+  /**
+   * Teste l'index global des commandes par identifiant.
+   * 
+   * <p>Vérifie que les commandes de tous les clients sont retrouvées, y compris
+   * après l'agrandissement de l'index, et qu'une commande retirée ou une
+   * mémoire réinitialisée n'y figurent plus.
+   */
+  @Test
+  void testIndexCommandes() {
+    Compte.inscription("autre@example.com", "mdp",
+        new InformationPersonnelle("Martin", "Paul", "2 Rue du Parc", 40));
+    Client autre = Compte.getClientParEmail("autre@example.com");
+    List<Commande> commandes = new ArrayList<>();
+    for (int i = 0; i < 500; i++) {
+      commandes.add((i % 2 == 0 ? client : autre).nouvelleCommande());
+    }
+    assertSame(commande, Client.getCommandeParId(commande.getIdCommande()));
+    for (Commande c : commandes) {
+      assertSame(c, Client.getCommandeParId(c.getIdCommande()));
+    }
+    
+    // Retrait d'une commande sur trois
+    for (int i = 0; i < commandes.size(); i += 3) {
+      Commande c = commandes.get(i);
+      c.getClient().retirerCommande(c);
+    }
+    for (int i = 0; i < commandes.size(); i++) {
+      Commande c = commandes.get(i);
+      assertEquals(i % 3 == 0 ? null : c,
+          Client.getCommandeParId(c.getIdCommande()));
+    }
+    assertNull(autre.getCommandes(commande.getIdCommande()));
+    
+    Compte.resetMemoire();
+    assertNull(Client.getCommandeParId(commandes.get(1).getIdCommande()));
+  }
+  
   /**
    * Teste la levée d'une exception lorsqu'un client non connecté tente de
    * débuter une commande.
@@ -0,0 +1,456 @@
+package tests;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import pizzas.Client;
+import pizzas.Commande;
+import pizzas.Compte;
+import pizzas.EtatCommande;
+import pizzas.GestPizzaiolo;
+import pizzas.InformationPersonnelle;
+import pizzas.Ingredient;
+import pizzas.ObservateurModifications;
+import pizzas.Observateurs;
+import pizzas.Pizza;
+import pizzas.Pizzaiolo;
+import pizzas.RapportTarifs;
+import pizzas.TypePizza;
+
+/**
+ * Tests JUnit 5 de la classe {@link pizzas.GestPizzaiolo}.
+ *
+ * @author Léo Montay
+ */
+public class GestPizzaioloTest {
+  
+  private GestPizzaiolo gest;
+  
+  /**
+   * Modifications signalées aux observateurs, dans l'ordre.
+   */
+  private final List<String> signalees = new ArrayList<>();
+  
+  private final ObservateurModifications observateur =
+      new ObservateurModifications() {
+        @Override
+        public void ingredientCree(Ingredient ingredient) {
+          signalees.add("ingredient " + ingredient.getNom());
+        }
+        
+        @Override
+        public void interdictionModifiee(Ingredient ingredient,
+            TypePizza type, boolean interdit) {
+          signalees.add("interdiction " + ingredient.getNom() + " " + interdit);
+        }
+        
+        @Override
+        public void pizzaCreee(Pizza pizza) {
+          signalees.add("pizza " + pizza.getNom());
+        }
+        
+        @Override
+        public void ingredientAjoute(Pizza pizza, Ingredient ingredient) {
+          signalees.add("composition " + pizza.getNom() + " "
+              + ingredient.getNom());
+        }
+        
+        @Override
+        public void prixPizzaModifie(Pizza pizza) {
+          signalees.add("prix " + pizza.getNom());
+        }
+      };
+  
+  @BeforeEach
+  void setUp() {
+    Compte.resetMemoire();
+    gest = new GestPizzaiolo(new Pizzaiolo("MarioGest"));
+    gest.creerIngredient("TomateGest", 0.5);
+    Observateurs.ajouter(observateur);
+  }
+  
+  @AfterEach
+  void tearDown() {
+    Observateurs.retirer(observateur);
+  }
+  
+  @Test
+  void testSuspensionParThread() throws Exception {
+    signalees.clear();
+    Observateurs.suspendre();
+    try {
+      gest.creerPizza("SuspendueGest", TypePizza.Viande);
+      // Une modification faite pendant ce temps sur un autre thread reste
+      // signalée
+      Thread autre = new Thread(
+          () -> gest.creerPizza("AutreThreadGest", TypePizza.Viande));
+      autre.start();
+      autre.join();
+    } finally {
+      Observateurs.reprendre();
+    }
+    assertEquals(List.of("pizza AutreThreadGest"), signalees);
+  }
+  
+  @Test
+  void testImportEnMasse() {
+    Pizza existante = gest.creerPizza("ExistanteGest", TypePizza.Viande);
+    signalees.clear();
+    GestPizzaiolo.LotImport lot = gest.debuterImport();
+    assertEquals(0, lot.creerIngredient("JambonGest", 1.0));
+    assertEquals(-2, lot.creerIngredient("TomateGest", 2.0));
+    assertEquals(-2, lot.creerIngredient("JambonGest", 2.0));
+    assertEquals(-1, lot.creerIngredient(" ", 2.0));
+    assertEquals(-3, lot.creerIngredient("SelGest", 0));
+    assertTrue(lot.interdireIngredient("JambonGest", TypePizza.Vegetarienne));
+    assertFalse(lot.interdireIngredient("InconnuGest", TypePizza.Viande));
+    
+    assertNull(lot.creerPizza("ExistanteGest", TypePizza.Viande));
+    Pizza p = lot.creerPizza("NouvelleGest", TypePizza.Vegetarienne);
+    assertNotNull(p);
+    assertNull(lot.creerPizza("NouvelleGest", TypePizza.Viande));
+    assertEquals(-1, lot.ajouterIngredientPizza(existante, "TomateGest"));
+    assertEquals(0, lot.ajouterIngredientPizza(p, "TomateGest"));
+    assertEquals(-3, lot.ajouterIngredientPizza(p, "JambonGest"));
+    assertEquals(-2, lot.ajouterIngredientPizza(p, "InconnuGest"));
+    assertFalse(lot.setPrixPizza(p, 0.1));
+    assertTrue(lot.setPrixPizza(p, 8.0));
+    assertFalse(lot.ajouterPhoto(p, "photo.txt"));
+    assertTrue(lot.ajouterPhoto(p, "photo.png"));
+    
+    // Rien n'est visible ni signalé avant la publication
+    assertNull(gest.getIngredientParNom("JambonGest"));
+    assertNull(gest.getPizzaParNom("NouvelleGest"));
+    assertTrue(signalees.isEmpty());
+    
+    lot.publier();
+    Ingredient jambon = gest.getIngredientParNom("JambonGest");
+    assertNotNull(jambon);
+    assertTrue(gest.estIngredientInterdit(TypePizza.Vegetarienne, jambon));
+    assertEquals(p, gest.getPizzaParNom("NouvelleGest"));
+    assertEquals(p, Pizza.getPizzaParNom("NouvelleGest"));
+    assertEquals(8.0, gest.getPrixPizza(p));
+    assertEquals(List.of("ingredient JambonGest", "pizza NouvelleGest",
+        "composition NouvelleGest TomateGest", "prix NouvelleGest",
+        "interdiction JambonGest true"), signalees);
+    assertThrows(IllegalStateException.class,
+        () -> lot.creerIngredient("AutreGest", 1.0));
+  }
+  
+  @Test
+  void testImportDoubleInversion() {
+    gest.interdireIngredient("TomateGest", TypePizza.Regionale);
+    signalees.clear();
+    GestPizzaiolo.LotImport lot = gest.debuterImport();
+    lot.interdireIngredient("TomateGest", TypePizza.Regionale);
+    lot.interdireIngredient("TomateGest", TypePizza.Regionale);
+    lot.interdireIngredient("TomateGest", TypePizza.Viande);
+    lot.publier();
+    Ingredient tomate = gest.getIngredientParNom("TomateGest");
+    assertTrue(gest.estIngredientInterdit(TypePizza.Regionale, tomate));
+    assertTrue(gest.estIngredientInterdit(TypePizza.Viande, tomate));
+    assertEquals(List.of("interdiction TomateGest true"), signalees);
+  }
+  
+  @Test
+  void testRechercheParNomEtIdentite() {
+    Pizza reine = gest.creerPizza("ReineGest", TypePizza.Viande);
+    assertSame(reine, gest.getPizzaParNom("ReineGest"));
+    assertSame(gest.getIngredients().get(0),
+        gest.getIngredientParNom("TomateGest"));
+    assertNull(gest.getPizzaParNom(" "));
+    assertNull(gest.getIngredientParNom(null));
+    
+    // Une pizza de même nom qui n'a pas été créée par le gestionnaire n'est
+    // pas acceptée
+    Pizza copie = new Pizza("ReineGest", TypePizza.Viande);
+    assertEquals(reine, copie);
+    assertEquals(-1, gest.getPrixPizza(copie));
+    assertEquals(-1, gest.ajouterIngredientPizza(copie, "TomateGest"));
+    assertEquals(0, gest.ajouterIngredientPizza(reine, "TomateGest"));
+    
+    // Les listes restent à jour avec les index
+    assertThrows(UnsupportedOperationException.class,
+        () -> gest.getIngredients().clear());
+    GestPizzaiolo.LotImport lot = gest.debuterImport();
+    lot.creerIngredient("OlivesGest", 0.3);
+    Pizza lotPizza = lot.creerPizza("LotGest", TypePizza.Vegetarienne);
+    lot.publier();
+    assertSame(lotPizza, gest.getPizzaParNom("LotGest"));
+    assertEquals(0, gest.ajouterIngredientPizza(lotPizza, "OlivesGest"));
+    assertEquals(2, gest.getIngredients().size());
+    assertEquals(-2, gest.creerIngredient("OlivesGest", 1.0));
+    assertNull(gest.creerPizza("LotGest", TypePizza.Viande));
+  }
+  
+  @Test
+  void testCommandesParEtat() throws Exception {
+    InformationPersonnelle info =
+        new InformationPersonnelle("Nom", "Prénom", "Adresse", 30);
+    Compte.inscription("etats@gest.com", "mdp", info);
+    Compte.inscription("autre@gest.com", "mdp",
+        new InformationPersonnelle("Autre", "Prénom", "Adresse", 40));
+    Client client = Compte.getClientParEmail("etats@gest.com");
+    Client autre = Compte.getClientParEmail("autre@gest.com");
+    Commande creee = client.nouvelleCommande();
+    Commande validee = client.nouvelleCommande();
+    Commande traitee = autre.nouvelleCommande();
+    Commande annulee = autre.nouvelleCommande();
+    validee.valider();
+    traitee.setEtat(EtatCommande.TRAITEE);
+    autre.retirerCommande(annulee);
+    
+    assertEquals(List.of(creee), gest.getCommandesParEtat(EtatCommande.CREE));
+    assertEquals(List.of(validee), client.getCommandes(EtatCommande.VALIDEE));
+    assertEquals(List.of(traitee), gest.getCommandesTraitees());
+    assertEquals(Set.of(autre.getInfoPersonnelle()), gest.ensembleClients());
+    assertTrue(gest.commandesTraiteesClient(info).isEmpty());
+    
+    // Les commandes validées passent dans les commandes traitées
+    assertEquals(List.of(validee), gest.commandeNonTraitees());
+    assertTrue(gest.getCommandesParEtat(EtatCommande.VALIDEE).isEmpty());
+    assertEquals(List.of(validee), gest.commandesTraiteesClient(info));
+    assertEquals(2, gest.commandesDejaTraitees().size());
+    assertEquals(1, client.getNbCommandes(EtatCommande.TRAITEE));
+    
+    // Une commande hors des clients n'est pas comptée
+    new Commande(999, client).setEtat(EtatCommande.TRAITEE);
+    assertEquals(2, gest.getCommandesTraitees().size());
+    
+    // Un client sans commande traitée n'est plus parmi les clients
+    assertEquals(Set.of(info, autre.getInfoPersonnelle()),
+        gest.ensembleClients());
+    autre.retirerCommande(traitee);
+    assertEquals(Set.of(info), gest.ensembleClients());
+    assertEquals(List.of(client),
+        Client.getClientsAvecCommandes(EtatCommande.TRAITEE));
+    
+    Compte.resetMemoire();
+    assertTrue(gest.getCommandesTraitees().isEmpty());
+    assertTrue(gest.ensembleClients().isEmpty());
+  }
+  
+  @Test
+  void testPizzasAvecIngredientInterdit() {
+    gest.creerIngredient("JambonGest", 1.5);
+    Pizza reine = gest.creerPizza("ReineGest", TypePizza.Vegetarienne);
+    Pizza margherita = gest.creerPizza("MargheritaGest",
+        TypePizza.Vegetarienne);
+    Pizza royale = gest.creerPizza("RoyaleGest", TypePizza.Viande);
+    gest.ajouterIngredientPizza(reine, "TomateGest");
+    gest.ajouterIngredientPizza(reine, "JambonGest");
+    gest.ajouterIngredientPizza(margherita, "TomateGest");
+    gest.ajouterIngredientPizza(royale, "JambonGest");
+    assertTrue(gest.pizzasAvecIngredientInterdit(TypePizza.Vegetarienne)
+        .isEmpty());
+    
+    assertTrue(gest.interdireIngredient("JambonGest", TypePizza.Vegetarienne));
+    assertEquals(List.of(reine),
+        gest.pizzasAvecIngredientInterdit(TypePizza.Vegetarienne));
+    assertTrue(gest.pizzasAvecIngredientInterdit(TypePizza.Viande).isEmpty());
+    assertEquals(Set.of("JambonGest"), gest.verifierIngredientsPizza(reine));
+    assertTrue(gest.verifierIngredientsPizza(margherita).isEmpty());
+    assertFalse(gest.contientIngredientInterdit(royale));
+    assertEquals(-3, gest.ajouterIngredientPizza(margherita, "JambonGest"));
+    
+    // Un ingrédient de même nom a le même identifiant
+    Ingredient copie = new Ingredient("JambonGest", 2.0);
+    assertEquals(gest.getIngredientParNom("JambonGest").getId(), copie.getId());
+    assertTrue(gest.estIngredientInterdit(TypePizza.Vegetarienne, copie));
+    assertFalse(gest.estIngredientInterdit(null, copie));
+    
+    assertTrue(gest.interdireIngredient("JambonGest", TypePizza.Vegetarienne));
+    assertTrue(gest.pizzasAvecIngredientInterdit(TypePizza.Vegetarienne)
+        .isEmpty());
+  }
+  
+  @Test
+  void testPizzasAvecIngredient() {
+    gest.creerIngredient("BasilicGest", 0.10);
+    Pizza margherita = gest.creerPizza("MargheritaGest",
+        TypePizza.Vegetarienne);
+    Pizza basilic = gest.creerPizza("BasilicGest", TypePizza.Vegetarienne);
+    gest.ajouterIngredientPizza(margherita, "TomateGest");
+    gest.ajouterIngredientPizza(margherita, "BasilicGest");
+    gest.ajouterIngredientPizza(basilic, "BasilicGest");
+    // Pizza hors du gestionnaire
+    new Pizza("AutreGest", TypePizza.Viande)
+        .ajouterIngredient(gest.getIngredientParNom("TomateGest"));
+    
+    assertEquals(Set.of(margherita), gest.pizzasAvecIngredient("TomateGest"));
+    assertEquals(2, gest.pizzasAvecIngredient("BasilicGest").size());
+    assertTrue(gest.pizzasAvecIngredient("InconnuGest").isEmpty());
+    
+    // 0,50 + 0,10 -> 0,80 + 0,10 : seul le prix de la margherita change
+    gest.changerPrixIngredient("TomateGest", 0.80);
+    assertEquals(List.of(margherita), gest.getPizzasPrixMinimalModifie());
+    // Les prix minimaux restent arrondis à 1,30 et 0,20
+    gest.changerPrixIngredient("BasilicGest", 0.11);
+    assertTrue(gest.getPizzasPrixMinimalModifie().isEmpty());
+    
+    gest.retirerIngredientPizza(margherita, "TomateGest");
+    assertTrue(gest.pizzasAvecIngredient("TomateGest").isEmpty());
+    assertEquals(1, gest.getIngredientParNom("TomateGest").getPizzas().size());
+  }
+  
+  @Test
+  void testChangerPrixIngredients() {
+    gest.creerIngredient("BasilicGest", 0.10);
+    gest.creerIngredient("MozzaGest", 0.40);
+    Pizza margherita = gest.creerPizza("MargheritaGest",
+        TypePizza.Vegetarienne);
+    Pizza blanche = gest.creerPizza("BlancheGest", TypePizza.Vegetarienne);
+    gest.ajouterIngredientPizza(margherita, "TomateGest");
+    gest.ajouterIngredientPizza(margherita, "BasilicGest");
+    gest.ajouterIngredientPizza(blanche, "MozzaGest");
+    // Prix minimaux : 0,90 et 0,60
+    assertTrue(gest.setPrixPizza(margherita, 1.0));
+    assertTrue(gest.setPrixPizza(blanche, 2.0));
+    
+    // Un prix invalide annule tout le lot
+    Map<String, Double> tarif = new LinkedHashMap<>();
+    tarif.put("TomateGest", 1.0);
+    tarif.put("InconnuGest", 1.0);
+    assertThrows(IllegalArgumentException.class,
+        () -> gest.changerPrixIngredients(tarif, false));
+    tarif.remove("InconnuGest");
+    tarif.put("BasilicGest", -1.0);
+    assertThrows(IllegalArgumentException.class,
+        () -> gest.changerPrixIngredients(tarif, false));
+    assertEquals(0.5, gest.getIngredientParNom("TomateGest").getPrix());
+    
+    // 1,00 + 0,20 -> 1,70 pour la margherita, 0,50 -> 0,70 pour la blanche
+    tarif.put("BasilicGest", 0.20);
+    tarif.put("MozzaGest", 0.50);
+    RapportTarifs rapport = gest.changerPrixIngredients(tarif, false);
+    assertEquals(Set.of(margherita, blanche),
+        Set.copyOf(rapport.getPizzasPrixMinimalModifie()));
+    assertEquals(List.of(margherita), rapport.getPizzasSousPrixMinimal());
+    assertEquals(1.0, rapport.getPrixVente(margherita));
+    assertEquals(-1, rapport.getPrixVente(blanche));
+    assertEquals(1.0, margherita.getPrix());
+    
+    tarif.clear();
+    tarif.put("TomateGest", 1.10);
+    rapport = gest.changerPrixIngredients(tarif, true);
+    assertTrue(rapport.estAjuste());
+    assertEquals(List.of(margherita), rapport.getPizzasSousPrixMinimal());
+    assertEquals(1.90, margherita.getPrix());
+    assertEquals(2.0, blanche.getPrix());
+  }
+  
+  @Test
+  void testPrixHistorises() throws InterruptedException {
+    Instant avant = Instant.now();
+    Thread.sleep(2);
+    gest.creerIngredient("JambonGest", 1.0);
+    Pizza royale = gest.creerPizza("RoyaleGest", TypePizza.Viande);
+    gest.ajouterIngredientPizza(royale, "TomateGest");
+    gest.ajouterIngredientPizza(royale, "JambonGest");
+    Thread.sleep(2);
+    Instant t1 = Instant.now();
+    Thread.sleep(2);
+    gest.changerPrixIngredient("JambonGest", 2.0);
+    assertTrue(gest.setPrixPizza(royale, 5.0));
+    Thread.sleep(2);
+    Instant t2 = Instant.now();
+    
+    // 0,50 + 1,00 -> 2,10 à t1, 0,50 + 2,00 -> 3,50 à t2
+    assertEquals(1.0, gest.getIngredientParNom("JambonGest").getPrixA(t1));
+    assertEquals(2.10, gest.calculerPrixMinimalPizza(royale, t1));
+    assertEquals(3.50, gest.calculerPrixMinimalPizza(royale, t2));
+    // Aucun prix fixé à t1 : le prix de vente est le prix minimal
+    assertEquals(2.10, gest.getPrixPizza(royale, t1));
+    assertEquals(0.0, gest.calculerMargePizza(royale, t1), 0.001);
+    assertEquals(1.50, gest.calculerMargePizza(royale, t2), 0.001);
+    
+    // Un tarif est daté d'un seul instant : pas d'état intermédiaire
+    Map<String, Double> tarif = new LinkedHashMap<>();
+    tarif.put("TomateGest", 1.0);
+    tarif.put("JambonGest", 4.0);
+    gest.changerPrixIngredients(tarif, false);
+    Instant tarifApplique = Instant.now();
+    assertEquals(7.00, gest.calculerPrixMinimalPizza(royale, tarifApplique));
+    Instant t3 = tarifApplique;
+    while (gest.calculerPrixMinimalPizza(royale, t3) == 7.00) {
+      t3 = t3.minusMillis(1);
+    }
+    assertEquals(3.50, gest.calculerPrixMinimalPizza(royale, t3));
+    
+    assertEquals(-1, gest.getIngredientParNom("JambonGest").getPrixA(avant));
+    assertEquals(-1, gest.calculerPrixMinimalPizza(royale, avant));
+    assertTrue(Double.isNaN(gest.calculerMargePizza(royale, avant)));
+  }
+  
+  @Test
+  void testStatistiquesAgregees() throws Exception {
+    gest.setVerificationAgregats(true);
+    InformationPersonnelle info =
+        new InformationPersonnelle("Nom", "Prénom", "Adresse", 30);
+    Compte.inscription("stats@gest.com", "mdp", info);
+    Client client = Compte.getClientParEmail("stats@gest.com");
+    Pizza reine = gest.creerPizza("ReineGest", TypePizza.Viande);
+    Pizza marinara = gest.creerPizza("MarinaraGest", TypePizza.Vegetarienne);
+    gest.ajouterIngredientPizza(reine, "TomateGest");
+    gest.ajouterIngredientPizza(marinara, "TomateGest");
+    // Prix minimal 0,70 : bénéfices de 3,30 et 1,30
+    assertTrue(gest.setPrixPizza(reine, 4.0));
+    assertTrue(gest.setPrixPizza(marinara, 2.0));
+    
+    Commande premiere = client.nouvelleCommande();
+    premiere.ajouterPizza(reine);
+    premiere.ajouterPizza(reine);
+    premiere.ajouterPizza(marinara);
+    premiere.valider();
+    Commande seconde = client.nouvelleCommande();
+    seconde.ajouterPizza(marinara);
+    seconde.valider();
+    // Les commandes seulement validées ne comptent pas
+    assertEquals(0, gest.beneficeToutesCommandes());
+    assertEquals(0, gest.nombrePizzasCommandees(reine));
+    
+    gest.commandeNonTraitees();
+    assertEquals(6.6 + 2.6, gest.beneficeToutesCommandes(), 0.001);
+    assertEquals(6.6, gest.beneficeParPizza().get(reine), 0.001);
+    assertEquals(2, gest.nombrePizzasCommandees(marinara));
+    assertEquals(4, gest.nombrePizzasCommandeesParClient().get(info));
+    assertEquals(9.2, gest.beneficeParClient().get(info), 0.001);
+    // Ex aequo : l'ordre des deux pizzas n'est pas fixé
+    assertEquals(Set.of(reine, marinara), Set.copyOf(
+        gest.classementPizzasParNombreCommandes().subList(0, 2)));
+    
+    // Les prix figés des commandes traitées ne bougent plus
+    gest.changerPrixIngredient("TomateGest", 1.0);
+    assertEquals(9.2, gest.beneficeToutesCommandes(), 0.001);
+    
+    // Pizzas ajoutées à une commande traitée, commande qui en sort
+    seconde.ajouterPizza(marinara);
+    seconde.ajouterPizza(marinara);
+    assertEquals(4, gest.nombrePizzasCommandees(marinara));
+    assertEquals(List.of(marinara, reine),
+        gest.classementPizzasParNombreCommandes().subList(0, 2));
+    premiere.setEtat(EtatCommande.VALIDEE);
+    assertEquals(3, gest.nombrePizzasCommandees(marinara));
+    assertEquals(0, gest.nombrePizzasCommandees(reine));
+    client.retirerCommande(seconde);
+    assertTrue(gest.beneficeParClient().isEmpty());
+    assertEquals(0, gest.beneficeToutesCommandes());
+    
+    Compte.resetMemoire();
+    assertTrue(gest.nombrePizzasCommandeesParClient().isEmpty());
+  }
+}
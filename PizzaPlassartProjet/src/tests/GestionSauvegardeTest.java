@@ -1,6 +1,7 @@
 package tests;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.junit.jupiter.api.Assertions.fail;
@@ -8,12 +9,16 @@ import static org.junit.jupiter.api.Assertions.fail;
 import io.GestionSauvegarde;
 import java.io.File;
 import java.io.IOException;
+import java.nio.file.Files;
 import java.util.List;
 import java.util.Set;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import pizzas.Client;
+import pizzas.Commande;
 import pizzas.Compte;
+import pizzas.EtatCommande;
 import pizzas.GestPizzaiolo;
 import pizzas.InformationPersonnelle;
 import pizzas.Ingredient;
@@ -54,6 +59,8 @@ public class GestionSauvegardeTest {
     if (file.exists()) {
       file.delete();
     }
+    new File(testfile + GestionSauvegarde.SUFFIXE_DELTA).delete();
+    gestionSauvegarde.desactiverSuiviModifications();
     Compte.resetMemoire();
   }
   
@@ -167,4 +174,83 @@ public class GestionSauvegardeTest {
       assertNotNull(e.getMessage());
     }
   }
+  
+  /**
+   * Teste que la sauvegarde différentielle n'écrit que les modifications et
+   * qu'elles sont retrouvées au chargement.
+   */
+  @Test
+  void testSauvegardeDelta() throws IOException {
+    gestPizzaiolo.creerIngredient("Tomate", 0.50);
+    gestPizzaiolo.creerIngredient("Chorizo", 1.50);
+    Pizza p1 = gestPizzaiolo.creerPizza("Reale", TypePizza.Viande);
+    gestPizzaiolo.ajouterIngredientPizza(p1, "Tomate");
+    gestPizzaiolo.ajouterIngredientPizza(p1, "Chorizo");
+    gestPizzaiolo.interdireIngredient("Chorizo", TypePizza.Vegetarienne);
+    Compte.inscription("delta@test.com", "mdp",
+        new InformationPersonnelle("Nom", "Prenom", "Adresse", 30));
+    gestionSauvegarde.sauvegarderDonnees(testfile);
+    gestionSauvegarde.activerSuiviModifications();
+    long tailleComplete = new File(testfile).length();
+    
+    // Modifications après la sauvegarde complète
+    gestPizzaiolo.changerPrixIngredient("Tomate", 0.70);
+    gestPizzaiolo.retirerIngredientPizza(p1, "Chorizo");
+    gestPizzaiolo.interdireIngredient("Chorizo", TypePizza.Vegetarienne);
+    Client client = Compte.getClientParEmail("delta@test.com");
+    Commande cmd = client.nouvelleCommande();
+    cmd.ajouterPizza(p1);
+    cmd.setEtat(EtatCommande.TRAITEE);
+    gestionSauvegarde.sauvegarderDelta(testfile);
+    
+    File delta = new File(testfile + GestionSauvegarde.SUFFIXE_DELTA);
+    assertEquals(tailleComplete, new File(testfile).length());
+    List<String> lignes = Files.readAllLines(delta.toPath());
+    assertTrue(lignes.contains("INGREDIENT;Tomate;0.7"));
+    assertFalse(lignes.stream().anyMatch(l -> l.startsWith("CLIENT;")
+        || l.startsWith("INGREDIENT;Chorizo")),
+        "Seules les entités modifiées doivent être écrites");
+    
+    // Rien de modifié : aucune écriture
+    long tailleDelta = delta.length();
+    gestionSauvegarde.sauvegarderDelta(testfile);
+    assertEquals(tailleDelta, delta.length());
+    
+    GestPizzaiolo nouveauGest = new GestPizzaiolo(new Pizzaiolo("LuigiTest"));
+    new GestionSauvegarde(nouveauGest).chargerDonnees(testfile);
+    assertEquals(0.70, nouveauGest.getIngredientParNom("Tomate").getPrix());
+    assertEquals(1,
+        nouveauGest.getPizzaParNom("Reale").getIngredients().size());
+    assertFalse(nouveauGest.estIngredientInterdit(TypePizza.Vegetarienne,
+        nouveauGest.getIngredientParNom("Chorizo")));
+    assertEquals(1, nouveauGest.getCommandesTraitees().size());
+  }
+  
+  /**
+   * Teste la fusion périodique des sauvegardes différentielles dans la
+   * sauvegarde complète.
+   */
+  @Test
+  void testFusionDeltas() throws IOException {
+    gestPizzaiolo.creerIngredient("Tomate", 0.50);
+    gestionSauvegarde.sauvegarderDonnees(testfile);
+    gestionSauvegarde.activerSuiviModifications();
+    gestionSauvegarde.setFusionTousLes(3);
+    
+    File delta = new File(testfile + GestionSauvegarde.SUFFIXE_DELTA);
+    gestPizzaiolo.creerIngredient("Mozza", 1.00);
+    gestionSauvegarde.sauvegarderDelta(testfile);
+    gestPizzaiolo.creerIngredient("Olive", 0.30);
+    gestionSauvegarde.sauvegarderDelta(testfile);
+    assertTrue(delta.exists());
+    
+    // La troisième sauvegarde différentielle est une fusion
+    gestPizzaiolo.creerIngredient("Basilic", 0.20);
+    gestionSauvegarde.sauvegarderDelta(testfile);
+    assertFalse(delta.exists());
+    
+    GestPizzaiolo nouveauGest = new GestPizzaiolo(new Pizzaiolo("LuigiTest"));
+    new GestionSauvegarde(nouveauGest).chargerDonnees(testfile);
+    assertEquals(4, nouveauGest.getIngredients().size());
+  }
 }
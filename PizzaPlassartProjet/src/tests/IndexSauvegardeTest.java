@@ -0,0 +1,163 @@
+package tests;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import io.GestionSauvegarde;
+import io.IndexSauvegarde;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import pizzas.Client;
+import pizzas.Commande;
+import pizzas.Compte;
+import pizzas.EtatCommande;
+import pizzas.Evaluation;
+import pizzas.GestPizzaiolo;
+import pizzas.InformationPersonnelle;
+import pizzas.Pizza;
+import pizzas.Pizzaiolo;
+import pizzas.TypePizza;
+
+/**
+ * Tests JUnit 5 de la classe {@link io.IndexSauvegarde} et de la lecture
+ * directe d'une section ou d'une entité par {@link io.GestionSauvegarde}.
+ *
+ * @author Kevin SIDER
+ */
+public class IndexSauvegardeTest {
+  
+  // Fichier temporaire pour les tests
+  private final String testfile = "test_donnees_index.txt";
+  
+  private GestPizzaiolo gestPizzaiolo;
+  private GestionSauvegarde sauvegarde;
+  
+  @BeforeEach
+  void setUp() throws IOException {
+    Compte.resetMemoire();
+    gestPizzaiolo = new GestPizzaiolo(new Pizzaiolo("MarioIndex"));
+    sauvegarde = new GestionSauvegarde(gestPizzaiolo);
+    
+    gestPizzaiolo.creerIngredient("TomateIndex", 0.50);
+    gestPizzaiolo.creerIngredient("JambonIndex", 1.50);
+    gestPizzaiolo.interdireIngredient("JambonIndex", TypePizza.Vegetarienne);
+    Pizza reine = gestPizzaiolo.creerPizza("ReineIndex", TypePizza.Viande);
+    gestPizzaiolo.ajouterIngredientPizza(reine, "TomateIndex");
+    gestPizzaiolo.ajouterIngredientPizza(reine, "JambonIndex");
+    Pizza marg = gestPizzaiolo.creerPizza("MargIndex",
+        TypePizza.Vegetarienne);
+    gestPizzaiolo.ajouterIngredientPizza(marg, "TomateIndex");
+    
+    for (int i = 0; i < 3; i++) {
+      String email = "client" + i + "@index.com";
+      Compte.inscription(email, "mdp",
+          new InformationPersonnelle("Nom", "Prénom", "Adresse", 30));
+      Client client = Compte.getClientParEmail(email);
+      for (int j = 0; j <= i; j++) {
+        Commande cmd = client.nouvelleCommande();
+        cmd.ajouterPizza(reine);
+        cmd.setEtat(EtatCommande.TRAITEE);
+      }
+      reine.getEvaluations().add(new Evaluation(4, "Très bonne", client));
+    }
+    sauvegarde.sauvegarderDonnees(testfile);
+  }
+  
+  @AfterEach
+  void tearDown() {
+    sauvegarde.desactiverSuiviModifications();
+    new File(testfile).delete();
+    new File(testfile + GestionSauvegarde.SUFFIXE_DELTA).delete();
+    Compte.resetMemoire();
+  }
+  
+  /**
+   * Lignes d'une section obtenues en lisant tout le fichier.
+   */
+  private List<String> lignesSection(String section) throws IOException {
+    List<String> lignes = new ArrayList<>();
+    for (String ligne : Files.readAllLines(new File(testfile).toPath(),
+        StandardCharsets.UTF_8)) {
+      if (ligne.startsWith(section + ";")) {
+        lignes.add(ligne);
+      }
+    }
+    return lignes;
+  }
+  
+  @Test
+  void testLectureDirecte() throws IOException {
+    IndexSauvegarde index = IndexSauvegarde.ouvrir(testfile);
+    assertNotNull(index);
+    for (String section : IndexSauvegarde.SECTIONS) {
+      assertEquals(lignesSection(section), index.lireSection(section));
+    }
+    
+    assertEquals(Set.of("client0@index.com", "client1@index.com",
+        "client2@index.com"), index.getCles("CLIENT"));
+    List<String> client = index.lireEntite("CLIENT", "client1@index.com");
+    assertEquals(1, client.size());
+    assertTrue(client.get(0).startsWith("CLIENT;client1@index.com;"));
+    assertEquals(3, index.lireEntite("COMMANDE", "client2@index.com").size());
+    assertEquals(3, index.lireEntite("EVALUATION", "ReineIndex").size());
+    assertEquals(0, index.lireEntite("EVALUATION", "MargIndex").size());
+    assertEquals(1, index.lireEntite("PIZZA", "MargIndex").size());
+    // Sections non indexées par clé : filtrées après lecture
+    assertEquals(1, index.lireEntite("INGREDIENT", "JambonIndex").size());
+    assertEquals(0, index.lireEntite("CLIENT", "inconnu@index.com").size());
+    
+    assertThrows(IllegalArgumentException.class,
+        () -> index.lireSection("INDEX"));
+  }
+  
+  @Test
+  void testChargementIgnoreIndex() throws IOException {
+    Compte.resetMemoire();
+    GestPizzaiolo gest = new GestPizzaiolo(new Pizzaiolo("Reprise"));
+    new GestionSauvegarde(gest).chargerDonnees(testfile);
+    assertEquals(2, gest.getIngredients().size());
+    assertEquals(2, gest.getPizzas().size());
+    assertEquals(6, gest.getCommandesTraitees().size());
+  }
+  
+  @Test
+  void testSansIndexAvecDelta() throws IOException {
+    // Sauvegarde antérieure à l'index : les lignes sont trouvées en
+    // parcourant le fichier
+    List<String> donnees = new ArrayList<>();
+    for (String ligne : Files.readAllLines(new File(testfile).toPath(),
+        StandardCharsets.UTF_8)) {
+      if (!ligne.startsWith("INDEX")) {
+        donnees.add(ligne);
+      }
+    }
+    Files.write(new File(testfile).toPath(), donnees,
+        StandardCharsets.UTF_8);
+    assertNull(IndexSauvegarde.ouvrir(testfile));
+    assertEquals(2, sauvegarde.extraireEntite(testfile, "COMMANDE",
+        "client1@index.com").size());
+    assertEquals(lignesSection("PIZZA"),
+        sauvegarde.extraireSection(testfile, "PIZZA"));
+    
+    // Les lignes des sauvegardes différentielles suivent celles du fichier
+    sauvegarde.activerSuiviModifications();
+    Pizza marg = gestPizzaiolo.getPizzaParNom("MargIndex");
+    gestPizzaiolo.setPrixPizza(marg, 12.0);
+    sauvegarde.sauvegarderDelta(testfile);
+    List<String> lignes = sauvegarde.extraireEntite(testfile, "PIZZA",
+        "MargIndex");
+    assertEquals(2, lignes.size());
+    assertTrue(lignes.get(1).contains(";12.0"));
+  }
+}
@@ -0,0 +1,104 @@
+package tests;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+import pizzas.Client;
+import pizzas.Commande;
+import pizzas.Compte;
+import pizzas.EtatCommande;
+import pizzas.Evaluation;
+import pizzas.GestPizzaiolo;
+import pizzas.InformationPersonnelle;
+import pizzas.Ingredient;
+import pizzas.Pizza;
+import pizzas.Pizzaiolo;
+import pizzas.TypePizza;
+
+/**
+ * Jeu de données commun aux tests des formats de sauvegarde
+ * ({@link SauvegardeBinaireTest}, {@link SauvegardeCompresseeTest}) : trois
+ * ingrédients, deux pizzas, une interdiction, un client, une commande traitée
+ * et une évaluation.
+ *
+ * @author Kevin SIDER
+ */
+final class JeuDonneesSauvegarde {
+  
+  private JeuDonneesSauvegarde() {
+  }
+  
+  /**
+   * Vide la mémoire et crée un gestionnaire rempli du jeu de données.
+   *
+   * @return le gestionnaire
+   */
+  static GestPizzaiolo creer() throws Exception {
+    Compte.resetMemoire();
+    GestPizzaiolo gestPizzaiolo =
+        new GestPizzaiolo(new Pizzaiolo("MarioBinaire"));
+    
+    gestPizzaiolo.creerIngredient("TomateBin", 0.50);
+    gestPizzaiolo.creerIngredient("MozzaBin", 1.00);
+    gestPizzaiolo.creerIngredient("JambonBin", 1.50);
+    
+    Pizza reine = gestPizzaiolo.creerPizza("ReineBin", TypePizza.Viande);
+    gestPizzaiolo.ajouterIngredientPizza(reine, "TomateBin");
+    gestPizzaiolo.ajouterIngredientPizza(reine, "MozzaBin");
+    gestPizzaiolo.ajouterIngredientPizza(reine, "JambonBin");
+    gestPizzaiolo.setPrixPizza(reine, 11.0);
+    gestPizzaiolo.ajouterPhoto(reine, "reine.png");
+    
+    Pizza marg = gestPizzaiolo.creerPizza("MargBin", TypePizza.Vegetarienne);
+    gestPizzaiolo.ajouterIngredientPizza(marg, "TomateBin");
+    gestPizzaiolo.interdireIngredient("JambonBin", TypePizza.Vegetarienne);
+    
+    Compte.inscription("bin@test.com", "mdp",
+        new InformationPersonnelle("Nom", "Prenom", "Adresse", 40));
+    Client client = Compte.getClientParEmail("bin@test.com");
+    Commande cmd = client.nouvelleCommande();
+    cmd.ajouterPizza(reine);
+    cmd.ajouterPizza(reine);
+    cmd.ajouterPizza(marg);
+    cmd.setEtat(EtatCommande.TRAITEE);
+    reine.getEvaluations().add(new Evaluation(4, "Très bonne", client));
+    return gestPizzaiolo;
+  }
+  
+  /**
+   * Vérifie qu'un gestionnaire chargé contient les données de
+   * {@link #creer()}.
+   *
+   * @param gest le gestionnaire chargé
+   */
+  static void verifier(GestPizzaiolo gest) {
+    List<Ingredient> ingredients = gest.getIngredients();
+    assertEquals(3, ingredients.size());
+    
+    Pizza reine = gest.getPizzaParNom("ReineBin");
+    assertNotNull(reine);
+    assertEquals(2, gest.getPizzas().size());
+    assertEquals(11.0, reine.getPrix(), 0.001);
+    assertEquals("reine.png", reine.getPhoto());
+    assertEquals(3, reine.getIngredients().size());
+    assertEquals(1, reine.getEvaluations().size());
+    assertEquals(4, reine.getEvaluations().iterator().next().getNote());
+    assertEquals("Très bonne", reine.getEvaluations().iterator().next()
+        .getCommentaire());
+    
+    Ingredient jambon = ingredients.get(2);
+    assertEquals("JambonBin", jambon.getNom());
+    assertTrue(gest.estIngredientInterdit(TypePizza.Vegetarienne, jambon));
+    
+    assertTrue(Compte.connexion("bin@test.com", "mdp"));
+    Compte.deconnexion();
+    
+    List<Commande> traitees = gest.getCommandesTraitees();
+    assertEquals(1, traitees.size());
+    assertEquals(3, traitees.get(0).getPizzas().size());
+    assertEquals("bin@test.com",
+        traitees.get(0).getClient().getCompte().getEmail());
+  }
+}
@@ -2,8 +2,13 @@ package tests;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
+import java.util.List;
+import java.util.Set;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import pizzas.Ingredient;
@@ -130,6 +135,50 @@ public class PizzaTest {
     assertEquals(1.60, pizzaReine.calculerPrixMinimal(), 0.001);
   }
 
+  /**
+   * Vérifie que le prix minimal gardé suit les changements de la recette et
+   * du prix des ingrédients.
+   */
+  @Test
+  void testPrixMinimalInvalide() {
+    pizzaReine.ajouterIngredient(tomate);
+    pizzaReine.ajouterIngredient(fromage);
+    assertEquals(4.20, pizzaReine.getPrix(), 0.001);
+
+    fromage.setPrix(3.00);
+    assertEquals(5.60, pizzaReine.calculerPrixMinimal(), 0.001);
+    // Un autre ingrédient de même nom n'est pas dans la recette
+    new Ingredient("Tomate", 1.00).setPrix(5.00);
+    assertEquals(5.60, pizzaReine.calculerPrixMinimal(), 0.001);
+
+    pizzaReine.ajouterIngredient(jambon);
+    assertEquals(7.70, pizzaReine.calculerPrixMinimal(), 0.001);
+    pizzaReine.retirerIngredient(new Ingredient("Fromage", 0.00));
+    assertEquals(3.50, pizzaReine.getPrix(), 0.001);
+  }
+
+  /**
+   * Vérifie qu'un calcul du prix minimal concurrent d'un changement de prix
+   * ne garde pas un résultat périmé.
+   */
+  @Test
+  void testPrixMinimalConcurrent() throws InterruptedException {
+    pizzaReine.ajouterIngredient(tomate);
+    Thread lecteur = new Thread(() -> {
+      for (int i = 0; i < 200_000; i++) {
+        pizzaReine.calculerPrixMinimalCentimes();
+      }
+    });
+    lecteur.start();
+    for (int i = 0; i < 2_000; i++) {
+      tomate.setPrix(1.00 + (i % 50) / 100.0);
+    }
+    lecteur.join();
+
+    // 1,49 € + 40 % = 2,086, arrondi à 2,10 €
+    assertEquals(210, pizzaReine.calculerPrixMinimalCentimes());
+  }
+
   /**
    * Vérifie que le type de pizza peut être modifié.
    */
@@ -139,4 +188,70 @@ public class PizzaTest {
 
     assertEquals(TypePizza.Vegetarienne, pizzaReine.getType());
   }
+
+  /**
+   * Vérifie la recette : ingrédients triés par identifiant, recherche et
+   * comparaison de recettes.
+   */
+  @Test
+  void testRecette() {
+    pizzaReine.ajouterIngredient(jambon);
+    pizzaReine.ajouterIngredient(tomate);
+    pizzaReine.ajouterIngredient(fromage);
+    Pizza copie = new Pizza("ReineCopie", TypePizza.Viande);
+    copie.ajouterIngredient(new Ingredient("Fromage", 3.00));
+    copie.ajouterIngredient(new Ingredient("Jambon", 1.50));
+    copie.ajouterIngredient(tomate);
+
+    int[] recette = pizzaReine.getRecette();
+    assertEquals(3, recette.length);
+    assertTrue(recette[0] < recette[1] && recette[1] < recette[2]);
+    // Les ingrédients restent dans l'ordre où ils ont été ajoutés
+    assertEquals(List.of(jambon, tomate, fromage), pizzaReine.getIngredients());
+    assertTrue(pizzaReine.memeRecette(copie));
+    assertTrue(copie.contientIngredient(fromage));
+    assertSame(tomate, copie.getIngredients().stream()
+        .filter(i -> i.getNom().equals("Tomate")).findFirst().get());
+    assertThrows(UnsupportedOperationException.class,
+        () -> pizzaReine.getIngredients().clear());
+
+    copie.retirerIngredient(jambon);
+    assertFalse(copie.contientIngredient(jambon));
+    assertFalse(pizzaReine.memeRecette(copie));
+    assertEquals(List.of(new Ingredient("Fromage", 3.00), tomate),
+        copie.getIngredients());
+  }
+
+  /**
+   * Vérifie la recherche dans le catalogue sans tenir compte de la casse et
+   * le partage des vues du catalogue.
+   */
+  @Test
+  void testCatalogue() {
+    Pizza calzone = new Pizza("CalzoneCatalogue", TypePizza.Viande);
+    Pizza.ajouterPizzaCatalogue(calzone);
+    Pizza.ajouterPizzaCatalogue(new Pizza("CalzoneCatalogue",
+        TypePizza.Vegetarienne));
+
+    assertSame(calzone, Pizza.getPizzaParNom("calzonecatalogue"));
+    assertSame(calzone, Pizza.getPizzaParNom("CALZONECATALOGUE"));
+    assertNull(Pizza.getPizzaParNom("InconnueCatalogue"));
+    assertNull(Pizza.getPizzaParNom(null));
+
+    // Vues partagées tant que le catalogue ne change pas
+    List<Pizza> vue = Pizza.getCatalogue();
+    Set<Pizza> ensemble = Pizza.getEnsembleCatalogue();
+    assertSame(vue, Pizza.getCatalogue());
+    assertSame(ensemble, Pizza.getEnsembleCatalogue());
+    assertEquals(1, vue.stream().filter(p -> p == calzone).count());
+    assertThrows(UnsupportedOperationException.class, () -> vue.add(calzone));
+
+    Pizza.ajouterPizzasCatalogue(List.of(
+        new Pizza("FromagesCatalogue", TypePizza.Vegetarienne)));
+    assertEquals(vue.size() + 1, Pizza.getCatalogue().size());
+    assertEquals(ensemble.size() + 1, Pizza.getEnsembleCatalogue().size());
+    assertEquals("FromagesCatalogue",
+        Pizza.getCatalogue().get(vue.size()).getNom());
+    assertTrue(Pizza.getEnsembleCatalogue().contains(calzone));
+  }
 }
@@ -0,0 +1,207 @@
+package tests;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import io.JournalModifications;
+import io.PlanificateurCompaction;
+import io.SauvegardeAsynchrone;
+import io.SauvegardeJournalisee;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import pizzas.Compte;
+import pizzas.GestPizzaiolo;
+import pizzas.Pizzaiolo;
+
+/**
+ * Tests JUnit 5 de la classe {@link io.PlanificateurCompaction}. Les rappels
+ * sont exécutés par le thread du test, qui joue le rôle du thread de
+ * l'interface.
+ *
+ * @author Kevin SIDER
+ */
+public class PlanificateurCompactionTest {
+  
+  // Fichier temporaire pour les tests
+  private final String testfile = "test_donnees_compaction.txt";
+  private final File journal =
+      new File(testfile + SauvegardeJournalisee.SUFFIXE_JOURNAL);
+  
+  private GestPizzaiolo gestPizzaiolo;
+  private SauvegardeJournalisee sauvegarde;
+  private SauvegardeAsynchrone asynchrone;
+  private PlanificateurCompaction compaction;
+  
+  // Rappels en attente d'exécution sur le thread du test
+  private final BlockingQueue<Runnable> rappels = new LinkedBlockingQueue<>();
+  
+  private int nbSauvegardesUtilisateur;
+  
+  @BeforeEach
+  void setUp() throws IOException {
+    Compte.resetMemoire();
+    gestPizzaiolo = new GestPizzaiolo(new Pizzaiolo("MarioCompaction"));
+    sauvegarde = new SauvegardeJournalisee(gestPizzaiolo);
+    gestPizzaiolo.creerIngredient("TomateCompaction", 0.50);
+    sauvegarde.sauvegarderDonnees(testfile);
+    
+    asynchrone = new SauvegardeAsynchrone(sauvegarde, testfile, rappels::add);
+    asynchrone.setEcouteur(new SauvegardeAsynchrone.Ecouteur() {
+      @Override
+      public void terminee() {
+        nbSauvegardesUtilisateur++;
+      }
+    });
+    compaction = new PlanificateurCompaction(sauvegarde, asynchrone,
+        rappels::add);
+    compaction.setSeuils(1024 * 1024, 5);
+  }
+  
+  @AfterEach
+  void tearDown() throws IOException {
+    compaction.arreter();
+    asynchrone.arreter();
+    sauvegarde.fermer();
+    new File(testfile).delete();
+    journal.delete();
+    new File(testfile + ".tmp").delete();
+    new File(journal.getPath() + ".tmp").delete();
+    Compte.resetMemoire();
+  }
+  
+  /**
+   * Exécute les rappels jusqu'à ce que le nombre de compactions soit
+   * atteint.
+   */
+  private void attendre(int compactions) throws InterruptedException {
+    while (compaction.getNbCompactions() < compactions) {
+      Runnable rappel = rappels.poll(10, TimeUnit.SECONDS);
+      assertNotNull(rappel, "Compaction bloquée");
+      rappel.run();
+    }
+  }
+  
+  /**
+   * Ajoute des ingrédients (un enregistrement du journal chacun).
+   */
+  private void modifier(String prefixe, int nombre) {
+    for (int i = 0; i < nombre; i++) {
+      gestPizzaiolo.creerIngredient(prefixe + i, 1.0);
+    }
+  }
+  
+  /**
+   * Recharge les données dans un nouveau gestionnaire.
+   */
+  private GestPizzaiolo recharger() throws IOException {
+    sauvegarde.fermer();
+    Compte.resetMemoire();
+    GestPizzaiolo gest = new GestPizzaiolo(new Pizzaiolo("Reprise"));
+    sauvegarde = new SauvegardeJournalisee(gest);
+    sauvegarde.chargerDonnees(testfile);
+    return gest;
+  }
+  
+  @Test
+  void testCompactionAuSeuil() throws Exception {
+    modifier("Avant", 4);
+    assertEquals(4, sauvegarde.getNbEnregistrementsJournal());
+    assertFalse(compaction.verifier());
+    modifier("Seuil", 1);
+    assertTrue(compaction.estNecessaire());
+    assertTrue(compaction.verifier());
+    // Une seule compaction à la fois
+    assertFalse(compaction.verifier());
+    
+    rappels.take().run();
+    // Faite pendant l'écriture : reprise dans le nouveau journal
+    gestPizzaiolo.creerIngredient("PendantCompaction", 1.0);
+    attendre(1);
+    assertEquals(1, sauvegarde.getNbEnregistrementsJournal());
+    assertFalse(compaction.estNecessaire());
+    // L'écouteur des sauvegardes de l'utilisateur n'est pas prévenu
+    assertEquals(0, nbSauvegardesUtilisateur);
+    assertFalse(new File(testfile + ".tmp").exists());
+    
+    GestPizzaiolo gest = recharger();
+    assertEquals(1, sauvegarde.getNbRejoues());
+    assertEquals(1, sauvegarde.getNbEnregistrementsJournal());
+    assertEquals(7, gest.getIngredients().size());
+    assertNotNull(gest.getIngredientParNom("PendantCompaction"));
+  }
+  
+  @Test
+  void testEchecSignale() throws Exception {
+    List<Exception> echecs = new ArrayList<>();
+    compaction.setEcouteur(new SauvegardeAsynchrone.Ecouteur() {
+      @Override
+      public void echec(Exception e) {
+        echecs.add(e);
+      }
+    });
+    // L'instantané temporaire ne peut pas être écrit
+    assertTrue(new File(testfile + ".tmp").mkdir());
+    modifier("Echec", 5);
+    assertTrue(compaction.verifier());
+    while (echecs.isEmpty()) {
+      Runnable rappel = rappels.poll(10, TimeUnit.SECONDS);
+      assertNotNull(rappel, "Échec non signalé");
+      rappel.run();
+    }
+    assertEquals(0, compaction.getNbCompactions());
+    // Une nouvelle compaction peut être demandée
+    assertTrue(compaction.verifier());
+  }
+  
+  @Test
+  void testSurveillancePeriodique() throws Exception {
+    compaction.setSeuils(journal.length() + 64, 1000);
+    compaction.demarrer(10, TimeUnit.MILLISECONDS);
+    modifier("Taille", 20);
+    attendre(1);
+    assertTrue(sauvegarde.getTailleJournal() < compaction.getSeuilOctets());
+    
+    GestPizzaiolo gest = recharger();
+    assertEquals(0, sauvegarde.getNbRejoues());
+    assertEquals(21, gest.getIngredients().size());
+  }
+  
+  @Test
+  void testReprisePendantBascule() throws Exception {
+    modifier("Journal", 2);
+    sauvegarde.fermer();
+    File journalTemporaire = new File(journal.getPath() + ".tmp");
+    
+    // Arrêt avant le remplacement de l'instantané : le journal temporaire
+    // (écrit pour un autre instantané) est abandonné
+    File autre = new File(testfile + ".tmp");
+    Files.write(autre.toPath(), new byte[] {1, 2, 3});
+    JournalModifications.creer(journalTemporaire, autre).close();
+    GestPizzaiolo gest = recharger();
+    assertEquals(2, sauvegarde.getNbRejoues());
+    assertEquals(3, gest.getIngredients().size());
+    assertFalse(journalTemporaire.exists());
+    assertFalse(autre.exists());
+    
+    // Arrêt après le remplacement de l'instantané : le nouveau journal
+    // remplace l'ancien
+    sauvegarde.fermer();
+    JournalModifications.creer(journalTemporaire, new File(testfile))
+        .close();
+    recharger();
+    assertEquals(0, sauvegarde.getNbRejoues());
+    assertFalse(journalTemporaire.exists());
+    assertEquals(0, sauvegarde.getNbEnregistrementsJournal());
+  }
+}
@@ -0,0 +1,158 @@
+package tests;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import io.SauvegardeAsynchrone;
+import io.SauvegardeJournalisee;
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import pizzas.Compte;
+import pizzas.GestPizzaiolo;
+import pizzas.Pizza;
+import pizzas.Pizzaiolo;
+import pizzas.TypePizza;
+
+/**
+ * Tests JUnit 5 de la classe {@link io.SauvegardeAsynchrone}. Les rappels
+ * sont exécutés par le thread du test, qui joue le rôle du thread de
+ * l'interface.
+ *
+ * @author Kevin SIDER
+ */
+public class SauvegardeAsynchroneTest {
+  
+  // Fichier temporaire pour les tests
+  private final String testfile = "test_donnees_asynchrone.txt";
+  
+  private GestPizzaiolo gestPizzaiolo;
+  private SauvegardeJournalisee sauvegarde;
+  private SauvegardeAsynchrone asynchrone;
+  
+  // Rappels en attente d'exécution sur le thread du test
+  private final BlockingQueue<Runnable> rappels = new LinkedBlockingQueue<>();
+  
+  private int nbTerminees;
+  private Exception erreur;
+  private double dernierAvancement;
+  
+  @BeforeEach
+  void setUp() throws IOException {
+    Compte.resetMemoire();
+    gestPizzaiolo = new GestPizzaiolo(new Pizzaiolo("MarioAsynchrone"));
+    sauvegarde = new SauvegardeJournalisee(gestPizzaiolo);
+    gestPizzaiolo.creerIngredient("TomateAsynchrone", 0.50);
+    Pizza p = gestPizzaiolo.creerPizza("SimpleAsynchrone", TypePizza.Viande);
+    gestPizzaiolo.ajouterIngredientPizza(p, "TomateAsynchrone");
+    sauvegarde.sauvegarderDonnees(testfile);
+    
+    asynchrone = new SauvegardeAsynchrone(sauvegarde, testfile, rappels::add);
+    asynchrone.setEcouteur(new SauvegardeAsynchrone.Ecouteur() {
+      @Override
+      public void progression(double avancement) {
+        dernierAvancement = avancement;
+      }
+      
+      @Override
+      public void terminee() {
+        nbTerminees++;
+      }
+      
+      @Override
+      public void echec(Exception e) {
+        erreur = e;
+      }
+    });
+  }
+  
+  @AfterEach
+  void tearDown() throws IOException {
+    asynchrone.arreter();
+    sauvegarde.fermer();
+    new File(testfile).delete();
+    new File(testfile + SauvegardeJournalisee.SUFFIXE_JOURNAL).delete();
+    new File(testfile + ".tmp").delete();
+    Compte.resetMemoire();
+  }
+  
+  /**
+   * Exécute les rappels jusqu'à ce que le nombre de sauvegardes terminées
+   * soit atteint.
+   */
+  private void attendre(int terminees) throws InterruptedException {
+    while (nbTerminees < terminees && erreur == null) {
+      Runnable rappel = rappels.poll(10, TimeUnit.SECONDS);
+      assertNotNull(rappel, "Sauvegarde bloquée");
+      rappel.run();
+    }
+    assertNull(erreur);
+  }
+  
+  /**
+   * Recharge les données dans un nouveau gestionnaire.
+   */
+  private GestPizzaiolo recharger() throws IOException {
+    sauvegarde.fermer();
+    GestPizzaiolo gest = new GestPizzaiolo(new Pizzaiolo("Reprise"));
+    sauvegarde = new SauvegardeJournalisee(gest);
+    sauvegarde.chargerDonnees(testfile);
+    return gest;
+  }
+  
+  @Test
+  void testModificationsPendantEcriture() throws Exception {
+    assertTrue(asynchrone.demanderSauvegarde());
+    assertTrue(asynchrone.estEnCours());
+    // Faite pendant l'écriture : absente de l'instantané, gardée au journal
+    gestPizzaiolo.creerIngredient("PendantAsynchrone", 1.0);
+    attendre(1);
+    assertFalse(asynchrone.estEnCours());
+    assertEquals(1.0, dernierAvancement);
+    
+    GestPizzaiolo gest = recharger();
+    assertEquals(1, sauvegarde.getNbRejoues());
+    assertNotNull(gest.getIngredientParNom("TomateAsynchrone"));
+    assertNotNull(gest.getIngredientParNom("PendantAsynchrone"));
+  }
+  
+  @Test
+  void testDemandesRegroupees() throws Exception {
+    assertTrue(asynchrone.demanderSauvegarde());
+    gestPizzaiolo.creerIngredient("PremierAsynchrone", 1.0);
+    assertFalse(asynchrone.demanderSauvegarde());
+    gestPizzaiolo.creerIngredient("SecondAsynchrone", 2.0);
+    assertFalse(asynchrone.demanderSauvegarde());
+    // Une seule sauvegarde supplémentaire pour les deux demandes
+    attendre(2);
+    assertNull(rappels.poll(200, TimeUnit.MILLISECONDS));
+    assertEquals(2, nbTerminees);
+    
+    GestPizzaiolo gest = recharger();
+    assertEquals(0, sauvegarde.getNbRejoues());
+    assertNotNull(gest.getIngredientParNom("PremierAsynchrone"));
+    assertNotNull(gest.getIngredientParNom("SecondAsynchrone"));
+  }
+  
+  @Test
+  void testPointPerimeApresFermeture() throws Exception {
+    assertTrue(asynchrone.demanderSauvegarde());
+    // Le journal change pendant l'écriture : le point est périmé
+    sauvegarde.fermer();
+    while (erreur == null && nbTerminees == 0) {
+      Runnable rappel = rappels.poll(10, TimeUnit.SECONDS);
+      assertNotNull(rappel, "Sauvegarde bloquée");
+      rappel.run();
+    }
+    assertNotNull(erreur);
+    assertFalse(new File(testfile + ".tmp").exists());
+  }
+}
@@ -0,0 +1,103 @@
+package tests;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import io.ConvertisseurSauvegarde;
+import io.GestionSauvegarde;
+import io.IndexSauvegarde;
+import io.SauvegardeBinaire;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.List;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import pizzas.Compte;
+import pizzas.GestPizzaiolo;
+import pizzas.Pizzaiolo;
+
+/**
+ * Tests JUnit 5 des classes {@link io.SauvegardeBinaire} et
+ * {@link io.ConvertisseurSauvegarde}.
+ *
+ * @author Kevin SIDER
+ */
+public class SauvegardeBinaireTest {
+  
+  private GestPizzaiolo gestPizzaiolo;
+  
+  // Fichiers temporaires pour les tests
+  private final String fichierBinaire = "test_donnees_pizzeria.bin";
+  private final String fichierTexte = "test_donnees_pizzeria_conv.txt";
+  
+  @BeforeEach
+  void setUp() throws Exception {
+    gestPizzaiolo = JeuDonneesSauvegarde.creer();
+  }
+  
+  @AfterEach
+  void tearDown() {
+    new File(fichierBinaire).delete();
+    new File(fichierTexte).delete();
+    Compte.resetMemoire();
+  }
+  
+  @Test
+  void testSauvegarderEtChargerBinaire() throws IOException {
+    new SauvegardeBinaire(gestPizzaiolo).sauvegarderDonnees(fichierBinaire);
+    
+    Compte.resetMemoire();
+    GestPizzaiolo nouveauGest = new GestPizzaiolo(new Pizzaiolo("Luigi"));
+    new SauvegardeBinaire(nouveauGest).chargerDonnees(fichierBinaire);
+    
+    JeuDonneesSauvegarde.verifier(nouveauGest);
+  }
+  
+  @Test
+  void testConversionAllerRetour() throws IOException {
+    new GestionSauvegarde(gestPizzaiolo).sauvegarderDonnees(fichierTexte);
+    ConvertisseurSauvegarde.texteVersBinaire(fichierTexte, fichierBinaire);
+    new File(fichierTexte).delete();
+    ConvertisseurSauvegarde.binaireVersTexte(fichierBinaire, fichierTexte);
+    
+    Compte.resetMemoire();
+    GestPizzaiolo nouveauGest = new GestPizzaiolo(new Pizzaiolo("Luigi"));
+    new GestionSauvegarde(nouveauGest).chargerDonnees(fichierTexte);
+    
+    JeuDonneesSauvegarde.verifier(nouveauGest);
+  }
+  
+  @Test
+  void testExtraireSection() throws IOException {
+    new SauvegardeBinaire(gestPizzaiolo).sauvegarderDonnees(fichierBinaire);
+    GestionSauvegarde texte = new GestionSauvegarde(gestPizzaiolo);
+    texte.sauvegarderDonnees(fichierTexte);
+    
+    // Mêmes lignes que le format texte, sans charger les données
+    SauvegardeBinaire binaire = new SauvegardeBinaire(gestPizzaiolo);
+    for (String section : IndexSauvegarde.SECTIONS) {
+      assertEquals(texte.extraireSection(fichierTexte, section),
+          binaire.extraireSection(fichierBinaire, section));
+    }
+    int id = gestPizzaiolo.getCommandesTraitees().get(0).getIdCommande();
+    assertEquals(List.of("COMMANDE;bin@test.com;TRAITEE;#" + id
+        + ";$1100/420,1100/420,70/70;ReineBin;ReineBin;MargBin"),
+        binaire.extraireEntite(fichierBinaire, "COMMANDE", "bin@test.com"));
+    assertEquals(List.of(), binaire.extraireEntite(fichierBinaire, "PIZZA",
+        "Inconnue"));
+    assertThrows(IllegalArgumentException.class,
+        () -> binaire.extraireSection(fichierBinaire, "INDEX"));
+  }
+  
+  @Test
+  void testChargementFichierTexteRefuse() throws IOException {
+    try (FileWriter writer = new FileWriter(fichierBinaire)) {
+      writer.write("INGREDIENT;Tomate;0.5\n");
+    }
+    assertThrows(IOException.class,
+        () -> new SauvegardeBinaire(gestPizzaiolo)
+            .chargerDonnees(fichierBinaire));
+  }
+}
@@ -0,0 +1,120 @@
+package tests;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import io.ConvertisseurSauvegarde;
+import io.GestionSauvegarde;
+import io.SauvegardeCompressee;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import pizzas.Compte;
+import pizzas.GestPizzaiolo;
+import pizzas.Pizzaiolo;
+
+/**
+ * Tests JUnit 5 de la classe {@link io.SauvegardeCompressee}.
+ *
+ * @author Kevin SIDER
+ */
+public class SauvegardeCompresseeTest {
+  
+  private GestPizzaiolo gestPizzaiolo;
+  
+  // Fichiers temporaires pour les tests
+  private final String fichierCompresse = "test_donnees_pizzeria.pzz";
+  private final String fichierTexte = "test_donnees_pizzeria_cz.txt";
+  
+  @BeforeEach
+  void setUp() throws Exception {
+    gestPizzaiolo = JeuDonneesSauvegarde.creer();
+  }
+  
+  @AfterEach
+  void tearDown() {
+    new File(fichierCompresse).delete();
+    new File(fichierTexte).delete();
+    Compte.resetMemoire();
+  }
+  
+  /**
+   * Recharge le fichier compressé dans un nouveau gestionnaire.
+   */
+  private GestPizzaiolo recharger() throws IOException {
+    Compte.resetMemoire();
+    GestPizzaiolo nouveauGest = new GestPizzaiolo(new Pizzaiolo("Luigi"));
+    new SauvegardeCompressee(nouveauGest).chargerDonnees(fichierCompresse);
+    return nouveauGest;
+  }
+  
+  @Test
+  void testSauvegarderEtCharger() throws IOException {
+    new SauvegardeCompressee(gestPizzaiolo)
+        .sauvegarderDonnees(fichierCompresse);
+    JeuDonneesSauvegarde.verifier(recharger());
+  }
+  
+  @Test
+  void testUnEnregistrementParBloc() throws IOException {
+    SauvegardeCompressee sauvegarde = new SauvegardeCompressee(gestPizzaiolo);
+    sauvegarde.setEnregistrementsParBloc(1);
+    sauvegarde.setNiveauCompression(9);
+    sauvegarde.sauvegarderDonnees(fichierCompresse);
+    JeuDonneesSauvegarde.verifier(recharger());
+  }
+  
+  @Test
+  void testBlocsSautes() throws IOException {
+    SauvegardeCompressee sauvegarde = new SauvegardeCompressee(gestPizzaiolo);
+    sauvegarde.setEnregistrementsParBloc(2);
+    sauvegarde.sauvegarderDonnees(fichierCompresse);
+    
+    Map<String, Integer> comptes =
+        SauvegardeCompressee.compterEnregistrements(fichierCompresse);
+    assertEquals(List.of("INGREDIENT", "PIZZA", "CLIENT", "INTERDICTION",
+        "COMMANDE", "EVALUATION"), List.copyOf(comptes.keySet()));
+    assertEquals(3, comptes.get("INGREDIENT"));
+    assertEquals(1, comptes.get("COMMANDE"));
+    
+    assertEquals(List.of("CLIENT;bin@test.com;mdp;Nom;Prenom;Adresse;40"),
+        SauvegardeCompressee.lireSection(fichierCompresse, "CLIENT"));
+    assertEquals(1, SauvegardeCompressee
+        .lireSection(fichierCompresse, "COMMANDE").size());
+  }
+  
+  @Test
+  void testConversionAllerRetour() throws IOException {
+    new GestionSauvegarde(gestPizzaiolo).sauvegarderDonnees(fichierTexte);
+    ConvertisseurSauvegarde.texteVersCompresse(fichierTexte, fichierCompresse);
+    new File(fichierTexte).delete();
+    ConvertisseurSauvegarde.compresseVersTexte(fichierCompresse, fichierTexte);
+    
+    Compte.resetMemoire();
+    GestPizzaiolo nouveauGest = new GestPizzaiolo(new Pizzaiolo("Luigi"));
+    new GestionSauvegarde(nouveauGest).chargerDonnees(fichierTexte);
+    JeuDonneesSauvegarde.verifier(nouveauGest);
+  }
+  
+  @Test
+  void testFichierInvalide() throws IOException {
+    try (FileWriter writer = new FileWriter(fichierCompresse)) {
+      writer.write("INGREDIENT;Tomate;0.5\n");
+    }
+    assertThrows(IOException.class, () -> recharger());
+    
+    new SauvegardeCompressee(gestPizzaiolo)
+        .sauvegarderDonnees(fichierCompresse);
+    try (RandomAccessFile fichier =
+        new RandomAccessFile(fichierCompresse, "rw")) {
+      fichier.setLength(fichier.length() - 3);
+    }
+    assertThrows(IOException.class, () -> recharger());
+  }
+}
@@ -0,0 +1,318 @@
+package tests;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import io.SauvegardeJournalisee;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import pizzas.Client;
+import pizzas.Commande;
+import pizzas.Compte;
+import pizzas.EtatCommande;
+import pizzas.GestPizzaiolo;
+import pizzas.InformationPersonnelle;
+import pizzas.Pizza;
+import pizzas.Pizzaiolo;
+import pizzas.Statistique;
+import pizzas.TypePizza;
+
+/**
+ * Tests JUnit 5 de la classe {@link io.SauvegardeJournalisee} : les
+ * modifications faites après un instantané doivent être retrouvées au
+ * chargement suivant.
+ *
+ * @author Kevin SIDER
+ */
+public class SauvegardeJournaliseeTest {
+  
+  // Fichier temporaire pour les tests
+  private final String testfile = "test_donnees_journal.txt";
+  
+  private GestPizzaiolo gestPizzaiolo;
+  private SauvegardeJournalisee sauvegarde;
+  
+  @BeforeEach
+  void setUp() throws IOException {
+    Compte.resetMemoire();
+    gestPizzaiolo = new GestPizzaiolo(new Pizzaiolo("MarioJournal"));
+    sauvegarde = new SauvegardeJournalisee(gestPizzaiolo);
+    
+    gestPizzaiolo.creerIngredient("TomateJournal", 0.50);
+    Pizza p = gestPizzaiolo.creerPizza("SimpleJournal", TypePizza.Viande);
+    gestPizzaiolo.ajouterIngredientPizza(p, "TomateJournal");
+    sauvegarde.sauvegarderDonnees(testfile);
+  }
+  
+  @AfterEach
+  void tearDown() throws IOException {
+    sauvegarde.fermer();
+    new File(testfile).delete();
+    new File(testfile + SauvegardeJournalisee.SUFFIXE_JOURNAL).delete();
+    Compte.resetMemoire();
+  }
+  
+  /**
+   * Recharge les données dans un nouveau gestionnaire.
+   */
+  private GestPizzaiolo recharger() throws IOException {
+    sauvegarde.fermer();
+    GestPizzaiolo gest = new GestPizzaiolo(new Pizzaiolo("Reprise"));
+    sauvegarde = new SauvegardeJournalisee(gest);
+    sauvegarde.chargerDonnees(testfile);
+    return gest;
+  }
+  
+  @Test
+  void testRejeuApresInstantane() throws Exception {
+    long tailleInstantane = new File(testfile).length();
+    
+    gestPizzaiolo.creerIngredient("FromageJournal", 1.20);
+    gestPizzaiolo.changerPrixIngredient("TomateJournal", 0.80);
+    gestPizzaiolo.interdireIngredient("FromageJournal", TypePizza.Regionale);
+    Pizza p = gestPizzaiolo.creerPizza("NouvelleJournal", TypePizza.Viande);
+    gestPizzaiolo.ajouterIngredientPizza(p, "FromageJournal");
+    gestPizzaiolo.setPrixPizza(p, 9.5);
+    Compte.inscription("journal@test.com", "mdp",
+        new InformationPersonnelle("Nom", "Prenom", "Adresse", 30));
+    Client client = Compte.getClientParEmail("journal@test.com");
+    Commande traitee = client.nouvelleCommande();
+    traitee.ajouterPizza(p);
+    traitee.valider();
+    traitee.setEtat(EtatCommande.TRAITEE);
+    Commande annulee = client.nouvelleCommande();
+    client.retirerCommande(annulee);
+    assertTrue(Compte.connexion("journal@test.com", "mdp"));
+    assertTrue(p.ajouterEvaluation(5, "Parfaite"));
+    Compte.deconnexion();
+    
+    // Seul le journal a grossi
+    assertEquals(tailleInstantane, new File(testfile).length());
+    
+    GestPizzaiolo gest = recharger();
+    assertEquals(14, sauvegarde.getNbRejoues());
+    assertEquals(0.80, gest.getIngredientParNom("TomateJournal").getPrix());
+    assertTrue(gest.estIngredientInterdit(TypePizza.Regionale,
+        gest.getIngredientParNom("FromageJournal")));
+    Pizza reprise = gest.getPizzaParNom("NouvelleJournal");
+    assertNotNull(reprise);
+    assertEquals(9.5, reprise.getPrix());
+    assertEquals(1, reprise.getIngredients().size());
+    assertEquals(1, reprise.getEvaluations().size());
+    Client clientRepris = Compte.getClientParEmail("journal@test.com");
+    assertNotNull(clientRepris);
+    assertEquals(1, clientRepris.getCommandesPassees().size());
+    assertTrue(clientRepris.getCommandesEnCours().isEmpty());
+    assertEquals(1, gest.commandesDejaTraitees().size());
+  }
+  
+  @Test
+  void testCommandesEnCoursConserveesParInstantane() throws Exception {
+    Compte.inscription("encours@test.com", "mdp",
+        new InformationPersonnelle("Nom", "Prenom", "Adresse", 30));
+    Client client = Compte.getClientParEmail("encours@test.com");
+    Commande cmd = client.nouvelleCommande();
+    cmd.ajouterPizza(gestPizzaiolo.getPizzaParNom("SimpleJournal"));
+    cmd.valider();
+    // Le nouvel instantané ne contient pas la commande, le journal si
+    sauvegarde.sauvegarderDonnees(testfile);
+    
+    recharger();
+    List<Commande> enCours = Compte.getClientParEmail("encours@test.com")
+        .getCommandesPassees();
+    assertEquals(1, enCours.size());
+    assertEquals(cmd.getIdCommande(), enCours.get(0).getIdCommande());
+    assertEquals(EtatCommande.VALIDEE, enCours.get(0).getEtat());
+    assertEquals(1, enCours.get(0).getPizzas().size());
+  }
+  
+  @Test
+  void testEnregistrementTronque() throws Exception {
+    gestPizzaiolo.creerIngredient("CompletJournal", 2.0);
+    sauvegarde.fermer();
+    File journal = new File(testfile + SauvegardeJournalisee.SUFFIXE_JOURNAL);
+    long tailleValide = journal.length();
+    // Début d'enregistrement interrompu par un arrêt brutal
+    try (FileOutputStream out = new FileOutputStream(journal, true)) {
+      out.write(new byte[] {1, 0, 20, 'T'});
+    }
+    
+    GestPizzaiolo gest = recharger();
+    assertEquals(1, sauvegarde.getNbRejoues());
+    assertNotNull(gest.getIngredientParNom("CompletJournal"));
+    assertEquals(tailleValide, journal.length());
+  }
+  
+  @Test
+  void testTarifsRejouesEnBloc() throws Exception {
+    gestPizzaiolo.creerIngredient("FromageJournal", 1.0);
+    Pizza p = gestPizzaiolo.getPizzaParNom("SimpleJournal");
+    gestPizzaiolo.setPrixPizza(p, 0.80);
+    int avant = sauvegarde.getNbEnregistrementsJournal();
+    Map<String, Double> tarif = new LinkedHashMap<>();
+    tarif.put("TomateJournal", 1.0);
+    tarif.put("FromageJournal", 1.5);
+    // 1,00 + 40 % -> 1,40 : la pizza vendue à perte est ajustée
+    gestPizzaiolo.changerPrixIngredients(tarif, true);
+    assertEquals(avant + 1, sauvegarde.getNbEnregistrementsJournal());
+    
+    GestPizzaiolo gest = recharger();
+    assertEquals(1.0, gest.getIngredientParNom("TomateJournal").getPrix());
+    assertEquals(1.5, gest.getIngredientParNom("FromageJournal").getPrix());
+    assertEquals(1.40, gest.getPizzaParNom("SimpleJournal").getPrix());
+    
+    // Tarif interrompu par un arrêt brutal : aucun prix n'est changé
+    sauvegarde.fermer();
+    File journal = new File(testfile + SauvegardeJournalisee.SUFFIXE_JOURNAL);
+    try (RandomAccessFile raf = new RandomAccessFile(journal, "rw")) {
+      raf.setLength(raf.length() - 1);
+    }
+    gest = recharger();
+    assertEquals(0.5, gest.getIngredientParNom("TomateJournal").getPrix());
+    assertEquals(1.0, gest.getIngredientParNom("FromageJournal").getPrix());
+    assertEquals(0.80, gest.getPizzaParNom("SimpleJournal").getPrix());
+  }
+  
+  @Test
+  void testJournalPerimeIgnore() throws Exception {
+    gestPizzaiolo.creerIngredient("AvantJournal", 2.0);
+    sauvegarde.sauvegarderDonnees(testfile);
+    
+    GestPizzaiolo gest = recharger();
+    assertEquals(0, sauvegarde.getNbRejoues());
+    assertNotNull(gest.getIngredientParNom("AvantJournal"));
+    assertNull(gest.getIngredientParNom("InconnuJournal"));
+  }
+  
+  @Test
+  void testJournalEtrangerMisDeCote() throws Exception {
+    File fichierJournal =
+        new File(testfile + SauvegardeJournalisee.SUFFIXE_JOURNAL);
+    gestPizzaiolo.creerIngredient("CopieJournal", 2.0);
+    
+    // Un instantané copié sans sa date reste celui du journal
+    assertTrue(new File(testfile).setLastModified(0));
+    GestPizzaiolo gest = recharger();
+    assertEquals(1, sauvegarde.getNbRejoues());
+    assertNull(sauvegarde.getJournalEcarte());
+    assertNotNull(gest.getIngredientParNom("CopieJournal"));
+    
+    // Journal d'un instantané précédent, remis en place par erreur
+    byte[] ancien = Files.readAllBytes(fichierJournal.toPath());
+    sauvegarde.sauvegarderDonnees(testfile);
+    sauvegarde.fermer();
+    Files.write(fichierJournal.toPath(), ancien);
+    
+    recharger();
+    File ecarte = sauvegarde.getJournalEcarte();
+    try {
+      assertEquals(0, sauvegarde.getNbRejoues());
+      assertNotNull(ecarte);
+      assertArrayEquals(ancien, Files.readAllBytes(ecarte.toPath()));
+      assertTrue(fichierJournal.exists());
+    } finally {
+      if (ecarte != null) {
+        ecarte.delete();
+      }
+    }
+  }
+  
+  /**
+   * Retourne les identifiants des commandes d'un client dans un état.
+   */
+  private static Set<Integer> identifiants(String email, EtatCommande etat) {
+    Set<Integer> ids = new TreeSet<>();
+    for (Commande c : Compte.getClientParEmail(email).getCommandes(etat)) {
+      ids.add(c.getIdCommande());
+    }
+    return ids;
+  }
+  
+  @Test
+  void testIdentifiantsCommandesConserves() throws Exception {
+    Pizza p = gestPizzaiolo.getPizzaParNom("SimpleJournal");
+    Map<String, Client> clients = new LinkedHashMap<>();
+    for (String email : List.of("alice@test.com", "bob@test.com")) {
+      Compte.inscription(email, "mdp",
+          new InformationPersonnelle("Nom", "Prenom", "Adresse", 30));
+      clients.put(email, Compte.getClientParEmail(email));
+    }
+    Client alice = clients.get("alice@test.com");
+    alice.nouvelleCommande().ajouterPizza(p);
+    for (Client c : List.of(alice, alice, clients.get("bob@test.com"))) {
+      Commande traitee = c.nouvelleCommande();
+      traitee.ajouterPizza(p);
+      traitee.valider();
+      traitee.setEtat(EtatCommande.TRAITEE);
+    }
+    sauvegarde.sauvegarderDonnees(testfile);
+    // Commande créée après l'instantané : seulement dans le journal
+    alice.nouvelleCommande().ajouterPizza(p);
+    
+    Map<String, Set<Integer>> creees = new LinkedHashMap<>();
+    Map<String, Set<Integer>> traitees = new LinkedHashMap<>();
+    for (String email : clients.keySet()) {
+      creees.put(email, identifiants(email, EtatCommande.CREE));
+      traitees.put(email, identifiants(email, EtatCommande.TRAITEE));
+    }
+    assertEquals(2, creees.get("alice@test.com").size());
+    
+    recharger();
+    for (String email : clients.keySet()) {
+      assertEquals(creees.get(email), identifiants(email, EtatCommande.CREE));
+      assertEquals(traitees.get(email),
+          identifiants(email, EtatCommande.TRAITEE));
+    }
+  }
+  
+  @Test
+  void testPrixFigesConserves() throws Exception {
+    Pizza p = gestPizzaiolo.getPizzaParNom("SimpleJournal");
+    gestPizzaiolo.setPrixPizza(p, 9.5);
+    Compte.inscription("prix@test.com", "mdp",
+        new InformationPersonnelle("Nom", "Prenom", "Adresse", 30));
+    Client client = Compte.getClientParEmail("prix@test.com");
+    Commande traitee = client.nouvelleCommande();
+    traitee.ajouterPizza(p);
+    traitee.ajouterPizza(p);
+    traitee.valider();
+    traitee.setEtat(EtatCommande.TRAITEE);
+    Commande validee = client.nouvelleCommande();
+    validee.ajouterPizza(p);
+    validee.valider();
+    long beneficeTraitee =
+        Statistique.calculerBeneficeCommandeCentimes(traitee);
+    long beneficeValidee =
+        Statistique.calculerBeneficeCommandeCentimes(validee);
+    
+    // Les commandes déjà validées ne suivent pas les nouveaux prix
+    gestPizzaiolo.changerPrixIngredient("TomateJournal", 2.0);
+    gestPizzaiolo.setPrixPizza(p, 14.0);
+    sauvegarde.sauvegarderDonnees(testfile);
+    
+    recharger();
+    client = Compte.getClientParEmail("prix@test.com");
+    Commande traiteeChargee = client.getCommandes(traitee.getIdCommande());
+    Commande valideeChargee = client.getCommandes(validee.getIdCommande());
+    assertEquals(EtatCommande.VALIDEE, valideeChargee.getEtat());
+    assertEquals(beneficeTraitee,
+        Statistique.calculerBeneficeCommandeCentimes(traiteeChargee));
+    assertEquals(beneficeValidee,
+        Statistique.calculerBeneficeCommandeCentimes(valideeChargee));
+    assertEquals(1900, traiteeChargee.getPrixTotalCentimes());
+  }
+}
@@ -0,0 +1,202 @@
+package tests;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import io.SauvegardePages;
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import pizzas.Client;
+import pizzas.Commande;
+import pizzas.Compte;
+import pizzas.EtatCommande;
+import pizzas.Evaluation;
+import pizzas.GestPizzaiolo;
+import pizzas.InformationPersonnelle;
+import pizzas.Pizza;
+import pizzas.Pizzaiolo;
+import pizzas.TypePizza;
+
+/**
+ * Tests JUnit 5 de la classe {@link io.SauvegardePages}.
+ *
+ * @author Kevin SIDER
+ */
+public class SauvegardePagesTest {
+  
+  // Fichier temporaire pour les tests
+  private final String testfile = "test_donnees_pages.db";
+  
+  private static final int NB_CLIENTS = 600;
+  
+  private GestPizzaiolo gestPizzaiolo;
+  private SauvegardePages sauvegarde;
+  
+  @BeforeEach
+  void setUp() throws IOException {
+    Compte.resetMemoire();
+    new File(testfile).delete();
+    gestPizzaiolo = new GestPizzaiolo(new Pizzaiolo("MarioPages"));
+    sauvegarde = new SauvegardePages(gestPizzaiolo);
+    // Petit cache : les pages sortent du cache pendant les tests
+    sauvegarde.setPagesEnCache(8);
+    
+    gestPizzaiolo.creerIngredient("TomatePages", 0.50);
+    gestPizzaiolo.creerIngredient("JambonPages", 1.50);
+    gestPizzaiolo.interdireIngredient("JambonPages", TypePizza.Vegetarienne);
+    Pizza reine = gestPizzaiolo.creerPizza("ReinePages", TypePizza.Viande);
+    gestPizzaiolo.ajouterIngredientPizza(reine, "TomatePages");
+    gestPizzaiolo.ajouterIngredientPizza(reine, "JambonPages");
+    gestPizzaiolo.setPrixPizza(reine, 11.0);
+    
+    // Assez de clients pour découper l'arbre sur plusieurs niveaux
+    for (int i = 0; i < NB_CLIENTS; i++) {
+      String email = "client" + i + "@pages.com";
+      Compte.inscription(email, "mdp",
+          new InformationPersonnelle("Nom", "Prénom", "Adresse", 30));
+      if (i % 100 == 0) {
+        Client client = Compte.getClientParEmail(email);
+        Commande cmd = client.nouvelleCommande();
+        cmd.ajouterPizza(reine);
+        cmd.setEtat(EtatCommande.TRAITEE);
+        reine.getEvaluations().add(new Evaluation(5, "Parfaite", client));
+      }
+    }
+    sauvegarde.sauvegarderDonnees(testfile);
+  }
+  
+  @AfterEach
+  void tearDown() throws IOException {
+    sauvegarde.close();
+    new File(testfile).delete();
+    Compte.resetMemoire();
+  }
+  
+  /**
+   * Recharge le fichier dans un nouveau gestionnaire.
+   */
+  private GestPizzaiolo recharger(boolean catalogue) throws IOException {
+    sauvegarde.close();
+    Compte.resetMemoire();
+    GestPizzaiolo gest = new GestPizzaiolo(new Pizzaiolo("Reprise"));
+    sauvegarde = new SauvegardePages(gest);
+    if (catalogue) {
+      sauvegarde.chargerCatalogue(testfile);
+    } else {
+      sauvegarde.chargerDonnees(testfile);
+    }
+    return gest;
+  }
+  
+  @Test
+  void testSauvegardeEtChargement() throws IOException {
+    GestPizzaiolo gest = recharger(false);
+    assertEquals(2, gest.getIngredients().size());
+    assertEquals(NB_CLIENTS, Compte.getTousLesClients().size());
+    Pizza reine = gest.getPizzaParNom("ReinePages");
+    assertNotNull(reine);
+    assertEquals(11.0, reine.getPrix());
+    assertEquals(2, reine.getIngredients().size());
+    assertEquals(NB_CLIENTS / 100, reine.getEvaluations().size());
+    assertTrue(gest.estIngredientInterdit(TypePizza.Vegetarienne,
+        gest.getIngredientParNom("JambonPages")));
+    assertEquals(NB_CLIENTS / 100, gest.getCommandesTraitees().size());
+    
+    // Sauvegarde sans modification : aucune page réécrite
+    sauvegarde.sauvegarderDonnees(testfile);
+    assertEquals(0, sauvegarde.getNbPagesEcrites());
+    
+    // Les entités supprimées disparaissent du fichier
+    gest.interdireIngredient("JambonPages", TypePizza.Vegetarienne);
+    reine.getEvaluations().clear();
+    sauvegarde.sauvegarderDonnees(testfile);
+    assertEquals(0,
+        sauvegarde.extraireSection(testfile, "INTERDICTION").size());
+    assertEquals(0, sauvegarde.extraireSection(testfile, "EVALUATION").size());
+    assertEquals(NB_CLIENTS,
+        sauvegarde.extraireSection(testfile, "CLIENT").size());
+  }
+  
+  @Test
+  void testMisesAJourPonctuelles() throws IOException {
+    sauvegarde.activerMisesAJour();
+    Pizza reine = gestPizzaiolo.getPizzaParNom("ReinePages");
+    gestPizzaiolo.setPrixPizza(reine, 13.0);
+    gestPizzaiolo.interdireIngredient("JambonPages", TypePizza.Vegetarienne);
+    Compte.inscription("nouveau@pages.com", "mdp",
+        new InformationPersonnelle("Nom", "Prénom", "Adresse", 40));
+    Commande cmd = Compte.getClientParEmail("nouveau@pages.com")
+        .nouvelleCommande();
+    cmd.ajouterPizza(reine);
+    cmd.setEtat(EtatCommande.TRAITEE);
+    assertNull(sauvegarde.getErreur());
+    
+    // Rechargement sans sauvegarde complète
+    GestPizzaiolo gest = recharger(false);
+    assertEquals(13.0, gest.getPizzaParNom("ReinePages").getPrix());
+    assertFalse(gest.estIngredientInterdit(TypePizza.Vegetarienne,
+        gest.getIngredientParNom("JambonPages")));
+    Client nouveau = Compte.getClientParEmail("nouveau@pages.com");
+    assertNotNull(nouveau);
+    assertEquals(1, gest.commandesTraiteesClient(
+        nouveau.getInfoPersonnelle()).size());
+  }
+  
+  @Test
+  void testClientsALaDemande() throws IOException {
+    GestPizzaiolo gest = recharger(true);
+    assertEquals(1, gest.getPizzas().size());
+    // Seuls les auteurs des évaluations sont chargés
+    assertEquals(NB_CLIENTS / 100, Compte.getTousLesClients().size());
+    
+    Client client = Compte.getClientParEmail("client42@pages.com");
+    assertNotNull(client);
+    assertEquals(NB_CLIENTS / 100 + 1, Compte.getTousLesClients().size());
+    assertEquals(1, Compte.getTousLesClients().stream()
+        .filter(c -> c == client).count());
+    assertNull(Compte.getClientParEmail("inconnu@pages.com"));
+    
+    // Les clients non chargés sont conservés par la sauvegarde
+    sauvegarde.sauvegarderDonnees(testfile);
+    assertEquals(NB_CLIENTS,
+        sauvegarde.extraireSection(testfile, "CLIENT").size());
+    assertEquals(NB_CLIENTS / 100,
+        sauvegarde.extraireSection(testfile, "COMMANDE").size());
+  }
+  
+  @Test
+  void testGrandeValeurEtLectureDirecte() throws IOException {
+    StringBuilder commentaire = new StringBuilder();
+    for (int i = 0; i < 2000; i++) {
+      commentaire.append("Excellente pâte ");
+    }
+    Pizza reine = gestPizzaiolo.getPizzaParNom("ReinePages");
+    reine.getEvaluations().add(new Evaluation(4, commentaire.toString(),
+        Compte.getClientParEmail("client1@pages.com")));
+    sauvegarde.sauvegarderDonnees(testfile);
+    
+    List<String> lignes = sauvegarde.extraireEntite(testfile, "EVALUATION",
+        "ReinePages");
+    assertEquals(NB_CLIENTS / 100 + 1, lignes.size());
+    assertEquals(1, lignes.stream()
+        .filter(l -> l.endsWith(commentaire.toString())).count());
+    assertEquals(1, sauvegarde.extraireEntite(testfile, "CLIENT",
+        "client1@pages.com").size());
+    assertEquals(1, sauvegarde.extraireEntite(testfile, "COMMANDE",
+        "client100@pages.com").size());
+    assertThrows(IllegalArgumentException.class,
+        () -> sauvegarde.extraireSection(testfile, "INDEX"));
+    
+    GestPizzaiolo gest = recharger(false);
+    assertTrue(gest.getPizzaParNom("ReinePages").getEvaluations().stream()
+        .anyMatch(e -> e.getCommentaire().equals(commentaire.toString())));
+  }
+}
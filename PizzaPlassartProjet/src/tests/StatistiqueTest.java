@@ -11,9 +11,11 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import pizzas.Client;
 import pizzas.Commande;
+import pizzas.CommandeException;
 import pizzas.Compte;
 import pizzas.InformationPersonnelle;
 import pizzas.Ingredient;
+import pizzas.LigneCommande;
 import pizzas.Pizza;
 import pizzas.Statistique;
 import pizzas.TypePizza;
@@ -198,4 +200,64 @@ public class StatistiqueTest {
     assertEquals(p1, classement.get(0));
     assertEquals(p2, classement.get(1));
   }
+  
+  /**
+   * Vérifie que les montants en centimes sont exacts : prix minimal d'une
+   * somme d'ingrédients, total d'une commande après de nombreux ajouts et
+   * retraits, et bénéfice cumulé sur de nombreuses commandes.
+   */
+  @Test
+  void testMontantsExacts() {
+    // 0,19 + 1,86 + 0,45 = 2,50 € exactement, soit 3,50 € avec la marge
+    Pizza p3 = new Pizza("P3", TypePizza.Viande);
+    p3.ajouterIngredient(new Ingredient("Ing3", 0.19));
+    p3.ajouterIngredient(new Ingredient("Ing4", 1.86));
+    p3.ajouterIngredient(new Ingredient("Ing5", 0.45));
+    assertEquals(350, p3.calculerPrixMinimalCentimes());
+    p3.setPrix(3.51);
+    
+    for (int i = 0; i < 100_000; i++) {
+      c2.ajouterPizza(p3);
+      c2.retirerPizza(p3);
+    }
+    assertEquals(500, c2.getPrixTotalCentimes());
+    
+    List<Commande> commandes = new ArrayList<>();
+    for (int i = 0; i < 100_000; i++) {
+      commandes.add(c2);
+    }
+    assertEquals(220L * 100_000,
+        Statistique.calculerBeneficeTotalCentimes(commandes));
+    assertEquals(1, Statistique.calculerBeneficePizzaCentimes(p3));
+  }
+  
+  /**
+   * Vérifie que les lignes d'une commande sont figées à la validation : un
+   * changement de prix ultérieur ne modifie plus son total ni ses bénéfices.
+   */
+  @Test
+  void testLignesFigeesALaValidation() throws CommandeException {
+    List<LigneCommande> lignes = c1.getLignes();
+    assertEquals(1, lignes.size());
+    assertEquals(2, lignes.get(0).getQuantite());
+    assertEquals(1000, lignes.get(0).getPrixUnitaireCentimes());
+    assertEquals(140, lignes.get(0).getCoutUnitaireCentimes());
+    
+    c1.valider();
+    p1.setPrix(12.0);
+    p1.ajouterIngredient(new Ingredient("Ing6", 1.0));
+    assertEquals(17.2, Statistique.calculerBeneficeCommande(c1), 0.001);
+    assertEquals(2000, c1.getPrixTotalCentimes());
+    
+    // La commande non validée suit les prix actuels
+    Commande c3 = new Commande(3, c1.getClient());
+    c3.ajouterPizza(p1);
+    assertEquals(1200 - 280, Statistique.calculerBeneficeCommandeCentimes(c3));
+    
+    // Une pizza ajoutée après la validation prend le prix actuel
+    c1.ajouterPizza(p2);
+    assertEquals(2500, c1.getPrixTotalCentimes());
+    assertEquals(1720 + 220, Statistique.calculerBeneficeCommandeCentimes(c1));
+    assertEquals(2, c1.getLignes().size());
+  }
 }
@@ -3,9 +3,11 @@ package tests;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
+import java.util.List;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import pizzas.Client;
 import pizzas.Compte;
 import pizzas.InformationPersonnelle;
 
@@ -155,4 +157,21 @@ public class TestCompte {
     assertTrue(!compte.correspondaLogin("luke@example.com", "mauvais"));
   }
   
+  /**
+   * Vérifie l'inscription d'un lot : les comptes déjà inscrits ou en double
+   * dans le lot sont ignorés.
+   */
+  @Test
+  void testInscriptionEnMasse() {
+    Compte.inscription("luke@example.com", "secret", info);
+    List<Client> crees = Compte.inscriptionEnMasse(List.of(compte,
+        new Compte("leia@example.com", "secret", info),
+        new Compte(" LEIA@example.com", "autre", info),
+        new Compte("han@example.com", "secret", info)));
+    assertEquals(2, crees.size());
+    assertEquals("leia@example.com", crees.get(0).getCompte().getEmail());
+    assertTrue(Compte.connexion("leia@example.com", "secret"));
+    assertEquals(3, Compte.getTousLesClients().size());
+  }
+  
 }
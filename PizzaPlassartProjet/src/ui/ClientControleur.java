@@ -1,5 +1,7 @@
 package ui;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Set;
 import java.util.function.UnaryOperator;
 import javafx.collections.FXCollections;
@@ -22,6 +24,7 @@ import pizzas.Client;
 import pizzas.Commande;
 import pizzas.CommandeException;
 import pizzas.Compte;
+import pizzas.EtatCommande;
 import pizzas.Evaluation;
 import pizzas.GestClient;
 import pizzas.InformationPersonnelle;
@@ -51,18 +54,43 @@ public class ClientControleur {
     this.model = new GestClient();
   }
   
+  /**
+   * Identifiants des commandes affichées, dans l'ordre de la liste.
+   */
+  private final List<Integer> idsCommandes = new ArrayList<>();
+  
   private void afficherCommandesEnCours() {
-    listeCommandes.getItems().clear();
     try {
-      for (Commande c : model.getCommandesEncours()) {
-        listeCommandes.getItems().add("Commande " + c.getIdCommande());
-      }
+      afficherCommandes(model.getCommandesEncours());
       labelListeCommandes.setText("Commandes en cours");
     } catch (NonConnecteException e) {
       popupErreur(e.getMessage());
     }
   }
   
+  private void afficherCommandes(List<Commande> commandes) {
+    listeCommandes.getItems().clear();
+    idsCommandes.clear();
+    for (Commande c : commandes) {
+      listeCommandes.getItems().add("Commande " + c.getIdCommande());
+      idsCommandes.add(c.getIdCommande());
+    }
+  }
+  
+  /**
+   * Retourne la commande sélectionnée dans la liste des commandes.
+   *
+   * @return la commande, ou null si aucune n'est sélectionnée
+   * @throws NonConnecteException si aucun client n'est connecté
+   */
+  private Commande getCommandeSelectionnee() throws NonConnecteException {
+    int indice = listeCommandes.getSelectionModel().getSelectedIndex();
+    if (indice < 0 || indice >= idsCommandes.size()) {
+      return null;
+    }
+    return model.getCommande(idsCommandes.get(indice));
+  }
+  
   @FXML
   private ChoiceBox<String> choiceBoxFiltreType;
   
@@ -373,11 +401,8 @@ public class ClientControleur {
   
   @FXML
   void actionBoutonAfficherCommandesTraitees(ActionEvent event) {
-    listeCommandes.getItems().clear();
     try {
-      for (Commande c : model.getCommandePassees()) {
-        listeCommandes.getItems().add("Commande " + c.getIdCommande());
-      }
+      afficherCommandes(model.getCommandePassees());
       labelListeCommandes.setText("Commandes traitées");
     } catch (NonConnecteException e) {
       popupErreur(e.getMessage());
@@ -484,30 +509,14 @@ public class ClientControleur {
       return;
     }
     
-    String commandeNom = listeCommandes.getSelectionModel().getSelectedItem();
-    if (commandeNom == null) {
+    if (listeCommandes.getSelectionModel().isEmpty()) {
       popupErreur("Sélectionnez une commande.");
       return;
     }
     
-    int idCmd;
-    try {
-      idCmd = Integer.parseInt(commandeNom.replace("Commande ", ""));
-    } catch (NumberFormatException e) {
-      popupErreur("Identifiant de commande invalide.");
-      return;
-    }
-    
     try {
-      Commande cmd = null;
-      for (Commande c : model.getCommandesEncours()) {
-        if (c.getIdCommande() == idCmd) {
-          cmd = c;
-          break;
-        }
-      }
-      
-      if (cmd == null) {
+      Commande cmd = getCommandeSelectionnee();
+      if (cmd == null || cmd.getEtat() != EtatCommande.CREE) {
         popupErreur("Commande introuvable ou déjà validée.");
         return;
       }
@@ -600,7 +609,7 @@ public class ClientControleur {
       
       // Sélectionner automatiquement la nouvelle commande
       listeCommandes.getSelectionModel()
-          .select("Commande " + nouvelleCommande.getIdCommande());
+          .select(idsCommandes.indexOf(nouvelleCommande.getIdCommande()));
       
     } catch (NonConnecteException e) {
       popupErreur(e.getMessage());
@@ -621,24 +630,20 @@ public class ClientControleur {
   
   @FXML
   void actionBoutonValiderCommandeEnCours(ActionEvent event) {
-    String selection = listeCommandes.getSelectionModel().getSelectedItem();
-    if (selection == null) {
+    if (listeCommandes.getSelectionModel().isEmpty()) {
       popupErreur("Sélectionnez une commande.");
       return;
     }
     
-    int idCmd = Integer.parseInt(selection.replace("Commande ", ""));
-    
     try {
-      for (Commande c : model.getCommandesEncours()) {
-        if (c.getIdCommande() == idCmd) {
-          model.validerCommande(c);
-          popupInfo("Commande validée");
-          afficherCommandesEnCours();
-          return;
-        }
+      Commande c = getCommandeSelectionnee();
+      if (c == null || c.getEtat() != EtatCommande.CREE) {
+        popupErreur("Commande introuvable.");
+        return;
       }
-      popupErreur("Commande introuvable.");
+      model.validerCommande(c);
+      popupInfo("Commande validée");
+      afficherCommandesEnCours();
     } catch (NonConnecteException | CommandeException e) {
       popupErreur(e.getMessage());
     }
@@ -703,27 +708,19 @@ public class ClientControleur {
   
   @FXML
   void actionSelectionCommande(MouseEvent event) {
-    String selection = listeCommandes.getSelectionModel().getSelectedItem();
-    if (selection == null) {
-      return;
-    }
-    
-    int idCmd = Integer.parseInt(selection.replace("Commande ", ""));
-    
     try {
-      for (Commande c : model.getCommandesEncours()) {
-        if (c.getIdCommande() == idCmd) {
-          
-          listePizzas.getItems().clear();
-          
-          for (Pizza p : c.getPizzas()) {
-            listePizzas.getItems().add(p.getNom());
-          }
-          
-          labelListePizzas.setText("Pizzas de la commande");
-          break;
-        }
+      Commande c = getCommandeSelectionnee();
+      if (c == null) {
+        return;
       }
+      
+      listePizzas.getItems().clear();
+      
+      for (Pizza p : c.getPizzas()) {
+        listePizzas.getItems().add(p.getNom());
+      }
+      
+      labelListePizzas.setText("Pizzas de la commande");
     } catch (NonConnecteException e) {
       popupErreur(e.getMessage());
     }
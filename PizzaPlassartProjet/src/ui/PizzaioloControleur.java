@@ -1,9 +1,15 @@
 package ui;
 
 import io.GestionSauvegarde;
+import io.PlanificateurCompaction;
+import io.SauvegardeAsynchrone;
+import io.SauvegardeJournalisee;
+import java.io.File;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import javafx.application.Platform;
 import javafx.event.ActionEvent;
 import javafx.fxml.FXML;
 import javafx.scene.control.Alert;
@@ -11,8 +17,11 @@ import javafx.scene.control.ChoiceBox;
 import javafx.scene.control.ComboBox;
 import javafx.scene.control.Label;
 import javafx.scene.control.ListView;
+import javafx.scene.control.MenuItem;
 import javafx.scene.control.TextField;
 import javafx.scene.input.MouseEvent;
+import javafx.stage.Stage;
+import javafx.stage.Window;
 import pizzas.Client;
 import pizzas.Commande;
 import pizzas.Compte;
@@ -30,9 +39,17 @@ import pizzas.TypePizza;
  */
 public class PizzaioloControleur {
   
+  private static final String FICHIER_DONNEES = "donnees_pizzeria.txt";
+  private static final String TITRE = "Gestion des pizzas";
+  
   private GestPizzaiolo gestPizzaiolo;
+  private SauvegardeJournalisee sauvegarde;
+  private SauvegardeAsynchrone sauvegardeAsynchrone;
+  private PlanificateurCompaction compaction;
   private Pizza pizzaSelectionnee;
   
+  @FXML
+  private MenuItem menuSauvegarder;
   @FXML
   private ChoiceBox<String> choiceBoxTypeIngredient;
   @FXML
@@ -150,9 +167,16 @@ public class PizzaioloControleur {
     
     switch (resultat) {
       case 0:
-        afficherAlerte("Succès", "Prix modifié", Alert.AlertType.INFORMATION);
+        List<Pizza> modifiees = gestPizzaiolo.getPizzasPrixMinimalModifie();
+        afficherAlerte("Succès", "Prix modifié"
+            + (modifiees.isEmpty() ? "" : "\nPrix minimal modifié pour "
+                + modifiees.size() + " pizza(s)."),
+            Alert.AlertType.INFORMATION);
         actualiserListeIngredients();
         entreePrixIngredient.clear();
+        if (modifiees.contains(pizzaSelectionnee)) {
+          actualiserDetailsPizza(pizzaSelectionnee);
+        }
         break;
       case -1:
         afficherAlerte("Erreur", "Nom invalide", Alert.AlertType.ERROR);
@@ -190,16 +214,15 @@ public class PizzaioloControleur {
     boolean resultat = gestPizzaiolo.interdireIngredient(nom, type);
     
     if (resultat) {
-      Ingredient ing = null;
-      for (Ingredient i : gestPizzaiolo.getIngredients()) {
-        if (i.getNom().equals(nom)) {
-          ing = i;
-          break;
-        }
-      }
+      Ingredient ing = gestPizzaiolo.getIngredientParNom(nom);
       if (gestPizzaiolo.estIngredientInterdit(type, ing)) {
+        long nbPizzas = gestPizzaiolo.pizzasAvecIngredient(nom).stream()
+            .filter(p -> p.getType() == type).count();
         afficherAlerte("Succès",
-            nom + " est maintenant INTERDIT pour les " + type,
+            nom + " est maintenant INTERDIT pour les " + type
+                + (nbPizzas > 0 ? "\n" + nbPizzas
+                    + " pizza(s) de ce type contiennent cet ingrédient."
+                    : ""),
             Alert.AlertType.INFORMATION);
       } else {
         afficherAlerte("Succès",
@@ -341,7 +364,7 @@ public class PizzaioloControleur {
       afficherAlerte("Validation",
           "Tous les ingrédients sont valides pour cette pizza",
           Alert.AlertType.INFORMATION);
-
+      
       actualiserListeIngredients();
       
     } else {
@@ -524,22 +547,30 @@ public class PizzaioloControleur {
     }
   }
   
+  /**
+   * Identifiants des commandes affichées, dans l'ordre de la liste.
+   */
+  private int[] idsCommandes = new int[0];
+  
   private void afficherListeCommandes(List<Commande> cmds, String titre) {
     listeCommandes.getItems().clear();
+    idsCommandes = new int[cmds.size()];
+    int i = 0;
     for (Commande c : cmds) {
       listeCommandes.getItems().add(c.toString());
+      idsCommandes[i++] = c.getIdCommande();
     }
     labelListeCommandes.setText(titre + " (" + cmds.size() + ")");
   }
   
   @FXML
   void actionListeSelectionCommande(MouseEvent event) {
-    String cmdStr = listeCommandes.getSelectionModel().getSelectedItem();
-    if (cmdStr == null) {
+    int indice = listeCommandes.getSelectionModel().getSelectedIndex();
+    if (indice < 0 || indice >= idsCommandes.length) {
       return;
     }
     
-    Commande c = gestPizzaiolo.getCommandeByString(cmdStr);
+    Commande c = gestPizzaiolo.getCommande(idsCommandes[indice]);
     
     entreeNombreTotalCommandes
         .setText(String.valueOf(gestPizzaiolo.commandesDejaTraitees().size()));
@@ -612,21 +643,20 @@ public class PizzaioloControleur {
   
   @FXML
   void actionMenuSauvegarder(ActionEvent e) {
-    try {
-      new GestionSauvegarde(gestPizzaiolo)
-          .sauvegarderDonnees("donnees_pizzeria.txt");
-      afficherAlerte("Sauvegarde", "Votre fichier à bien été sauvegarder.",
-          Alert.AlertType.INFORMATION);
-    } catch (Exception ex) {
-      afficherAlerte("Erreur", ex.getMessage(), Alert.AlertType.ERROR);
-    }
+    // Écriture en arrière-plan, la fin est signalée par l'écouteur
+    sauvegardeAsynchrone.demanderSauvegarde();
   }
   
   @FXML
   void actionMenuCharger(ActionEvent e) {
+    if (sauvegardeAsynchrone.estEnCours()) {
+      afficherAlerte("Chargement", "Une sauvegarde est en cours.",
+          Alert.AlertType.WARNING);
+      return;
+    }
     try {
-      new GestionSauvegarde(gestPizzaiolo)
-          .chargerDonnees("donnees_pizzeria.txt");
+      sauvegarde.chargerDonnees(FICHIER_DONNEES);
+      menuSauvegarder.setDisable(false);
       actualiserListeIngredients();
       actualiserListePizzas();
       comboBoxClients.getItems().clear();
@@ -635,14 +665,125 @@ public class PizzaioloControleur {
       }
       afficherAlerte("Chargement", "Votre fichier a bien été charger.",
           Alert.AlertType.INFORMATION);
+      signalerJournalEcarte();
     } catch (Exception ex) {
-      afficherAlerte("Erreur", ex.getMessage(), Alert.AlertType.ERROR);
+      bloquerSauvegarde(ex);
+    }
+  }
+  
+  /**
+   * Interdit la sauvegarde après un chargement échoué : les données en
+   * mémoire sont incomplètes et remplaceraient le fichier.
+   */
+  private void bloquerSauvegarde(Exception ex) {
+    menuSauvegarder.setDisable(true);
+    afficherAlerte("Erreur", "Chargement impossible : " + ex.getMessage()
+        + "\nLa sauvegarde est désactivée pour ne pas écraser le fichier.",
+        Alert.AlertType.ERROR);
+  }
+  
+  /**
+   * Prévient si le journal trouvé au chargement a été mis de côté.
+   */
+  private void signalerJournalEcarte() {
+    if (sauvegarde.getJournalEcarte() != null) {
+      afficherAlerte("Attention", "Le journal ne correspondait pas à la "
+          + "sauvegarde, ses modifications n'ont pas été reprises. Il a été "
+          + "conservé dans " + sauvegarde.getJournalEcarte().getName() + ".",
+          Alert.AlertType.WARNING);
+    }
+  }
+  
+  /**
+   * Change le titre de la fenêtre (pour indiquer l'avancement d'une
+   * sauvegarde).
+   */
+  private void afficherTitre(String titre) {
+    Window fenetre = listeIngredients.getScene() != null
+        ? listeIngredients.getScene().getWindow() : null;
+    if (fenetre instanceof Stage) {
+      ((Stage) fenetre).setTitle(titre);
     }
   }
   
   @FXML
   void initialize() {
     gestPizzaiolo = new GestPizzaiolo(new Pizzaiolo("Mario"));
+    // Seules les commandes du jour sont chargées au démarrage, l'historique
+    // l'est à la demande
+    GestionSauvegarde texte = new GestionSauvegarde(gestPizzaiolo);
+    texte.activerArchivage();
+    sauvegarde = new SauvegardeJournalisee(gestPizzaiolo, texte);
+    sauvegarde.setEcouteur(new SauvegardeAsynchrone.Ecouteur() {
+      @Override
+      public void echec(Exception ex) {
+        // Prévenu pendant une modification : l'alerte attend sa fin
+        Platform.runLater(() -> afficherAlerte("Erreur",
+            "Les modifications ne sont plus enregistrées : "
+            + ex.getMessage() + "\nSauvegardez pour ne pas les perdre.",
+            Alert.AlertType.ERROR));
+      }
+    });
+    // Reprise de la dernière sauvegarde et des modifications journalisées ;
+    // au premier lancement, une sauvegarde vide démarre le journal
+    // (alertes affichées une fois la fenêtre ouverte)
+    try {
+      if (new File(FICHIER_DONNEES).exists() || new File(FICHIER_DONNEES
+          + SauvegardeJournalisee.SUFFIXE_JOURNAL).exists()) {
+        sauvegarde.chargerDonnees(FICHIER_DONNEES);
+        Platform.runLater(this::signalerJournalEcarte);
+      } else {
+        sauvegarde.sauvegarderDonnees(FICHIER_DONNEES);
+      }
+    } catch (Exception e) {
+      Platform.runLater(() -> bloquerSauvegarde(e));
+    }
+    sauvegardeAsynchrone = new SauvegardeAsynchrone(sauvegarde,
+        FICHIER_DONNEES, Platform::runLater);
+    sauvegardeAsynchrone.setEcouteur(new SauvegardeAsynchrone.Ecouteur() {
+      @Override
+      public void progression(double avancement) {
+        afficherTitre(String.format("%s (sauvegarde : %d %%)", TITRE,
+            (int) (avancement * 100)));
+      }
+      
+      @Override
+      public void terminee() {
+        afficherTitre(TITRE);
+        afficherAlerte("Sauvegarde", "Votre fichier à bien été sauvegarder.",
+            Alert.AlertType.INFORMATION);
+      }
+      
+      @Override
+      public void echec(Exception ex) {
+        afficherTitre(TITRE);
+        afficherAlerte("Erreur", ex.getMessage(), Alert.AlertType.ERROR);
+      }
+    });
+    // Le journal est compacté en arrière-plan pour borner la durée du
+    // prochain démarrage
+    compaction = new PlanificateurCompaction(sauvegarde, sauvegardeAsynchrone,
+        Platform::runLater);
+    compaction.setEcouteur(new SauvegardeAsynchrone.Ecouteur() {
+      @Override
+      public void progression(double avancement) {
+        afficherTitre(String.format("%s (compaction : %d %%)", TITRE,
+            (int) (avancement * 100)));
+      }
+      
+      @Override
+      public void terminee() {
+        afficherTitre(TITRE);
+      }
+      
+      @Override
+      public void echec(Exception ex) {
+        afficherTitre(TITRE);
+        afficherAlerte("Erreur", "Compaction du journal impossible : "
+            + ex.getMessage(), Alert.AlertType.ERROR);
+      }
+    });
+    compaction.demarrer(1, TimeUnit.MINUTES);
     choiceBoxTypeIngredient.getItems().addAll("Viande", "Vegetarienne",
         "Regionale");
     choiceBoxTypePizza.getItems().addAll("Viande", "Vegetarienne", "Regionale");